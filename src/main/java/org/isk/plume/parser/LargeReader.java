@@ -0,0 +1,223 @@
+package org.isk.plume.parser;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.isk.plume.parser.exception.ReaderException;
+import org.isk.plume.unicode.LargeMappedCodePoints;
+import org.isk.plume.unicode.exception.MappedCodePointsException;
+
+/**
+ * <p>
+ * A LargeReader is a {@link Reader} over a {@link LargeMappedCodePoints}: it offers the same methods, with
+ * <code>long</code> positions, lines and columns.
+ * <p>
+ * A LargeReader is a cursor: it is not thread-safe, but many readers can read the same {@link LargeMappedCodePoints}
+ * at the same time, one per thread (see {@link #fork()}).
+ */
+public class LargeReader {
+  /**
+   * The stream to go through.
+   */
+  final private LargeMappedCodePoints stream;
+
+  /**
+   * The current position in the stream.
+   */
+  private long position = 0;
+
+  /**
+   * The line of the last position whose line or column has been asked for, where the next search starts.
+   */
+  private long lineHint = 0;
+
+  /**
+   * Saved positions.<br>
+   * For mark and reset.
+   */
+  final private Deque<Long> mark = new ArrayDeque<>();
+
+  /**
+   * Instantiates a new <code>LargeReader</code> from a {@link LargeMappedCodePoints} containing code points.
+   * 
+   * @param mappedStream
+   *          is a {@link LargeMappedCodePoints}
+   */
+  public LargeReader(final LargeMappedCodePoints mappedStream) {
+    this.stream = mappedStream;
+  }
+
+  /**
+   * Returns a new <code>LargeReader</code> over the same {@link LargeMappedCodePoints}, at the same position. The
+   * positions saved are not copied. Both readers are then independent and can be used by different threads.
+   * 
+   * @return a new <code>LargeReader</code>.
+   */
+  public LargeReader fork() {
+    final LargeReader reader = new LargeReader(this.stream);
+    reader.position = this.position;
+    reader.lineHint = this.lineHint;
+    return reader;
+  }
+
+  /**
+   * Reads the next code point and moves to the next one.
+   * 
+   * @return the next code point.
+   * @throws ReaderException
+   *           if the end of the stream has been reached.
+   */
+  public int read() {
+    if (++this.position > this.stream.getEosIndex()) {
+      this.position--;
+      throw new ReaderException(this.debug("End of stream reached. No more character to read."));
+    } else {
+      return this.stream.codePointAt(this.position);
+    }
+  }
+
+  /**
+   * Unreads the previous code point read.
+   * 
+   * @throws ReaderException
+   *           if the beginning of the stream has been reached.
+   */
+  public void unread() {
+    if (this.position <= 0) {
+      throw new ReaderException(this.debug("Nothing to unread."));
+    } else {
+      this.position--;
+    }
+  }
+
+  /**
+   * Unreads the previous code point read like {link #unread()} but without throwing an exception if the beginning of
+   * the stream has been read.
+   */
+  public void unreadNotBeforeStart() {
+    if (this.position > 1) {
+      this.position--;
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the next code point without moving to the next one.
+   * <p>
+   * Calling this method multiple times in a row will always return the same code point.
+   * 
+   * @return the next code point.
+   * @throws ReaderException
+   *           if the end of the stream has been reached.
+   */
+  public int peek() {
+    if (this.position + 1 > this.stream.getEosIndex()) {
+      throw new ReaderException(this.debug("End of file reached. No more character to read."));
+    } else {
+      return this.stream.codePointAt(this.position + 1);
+    }
+  }
+
+  /**
+   * <p>
+   * Saves the current position.
+   * 
+   * <p>
+   * Calling {@link #reset()} will reset the current position to this one.
+   */
+  public void mark() {
+    this.mark.push(this.position);
+  }
+
+  /**
+   * Sets the current position to the one previously saved.
+   */
+  public void reset() {
+    if (!this.mark.isEmpty()) {
+      this.position = this.mark.pop();
+    } else {
+      throw new ReaderException(this.debug("No position has been saved. You must call mark() before."));
+    }
+  }
+
+  /**
+   * Sets the current position to the first one saved.
+   */
+  public void fullReset() {
+    if (!this.mark.isEmpty()) {
+      this.position = this.mark.getLast();
+      this.mark.clear();
+    }
+  }
+
+  /**
+   * Removes all positions saved.
+   */
+  public void clearMark() {
+    this.mark.clear();
+  }
+
+  /**
+   * Is there any position saved ?
+   * 
+   * @return <code>true</code> is there is no position saved, otherwise <code>false</code>.
+   */
+  public boolean isMarkEmpty() {
+    return this.mark.isEmpty();
+  }
+
+  /**
+   * Returns the line of a code point at the current position.
+   * 
+   * @return the line of a code point at the current position.
+   */
+  public long getLine() {
+    this.lineHint = this.stream.getLine(this.position, this.lineHint);
+    return this.lineHint;
+  }
+
+  /**
+   * Returns the column of a code point at the current position.
+   * 
+   * @return the column of a code point at the current position.
+   */
+  public long getColumn() {
+    this.lineHint = this.stream.getLine(this.position, this.lineHint);
+    return this.stream.getColumn(this.position, this.lineHint);
+  }
+
+  /**
+   * Returns the name of the file read.
+   * 
+   * @return the name of the file read.
+   */
+  public String getFilename() {
+    return this.stream.getFilename();
+  }
+
+  /**
+   * Returns a debug message at the current position (see {@link Reader#debug(String)}).
+   * 
+   * @param msg
+   *          is a custom text displayed after the name of the file if any. Can be <code>null</code> or empty.
+   * @return a debug message.
+   */
+  public String debug(final String msg) {
+    return this.stream.debug(msg, this.position);
+  }
+
+  /**
+   * Returns a debug message at a given position (see {@link Reader#debug(String, int)}).
+   * 
+   * @param msg
+   *          is a custom text displayed after the name of the file if any. Can be <code>null</code> or empty.
+   * @param position
+   *          is the position of the error.
+   * @return a debug message.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  public String debug(final String msg, final long position) {
+    return this.stream.debug(msg, position);
+  }
+}
@@ -4,7 +4,9 @@ import java.util.ArrayDeque;
 import java.util.Deque;
 
 import org.isk.plume.parser.exception.ReaderException;
+import org.isk.plume.unicode.CodePointSource;
 import org.isk.plume.unicode.CodePoints.Charset;
+import org.isk.plume.unicode.ColumnModel;
 import org.isk.plume.unicode.MappedCodePoints;
 import org.isk.plume.unicode.UnicodeInputStream;
 import org.isk.plume.unicode.exception.MappedCodePointsException;
@@ -12,19 +14,30 @@ import org.isk.plume.unicode.exception.MappedCodePointsException;
 /**
  * <p>
  * A Reader offers the ability to read a {@link MappedCodePoints} one code point at a time, forward or backward, to save
- * the position of the next code point and to use all useful methods from {@link MappedCodePoints}.
+ * the position of the next code point and to use all useful methods from {@link MappedCodePoints}. Any other
+ * {@link CodePointSource} can be read the same way, such as several files concatenated
+ * ({@link org.isk.plume.unicode.ConcatenatedCodePoints}).
+ * <p>
+ * A Reader is a cursor: it is not thread-safe, but many readers can read the same {@link MappedCodePoints} at the
+ * same time, one per thread (see {@link #fork()}). Each reader keeps its own line hint, therefore the readers don't
+ * write to any shared memory.
  */
 public class Reader {
   /**
    * The stream to go through.
    */
-  final private MappedCodePoints stream;
+  final private CodePointSource stream;
 
   /**
    * The current position in the stream as an array of code points.
    */
   private int position = 0;
 
+  /**
+   * The line of the last position whose line or column has been asked for, where the next search starts.
+   */
+  private int lineHint = 0;
+
   /**
    * Saved positions.<br>
    * For mark and reset.
@@ -76,15 +89,29 @@ public class Reader {
   }
 
   /**
-   * Instantiates a new <code>Reader</code> from an {@link MappedCodePoints} containing code points.
+   * Instantiates a new <code>Reader</code> from an {@link MappedCodePoints}, or any other {@link CodePointSource},
+   * containing code points.
    * 
    * @param mappedStream
-   *          is a {@link MappedCodePoints}
+   *          is a {@link CodePointSource}
    */
-  public Reader(final MappedCodePoints mappedStream) {
+  public Reader(final CodePointSource mappedStream) {
     this.stream = mappedStream;
   }
 
+  /**
+   * Returns a new <code>Reader</code> over the same {@link MappedCodePoints}, at the same position. The positions
+   * saved are not copied. Both readers are then independent and can be used by different threads.
+   * 
+   * @return a new <code>Reader</code>.
+   */
+  public Reader fork() {
+    final Reader reader = new Reader(this.stream);
+    reader.position = this.position;
+    reader.lineHint = this.lineHint;
+    return reader;
+  }
+
   /**
    * Reads the next code point and moves to the next one.
    * 
@@ -197,7 +224,8 @@ public class Reader {
    * @return the line of a code point at the current position.
    */
   public int getLine() {
-    return this.stream.getLine(this.position);
+    this.lineHint = this.stream.getLine(this.position, this.lineHint);
+    return this.lineHint;
   }
 
   /**
@@ -206,16 +234,29 @@ public class Reader {
    * @return the column of a code point at the current position.
    */
   public int getColumn() {
-    return this.stream.getColumn(this.position);
+    this.lineHint = this.stream.getLine(this.position, this.lineHint);
+    return this.stream.getColumn(this.position, this.lineHint);
+  }
+
+  /**
+   * Returns the column of a code point at the current position, the columns being counted with a {@link ColumnModel}.
+   * 
+   * @param model
+   *          is the way the columns are counted.
+   * @return the column of a code point at the current position.
+   */
+  public int getColumn(final ColumnModel model) {
+    this.lineHint = this.stream.getLine(this.position, this.lineHint);
+    return this.stream.getColumn(this.position, this.lineHint, model);
   }
 
   /**
-   * Returns the name of the file read.
+   * Returns the name of the file read at the current position.
    * 
-   * @return the name of the file read.
+   * @return the name of the file read at the current position.
    */
   public String getFilename() {
-    return this.stream.getFilename();
+    return this.stream.getFilename(this.position);
   }
 
   /**
@@ -0,0 +1,44 @@
+package org.isk.plume.unicode;
+
+import java.util.Arrays;
+
+/**
+ * An ArrayLineIndex holds the position of the first code point of each line of a {@link MappedCodePoints} in an array
+ * of <code>int</code>.
+ */
+final class ArrayLineIndex extends LineIndex {
+
+  /**
+   * The position of the first code point of each line, indexed by line.
+   */
+  final private int[] lineStarts;
+
+  /**
+   * Instantiates a new <code>ArrayLineIndex</code>.
+   *
+   * @param lineStarts
+   *          is the position of the first code point of each line, indexed by line, sorted. The array is not copied.
+   * @param eosIndex
+   *          is the index of the End Of Stream.
+   */
+  ArrayLineIndex(final int[] lineStarts, final int eosIndex) {
+    super(lineStarts.length - 1, eosIndex);
+    this.lineStarts = lineStarts;
+  }
+
+  @Override
+  int lineStart(final int line) {
+    return this.lineStarts[line];
+  }
+
+  @Override
+  LineIndex compact() {
+    return this;
+  }
+
+  @Override
+  int search(final int position) {
+    final int index = Arrays.binarySearch(this.lineStarts, position);
+    return index >= 0 ? index : -index - 2;
+  }
+}
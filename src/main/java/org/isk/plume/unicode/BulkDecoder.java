@@ -0,0 +1,470 @@
+package org.isk.plume.unicode;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.isk.plume.unicode.CodePoints.Charset;
+import org.isk.plume.unicode.CodePoints.Converter;
+import org.isk.plume.unicode.exception.UnicodeException;
+
+/**
+ * <p>
+ * A BulkDecoder decodes a range of code units contained in a {@link ByteBuffer} to code points, with one loop by
+ * encoding, replacing CR and CRLF by LF as {@link MappedCodePoints} does. The start of the lines and the byte offsets
+ * can be recorded in the same loop.
+ * <p>
+ * A range must start on a sequence boundary (see {@link #alignToCodeUnit(ByteBuffer, int, int, Charset)}), therefore
+ * a buffer can be decoded in several ranges, independently of each other, with the same result as a single range.
+ * <p>
+ * As with an {@link UnicodeInputStream}, a BOM is not removed.
+ */
+final class BulkDecoder {
+
+  private BulkDecoder() {
+    // Only static methods
+  }
+
+  /**
+   * Returns a view of a {@link ByteBuffer} with the byte order of a specified encoding, as expected by
+   * {@link #decode(ByteBuffer, int, int, Charset, boolean, int[], int, ByteOffsets.Builder)}. The byte order of the
+   * buffer itself is left untouched.
+   *
+   * @param bytes
+   *          is a {@link ByteBuffer} containing code units.
+   * @param charset
+   *          is the encoding of the code units.
+   * @return a view of the buffer, from 0 to its limit.
+   */
+  static ByteBuffer withByteOrder(final ByteBuffer bytes, final Charset charset) {
+    final ByteBuffer view = bytes.duplicate();
+    switch (charset) {
+    case UTF16LE:
+    case UTF32LE:
+      return view.order(ByteOrder.LITTLE_ENDIAN);
+    default:
+      return view.order(ByteOrder.BIG_ENDIAN);
+    }
+  }
+
+  /**
+   * Returns the size in bytes of the smallest code unit of a specified encoding.
+   *
+   * @param charset
+   *          is the encoding.
+   * @return the size of the smallest code unit.
+   */
+  static int codeUnitSize(final Charset charset) {
+    switch (charset) {
+    case UTF8:
+    case UTF8BOM:
+      return 1;
+    case UTF16BE:
+    case UTF16LE:
+      return 2;
+    case UTF32BE:
+    case UTF32LE:
+      return 4;
+    default:
+      throw new UnicodeException("Unknown charset!");
+    }
+  }
+
+  /**
+   * Returns the maximum number of code points a number of bytes can hold.
+   *
+   * @param numberOfBytes
+   *          is a number of bytes.
+   * @param charset
+   *          is the encoding of the bytes.
+   * @return the maximum number of code points.
+   */
+  static int maxCodePoints(final int numberOfBytes, final Charset charset) {
+    return numberOfBytes / BulkDecoder.codeUnitSize(charset);
+  }
+
+  /**
+   * Checks that the code units of a fixed-width encoding (UTF-16 or UTF-32) are complete.
+   *
+   * @param length
+   *          is the number of bytes.
+   * @param charset
+   *          is the encoding of the code units.
+   * @throws UnicodeException
+   *           if the data are corrupted.
+   */
+  static void checkCodeUnits(final int length, final Charset charset) {
+    final int codeUnitSize = BulkDecoder.codeUnitSize(charset);
+    if (length % codeUnitSize != 0) {
+      throw new UnicodeException("Corrupted " + Converter.charsetName(charset)
+          + " data. The number of bytes is not a multiple of " + codeUnitSize + ".");
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the first sequence boundary at or after an offset: the offset of the first code unit of a code point, as
+   * the decoding of the whole buffer in a single range finds it. The ranges between such boundaries can therefore be
+   * decoded independently of each other, with the same code points and the same errors as a single range.
+   * <p>
+   * A sequence is as long as its first code unit says, whatever the code units following it (see
+   * {@link #decode(ByteBuffer, int, int, Charset, boolean, int[], int, ByteOffsets.Builder)}): a malformed UTF-8 lead
+   * byte or an unpaired surrogate swallows the code units following it. The boundary is therefore found by skipping
+   * whole sequences from the last offset before it that no sequence can overlap, whatever the code units before this
+   * offset (in valid data, the beginning of the previous code point).
+   *
+   * @param bytes
+   *          is a {@link ByteBuffer} containing code units, ordered with
+   *          {@link #withByteOrder(ByteBuffer, Charset)}.
+   * @param start
+   *          is a sequence boundary at or before the offset (0, or a boundary returned by this method). Nothing is
+   *          read before it.
+   * @param offset
+   *          is an offset between 0 and the limit of the buffer (included).
+   * @param charset
+   *          is the encoding of the code units.
+   * @return the first sequence boundary at or after the offset (at most the limit of the buffer).
+   */
+  static int alignToCodeUnit(final ByteBuffer bytes, final int start, final int offset, final Charset charset) {
+    final int length = bytes.limit();
+    final int codeUnitSize = BulkDecoder.codeUnitSize(charset);
+    final int target = Math.min(Math.max(offset, start) + codeUnitSize - 1 & -codeUnitSize, length);
+
+    int boundary = BulkDecoder.syncPoint(bytes, start, target, charset);
+    while (boundary < target) {
+      boundary += BulkDecoder.sequenceLength(bytes, boundary, charset);
+    }
+    return Math.min(boundary, length);
+  }
+
+  /**
+   * Is the code point before a sequence boundary a CR ? The code point is decoded as the decoding of the whole buffer
+   * in a single range does: an overlong CR is a CR, and a CR swallowed by a malformed sequence is not.
+   *
+   * @param bytes
+   *          is a {@link ByteBuffer} containing code units, ordered with
+   *          {@link #withByteOrder(ByteBuffer, Charset)}.
+   * @param start
+   *          is a sequence boundary before the offset. Nothing is read before it, unless it is the offset itself: the
+   *          buffer is then read from 0 if needed.
+   * @param offset
+   *          is a sequence boundary (see {@link #alignToCodeUnit(ByteBuffer, int, int, Charset)}).
+   * @param charset
+   *          is the encoding of the code units.
+   * @return <code>true</code> if the code point before the offset is a CR, <code>false</code> otherwise.
+   */
+  static boolean isAfterCr(final ByteBuffer bytes, final int start, final int offset, final Charset charset) {
+    if (offset == 0) {
+      return false;
+    }
+
+    // The beginning of the last sequence before the offset
+    int previous = BulkDecoder.syncPoint(bytes, start < offset ? start : 0, offset - BulkDecoder.codeUnitSize(charset),
+        charset);
+    for (int next = previous; next < offset; next += BulkDecoder.sequenceLength(bytes, next, charset)) {
+      previous = next;
+    }
+
+    // Decoded after a CR, a LF is skipped and a CR is replaced by a LF
+    final int[] codePoint = new int[1];
+    return BulkDecoder.decode(bytes, previous, offset, charset, true, codePoint, 0, null) == 1
+        && codePoint[0] == MappedCodePoints.LF;
+  }
+
+  /**
+   * Returns the last offset between two offsets that no sequence can overlap, whatever the code units before it. Such
+   * an offset is a sequence boundary.
+   *
+   * @param bytes
+   *          is a {@link ByteBuffer} containing code units, ordered with
+   *          {@link #withByteOrder(ByteBuffer, Charset)}.
+   * @param start
+   *          is a sequence boundary. Nothing is read before it.
+   * @param offset
+   *          is an offset aligned on the code units, at or after <code>start</code>.
+   * @param charset
+   *          is the encoding of the code units.
+   * @return a sequence boundary between <code>start</code> and <code>offset</code> (included).
+   */
+  private static int syncPoint(final ByteBuffer bytes, final int start, final int offset, final Charset charset) {
+    final int codeUnitSize = BulkDecoder.codeUnitSize(charset);
+    for (int boundary = offset; boundary > start; boundary -= codeUnitSize) {
+      // A sequence is at most 4 bytes long, and no sequence starting before start overlaps it
+      boolean overlapped = false;
+      for (int i = Math.max(start, boundary - 4 + codeUnitSize); i < boundary && !overlapped; i += codeUnitSize) {
+        overlapped = i + BulkDecoder.sequenceLength(bytes, i, charset) > boundary;
+      }
+      if (!overlapped) {
+        return boundary;
+      }
+    }
+    return start;
+  }
+
+  /**
+   * Returns the number of bytes of a sequence from its first code unit, as
+   * {@link #decode(ByteBuffer, int, int, Charset, boolean, int[], int, ByteOffsets.Builder)} reads it: an invalid
+   * UTF-8 first byte is a sequence of one byte, and any surrogate is followed by a second code unit.
+   *
+   * @param bytes
+   *          is a {@link ByteBuffer} containing code units, ordered with
+   *          {@link #withByteOrder(ByteBuffer, Charset)}.
+   * @param offset
+   *          is the offset of the first code unit of the sequence.
+   * @param charset
+   *          is the encoding of the code units.
+   * @return the number of bytes of the sequence.
+   */
+  private static int sequenceLength(final ByteBuffer bytes, final int offset, final Charset charset) {
+    switch (charset) {
+    case UTF8:
+    case UTF8BOM:
+      final int character = bytes.get(offset) & 0xFF;
+      if (character >> 5 == 0b110) {
+        return 2;
+      } else if (character >> 4 == 0b1110) {
+        return 3;
+      } else if (character >> 3 == 0b1_1110) {
+        return 4;
+      }
+      return 1;
+    case UTF16BE:
+    case UTF16LE:
+      return Converter.isSurrogate(bytes.getChar(offset)) ? 4 : 2;
+    default: // UTF32BE and UTF32LE
+      return 4;
+    }
+  }
+
+  /**
+   * <p>
+   * Decodes the code units of a range to code points, replacing CR and CRLF by LF.
+   * <p>
+   * The destination array must be large enough to hold the code points (see {@link #maxCodePoints(int, Charset)}).
+   *
+   * @param bytes
+   *          is a {@link ByteBuffer} containing code units, ordered with
+   *          {@link #withByteOrder(ByteBuffer, Charset)}.
+   * @param from
+   *          is the offset of the first code unit of the range, on a sequence boundary.
+   * @param to
+   *          is the offset following the last code unit of the range, on a sequence boundary.
+   * @param charset
+   *          is the encoding of the code units.
+   * @param afterCr
+   *          is <code>true</code> if the code unit before the range is a CR (a LF at the beginning of the range is then
+   *          skipped).
+   * @param destination
+   *          is the array receiving the code points.
+   * @param index
+   *          is the index of the first code point in the destination array.
+   * @param byteOffsets
+   *          receives the code points not encoded with the smallest number of bytes, at their index in the
+   *          destination array (see {@link ByteOffsets}). Can be <code>null</code>.
+   * @return the index following the last code point added in the destination array.
+   * @throws UnicodeException
+   *           if the data are corrupted.
+   */
+  static int decode(final ByteBuffer bytes, //
+      final int from, //
+      final int to, //
+      final Charset charset, //
+      final boolean afterCr, //
+      final int[] destination, //
+      final int index, //
+      final ByteOffsets.Builder byteOffsets) {
+    return BulkDecoder.decode(bytes, from, to, charset, afterCr, destination, index, byteOffsets, null);
+  }
+
+  /**
+   * <p>
+   * Decodes the code units of a range to code points, replacing CR and CRLF by LF and recording the start of the
+   * lines in the same loop.
+   * <p>
+   * The destination array must be large enough to hold the code points (see {@link #maxCodePoints(int, Charset)}).
+   *
+   * @param bytes
+   *          is a {@link ByteBuffer} containing code units, ordered with
+   *          {@link #withByteOrder(ByteBuffer, Charset)}.
+   * @param from
+   *          is the offset of the first code unit of the range, on a sequence boundary.
+   * @param to
+   *          is the offset following the last code unit of the range, on a sequence boundary.
+   * @param charset
+   *          is the encoding of the code units.
+   * @param afterCr
+   *          is <code>true</code> if the code unit before the range is a CR (a LF at the beginning of the range is then
+   *          skipped).
+   * @param destination
+   *          is the array receiving the code points.
+   * @param index
+   *          is the index of the first code point in the destination array.
+   * @param byteOffsets
+   *          receives the code points not encoded with the smallest number of bytes, at their index in the
+   *          destination array (see {@link ByteOffsets}). Can be <code>null</code>.
+   * @param lines
+   *          receives the index of each LF in the destination array. Can be <code>null</code>.
+   * @return the index following the last code point added in the destination array.
+   * @throws UnicodeException
+   *           if the data are corrupted.
+   */
+  static int decode(final ByteBuffer bytes, //
+      final int from, //
+      final int to, //
+      final Charset charset, //
+      final boolean afterCr, //
+      final int[] destination, //
+      final int index, //
+      final ByteOffsets.Builder byteOffsets, //
+      final LineIndex.Builder lines) {
+    int i = from;
+    int j = index;
+    boolean previousCr = afterCr;
+
+    switch (charset) {
+    case UTF8:
+    case UTF8BOM:
+      while (i < to) {
+        final int character = bytes.get(i++) & 0xFF;
+
+        int codePoint = 0;
+        int extraBytes = 0; // Overlong sequences
+        // U+0000 - U+007F
+        if (character >> 7 == 0) {
+          codePoint = character;
+        }
+        // U+0080 - U+07FF
+        else if (character >> 5 == 0b110) {
+          BulkDecoder.checkRemaining(to, i, 1, charset);
+          codePoint = (character & 0b0001_1111) << 6;
+          codePoint |= bytes.get(i++) & 0b0011_1111;
+          extraBytes = 2 - ByteOffsets.width(codePoint, charset);
+        }
+        // U+0800 - U+FFFF
+        else if (character >> 4 == 0b1110) {
+          BulkDecoder.checkRemaining(to, i, 2, charset);
+          codePoint = (character & 0b0000_1111) << 12;
+          codePoint |= (bytes.get(i++) & 0b0011_1111) << 6;
+          codePoint |= bytes.get(i++) & 0b0011_1111;
+          extraBytes = 3 - ByteOffsets.width(codePoint, charset);
+        }
+        // U+10000 - U+1FFFFF
+        else if (character >> 3 == 0b1_1110) {
+          BulkDecoder.checkRemaining(to, i, 3, charset);
+          codePoint = (character & 0b0000_0111) << 18;
+          codePoint |= (bytes.get(i++) & 0b0011_1111) << 12;
+          codePoint |= (bytes.get(i++) & 0b0011_1111) << 6;
+          codePoint |= bytes.get(i++) & 0b0011_1111;
+          extraBytes = 4 - ByteOffsets.width(codePoint, charset);
+        }
+
+        j = BulkDecoder.add(codePoint, previousCr, extraBytes, 1, destination, j, byteOffsets, lines);
+        previousCr = codePoint == MappedCodePoints.CR;
+      }
+      break;
+    case UTF16BE:
+    case UTF16LE:
+      while (i < to) {
+        int codePoint = bytes.getChar(i);
+        i += 2;
+
+        int extraBytes = 0; // Unpaired surrogates
+        if (Converter.isSurrogate(codePoint)) {
+          BulkDecoder.checkRemaining(to, i, 2, charset);
+          codePoint = (codePoint - 0xD800 << 10 | bytes.getChar(i) - 0xDC00) + 0x10000;
+          i += 2;
+          extraBytes = 4 - ByteOffsets.width(codePoint, charset);
+        }
+
+        j = BulkDecoder.add(codePoint, previousCr, extraBytes, 2, destination, j, byteOffsets, lines);
+        previousCr = codePoint == MappedCodePoints.CR;
+      }
+      break;
+    case UTF32BE:
+    case UTF32LE:
+      while (i < to) {
+        final int codePoint = bytes.getInt(i);
+        i += 4;
+
+        j = BulkDecoder.add(codePoint, previousCr, 0, 4, destination, j, byteOffsets, lines);
+        previousCr = codePoint == MappedCodePoints.CR;
+      }
+      break;
+    default:
+      throw new UnicodeException("Unknown charset!");
+    }
+
+    return j;
+  }
+
+  /**
+   * Adds a code point to the destination array, replacing CR by LF and skipping the LF of a CRLF.
+   *
+   * @param codePoint
+   *          is the code point decoded.
+   * @param previousCr
+   *          is <code>true</code> if the previous code point is a CR.
+   * @param extraBytes
+   *          is the number of bytes used by the code point in addition to the smallest number of bytes.
+   * @param codeUnitSize
+   *          is the size of the smallest code unit of the encoding (the size of a LF).
+   * @param destination
+   *          is the array receiving the code points.
+   * @param index
+   *          is the index of the code point in the destination array.
+   * @param byteOffsets
+   *          receives the code points not encoded with the smallest number of bytes. Can be <code>null</code>.
+   * @param lines
+   *          receives the index of each LF. Can be <code>null</code>.
+   * @return the index following the last code point added in the destination array.
+   */
+  private static int add(final int codePoint, //
+      final boolean previousCr, //
+      final int extraBytes, //
+      final int codeUnitSize, //
+      final int[] destination, //
+      final int index, //
+      final ByteOffsets.Builder byteOffsets, //
+      final LineIndex.Builder lines) {
+    // CRLF: the bytes of the LF are added to the LF replacing the CR
+    if (codePoint == MappedCodePoints.LF && previousCr) {
+      if (byteOffsets != null) {
+        byteOffsets.add(index - 1, codeUnitSize + extraBytes);
+      }
+      return index;
+    }
+
+    if (codePoint == MappedCodePoints.CR || codePoint == MappedCodePoints.LF) {
+      destination[index] = MappedCodePoints.LF;
+      if (lines != null) {
+        lines.addLineFeed(index);
+      }
+    } else {
+      destination[index] = codePoint;
+    }
+    if (extraBytes != 0 && byteOffsets != null) {
+      byteOffsets.add(index, extraBytes);
+    }
+    return index + 1;
+  }
+
+  /**
+   * Checks that there are enough code units left in the range.
+   *
+   * @param to
+   *          is the offset following the last code unit of the range.
+   * @param index
+   *          is the offset of the next byte to read.
+   * @param expected
+   *          is the number of bytes expected from <code>index</code>.
+   * @param charset
+   *          is the encoding of the code units.
+   * @throws UnicodeException
+   *           if the data are corrupted.
+   */
+  private static void checkRemaining(final int to, final int index, final int expected, final Charset charset) {
+    if (index + expected > to) {
+      throw new UnicodeException("Corrupted " + Converter.charsetName(charset) + " data. Expected " + expected
+          + " more byte(s) from byte " + index + ".");
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package org.isk.plume.unicode;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A ByteArrayStorage holds all the code points of a {@link MappedCodePoints} in an array of <code>byte</code>, one
+ * byte per code point. It can hold only the code points up to U+00FF (ASCII and Latin-1).
+ */
+final class ByteArrayStorage extends CodePointStorage {
+
+  /**
+   * The code points, from the position 0 to the End Of Stream (excluded), as unsigned bytes.
+   */
+  final private byte[] codePoints;
+
+  /**
+   * Instantiates a new <code>ByteArrayStorage</code>.
+   *
+   * @param codePoints
+   *          are the code points, from the position 0 to the End Of Stream (excluded), between U+0000 and U+00FF.
+   * @param eosIndex
+   *          is the index of the End Of Stream.
+   */
+  ByteArrayStorage(final int[] codePoints, final int eosIndex) {
+    this.codePoints = new byte[eosIndex];
+    for (int i = 0; i < eosIndex; i++) {
+      this.codePoints[i] = (byte) codePoints[i];
+    }
+  }
+
+  /**
+   * Instantiates a new <code>ByteArrayStorage</code> from an array of <code>char</code>.
+   *
+   * @param codePoints
+   *          are the code points, from the position 0 to the End Of Stream (excluded), between U+0000 and U+00FF.
+   * @param eosIndex
+   *          is the index of the End Of Stream.
+   */
+  ByteArrayStorage(final char[] codePoints, final int eosIndex) {
+    this.codePoints = new byte[eosIndex];
+    for (int i = 0; i < eosIndex; i++) {
+      this.codePoints[i] = (byte) codePoints[i];
+    }
+  }
+
+  @Override
+  int codePointAt(final int position) {
+    final byte[] codePoints = this.codePoints;
+    return position < codePoints.length ? codePoints[position] & 0xFF : MappedCodePoints.EOS;
+  }
+
+  @Override
+  void appendTo(final StringBuilder sb, final int from, final int to) {
+    final byte[] codePoints = this.codePoints;
+    for (int i = from; i < to; i++) {
+      sb.append((char) (codePoints[i] & 0xFF));
+    }
+  }
+
+  @Override
+  void copyTo(final int from, final int to, final int[] dst, final int offset) {
+    final byte[] codePoints = this.codePoints;
+
+    // The End Of Stream is not in the array
+    final int end = Math.min(to, codePoints.length);
+    int j = offset;
+    for (int i = from; i < end; i++, j++) {
+      dst[j] = codePoints[i] & 0xFF;
+    }
+    if (end < to) {
+      dst[j] = MappedCodePoints.EOS;
+    }
+  }
+
+  @Override
+  void forEach(final int from, final int to, final IntConsumer action) {
+    final byte[] codePoints = this.codePoints;
+    final int end = Math.min(to, codePoints.length);
+    for (int i = from; i < end; i++) {
+      action.accept(codePoints[i] & 0xFF);
+    }
+    if (end < to) {
+      action.accept(MappedCodePoints.EOS);
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package org.isk.plume.unicode;
+
+import java.nio.ByteBuffer;
+import java.util.function.IntConsumer;
+
+/**
+ * A ByteBufferStorage holds all the code points of a {@link MappedCodePoints} in a {@link ByteBuffer}, one byte per
+ * code point, for instance a view of a memory-mapped snapshot (see {@link MappedCodePointsSnapshot}). It can hold only
+ * the code points up to U+00FF (ASCII and Latin-1).
+ */
+final class ByteBufferStorage extends CodePointStorage {
+
+  /**
+   * The code points, from the position 0 to the End Of Stream (excluded), as unsigned bytes.
+   */
+  final private ByteBuffer codePoints;
+
+  /**
+   * Instantiates a new <code>ByteBufferStorage</code>.
+   *
+   * @param codePoints
+   *          are the code points, from the index 0 to the End Of Stream (excluded). The buffer is not copied and its
+   *          position is ignored.
+   */
+  ByteBufferStorage(final ByteBuffer codePoints) {
+    this.codePoints = codePoints;
+  }
+
+  @Override
+  int codePointAt(final int position) {
+    final ByteBuffer codePoints = this.codePoints;
+    return position < codePoints.limit() ? codePoints.get(position) & 0xFF : MappedCodePoints.EOS;
+  }
+
+  @Override
+  void appendTo(final StringBuilder sb, final int from, final int to) {
+    final ByteBuffer codePoints = this.codePoints;
+    for (int i = from; i < to; i++) {
+      sb.append((char) (codePoints.get(i) & 0xFF));
+    }
+  }
+
+  @Override
+  void forEach(final int from, final int to, final IntConsumer action) {
+    final ByteBuffer codePoints = this.codePoints;
+
+    // The End Of Stream is not in the buffer
+    final int end = Math.min(to, codePoints.limit());
+    for (int i = from; i < end; i++) {
+      action.accept(codePoints.get(i) & 0xFF);
+    }
+    if (end < to) {
+      action.accept(MappedCodePoints.EOS);
+    }
+  }
+}
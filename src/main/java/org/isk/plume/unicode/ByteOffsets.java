@@ -0,0 +1,233 @@
+package org.isk.plume.unicode;
+
+import java.util.Arrays;
+
+import org.isk.plume.unicode.CodePoints.Charset;
+
+/**
+ * <p>
+ * A ByteOffsets maps the positions of a {@link MappedCodePoints} to the offsets of the corresponding bytes in the
+ * source.
+ * <p>
+ * Most code points are encoded with the smallest number of bytes their encoding allows (see
+ * {@link #width(int, Charset)}), therefore only the other ones are recorded while decoding: the LFs replacing a CRLF
+ * and the overlong UTF-8 sequences. The offset of a position is the sum of the widths of the code points before it,
+ * plus the extra bytes recorded before it.
+ * <p>
+ * To avoid summing from the start of the stream, the offset of every {@value #CHECKPOINT_INTERVAL}th code point is
+ * computed the first time an offset is asked for. The offset of a position is then the offset of the previous
+ * checkpoint plus the widths of at most {@value #CHECKPOINT_INTERVAL} code points.
+ */
+final class ByteOffsets {
+
+  /**
+   * Number of code points between two checkpoints (a power of 2).
+   */
+  final static int CHECKPOINT_INTERVAL = 256;
+
+  /**
+   * <code>log2(CHECKPOINT_INTERVAL)</code>.
+   */
+  final private static int CHECKPOINT_SHIFT = 8;
+
+  /**
+   * The encoding of the source.
+   */
+  final private Charset charset;
+
+  /**
+   * The code points.
+   */
+  final private CodePointStorage storage;
+
+  /**
+   * Index of the End Of Stream.
+   */
+  final private int eosIndex;
+
+  /**
+   * The positions of the code points not encoded with the smallest number of bytes, sorted.
+   */
+  final private int[] irregularPositions;
+
+  /**
+   * The number of bytes used by each of these code points in addition to the smallest number of bytes.
+   */
+  final private byte[] irregularExtras;
+
+  /**
+   * The number of irregular code points.
+   */
+  final private int numberOfIrregulars;
+
+  /**
+   * The byte offset of the positions <code>1 + k * CHECKPOINT_INTERVAL</code>, built on demand.
+   */
+  private volatile long[] checkpoints;
+
+  /**
+   * The index of the first irregular code point at or after each checkpoint. Written before {@link #checkpoints}.
+   */
+  private int[] firstIrregulars;
+
+  private ByteOffsets(final Charset charset, //
+      final CodePointStorage storage, //
+      final int eosIndex, //
+      final Builder builder) {
+    this.charset = charset;
+    this.storage = storage;
+    this.eosIndex = eosIndex;
+    this.irregularPositions = builder.positions;
+    this.irregularExtras = builder.extras;
+    this.numberOfIrregulars = builder.size;
+  }
+
+  /**
+   * Returns the smallest number of bytes needed to encode a code point.
+   *
+   * @param codePoint
+   *          is a code point, as decoded (possibly out of the Unicode codespace if the data are corrupted).
+   * @param charset
+   *          is the encoding.
+   * @return the smallest number of bytes needed to encode the code point.
+   */
+  static int width(final int codePoint, final Charset charset) {
+    switch (charset) {
+    case UTF8:
+    case UTF8BOM:
+      return codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+    case UTF16BE:
+    case UTF16LE:
+      return codePoint < 0x10000 ? 2 : 4;
+    default: // UTF32BE and UTF32LE
+      return 4;
+    }
+  }
+
+  /**
+   * Returns the offset of the first byte of a code point in the source. For the End Of Stream, it is the offset
+   * following the last code point (the new lines at the end of the stream being ignored).
+   *
+   * @param position
+   *          is a position between 0 and the End Of Stream (included).
+   * @return the offset of the first byte of the code point in the source (0 for the position 0).
+   */
+  long byteOffsetOf(final int position) {
+    if (position <= 1) {
+      return 0;
+    }
+
+    final long[] checkpoints = this.getCheckpoints();
+    final int checkpoint = position - 1 >>> ByteOffsets.CHECKPOINT_SHIFT;
+    long offset = checkpoints[checkpoint];
+
+    // Re-scan from the checkpoint
+    for (int i = (checkpoint << ByteOffsets.CHECKPOINT_SHIFT) + 1; i < position; i++) {
+      offset += ByteOffsets.width(this.storage.codePointAt(i), this.charset);
+    }
+    for (int i = this.firstIrregulars[checkpoint]; i < this.numberOfIrregulars
+        && this.irregularPositions[i] < position; i++) {
+      offset += this.irregularExtras[i];
+    }
+
+    return offset;
+  }
+
+  /**
+   * Returns the checkpoints, computing them the first time this method is called.
+   *
+   * @return the byte offset of the positions <code>1 + k * CHECKPOINT_INTERVAL</code>.
+   */
+  private long[] getCheckpoints() {
+    long[] checkpoints = this.checkpoints;
+    if (checkpoints == null) {
+      synchronized (this) {
+        checkpoints = this.checkpoints;
+        if (checkpoints == null) {
+          final int numberOfCheckpoints = (this.eosIndex - 1 >>> ByteOffsets.CHECKPOINT_SHIFT) + 1;
+          checkpoints = new long[numberOfCheckpoints];
+          final int[] firstIrregulars = new int[numberOfCheckpoints];
+
+          long offset = 0;
+          int irregular = 0;
+          // Up to the End Of Stream included, which can be a checkpoint
+          for (int i = 1; i <= this.eosIndex; i++) {
+            if ((i - 1 & ByteOffsets.CHECKPOINT_INTERVAL - 1) == 0) {
+              final int checkpoint = i - 1 >>> ByteOffsets.CHECKPOINT_SHIFT;
+              checkpoints[checkpoint] = offset;
+              firstIrregulars[checkpoint] = irregular;
+            }
+            if (i == this.eosIndex) {
+              break;
+            }
+
+            offset += ByteOffsets.width(this.storage.codePointAt(i), this.charset);
+            while (irregular < this.numberOfIrregulars && this.irregularPositions[irregular] == i) {
+              offset += this.irregularExtras[irregular++];
+            }
+          }
+
+          this.firstIrregulars = firstIrregulars;
+          this.checkpoints = checkpoints;
+        }
+      }
+    }
+    return checkpoints;
+  }
+
+  /**
+   * A Builder collects the code points not encoded with the smallest number of bytes, in order.
+   */
+  static class Builder {
+    private int[] positions = new int[16];
+    private byte[] extras = new byte[16];
+    private int size = 0;
+
+    /**
+     * Adds bytes to a code point.
+     *
+     * @param position
+     *          is the position of the code point, greater than or equal to the last position added.
+     * @param extraBytes
+     *          is the number of bytes used by the code point in addition to the smallest number of bytes (for a LF
+     *          replacing a CRLF, the bytes of the LF).
+     */
+    void add(final int position, final int extraBytes) {
+      if (this.size == this.positions.length) {
+        this.positions = Arrays.copyOf(this.positions, this.size * 2);
+        this.extras = Arrays.copyOf(this.extras, this.size * 2);
+      }
+      this.positions[this.size] = position;
+      this.extras[this.size++] = (byte) extraBytes;
+    }
+
+    /**
+     * Adds the code points collected by another builder.
+     *
+     * @param other
+     *          is another builder, whose positions follow the positions of this one once shifted.
+     * @param shift
+     *          is the number added to the positions of the other builder.
+     */
+    void addAll(final Builder other, final int shift) {
+      for (int i = 0; i < other.size; i++) {
+        this.add(other.positions[i] + shift, other.extras[i]);
+      }
+    }
+
+    /**
+     * Builds the <code>ByteOffsets</code>.
+     *
+     * @param charset
+     *          is the encoding of the source.
+     * @param storage
+     *          is the code points.
+     * @param eosIndex
+     *          is the index of the End Of Stream.
+     * @return a new <code>ByteOffsets</code>.
+     */
+    ByteOffsets build(final Charset charset, final CodePointStorage storage, final int eosIndex) {
+      return new ByteOffsets(charset, storage, eosIndex, this);
+    }
+  }
+}
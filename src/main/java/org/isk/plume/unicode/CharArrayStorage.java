@@ -0,0 +1,78 @@
+package org.isk.plume.unicode;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A CharArrayStorage holds all the code points of a {@link MappedCodePoints} in an array of <code>char</code>, one
+ * <code>char</code> per code point. It can hold only the code points of the Basic Multilingual Plane (up to U+FFFF).
+ */
+final class CharArrayStorage extends CodePointStorage {
+
+  /**
+   * The code points, from the position 0 to the End Of Stream (excluded).
+   */
+  final private char[] codePoints;
+
+  /**
+   * Instantiates a new <code>CharArrayStorage</code>.
+   *
+   * @param codePoints
+   *          are the code points, from the position 0 to the End Of Stream (excluded), between U+0000 and U+FFFF.
+   * @param eosIndex
+   *          is the index of the End Of Stream.
+   */
+  CharArrayStorage(final int[] codePoints, final int eosIndex) {
+    this.codePoints = new char[eosIndex];
+    for (int i = 0; i < eosIndex; i++) {
+      this.codePoints[i] = (char) codePoints[i];
+    }
+  }
+
+  /**
+   * Instantiates a new <code>CharArrayStorage</code> keeping an array of <code>char</code>, which is not copied.
+   *
+   * @param codePoints
+   *          are the code points, from the position 0 to the End Of Stream (excluded).
+   */
+  CharArrayStorage(final char[] codePoints) {
+    this.codePoints = codePoints;
+  }
+
+  @Override
+  int codePointAt(final int position) {
+    final char[] codePoints = this.codePoints;
+    return position < codePoints.length ? codePoints[position] : MappedCodePoints.EOS;
+  }
+
+  @Override
+  void appendTo(final StringBuilder sb, final int from, final int to) {
+    sb.append(this.codePoints, from, to - from);
+  }
+
+  @Override
+  void copyTo(final int from, final int to, final int[] dst, final int offset) {
+    final char[] codePoints = this.codePoints;
+
+    // The End Of Stream is not in the array
+    final int end = Math.min(to, codePoints.length);
+    int j = offset;
+    for (int i = from; i < end; i++, j++) {
+      dst[j] = codePoints[i];
+    }
+    if (end < to) {
+      dst[j] = MappedCodePoints.EOS;
+    }
+  }
+
+  @Override
+  void forEach(final int from, final int to, final IntConsumer action) {
+    final char[] codePoints = this.codePoints;
+    final int end = Math.min(to, codePoints.length);
+    for (int i = from; i < end; i++) {
+      action.accept(codePoints[i]);
+    }
+    if (end < to) {
+      action.accept(MappedCodePoints.EOS);
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package org.isk.plume.unicode;
+
+import java.nio.CharBuffer;
+import java.util.function.IntConsumer;
+
+/**
+ * A CharBufferStorage holds all the code points of a {@link MappedCodePoints} in a {@link CharBuffer}, one
+ * <code>char</code> per code point, for instance a view of a memory-mapped snapshot (see
+ * {@link MappedCodePointsSnapshot}). It can hold only the code points of the Basic Multilingual Plane (up to U+FFFF).
+ */
+final class CharBufferStorage extends CodePointStorage {
+
+  /**
+   * The code points, from the position 0 to the End Of Stream (excluded).
+   */
+  final private CharBuffer codePoints;
+
+  /**
+   * Instantiates a new <code>CharBufferStorage</code>.
+   *
+   * @param codePoints
+   *          are the code points, from the index 0 to the End Of Stream (excluded). The buffer is not copied and its
+   *          position is ignored.
+   */
+  CharBufferStorage(final CharBuffer codePoints) {
+    this.codePoints = codePoints;
+  }
+
+  @Override
+  int codePointAt(final int position) {
+    final CharBuffer codePoints = this.codePoints;
+    return position < codePoints.limit() ? codePoints.get(position) : MappedCodePoints.EOS;
+  }
+
+  @Override
+  void appendTo(final StringBuilder sb, final int from, final int to) {
+    final CharBuffer codePoints = this.codePoints;
+    for (int i = from; i < to; i++) {
+      sb.append(codePoints.get(i));
+    }
+  }
+
+  @Override
+  void forEach(final int from, final int to, final IntConsumer action) {
+    final CharBuffer codePoints = this.codePoints;
+
+    // The End Of Stream is not in the buffer
+    final int end = Math.min(to, codePoints.limit());
+    for (int i = from; i < end; i++) {
+      action.accept(codePoints.get(i));
+    }
+    if (end < to) {
+      action.accept(MappedCodePoints.EOS);
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package org.isk.plume.unicode;
+
+/**
+ * <p>
+ * A CodePointProperties offers a fast lexical classification of code points (letter, digit, whitespace, binary
+ * selector character), as needed by a lexer which has to classify every code point it reads.
+ * <p>
+ * The properties of a code point are stored as bit flags in a two-stage lookup table covering the whole Unicode
+ * codespace ({@link CodePointTable}): a lookup is two array accesses without any branch, with a direct row for the
+ * ASCII block. Any <code>int</code>, like {@link MappedCodePoints#EOS}, can be looked up without any exception and
+ * values outside of the codespace have no property.
+ * <p>
+ * The table is generated once, when this class is initialized, from the Unicode data shipped with the JDK (through
+ * {@link Character}).
+ */
+public class CodePointProperties {
+
+  /**
+   * The code point is a letter ({@link Character#isLetter(int)}).
+   */
+  final public static int LETTER = 0b0001;
+
+  /**
+   * The code point is a decimal digit ({@link Character#isDigit(int)}).
+   */
+  final public static int DIGIT = 0b0010;
+
+  /**
+   * The code point is a whitespace ({@link Character#isWhitespace(int)}), a space separator
+   * ({@link Character#isSpaceChar(int)}) or the NEXT LINE control character (U+0085).
+   */
+  final public static int WHITESPACE = 0b0100;
+
+  /**
+   * The code point can be part of a binary selector: <code>! % &amp; * + , - / &lt; = &gt; ? @ \ ~ |</code>, or any
+   * mathematical symbol outside of the ASCII block ({@link Character#MATH_SYMBOL}).
+   */
+  final public static int BINARY_SELECTOR = 0b1000;
+
+  /**
+   * ASCII characters that can be part of a binary selector.
+   */
+  final private static String ASCII_BINARY_SELECTOR_CHARACTERS = "!%&*+,-/<=>?@\\~|";
+
+  /**
+   * The properties of all code points.
+   */
+  final private static CodePointTable TABLE = new CodePointTable(CodePointProperties::compute);
+
+  private CodePointProperties() {
+    // Only static methods
+  }
+
+  /**
+   * Computes the properties of a code point from the Unicode data of the JDK.
+   *
+   * @param codePoint
+   *          is the code point.
+   * @return the properties of the code point as bit flags.
+   */
+  private static int compute(final int codePoint) {
+    int properties = 0;
+
+    if (Character.isLetter(codePoint)) {
+      properties |= CodePointProperties.LETTER;
+    }
+
+    if (Character.isDigit(codePoint)) {
+      properties |= CodePointProperties.DIGIT;
+    }
+
+    if (Character.isWhitespace(codePoint) || Character.isSpaceChar(codePoint) || codePoint == 0x85) {
+      properties |= CodePointProperties.WHITESPACE;
+    }
+
+    if (codePoint < 0x80) {
+      if (CodePointProperties.ASCII_BINARY_SELECTOR_CHARACTERS.indexOf(codePoint) >= 0) {
+        properties |= CodePointProperties.BINARY_SELECTOR;
+      }
+    } else if (Character.getType(codePoint) == Character.MATH_SYMBOL) {
+      properties |= CodePointProperties.BINARY_SELECTOR;
+    }
+
+    return properties;
+  }
+
+  /**
+   * Returns the properties of a code point as bit flags ({@link #LETTER}, {@link #DIGIT}, {@link #WHITESPACE},
+   * {@link #BINARY_SELECTOR}).
+   *
+   * @param codePoint
+   *          is the code point. Values outside of the codespace have no property.
+   * @return the properties of the code point.
+   */
+  public static int of(final int codePoint) {
+    return CodePointProperties.TABLE.get(codePoint);
+  }
+
+  /**
+   * Is the code point a letter ?
+   *
+   * @param codePoint
+   *          is the code point to check.
+   * @return <code>true</code> if the code point is a letter, <code>false</code> otherwise.
+   */
+  public static boolean isLetter(final int codePoint) {
+    return (CodePointProperties.of(codePoint) & CodePointProperties.LETTER) != 0;
+  }
+
+  /**
+   * Is the code point a decimal digit ?
+   *
+   * @param codePoint
+   *          is the code point to check.
+   * @return <code>true</code> if the code point is a decimal digit, <code>false</code> otherwise.
+   */
+  public static boolean isDigit(final int codePoint) {
+    return (CodePointProperties.of(codePoint) & CodePointProperties.DIGIT) != 0;
+  }
+
+  /**
+   * Is the code point a letter or a decimal digit ?
+   *
+   * @param codePoint
+   *          is the code point to check.
+   * @return <code>true</code> if the code point is a letter or a decimal digit, <code>false</code> otherwise.
+   */
+  public static boolean isLetterOrDigit(final int codePoint) {
+    return (CodePointProperties.of(codePoint) & (CodePointProperties.LETTER | CodePointProperties.DIGIT)) != 0;
+  }
+
+  /**
+   * Is the code point a whitespace ?
+   *
+   * @param codePoint
+   *          is the code point to check.
+   * @return <code>true</code> if the code point is a whitespace, <code>false</code> otherwise.
+   */
+  public static boolean isWhitespace(final int codePoint) {
+    return (CodePointProperties.of(codePoint) & CodePointProperties.WHITESPACE) != 0;
+  }
+
+  /**
+   * Can the code point be part of a binary selector ?
+   *
+   * @param codePoint
+   *          is the code point to check.
+   * @return <code>true</code> if the code point can be part of a binary selector, <code>false</code> otherwise.
+   */
+  public static boolean isBinarySelector(final int codePoint) {
+    return (CodePointProperties.of(codePoint) & CodePointProperties.BINARY_SELECTOR) != 0;
+  }
+}
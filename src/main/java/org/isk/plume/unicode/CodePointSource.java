@@ -0,0 +1,123 @@
+package org.isk.plume.unicode;
+
+import org.isk.plume.unicode.exception.MappedCodePointsException;
+
+/**
+ * <p>
+ * A CodePointSource is a stream of code points addressed with <code>int</code> positions, the first code point being
+ * at position 1 (0 being reserved for debugging purposes), whose positions can be located in a file: a
+ * {@link MappedCodePoints}, or several of them behind a single position space ({@link ConcatenatedCodePoints}).
+ * <p>
+ * It offers the methods needed to parse a stream (see {@link org.isk.plume.parser.Reader}).
+ */
+public interface CodePointSource {
+
+  /**
+   * Returns the name of the file containing a given position.
+   *
+   * @param position
+   *          is the position of a code point in the stream.
+   * @return the name of the file containing the position.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  String getFilename(int position);
+
+  /**
+   * Returns the index of the End of the Stream.
+   *
+   * @return the index of the End of the Stream.
+   */
+  int getEosIndex();
+
+  /**
+   * Returns a code point at a given position in the stream.
+   *
+   * @param position
+   *          is the position of a code point in the stream.
+   * @return the code point at a given position in the stream.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  int codePointAt(int position);
+
+  /**
+   * Returns the line of a code point at a given position, in the file containing it.
+   *
+   * @param position
+   *          is the position of a code point in the stream.
+   * @return the line of a code point at a given position.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  int getLine(int position);
+
+  /**
+   * Returns the line of a code point at a given position, in the file containing it, starting the search from a line
+   * given by the caller (see {@link MappedCodePoints#getLine(int, int)}).
+   *
+   * @param position
+   *          is the position of a code point in the stream.
+   * @param lineHint
+   *          is a line where the search starts. If it is not a line of the file, it is ignored.
+   * @return the line of a code point at a given position.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  int getLine(int position, int lineHint);
+
+  /**
+   * Returns the column of a code point at a given position.
+   *
+   * @param position
+   *          is the position of a code point in the stream.
+   * @return the column of a code point at a given position.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  int getColumn(int position);
+
+  /**
+   * Returns the column of a code point at a given position, starting the search of its line from a line given by the
+   * caller (see {@link #getLine(int, int)}).
+   *
+   * @param position
+   *          is the position of a code point in the stream.
+   * @param lineHint
+   *          is a line where the search starts. If it is not a line of the file, it is ignored.
+   * @return the column of a code point at a given position.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  int getColumn(int position, int lineHint);
+
+  /**
+   * Returns the column of a code point at a given position, the columns being counted with a {@link ColumnModel},
+   * starting the search of its line from a line given by the caller (see {@link #getLine(int, int)}).
+   *
+   * @param position
+   *          is the position of a code point in the stream.
+   * @param lineHint
+   *          is a line where the search starts. If it is not a line of the file, it is ignored.
+   * @param model
+   *          is the way the columns are counted.
+   * @return the column of a code point at a given position.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  int getColumn(int position, int lineHint, ColumnModel model);
+
+  /**
+   * Returns a debug message showing the lines around a position, in the file containing it (see
+   * {@link MappedCodePoints#debug(String, int)}).
+   *
+   * @param msg
+   *          is a custom text displayed after the name of the file if any. Can be <code>null</code> or empty.
+   * @param position
+   *          is the position of the error.
+   * @return a debug message.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  String debug(String msg, int position);
+}
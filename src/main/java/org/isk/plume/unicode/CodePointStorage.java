@@ -0,0 +1,131 @@
+package org.isk.plume.unicode;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * <p>
+ * A CodePointStorage holds the code points of a {@link MappedCodePoints}, once CR and CRLF have been replaced by LF.
+ * <p>
+ * As in {@link MappedCodePoints}, the position 0 is a LF (reserved for debugging purposes) and the code point at the
+ * index of the End Of Stream is {@link MappedCodePoints#EOS}. The positions are checked by {@link MappedCodePoints}.
+ * <p>
+ * The code points decoded in an array are stored with the smallest type able to hold all of them (see
+ * {@link #of(int[], int)}): most sources being ASCII or Latin-1, they usually need a <code>byte</code> per code point
+ * instead of an <code>int</code>.
+ */
+abstract class CodePointStorage {
+
+  /**
+   * Returns a storage holding code points with the smallest type able to hold all of them: a
+   * {@link ByteArrayStorage} up to U+00FF, a {@link CharArrayStorage} up to U+FFFF, otherwise an
+   * {@link IntArrayStorage}.
+   *
+   * @param codePoints
+   *          are the code points, from the position 0 to the End Of Stream (excluded). If an {@link IntArrayStorage}
+   *          is returned, the End Of Stream is written in the array, which is copied only if it is too small or much
+   *          larger than needed.
+   * @param eosIndex
+   *          is the index of the End Of Stream.
+   * @return a new storage.
+   */
+  static CodePointStorage of(final int[] codePoints, final int eosIndex) {
+    // All the bits set in at least one code point (negative code points, from an array of code points, set the high
+    // bits): cheaper than a maximum, and no branch in the loop
+    int bits = 0;
+    for (int i = 0; i < eosIndex; i++) {
+      bits |= codePoints[i];
+    }
+
+    if ((bits & ~0xFF) == 0) {
+      return new ByteArrayStorage(codePoints, eosIndex);
+    }
+    if ((bits & ~0xFFFF) == 0) {
+      return new CharArrayStorage(codePoints, eosIndex);
+    }
+
+    // Room for the End Of Stream, without keeping a buffer much larger than needed (size hint, CRLF...)
+    final int[] stream = eosIndex + 1 > codePoints.length || eosIndex + 1 < codePoints.length - (codePoints.length >> 2)
+        ? Arrays.copyOf(codePoints, eosIndex + 1)
+        : codePoints;
+    stream[eosIndex] = MappedCodePoints.EOS;
+    return new IntArrayStorage(stream);
+  }
+
+  /**
+   * Returns the code point at a given position.
+   *
+   * @param position
+   *          is a position between 0 and the End Of Stream (included).
+   * @return the code point at the given position.
+   */
+  abstract int codePointAt(int position);
+
+  /**
+   * Appends the code points between two positions to a {@link StringBuilder}.
+   *
+   * @param sb
+   *          is the {@link StringBuilder} receiving the code points.
+   * @param from
+   *          is the position of the first code point, between 1 and the End Of Stream (included).
+   * @param to
+   *          is the position following the last code point, between <code>from</code> and the End Of Stream
+   *          (included).
+   */
+  void appendTo(final StringBuilder sb, final int from, final int to) {
+    for (int i = from; i < to; i++) {
+      sb.appendCodePoint(this.codePointAt(i));
+    }
+  }
+
+  /**
+   * Copies the code points between two positions to an array.
+   *
+   * @param from
+   *          is the position of the first code point, between 0 and the End Of Stream (included).
+   * @param to
+   *          is the position following the last code point, between <code>from</code> and the End Of Stream
+   *          (included).
+   * @param dst
+   *          is the array receiving the code points, large enough.
+   * @param offset
+   *          is the index in <code>dst</code> of the first code point.
+   */
+  void copyTo(final int from, final int to, final int[] dst, final int offset) {
+    for (int i = from, j = offset; i < to; i++, j++) {
+      dst[j] = this.codePointAt(i);
+    }
+  }
+
+  /**
+   * Performs an action for each code point between two positions, in order.
+   *
+   * @param from
+   *          is the position of the first code point, between 0 and the End Of Stream (included).
+   * @param to
+   *          is the position following the last code point, between <code>from</code> and the End Of Stream
+   *          (included).
+   * @param action
+   *          is the action to be performed for each code point.
+   */
+  void forEach(final int from, final int to, final IntConsumer action) {
+    for (int i = from; i < to; i++) {
+      action.accept(this.codePointAt(i));
+    }
+  }
+
+  /**
+   * Returns a read-only {@link IntBuffer} containing the code points, indexed by position, from 0 to the End Of Stream
+   * (included).
+   *
+   * @param eosIndex
+   *          is the index of the End Of Stream.
+   * @return a view of the code points if they are held as <code>int</code>, a copy otherwise.
+   */
+  IntBuffer asIntBuffer(final int eosIndex) {
+    final int[] codePoints = new int[eosIndex + 1];
+    this.copyTo(0, eosIndex + 1, codePoints, 0);
+    return IntBuffer.wrap(codePoints).asReadOnlyBuffer();
+  }
+}
@@ -0,0 +1,119 @@
+package org.isk.plume.unicode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * <p>
+ * A CodePointTable is a compact two-stage lookup table holding a value (from 0 to 255) for each code point:
+ * <ul>
+ * <li>the first stage maps each block of 128 code points to a block of the second stage ;
+ * <li>the second stage contains the value of each code point. Identical blocks are stored only once, which makes the
+ * table compact (most blocks are unassigned or share the same values).
+ * </ul>
+ * <p>
+ * The first block of the second stage is always the ASCII block, therefore the value of an ASCII code point is directly
+ * at its index.
+ * <p>
+ * A lookup is two array accesses without any branch. The first stage also covers values from U+110000 to U+1FFFFF,
+ * whose values are 0, and any value which doesn't fit in 21 bits is looked up as U+1FFFFF, so that any
+ * <code>int</code>, like {@link MappedCodePoints#EOS}, can be looked up without any exception and values outside of
+ * the codespace are all mapped to 0.
+ */
+final class CodePointTable {
+
+  /**
+   * Number of bits used to index a code point in a block.
+   */
+  final private static int BLOCK_SHIFT = 7;
+
+  /**
+   * Size of a block (128 code points, the size of the ASCII block).
+   */
+  final static int BLOCK_SIZE = 1 << CodePointTable.BLOCK_SHIFT;
+
+  /**
+   * Mask to get the index of a code point in a block.
+   */
+  final private static int BLOCK_MASK = CodePointTable.BLOCK_SIZE - 1;
+
+  /**
+   * Number of bits needed to represent U+10FFFF.
+   */
+  final private static int CODESPACE_BITS = 21;
+
+  /**
+   * Mask applied to any value before the lookup (21 bits).
+   */
+  final private static int CODESPACE_MASK = (1 << CodePointTable.CODESPACE_BITS) - 1;
+
+  /**
+   * First stage: the index of the block of values (in the second stage) for each block of code points.
+   */
+  final private char[] blocks;
+
+  /**
+   * Second stage: the values of the code points, by deduplicated blocks.
+   */
+  final private byte[] values;
+
+  /**
+   * Instantiates a new <code>CodePointTable</code> by computing the value of every code point.
+   *
+   * @param function
+   *          returns the value of a code point (only the 8 lower bits are kept). It is never called for values outside
+   *          of the codespace, which are all set to 0.
+   */
+  CodePointTable(final IntUnaryOperator function) {
+    final char[] blocks = new char[(CodePointTable.CODESPACE_MASK + 1) >> CodePointTable.BLOCK_SHIFT];
+    final Map<String, Character> uniqueBlocks = new HashMap<>();
+    byte[] values = new byte[CodePointTable.BLOCK_SIZE * 64];
+    int numberOfBlocks = 0;
+
+    final byte[] block = new byte[CodePointTable.BLOCK_SIZE];
+    for (int b = 0; b < blocks.length; b++) {
+      final int firstCodePoint = b << CodePointTable.BLOCK_SHIFT;
+      for (int i = 0; i < CodePointTable.BLOCK_SIZE; i++) {
+        final int codePoint = firstCodePoint + i;
+        block[i] = codePoint > Character.MAX_CODE_POINT ? 0 : (byte) function.applyAsInt(codePoint);
+      }
+
+      // ISO-8859-1 is a one to one mapping between bytes and chars
+      final String key = new String(block, StandardCharsets.ISO_8859_1);
+      Character index = uniqueBlocks.get(key);
+      if (index == null) {
+        index = (char) numberOfBlocks++;
+        uniqueBlocks.put(key, index);
+
+        final int offset = index << CodePointTable.BLOCK_SHIFT;
+        if (offset + CodePointTable.BLOCK_SIZE > values.length) {
+          values = Arrays.copyOf(values, values.length * 2);
+        }
+        System.arraycopy(block, 0, values, offset, CodePointTable.BLOCK_SIZE);
+      }
+
+      blocks[b] = index;
+    }
+
+    this.blocks = blocks;
+    this.values = Arrays.copyOf(values, numberOfBlocks << CodePointTable.BLOCK_SHIFT);
+  }
+
+  /**
+   * Returns the value of a code point.
+   *
+   * @param codePoint
+   *          is the code point. Values outside of the codespace are all mapped to 0.
+   * @return the value of the code point (from 0 to 255).
+   */
+  int get(final int codePoint) {
+    // -1 if any bit above the 21 lower bits is set, 0 otherwise: such a value is looked up as U+1FFFFF
+    final int high = codePoint >>> CodePointTable.CODESPACE_BITS;
+    final int value = (codePoint | (high | -high) >> 31) & CodePointTable.CODESPACE_MASK;
+    final int block = this.blocks[value >>> CodePointTable.BLOCK_SHIFT];
+    return this.values[block << CodePointTable.BLOCK_SHIFT | value & CodePointTable.BLOCK_MASK] & 0xFF;
+  }
+}
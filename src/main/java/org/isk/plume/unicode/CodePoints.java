@@ -606,7 +606,21 @@ public class CodePoints implements Iterable<Integer> {
    *          is the string to add to the buffer.
    */
   public void add(final String s) {
-    s.codePoints().forEach(codePoint -> this.add(codePoint));
+    final int length = s.length();
+    if (this.index + length > this.buffer.length) {
+      final int newLength = Math.max(this.index + length, this.buffer.length + this.bufferGrowthSize);
+      this.buffer = Arrays.copyOf(this.buffer, newLength);
+    }
+
+    int i = 0;
+    while (i < length) {
+      final char c = s.charAt(i++);
+      if (Character.isHighSurrogate(c) && i < length && Character.isLowSurrogate(s.charAt(i))) {
+        this.buffer[this.index++] = Character.toCodePoint(c, s.charAt(i++));
+      } else {
+        this.buffer[this.index++] = c;
+      }
+    }
   }
 
   /**
@@ -1402,6 +1416,380 @@ public class CodePoints implements Iterable<Integer> {
       }
     }
 
+    // -----------------------------------------------------------------------------------------------------------------
+    // CharSequence to UTF and UTF to String
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * <p>
+     * Encodes a sequence of UTF-16 <code>char</code>s (a {@link String}, a {@link StringBuilder}, etc.) to code units
+     * of a specified encoding, with the correct BOM (if any).
+     * <p>
+     * Unlike {@link CodePoints#toUtf(Charset)}, no intermediate array of code points is created: surrogate pairs are
+     * combined on the fly and the resulting array is allocated once with its exact size. A surrogate without its
+     * counterpart is encoded as is, like {@link String#codePoints()} would have returned it.
+     *
+     * @param s
+     *          is the sequence of <code>char</code>s to encode.
+     * @param charset
+     *          is the output encoding.
+     * @return a byte array of code units.
+     * @throws NullPointerException
+     *           if the sequence of <code>char</code>s is <code>null</code>.
+     */
+    public static byte[] encode(final CharSequence s, final Charset charset) {
+      final byte[] bom = Converter.bom(charset);
+      final int length = s.length();
+
+      byte[] bytes;
+      int offset = bom.length;
+
+      switch (charset) {
+      case UTF8:
+      case UTF8BOM:
+        bytes = new byte[offset + Converter.utf8Length(s)];
+        for (int i = 0; i < length; i++) {
+          int codePoint = s.charAt(i);
+
+          // Fast path for ASCII characters
+          if (codePoint < 0x80) {
+            bytes[offset++] = (byte) codePoint;
+            continue;
+          }
+
+          if (Converter.isHighSurrogate(codePoint) && i + 1 < length && Converter.isLowSurrogate(s.charAt(i + 1))) {
+            codePoint = Character.toCodePoint((char) codePoint, s.charAt(++i));
+          }
+
+          if (codePoint <= 0x07FF) {
+            bytes[offset++] = (byte) (codePoint >>> 6 | 0b1100_0000);
+            bytes[offset++] = (byte) (codePoint & 0x3F | 0b1000_0000);
+          } else if (codePoint <= 0xFFFF) {
+            bytes[offset++] = (byte) (codePoint >>> 12 | 0b1110_0000);
+            bytes[offset++] = (byte) (codePoint >>> 6 & 0x3F | 0b1000_0000);
+            bytes[offset++] = (byte) (codePoint & 0x3F | 0b1000_0000);
+          } else {
+            bytes[offset++] = (byte) (codePoint >>> 18 | 0b1111_0000);
+            bytes[offset++] = (byte) (codePoint >>> 12 & 0x3F | 0b1000_0000);
+            bytes[offset++] = (byte) (codePoint >>> 6 & 0x3F | 0b1000_0000);
+            bytes[offset++] = (byte) (codePoint & 0x3F | 0b1000_0000);
+          }
+        }
+        break;
+      case UTF16BE:
+        // A surrogate pair is encoded exactly as the two chars it is made of
+        bytes = new byte[offset + length * 2];
+        for (int i = 0; i < length; i++) {
+          final char c = s.charAt(i);
+          bytes[offset++] = (byte) (c >>> 8);
+          bytes[offset++] = (byte) c;
+        }
+        break;
+      case UTF16LE:
+        bytes = new byte[offset + length * 2];
+        for (int i = 0; i < length; i++) {
+          final char c = s.charAt(i);
+          bytes[offset++] = (byte) c;
+          bytes[offset++] = (byte) (c >>> 8);
+        }
+        break;
+      case UTF32BE:
+      case UTF32LE:
+        bytes = new byte[offset + Character.codePointCount(s, 0, length) * 4];
+        final boolean bigEndian = charset == Charset.UTF32BE;
+        for (int i = 0; i < length; i++) {
+          int codePoint = s.charAt(i);
+
+          if (Converter.isHighSurrogate(codePoint) && i + 1 < length && Converter.isLowSurrogate(s.charAt(i + 1))) {
+            codePoint = Character.toCodePoint((char) codePoint, s.charAt(++i));
+          }
+
+          if (bigEndian) {
+            bytes[offset++] = 0;
+            bytes[offset++] = (byte) (codePoint >>> 16);
+            bytes[offset++] = (byte) (codePoint >>> 8);
+            bytes[offset++] = (byte) codePoint;
+          } else {
+            bytes[offset++] = (byte) codePoint;
+            bytes[offset++] = (byte) (codePoint >>> 8);
+            bytes[offset++] = (byte) (codePoint >>> 16);
+            bytes[offset++] = 0;
+          }
+        }
+        break;
+      default:
+        throw new UnicodeException("Unknown charset!");
+      }
+
+      System.arraycopy(bom, 0, bytes, 0, bom.length);
+      return bytes;
+    }
+
+    /**
+     * <p>
+     * Decodes a byte array of code units from a specified encoding to a {@link String}.
+     * <p>
+     * Unlike {@link CodePoints#toCodePoints(Charset, byte[])} followed by {@link CodePoints#toString()}, no
+     * intermediate array of code points is created: code points outside of the BMP are split into surrogate pairs on
+     * the fly.
+     * <p>
+     * Like {@link Converter#readBom(Charset, UnicodeInputStream)}, the BOM is expected for all encodings except
+     * {@link Charset#UTF8}, and is not part of the returned {@link String}.
+     *
+     * @param utf
+     *          is a byte array of code units.
+     * @param charset
+     *          is the input encoding.
+     * @return the decoded {@link String}.
+     * @throws UnicodeException
+     *           if the expected BOM is not present or if the data are corrupted.
+     */
+    public static String decodeToString(final byte[] utf, final Charset charset) {
+      final int end = utf.length;
+      int i = Converter.skipBom(charset, utf);
+      char[] chars;
+      int count = 0;
+
+      switch (charset) {
+      case UTF8:
+      case UTF8BOM:
+        // One char at most for each byte (a 4-byte sequence becomes a surrogate pair)
+        chars = new char[end - i];
+        while (i < end) {
+          final int character = utf[i++] & 0xFF;
+
+          // Fast path for ASCII characters
+          if (character >> 7 == 0) {
+            chars[count++] = (char) character;
+            continue;
+          }
+
+          int codePoint = 0;
+          // U+0080 - U+07FF
+          if (character >> 5 == 0b110) {
+            Converter.checkRemaining(utf, i, 1, charset);
+            codePoint = (character & 0b0001_1111) << 6;
+            codePoint |= utf[i++] & 0b0011_1111;
+          }
+          // U+0800 - U+FFFF
+          else if (character >> 4 == 0b1110) {
+            Converter.checkRemaining(utf, i, 2, charset);
+            codePoint = (character & 0b0000_1111) << 12;
+            codePoint |= (utf[i++] & 0b0011_1111) << 6;
+            codePoint |= utf[i++] & 0b0011_1111;
+          }
+          // U+10000 - U+1FFFFF
+          else if (character >> 3 == 0b1_1110) {
+            Converter.checkRemaining(utf, i, 3, charset);
+            codePoint = (character & 0b0000_0111) << 18;
+            codePoint |= (utf[i++] & 0b0011_1111) << 12;
+            codePoint |= (utf[i++] & 0b0011_1111) << 6;
+            codePoint |= utf[i++] & 0b0011_1111;
+          }
+
+          if (codePoint > 0xFFFF) {
+            chars[count++] = Character.highSurrogate(codePoint);
+            chars[count++] = Character.lowSurrogate(codePoint);
+          } else {
+            chars[count++] = (char) codePoint;
+          }
+        }
+        break;
+      case UTF16BE:
+        // A surrogate pair is decoded exactly as the two chars it is made of
+        Converter.checkCodeUnits(utf, i, 2, charset);
+        chars = new char[(end - i) / 2];
+        while (i < end) {
+          chars[count++] = (char) ((utf[i] & 0xFF) << 8 | utf[i + 1] & 0xFF);
+          i += 2;
+        }
+        break;
+      case UTF16LE:
+        Converter.checkCodeUnits(utf, i, 2, charset);
+        chars = new char[(end - i) / 2];
+        while (i < end) {
+          chars[count++] = (char) (utf[i] & 0xFF | (utf[i + 1] & 0xFF) << 8);
+          i += 2;
+        }
+        break;
+      case UTF32BE:
+      case UTF32LE:
+        Converter.checkCodeUnits(utf, i, 4, charset);
+        // Two chars at most for each code point
+        chars = new char[(end - i) / 2];
+        final boolean bigEndian = charset == Charset.UTF32BE;
+        while (i < end) {
+          final int codePoint;
+          if (bigEndian) {
+            codePoint = utf[i] << 24 | (utf[i + 1] & 0xFF) << 16 | (utf[i + 2] & 0xFF) << 8 | utf[i + 3] & 0xFF;
+          } else {
+            codePoint = utf[i] & 0xFF | (utf[i + 1] & 0xFF) << 8 | (utf[i + 2] & 0xFF) << 16 | utf[i + 3] << 24;
+          }
+          i += 4;
+
+          if (codePoint > 0xFFFF) {
+            chars[count++] = Character.highSurrogate(codePoint);
+            chars[count++] = Character.lowSurrogate(codePoint);
+          } else {
+            chars[count++] = (char) codePoint;
+          }
+        }
+        break;
+      default:
+        throw new UnicodeException("Unknown charset!");
+      }
+
+      return new String(chars, 0, count);
+    }
+
+    /**
+     * Returns the number of UTF-8 code units needed to encode a sequence of UTF-16 <code>char</code>s.
+     *
+     * @param s
+     *          is the sequence of <code>char</code>s.
+     * @return the number of UTF-8 code units.
+     */
+    private static int utf8Length(final CharSequence s) {
+      final int length = s.length();
+      int utf8Length = length;
+
+      for (int i = 0; i < length; i++) {
+        final char c = s.charAt(i);
+        if (c >= 0x80) {
+          if (c <= 0x07FF) {
+            utf8Length += 1;
+          } else if (Converter.isHighSurrogate(c) && i + 1 < length && Converter.isLowSurrogate(s.charAt(i + 1))) {
+            // 4 bytes for 2 chars
+            utf8Length += 2;
+            i++;
+          } else {
+            utf8Length += 2;
+          }
+        }
+      }
+
+      return utf8Length;
+    }
+
+    /**
+     * Returns the BOM of a specified encoding, or an empty array for {@link Charset#UTF8}.
+     *
+     * @param charset
+     *          is the encoding.
+     * @return the BOM of the encoding.
+     */
+    private static byte[] bom(final Charset charset) {
+      switch (charset) {
+      case UTF8:
+        return new byte[0];
+      case UTF8BOM:
+        return CodePoints.UTF8_BOM;
+      case UTF16BE:
+        return CodePoints.UTF16BE_BOM;
+      case UTF16LE:
+        return CodePoints.UTF16LE_BOM;
+      case UTF32BE:
+        return CodePoints.UTF32BE_BOM;
+      case UTF32LE:
+        return CodePoints.UTF32LE_BOM;
+      default:
+        throw new UnicodeException("Unknown charset!");
+      }
+    }
+
+    /**
+     * Checks the BOM (if any) at the beginning of a byte array, the same way
+     * {@link Converter#readBom(Charset, UnicodeInputStream)} does.
+     *
+     * @param charset
+     *          is the encoding of the code units.
+     * @param utf
+     *          is a byte array of code units.
+     * @return the index of the first code unit after the BOM.
+     * @throws UnicodeException
+     *           if the expected BOM is not present.
+     */
+    private static int skipBom(final Charset charset, final byte[] utf) {
+      final byte[] bom = Converter.bom(charset);
+
+      for (int i = 0; i < bom.length; i++) {
+        if (i >= utf.length || utf[i] != bom[i]) {
+          throw new UnicodeException(String.format("Wrong %s BOM. Expected 0x%02X (byte %d).",
+              Converter.charsetName(charset), bom[i] & 0xFF, i));
+        }
+      }
+
+      return bom.length;
+    }
+
+    /**
+     * Checks that there are enough code units left in a byte array.
+     *
+     * @param utf
+     *          is a byte array of code units.
+     * @param index
+     *          is the index of the next code unit to read.
+     * @param expected
+     *          is the number of code units expected from <code>index</code>.
+     * @param charset
+     *          is the encoding of the code units.
+     * @throws UnicodeException
+     *           if the data are corrupted.
+     */
+    private static void checkRemaining(final byte[] utf, final int index, final int expected, final Charset charset) {
+      if (index + expected > utf.length) {
+        throw new UnicodeException("Corrupted " + Converter.charsetName(charset) + " data. Expected " + expected
+            + " more byte(s) from byte " + index + ".");
+      }
+    }
+
+    /**
+     * Checks that the code units of a fixed-width encoding (UTF-16 or UTF-32) are complete.
+     *
+     * @param utf
+     *          is a byte array of code units.
+     * @param index
+     *          is the index of the first code unit (after the BOM).
+     * @param codeUnitSize
+     *          is the size of a code unit in bytes.
+     * @param charset
+     *          is the encoding of the code units.
+     * @throws UnicodeException
+     *           if the data are corrupted.
+     */
+    private static void checkCodeUnits(final byte[] utf, final int index, final int codeUnitSize,
+        final Charset charset) {
+      if ((utf.length - index) % codeUnitSize != 0) {
+        throw new UnicodeException("Corrupted " + Converter.charsetName(charset) + " data. The number of bytes is not a"
+            + " multiple of " + codeUnitSize + ".");
+      }
+    }
+
+    /**
+     * Returns the display name of a specified encoding, as used in the exception messages.
+     *
+     * @param charset
+     *          is the encoding.
+     * @return the display name of the encoding.
+     */
+    static String charsetName(final Charset charset) {
+      switch (charset) {
+      case UTF8:
+      case UTF8BOM:
+        return "UTF-8";
+      case UTF16BE:
+        return "UTF-16-BE";
+      case UTF16LE:
+        return "UTF-16-LE";
+      case UTF32BE:
+        return "UTF-32-BE";
+      case UTF32LE:
+        return "UTF-32-LE";
+      default:
+        throw new UnicodeException("Unknown charset!");
+      }
+    }
+
     // -----------------------------------------------------------------------------------------------------------------
     // Helpers
     // -----------------------------------------------------------------------------------------------------------------
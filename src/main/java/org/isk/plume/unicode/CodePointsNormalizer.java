@@ -0,0 +1,249 @@
+package org.isk.plume.unicode;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A CodePointsNormalizer normalizes a stream of code points to the Normalization Form C (NFC) or KC (NFKC), one code
+ * point at a time, without creating a {@link String} for the whole text. The normalized code points are added to a
+ * {@link CodePoints}.
+ * <p>
+ * Most texts are already normalized, therefore a quick check is done for each code point: a code point is a
+ * <em>stable starter</em> if the normalization form leaves it unchanged, if it is not a combining mark and if it can't
+ * combine with a preceding code point. A normalized text can be cut before any stable starter, in segments normalized
+ * independently of each other:
+ * <ul>
+ * <li>a segment made of a single stable starter (the common case) is copied as is ;
+ * <li>only the segments containing other code points (typically a letter followed by combining marks) are buffered and
+ * normalized with {@link Normalizer}.
+ * </ul>
+ * <p>
+ * The quick check table is computed, the first time a normalizer is used, from the Unicode data shipped with the JDK
+ * ({@link Normalizer} and {@link Character}). It is a conservative approximation of the Unicode properties NFC_QC and
+ * NFKC_QC combined with a canonical combining class of 0: some code points are considered unstable without being so,
+ * which only makes them slower to process.
+ */
+public class CodePointsNormalizer {
+
+  /**
+   * Supported normalization forms.
+   */
+  public static enum Form {
+    /**
+     * Canonical Decomposition, followed by Canonical Composition.
+     */
+    NFC(Normalizer.Form.NFC, 0b01),
+
+    /**
+     * Compatibility Decomposition, followed by Canonical Composition.
+     */
+    NFKC(Normalizer.Form.NFKC, 0b10);
+
+    final private Normalizer.Form form;
+    final private int stableStarterFlag;
+
+    private Form(final Normalizer.Form form, final int stableStarterFlag) {
+      this.form = form;
+      this.stableStarterFlag = stableStarterFlag;
+    }
+
+    /**
+     * Is the code point a stable starter for this normalization form ?
+     *
+     * @param codePoint
+     *          is the code point to check.
+     * @return <code>true</code> if the code point is a stable starter, <code>false</code> otherwise.
+     */
+    public boolean isStableStarter(final int codePoint) {
+      return (QuickCheck.TABLE.get(codePoint) & this.stableStarterFlag) != 0;
+    }
+  }
+
+  /**
+   * Initial size of the segment buffer.
+   */
+  final private static int DEFAULT_SEGMENT_SIZE = 16;
+
+  /**
+   * The normalization form.
+   */
+  final private Form form;
+
+  /**
+   * The normalized code points.
+   */
+  final private CodePoints output;
+
+  /**
+   * The current segment: the last stable starter and the code points added after it.
+   */
+  private int[] segment = new int[CodePointsNormalizer.DEFAULT_SEGMENT_SIZE];
+
+  /**
+   * Number of code points in the current segment.
+   */
+  private int segmentLength = 0;
+
+  /**
+   * Instantiates a new <code>CodePointsNormalizer</code>.
+   *
+   * @param form
+   *          is the normalization form.
+   * @param output
+   *          is the {@link CodePoints} to which the normalized code points will be added.
+   */
+  public CodePointsNormalizer(final Form form, final CodePoints output) {
+    this.form = form;
+    this.output = output;
+  }
+
+  /**
+   * <p>
+   * Adds a code point to normalize.
+   * <p>
+   * The code points of a segment are added to the output only when the next segment starts (or when
+   * {@link #flush()} is called).
+   *
+   * @param codePoint
+   *          is the code point to normalize.
+   */
+  public void add(final int codePoint) {
+    if (this.form.isStableStarter(codePoint)) {
+      this.flush();
+    } else if (this.segmentLength == this.segment.length) {
+      this.segment = Arrays.copyOf(this.segment, this.segmentLength * 2);
+    }
+
+    this.segment[this.segmentLength++] = codePoint;
+  }
+
+  /**
+   * Normalizes the current segment and adds it to the output.
+   */
+  public void flush() {
+    if (this.segmentLength == 1 && this.form.isStableStarter(this.segment[0])) {
+      // Quick check: a stable starter alone
+      this.output.add(this.segment[0]);
+    } else if (this.segmentLength > 0) {
+      final String s = new String(this.segment, 0, this.segmentLength);
+      this.output.add(Normalizer.normalize(s, this.form.form));
+    }
+
+    this.segmentLength = 0;
+  }
+
+  /**
+   * <p>
+   * Normalizes an array of code points.
+   * <p>
+   * If all the code points are stable starters, the array itself is returned without any allocation.
+   *
+   * @param codePoints
+   *          is an array of code points.
+   * @param form
+   *          is the normalization form.
+   * @return the normalized code points.
+   */
+  public static int[] normalize(final int[] codePoints, final Form form) {
+    final int firstUnstable = CodePointsNormalizer.firstUnstable(codePoints, form);
+    if (firstUnstable == codePoints.length) {
+      return codePoints;
+    }
+
+    // Everything before the last stable starter is already normalized
+    final int segmentStart = firstUnstable > 0 ? firstUnstable - 1 : 0;
+
+    final CodePoints output = new CodePoints(codePoints.length);
+    for (int i = 0; i < segmentStart; i++) {
+      output.add(codePoints[i]);
+    }
+
+    final CodePointsNormalizer normalizer = new CodePointsNormalizer(form, output);
+    for (int i = segmentStart; i < codePoints.length; i++) {
+      normalizer.add(codePoints[i]);
+    }
+    normalizer.flush();
+
+    return output.codepoints();
+  }
+
+  /**
+   * Is an array of code points normalized ?
+   *
+   * @param codePoints
+   *          is an array of code points.
+   * @param form
+   *          is the normalization form.
+   * @return <code>true</code> if the code points are normalized, <code>false</code> otherwise.
+   */
+  public static boolean isNormalized(final int[] codePoints, final Form form) {
+    if (CodePointsNormalizer.firstUnstable(codePoints, form) == codePoints.length) {
+      return true;
+    }
+
+    return Arrays.equals(codePoints, CodePointsNormalizer.normalize(codePoints, form));
+  }
+
+  /**
+   * Returns the index of the first code point which is not a stable starter.
+   *
+   * @param codePoints
+   *          is an array of code points.
+   * @param form
+   *          is the normalization form.
+   * @return the index of the first code point which is not a stable starter, or the length of the array.
+   */
+  private static int firstUnstable(final int[] codePoints, final Form form) {
+    int i = 0;
+    while (i < codePoints.length && form.isStableStarter(codePoints[i])) {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * Quick check table, computed the first time a normalization form is used.
+   */
+  private static class QuickCheck {
+    final private static CodePointTable TABLE = new CodePointTable(QuickCheck::compute);
+
+    /**
+     * Computes the stable starter flags of a code point for all the normalization forms.
+     *
+     * @param codePoint
+     *          is the code point.
+     * @return the stable starter flags.
+     */
+    private static int compute(final int codePoint) {
+      final int allForms = Form.NFC.stableStarterFlag | Form.NFKC.stableStarterFlag;
+
+      switch (Character.getType(codePoint)) {
+      case Character.UNASSIGNED:
+      case Character.PRIVATE_USE:
+      case Character.SURROGATE:
+        return allForms;
+      case Character.NON_SPACING_MARK:
+      case Character.ENCLOSING_MARK:
+      case Character.COMBINING_SPACING_MARK:
+        return 0;
+      default:
+        break;
+      }
+
+      // Hangul Jamo vowels and trailing consonants combine with a preceding syllable
+      if (codePoint >= 0x1160 && codePoint <= 0x11FF) {
+        return 0;
+      }
+
+      final String s = new String(Character.toChars(codePoint));
+      int flags = 0;
+      for (final Form form : Form.values()) {
+        if (Normalizer.isNormalized(s, form.form)) {
+          flags |= form.stableStarterFlag;
+        }
+      }
+      return flags;
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package org.isk.plume.unicode;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * <p>
+ * A ColumnIndex maps the positions of a {@link MappedCodePoints} to columns of a {@link ColumnModel}.
+ * <p>
+ * Most code points occupy a single column, therefore only the other ones are recorded, with the number of columns
+ * they occupy in addition to one, summed from the start of the stream, and the index of the first one recorded in
+ * each line. The column of a position is its column as a number of code points, plus the extra columns recorded
+ * between the start of its line and the position: nothing to search if there are none in its line or if the position
+ * follows all of them (the code points after an indentation, for instance), a binary search over the code points
+ * recorded in its line otherwise.
+ */
+final class ColumnIndex {
+
+  /**
+   * The positions of the code points not occupying a single column, sorted.
+   */
+  final private int[] positions;
+
+  /**
+   * The number of extra columns occupied by the code points recorded up to each one (included).
+   */
+  final private int[] extras;
+
+  /**
+   * The index of the first code point recorded in each line, indexed by line, followed by the number of code points
+   * recorded.
+   */
+  final private int[] firstEntries;
+
+  private ColumnIndex(final int[] positions, final int[] extras, final int[] firstEntries) {
+    this.positions = positions;
+    this.extras = extras;
+    this.firstEntries = firstEntries;
+  }
+
+  /**
+   * Computes the columns of a stream, in one pass over its code points.
+   *
+   * @param storage
+   *          is the code points.
+   * @param eosIndex
+   *          is the index of the End Of Stream.
+   * @param lastLine
+   *          is the number of the last line (the line of the End Of Stream).
+   * @param model
+   *          is the way the columns are counted.
+   * @return a new <code>ColumnIndex</code>.
+   */
+  static ColumnIndex build(final CodePointStorage storage, //
+      final int eosIndex, //
+      final int lastLine, //
+      final ColumnModel model) {
+    final Builder builder = new Builder(model, lastLine);
+    storage.forEach(1, eosIndex, builder);
+    builder.firstEntries[lastLine + 1] = builder.size;
+    return new ColumnIndex(builder.positions, builder.extras, builder.firstEntries);
+  }
+
+  /**
+   * Returns the column of a position.
+   *
+   * @param position
+   *          is a position between 1 and the End Of Stream (included).
+   * @param line
+   *          is the line of the position.
+   * @param lineStart
+   *          is the position of the first code point of its line.
+   * @return the column of the position.
+   */
+  int columnOf(final int position, final int line, final int lineStart) {
+    final int column = position - lineStart + 1;
+    final int first = this.firstEntries[line];
+    final int end = this.firstEntries[line + 1];
+    if (first == end || position <= this.positions[first]) {
+      return column;
+    }
+
+    final int extrasBeforeLine = first == 0 ? 0 : this.extras[first - 1];
+
+    // After the last code point recorded in the line
+    if (position > this.positions[end - 1]) {
+      return column + this.extras[end - 1] - extrasBeforeLine;
+    }
+
+    final int index = Arrays.binarySearch(this.positions, first, end, position);
+    final int recorded = index >= 0 ? index : -index - 1;
+    return column + this.extras[recorded - 1] - extrasBeforeLine;
+  }
+
+  /**
+   * A Builder receives the code points of the stream in order, from the position 1.
+   */
+  private static class Builder implements IntConsumer {
+    final private ColumnModel model;
+    private int[] positions = new int[16];
+    private int[] extras = new int[16];
+    final private int[] firstEntries;
+    private int size = 0;
+    private int total = 0;
+
+    private int position = 1;
+    private int line = 1;
+    private int column = 1;
+
+    Builder(final ColumnModel model, final int lastLine) {
+      this.model = model;
+      this.firstEntries = new int[lastLine + 2];
+    }
+
+    @Override
+    public void accept(final int codePoint) {
+      if (codePoint == MappedCodePoints.LF) {
+        this.firstEntries[++this.line] = this.size;
+        this.column = 1;
+      } else {
+        final int width = this.model.width(codePoint, this.column);
+        if (width != 1) {
+          this.add(width - 1);
+        }
+        this.column += width;
+      }
+      this.position++;
+    }
+
+    private void add(final int extra) {
+      if (this.size == this.positions.length) {
+        this.positions = Arrays.copyOf(this.positions, this.size * 2);
+        this.extras = Arrays.copyOf(this.extras, this.size * 2);
+      }
+      this.total += extra;
+      this.positions[this.size] = this.position;
+      this.extras[this.size++] = this.total;
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package org.isk.plume.unicode;
+
+import org.isk.plume.unicode.CodePoints.Charset;
+
+/**
+ * <p>
+ * A ColumnModel defines how the columns of a {@link MappedCodePoints} are counted: the number of columns each code
+ * point of a line occupies, the first code point of a line being at column 1.
+ * <p>
+ * The default model, {@link #CODE_POINTS}, counts one column per code point. The other models provided count UTF-16
+ * code units ({@link #UTF16}, as the Language Server Protocol does), UTF-8 bytes ({@link #UTF8}) or expand the tabs
+ * to the next tab stop ({@link #tabs(int)}). Any other model can be plugged by extending this class.
+ * <p>
+ * {@link MappedCodePoints#getColumn(int, ColumnModel)} computes the columns of a model once per stream, the first
+ * time they are asked for (see {@link ColumnIndex}). A model is the key of this cache, therefore two models counting
+ * the columns the same way should be equal. The cache is never evicted: a new model created for each call (an
+ * anonymous class, for instance) adds a new index each time, and should be kept in a constant instead.
+ */
+public abstract class ColumnModel {
+
+  /**
+   * One column per code point.
+   */
+  final public static ColumnModel CODE_POINTS = new ColumnModel() {
+    @Override
+    public int width(final int codePoint, final int column) {
+      return 1;
+    }
+  };
+
+  /**
+   * One column per UTF-16 code unit: two columns for a code point outside of the Basic Multilingual Plane.
+   */
+  final public static ColumnModel UTF16 = new ColumnModel() {
+    @Override
+    public int width(final int codePoint, final int column) {
+      return codePoint < 0x10000 ? 1 : 2;
+    }
+  };
+
+  /**
+   * One column per UTF-8 byte.
+   */
+  final public static ColumnModel UTF8 = new ColumnModel() {
+    @Override
+    public int width(final int codePoint, final int column) {
+      return ByteOffsets.width(codePoint, Charset.UTF8);
+    }
+  };
+
+  /**
+   * Returns a model counting one column per code point, except for a tab which moves to the next tab stop.
+   *
+   * @param tabSize
+   *          is the number of columns between two tab stops.
+   * @return a new <code>ColumnModel</code>.
+   * @throws IllegalArgumentException
+   *           if the tab size is not greater than 0.
+   */
+  public static ColumnModel tabs(final int tabSize) {
+    if (tabSize <= 0) {
+      throw new IllegalArgumentException("The size of a tab should be greater than 0 (" + tabSize + ").");
+    }
+    return new Tabs(tabSize);
+  }
+
+  /**
+   * Returns the number of columns occupied by a code point.
+   *
+   * @param codePoint
+   *          is a code point, which is not a LF.
+   * @param column
+   *          is the column of the code point, the columns of the previous code points of the line being known.
+   * @return the number of columns occupied by the code point.
+   */
+  public abstract int width(int codePoint, int column);
+
+  /**
+   * A model expanding the tabs.
+   */
+  private static class Tabs extends ColumnModel {
+    final private static int TAB = 0x09;
+
+    final private int tabSize;
+
+    Tabs(final int tabSize) {
+      this.tabSize = tabSize;
+    }
+
+    @Override
+    public int width(final int codePoint, final int column) {
+      if (codePoint == Tabs.TAB) {
+        return this.tabSize - (column - 1) % this.tabSize;
+      }
+      return 1;
+    }
+
+    @Override
+    public int hashCode() {
+      return this.tabSize;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      return obj instanceof Tabs && ((Tabs) obj).tabSize == this.tabSize;
+    }
+  }
+}
@@ -0,0 +1,216 @@
+package org.isk.plume.unicode;
+
+import java.util.Arrays;
+
+import org.isk.plume.unicode.exception.MappedCodePointsException;
+
+/**
+ * <p>
+ * A ConcatenatedCodePoints puts several {@link MappedCodePoints} (typically a file and the files it includes) behind a
+ * single position space, so that they can be parsed as a unit, without copying their code points.
+ * <p>
+ * The sources follow each other, separated by a LF: the positions of a source, from 1 to its End Of Stream, are
+ * shifted by the number of positions of the sources before it, its End Of Stream being read as the LF separating it
+ * from the next source. The End Of Stream of the last source is the End Of Stream of the concatenation. Therefore the
+ * position 0 is still reserved for debugging purposes, the first code point being at position 1.
+ * <p>
+ * The filename, the line, the column and the debug message of a position are those of the source containing it,
+ * found by a binary search over the first position of each source.
+ * <p>
+ * As the sources, a ConcatenatedCodePoints is immutable and can be read by many threads at the same time.
+ */
+public final class ConcatenatedCodePoints implements CodePointSource {
+
+  /**
+   * The sources, in order.
+   */
+  final private MappedCodePoints[] sources;
+
+  /**
+   * The number of positions before each source: a position of the concatenation is a position of the source
+   * <code>k</code> if it is greater than <code>offsets[k]</code> and less than or equal to <code>offsets[k + 1]</code>.
+   */
+  final private int[] offsets;
+
+  /**
+   * Index of the End Of Stream.
+   */
+  final private int eosIndex;
+
+  /**
+   * Instantiates a new <code>ConcatenatedCodePoints</code>.
+   *
+   * @param sources
+   *          are the sources, in order. The array is copied, but not the code points.
+   * @throws MappedCodePointsException
+   *           if there is no source or if the concatenation holds more than 2^31 - 1 positions.
+   */
+  public ConcatenatedCodePoints(final MappedCodePoints... sources) {
+    if (sources.length == 0) {
+      throw new MappedCodePointsException("There should be at least one source.");
+    }
+
+    this.sources = sources.clone();
+    this.offsets = new int[sources.length];
+
+    long offset = 0;
+    for (int i = 0; i < sources.length; i++) {
+      this.offsets[i] = (int) offset;
+      offset += this.sources[i].getEosIndex();
+      if (offset > Integer.MAX_VALUE) {
+        throw new MappedCodePointsException("The sources are too large to be concatenated (more than "
+            + Integer.MAX_VALUE + " positions).");
+      }
+    }
+    this.eosIndex = (int) offset;
+  }
+
+  /**
+   * Returns the number of sources.
+   *
+   * @return the number of sources.
+   */
+  public int getSourceCount() {
+    return this.sources.length;
+  }
+
+  /**
+   * Returns a source.
+   *
+   * @param index
+   *          is the index of the source, between 0 and the number of sources (excluded).
+   * @return the source.
+   * @throws ArrayIndexOutOfBoundsException
+   *           if the index is out of range.
+   */
+  public MappedCodePoints getSource(final int index) {
+    return this.sources[index];
+  }
+
+  /**
+   * Returns the number of positions before a source: the position <code>p</code> of the source is the position
+   * <code>p + getSourceOffset(index)</code> of the concatenation.
+   *
+   * @param index
+   *          is the index of the source, between 0 and the number of sources (excluded).
+   * @return the number of positions before the source.
+   * @throws ArrayIndexOutOfBoundsException
+   *           if the index is out of range.
+   */
+  public int getSourceOffset(final int index) {
+    return this.offsets[index];
+  }
+
+  /**
+   * Returns the index of the source containing a position. The position 0 is in the first source, the LF separating
+   * two sources is in the first one.
+   *
+   * @param position
+   *          is a position of the concatenation.
+   * @return the index of the source containing the position.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  public int getSourceIndex(final int position) {
+    this.checkIndex(position);
+    return this.sourceOf(position);
+  }
+
+  @Override
+  public String getFilename(final int position) {
+    this.checkIndex(position);
+    return this.sources[this.sourceOf(position)].getFilename();
+  }
+
+  @Override
+  public int getEosIndex() {
+    return this.eosIndex;
+  }
+
+  @Override
+  public int codePointAt(final int position) {
+    this.checkIndex(position);
+    final int source = this.sourceOf(position);
+    final int codePoint = this.sources[source].codePointAt(position - this.offsets[source]);
+
+    // End Of Stream of a source, except the last one
+    if (codePoint == MappedCodePoints.EOS && position != this.eosIndex) {
+      return MappedCodePoints.LF;
+    }
+    return codePoint;
+  }
+
+  @Override
+  public int getLine(final int position) {
+    this.checkIndex(position);
+    final int source = this.sourceOf(position);
+    return this.sources[source].getLine(position - this.offsets[source]);
+  }
+
+  @Override
+  public int getLine(final int position, final int lineHint) {
+    this.checkIndex(position);
+    final int source = this.sourceOf(position);
+    return this.sources[source].getLine(position - this.offsets[source], lineHint);
+  }
+
+  @Override
+  public int getColumn(final int position) {
+    this.checkIndex(position);
+    final int source = this.sourceOf(position);
+    return this.sources[source].getColumn(position - this.offsets[source]);
+  }
+
+  @Override
+  public int getColumn(final int position, final int lineHint) {
+    this.checkIndex(position);
+    final int source = this.sourceOf(position);
+    return this.sources[source].getColumn(position - this.offsets[source], lineHint);
+  }
+
+  @Override
+  public int getColumn(final int position, final int lineHint, final ColumnModel model) {
+    this.checkIndex(position);
+    final int source = this.sourceOf(position);
+    return this.sources[source].getColumn(position - this.offsets[source], lineHint, model);
+  }
+
+  @Override
+  public String debug(final String msg, final int position) {
+    this.checkIndex(position);
+    final int source = this.sourceOf(position);
+    return this.sources[source].debug(msg, position - this.offsets[source]);
+  }
+
+  /**
+   * Returns the index of the source containing a position.
+   *
+   * @param position
+   *          is a position between 0 and the End Of Stream (included).
+   * @return the index of the source containing the position.
+   */
+  private int sourceOf(final int position) {
+    if (position == 0) {
+      return 0;
+    }
+
+    // The offsets are strictly increasing, a source holding at least one code point
+    final int index = Arrays.binarySearch(this.offsets, position - 1);
+    return index >= 0 ? index : -index - 2;
+  }
+
+  /**
+   * Checks if a position is in the concatenation.
+   *
+   * @param position
+   *          is a position.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  private void checkIndex(final int position) {
+    if (position < 0 || position > this.eosIndex) {
+      throw new MappedCodePointsException("Index outside of range (" + position
+          + "). It should be greater than or equal to 0 and less than or equal to the end of stream.");
+    }
+  }
+}
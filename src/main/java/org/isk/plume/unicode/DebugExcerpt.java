@@ -0,0 +1,182 @@
+package org.isk.plume.unicode;
+
+/**
+ * <p>
+ * A DebugExcerpt renders the lines of the debug messages of {@link MappedCodePoints} and {@link LargeMappedCodePoints}
+ * (see {@link MappedCodePoints#debug(String, int)}): the excerpt of a line displayed around the column of an error, and
+ * the caret pointing at the error.
+ * <p>
+ * Both classes give access to their lines and their code points, positions and lines being <code>long</code> to fit
+ * the streams of a {@link LargeMappedCodePoints}.
+ */
+abstract class DebugExcerpt {
+
+  /**
+   * Returns the position of the first code point of a line.
+   *
+   * @param line
+   *          is a line between 1 and the last line (included).
+   * @return the position of the first code point of the line.
+   */
+  abstract long lineStart(long line);
+
+  /**
+   * Returns the position following the last code point of a line (its LF, if any, is part of the line).
+   *
+   * @param line
+   *          is a line between 1 and the last line (included).
+   * @return the position following the last code point of the line.
+   */
+  abstract long lineEnd(long line);
+
+  /**
+   * Returns the code point at a given position.
+   *
+   * @param position
+   *          is a position between 0 and the End Of Stream (excluded).
+   * @return the code point at the position.
+   */
+  abstract int codePointAt(long position);
+
+  /**
+   * Appends the code points between two positions.
+   *
+   * @param debugMessage
+   *          is the debug message.
+   * @param from
+   *          is the position of the first code point (included).
+   * @param to
+   *          is the position of the last code point (excluded), at most the End Of Stream.
+   */
+  abstract void appendTo(StringBuilder debugMessage, long from, long to);
+
+  /**
+   * Returns the number of code points of a line, its LF excluded.
+   *
+   * @param line
+   *          is a line between 1 and the last line (included).
+   * @return the number of code points of the line.
+   */
+  final long getLineLength(final long line) {
+    final long end = this.lineEnd(line);
+    final long length = end - this.lineStart(line);
+    return length > 0 && this.codePointAt(end - 1) == MappedCodePoints.LF ? length - 1 : length;
+  }
+
+  /**
+   * Returns the first column (starting at 0) of the excerpt of the lines displayed for debugging purpose: 0 if the line
+   * in error is not longer than {@value MappedCodePoints#DEBUG_MAX_LINE_LENGTH} code points, otherwise the column
+   * centering the excerpt on the error.
+   *
+   * @param line
+   *          is the line of the error.
+   * @param column
+   *          is the column of the error.
+   * @return the first column (starting at 0) of the excerpt.
+   */
+  final long getExcerptStart(final long line, final long column) {
+    final long length = this.getLineLength(line);
+    if (length <= MappedCodePoints.DEBUG_MAX_LINE_LENGTH) {
+      return 0;
+    }
+
+    final long start = column - 1 - MappedCodePoints.DEBUG_MAX_LINE_LENGTH / 2;
+    return Math.max(0, Math.min(start, length - MappedCodePoints.DEBUG_MAX_LINE_LENGTH));
+  }
+
+  /**
+   * Appends a line displayed for debugging purpose, with its LF if any. Only the code points between
+   * <code>excerptStart</code> and <code>excerptStart + DEBUG_MAX_LINE_LENGTH</code> are displayed, an ellipsis
+   * replacing the other ones.
+   *
+   * @param debugMessage
+   *          is the debug message.
+   * @param line
+   *          is a line between 1 and the last line (included).
+   * @param excerptStart
+   *          is the first column (starting at 0) of the excerpt.
+   */
+  final void appendLine(final StringBuilder debugMessage, final long line, final long excerptStart) {
+    final long start = this.lineStart(line);
+    final long length = this.getLineLength(line);
+    final long excerptEnd = Math.min(length, excerptStart + MappedCodePoints.DEBUG_MAX_LINE_LENGTH);
+
+    if (excerptStart > 0) {
+      debugMessage.append(MappedCodePoints.DEBUG_ELLIPSIS);
+    }
+    if (excerptStart < excerptEnd) {
+      this.appendTo(debugMessage, start + excerptStart, start + excerptEnd);
+    }
+    if (excerptEnd < length) {
+      debugMessage.append(MappedCodePoints.DEBUG_ELLIPSIS);
+    }
+    if (start + length < this.lineEnd(line)) {
+      debugMessage.append('\n');
+    }
+  }
+
+  /**
+   * Appends the dummy line with a caret at the column of an error, following the line of the error.
+   *
+   * @param debugMessage
+   *          is the debug message.
+   * @param line
+   *          is the line of the error.
+   * @param column
+   *          is the column of the error.
+   * @param excerptStart
+   *          is the first column (starting at 0) of the excerpt.
+   * @param firstCaret
+   *          is <code>true</code> if it is the first caret following the line. A new line is added before it in case
+   *          of last line of the stream.
+   */
+  final void appendCaret(final StringBuilder debugMessage, //
+      final long line, //
+      final long column, //
+      final long excerptStart, //
+      final boolean firstCaret) {
+    // Add newline in case of last line of the stream
+    if (firstCaret && line > 0 && this.codePointAt(this.lineEnd(line) - 1) != MappedCodePoints.LF) {
+      debugMessage.append('\n');
+    }
+
+    long j = 1 + excerptStart;
+    if (excerptStart > 0) {
+      j -= MappedCodePoints.DEBUG_ELLIPSIS.length();
+    }
+    while (j++ < column) {
+      debugMessage.append(' ');
+    }
+
+    debugMessage.append("^__ Line ").append(line).append('\n');
+  }
+
+  /**
+   * Removes the BOM at the beginning of a debug message, if any.
+   *
+   * @param debugMessage
+   *          is a buffer containing the debug message.
+   * @param start
+   *          is the index of the debug message in the buffer.
+   */
+  static void removeBom(final StringBuilder debugMessage, final int start) {
+    if (debugMessage.length() > start && debugMessage.charAt(start) == CodePoints.BOM_CODEPOINT) {
+      debugMessage.deleteCharAt(start);
+    }
+  }
+
+  /**
+   * Returns a debug message without its last new line.
+   *
+   * @param debugMessage
+   *          is the debug message.
+   * @return the debug message without its last new line.
+   */
+  static String withoutLastLineFeed(final StringBuilder debugMessage) {
+    final int length = debugMessage.length();
+    if (length > 0 && debugMessage.charAt(length - 1) == '\n') {
+      debugMessage.setLength(length - 1);
+    }
+    return debugMessage.toString();
+  }
+}
@@ -0,0 +1,180 @@
+package org.isk.plume.unicode;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * An EditedLineIndex is the {@link LineIndex} of a {@link MappedCodePoints} after one or more edits, computed from the
+ * index before the first edit without copying it.
+ * <p>
+ * As an {@link EditedStorage}, it is a sorted array of segments, each one being a range of lines of the index before
+ * the first edit, or of the lines starting in the replacement of an edit, plus the number of positions its line starts
+ * have been shifted by. An edit splits the segments around the edited lines: creating an EditedLineIndex depends on
+ * the size of the replacement and on the number of segments, not on the number of lines, and the start of a line is
+ * found with a binary search over the first line of each segment, whatever the number of edits applied.
+ */
+final class EditedLineIndex extends LineIndex {
+
+  /**
+   * The index before the first edit.
+   */
+  final private LineIndex original;
+
+  /**
+   * The first line of each segment, followed by the last line + 1.
+   */
+  final private int[] firstLines;
+
+  /**
+   * The line starts inserted by an edit holding each segment, <code>null</code> for a segment of the original index.
+   */
+  final private int[][] insertions;
+
+  /**
+   * The first line of each segment, in the original index or in its insertion.
+   */
+  final private int[] offsets;
+
+  /**
+   * The number of positions added to the line starts of each segment.
+   */
+  final private int[] positionShifts;
+
+  /**
+   * The number of segments.
+   */
+  final private int size;
+
+  private EditedLineIndex(final LineIndex original, //
+      final int[] firstLines, //
+      final int[][] insertions, //
+      final int[] offsets, //
+      final int[] positionShifts, //
+      final int size, //
+      final int eosIndex) {
+    super(firstLines[size] - 1, eosIndex);
+    this.original = original;
+    this.firstLines = firstLines;
+    this.insertions = insertions;
+    this.offsets = offsets;
+    this.positionShifts = positionShifts;
+    this.size = size;
+  }
+
+  /**
+   * Returns the index of a stream in which the code points between two positions have been replaced.
+   *
+   * @param base
+   *          is the index before the edit.
+   * @param start
+   *          is the position of the first code point replaced, between 1 and the End Of Stream (included).
+   * @param end
+   *          is the position following the last code point replaced, between <code>start</code> and the End Of
+   *          Stream (included).
+   * @param replacement
+   *          are the new code points, without any CR.
+   * @param eosIndex
+   *          is the index of the End Of Stream after the edit.
+   * @return the index after the edit.
+   */
+  static EditedLineIndex of(final LineIndex base, //
+      final int start, //
+      final int end, //
+      final int[] replacement, //
+      final int eosIndex) {
+    int numberOfLineFeeds = 0;
+    for (final int codePoint : replacement) {
+      if (codePoint == MappedCodePoints.LF) {
+        numberOfLineFeeds++;
+      }
+    }
+
+    final int[] insertedLineStarts = new int[numberOfLineFeeds];
+    for (int i = 0, line = 0; i < replacement.length; i++) {
+      if (replacement[i] == MappedCodePoints.LF) {
+        insertedLineStarts[line++] = start + i + 1;
+      }
+    }
+
+    final EditedLineIndex previous = base instanceof EditedLineIndex ? (EditedLineIndex) base
+        : new EditedLineIndex(base, new int[] { 0, base.getLastLine() + 1 }, new int[1][], new int[1], new int[1], 1,
+            base.getEosIndex());
+
+    // Lines starting at or before the start of the edit / after its end
+    final int headLines = base.search(start) + 1;
+    final int firstTailLine = base.search(end) + 1;
+    final int tailLineShift = firstTailLine - headLines - numberOfLineFeeds;
+    final int positionShift = replacement.length - (end - start);
+
+    // At most one segment split in two, plus the inserted lines
+    final int capacity = previous.size + 2;
+    final int[] firstLines = new int[capacity + 1];
+    final int[][] insertions = new int[capacity][];
+    final int[] offsets = new int[capacity];
+    final int[] positionShifts = new int[capacity];
+
+    int size = 0;
+    for (int k = 0; k < previous.size && previous.firstLines[k] < headLines; k++) {
+      firstLines[size] = previous.firstLines[k];
+      insertions[size] = previous.insertions[k];
+      offsets[size] = previous.offsets[k];
+      positionShifts[size++] = previous.positionShifts[k];
+    }
+    if (numberOfLineFeeds > 0) {
+      firstLines[size] = headLines;
+      insertions[size] = insertedLineStarts;
+      offsets[size] = 0;
+      positionShifts[size++] = 0;
+    }
+    for (int k = 0; k < previous.size; k++) {
+      if (previous.firstLines[k + 1] > firstTailLine) {
+        final int from = Math.max(previous.firstLines[k], firstTailLine);
+        firstLines[size] = from - tailLineShift;
+        insertions[size] = previous.insertions[k];
+        offsets[size] = previous.offsets[k] + from - previous.firstLines[k];
+        positionShifts[size++] = previous.positionShifts[k] + positionShift;
+      }
+    }
+    firstLines[size] = previous.firstLines[previous.size] - tailLineShift;
+
+    final EditedLineIndex untrimmed = new EditedLineIndex(previous.original, firstLines, insertions, offsets,
+        positionShifts, size, eosIndex);
+
+    // Ignores the lines starting after the End Of Stream (trailing LFs removed from the stream)
+    int lastLine = untrimmed.getLastLine();
+    while (untrimmed.lineStart(lastLine) > eosIndex) {
+      lastLine--;
+    }
+
+    if (lastLine == untrimmed.getLastLine()) {
+      return untrimmed;
+    }
+
+    while (firstLines[size - 1] > lastLine) {
+      size--;
+    }
+    final int[] trimmedFirstLines = Arrays.copyOf(firstLines, size + 1);
+    trimmedFirstLines[size] = lastLine + 1;
+    return new EditedLineIndex(previous.original, trimmedFirstLines, insertions, offsets, positionShifts, size,
+        eosIndex);
+  }
+
+  /**
+   * Returns the number of segments.
+   *
+   * @return the number of segments.
+   */
+  int getSegmentCount() {
+    return this.size;
+  }
+
+  @Override
+  int lineStart(final int line) {
+    final int index = Arrays.binarySearch(this.firstLines, 0, this.size, line);
+    final int segment = index >= 0 ? index : -index - 2;
+
+    final int offset = this.offsets[segment] + line - this.firstLines[segment];
+    final int[] insertion = this.insertions[segment];
+    return (insertion == null ? this.original.lineStart(offset) : insertion[offset]) + this.positionShifts[segment];
+  }
+}
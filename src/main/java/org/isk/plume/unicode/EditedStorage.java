@@ -0,0 +1,217 @@
+package org.isk.plume.unicode;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * <p>
+ * An EditedStorage holds the code points of a {@link MappedCodePoints} after one or more edits, as a piece table: a
+ * sorted array of pieces, each one being a range of the storage before the first edit (never copied) or of the
+ * replacement of an edit.
+ * <p>
+ * An edit splits the pieces of the previous storage around the edited range, which costs the number of pieces, not
+ * the size of the stream. A code point is read with a binary search over the first position of each piece, whatever
+ * the number of edits applied. The pieces are read in bulk by {@link #copyTo(int, int, int[], int)} and
+ * {@link #forEach(int, int, IntConsumer)}, which is how {@link MappedCodePoints} copies them in an array once there
+ * are too many of them.
+ */
+final class EditedStorage extends CodePointStorage {
+
+  /**
+   * The storage before the first edit.
+   */
+  final private CodePointStorage original;
+
+  /**
+   * The position of the first code point of each piece, followed by the index of the End Of Stream.
+   */
+  final private int[] starts;
+
+  /**
+   * The replacement holding each piece, <code>null</code> for a piece of the original storage.
+   */
+  final private int[][] replacements;
+
+  /**
+   * The index of the first code point of each piece, in the original storage or in its replacement.
+   */
+  final private int[] offsets;
+
+  /**
+   * The number of pieces.
+   */
+  final private int size;
+
+  private EditedStorage(final CodePointStorage original, //
+      final int[] starts, //
+      final int[][] replacements, //
+      final int[] offsets, //
+      final int size) {
+    this.original = original;
+    this.starts = starts;
+    this.replacements = replacements;
+    this.offsets = offsets;
+    this.size = size;
+  }
+
+  /**
+   * Returns the code points of a storage in which the code points between two positions have been replaced.
+   *
+   * @param base
+   *          is the storage before the edit.
+   * @param eosIndex
+   *          is the index of the End Of Stream before the edit.
+   * @param start
+   *          is the position of the first code point replaced, greater than 0.
+   * @param end
+   *          is the position following the last code point replaced.
+   * @param replacement
+   *          are the new code points, without any CR. The array is not copied.
+   * @return a new <code>EditedStorage</code>, whose End Of Stream is shifted by the difference between the size of the
+   *         replacement and the size of the range replaced.
+   */
+  static EditedStorage of(final CodePointStorage base, //
+      final int eosIndex, //
+      final int start, //
+      final int end, //
+      final int[] replacement) {
+    final EditedStorage previous = base instanceof EditedStorage ? (EditedStorage) base
+        : new EditedStorage(base, new int[] { 0, eosIndex }, new int[1][], new int[1], 1);
+
+    // At most one piece split in two, plus the replacement
+    final int capacity = previous.size + 2;
+    final int[] starts = new int[capacity + 1];
+    final int[][] replacements = new int[capacity][];
+    final int[] offsets = new int[capacity];
+    final int shift = replacement.length - (end - start);
+
+    int size = 0;
+    for (int k = 0; k < previous.size && previous.starts[k] < start; k++) {
+      starts[size] = previous.starts[k];
+      replacements[size] = previous.replacements[k];
+      offsets[size++] = previous.offsets[k];
+    }
+    if (replacement.length > 0) {
+      starts[size] = start;
+      replacements[size] = replacement;
+      offsets[size++] = 0;
+    }
+    for (int k = 0; k < previous.size; k++) {
+      if (previous.starts[k + 1] > end) {
+        final int from = Math.max(previous.starts[k], end);
+        starts[size] = from + shift;
+        replacements[size] = previous.replacements[k];
+        offsets[size++] = previous.offsets[k] + from - previous.starts[k];
+      }
+    }
+    starts[size] = eosIndex + shift;
+
+    return new EditedStorage(previous.original, starts, replacements, offsets, size);
+  }
+
+  /**
+   * Returns the same storage, with a lower End Of Stream.
+   *
+   * @param eosIndex
+   *          is the index of the End Of Stream, greater than 0 and less than or equal to the current one.
+   * @return a new <code>EditedStorage</code>.
+   */
+  EditedStorage withEosIndex(final int eosIndex) {
+    int size = this.size;
+    while (this.starts[size - 1] >= eosIndex) {
+      size--;
+    }
+
+    final int[] starts = Arrays.copyOf(this.starts, size + 1);
+    starts[size] = eosIndex;
+    return new EditedStorage(this.original, starts, this.replacements, this.offsets, size);
+  }
+
+  /**
+   * Returns the number of pieces.
+   *
+   * @return the number of pieces.
+   */
+  int getPieceCount() {
+    return this.size;
+  }
+
+  @Override
+  int codePointAt(final int position) {
+    if (position >= this.starts[this.size]) {
+      return MappedCodePoints.EOS;
+    }
+
+    final int piece = this.pieceOf(position);
+    final int index = this.offsets[piece] + position - this.starts[piece];
+    final int[] replacement = this.replacements[piece];
+    return replacement == null ? this.original.codePointAt(index) : replacement[index];
+  }
+
+  @Override
+  void appendTo(final StringBuilder sb, final int from, final int to) {
+    this.forEach(from, to, sb::appendCodePoint);
+  }
+
+  @Override
+  void copyTo(final int from, final int to, final int[] dst, final int offset) {
+    final int end = Math.min(to, this.starts[this.size]);
+    int position = from;
+    int j = offset;
+    if (position < end) {
+      for (int piece = this.pieceOf(position); position < end; piece++) {
+        final int length = Math.min(this.starts[piece + 1], end) - position;
+        final int index = this.offsets[piece] + position - this.starts[piece];
+        final int[] replacement = this.replacements[piece];
+        if (replacement == null) {
+          this.original.copyTo(index, index + length, dst, j);
+        } else {
+          System.arraycopy(replacement, index, dst, j, length);
+        }
+        position += length;
+        j += length;
+      }
+    }
+
+    for (; position < to; position++) {
+      dst[j++] = MappedCodePoints.EOS;
+    }
+  }
+
+  @Override
+  void forEach(final int from, final int to, final IntConsumer action) {
+    final int end = Math.min(to, this.starts[this.size]);
+    int position = from;
+    if (position < end) {
+      for (int piece = this.pieceOf(position); position < end; piece++) {
+        final int length = Math.min(this.starts[piece + 1], end) - position;
+        final int index = this.offsets[piece] + position - this.starts[piece];
+        final int[] replacement = this.replacements[piece];
+        if (replacement == null) {
+          this.original.forEach(index, index + length, action);
+        } else {
+          for (int i = index; i < index + length; i++) {
+            action.accept(replacement[i]);
+          }
+        }
+        position += length;
+      }
+    }
+
+    for (; position < to; position++) {
+      action.accept(MappedCodePoints.EOS);
+    }
+  }
+
+  /**
+   * Returns the piece containing a position.
+   *
+   * @param position
+   *          is a position between 0 and the End Of Stream (excluded).
+   * @return the index of the piece.
+   */
+  private int pieceOf(final int position) {
+    final int index = Arrays.binarySearch(this.starts, 0, this.size, position);
+    return index >= 0 ? index : -index - 2;
+  }
+}
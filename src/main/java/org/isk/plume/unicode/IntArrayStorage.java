@@ -0,0 +1,56 @@
+package org.isk.plume.unicode;
+
+import java.nio.IntBuffer;
+import java.util.function.IntConsumer;
+
+/**
+ * An IntArrayStorage holds all the code points of a {@link MappedCodePoints} in an array of <code>int</code>.
+ */
+final class IntArrayStorage extends CodePointStorage {
+
+  /**
+   * The code points, from the position 0 to the End Of Stream (included).
+   */
+  final private int[] codePoints;
+
+  /**
+   * Instantiates a new <code>IntArrayStorage</code>.
+   *
+   * @param codePoints
+   *          are the code points, from the position 0 to the End Of Stream (included). The array is not copied.
+   */
+  IntArrayStorage(final int[] codePoints) {
+    this.codePoints = codePoints;
+  }
+
+  @Override
+  int codePointAt(final int position) {
+    return this.codePoints[position];
+  }
+
+  @Override
+  void appendTo(final StringBuilder sb, final int from, final int to) {
+    final int[] codePoints = this.codePoints;
+    for (int i = from; i < to; i++) {
+      sb.appendCodePoint(codePoints[i]);
+    }
+  }
+
+  @Override
+  void copyTo(final int from, final int to, final int[] dst, final int offset) {
+    System.arraycopy(this.codePoints, from, dst, offset, to - from);
+  }
+
+  @Override
+  void forEach(final int from, final int to, final IntConsumer action) {
+    final int[] codePoints = this.codePoints;
+    for (int i = from; i < to; i++) {
+      action.accept(codePoints[i]);
+    }
+  }
+
+  @Override
+  IntBuffer asIntBuffer(final int eosIndex) {
+    return IntBuffer.wrap(this.codePoints, 0, eosIndex + 1).slice().asReadOnlyBuffer();
+  }
+}
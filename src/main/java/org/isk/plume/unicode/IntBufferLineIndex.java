@@ -0,0 +1,34 @@
+package org.isk.plume.unicode;
+
+import java.nio.IntBuffer;
+
+/**
+ * An IntBufferLineIndex holds the position of the first code point of each line of a {@link MappedCodePoints} in an
+ * {@link IntBuffer}, for instance a view of a memory-mapped snapshot (see {@link MappedCodePointsSnapshot}).
+ */
+final class IntBufferLineIndex extends LineIndex {
+
+  /**
+   * The position of the first code point of each line, indexed by line.
+   */
+  final private IntBuffer lineStarts;
+
+  /**
+   * Instantiates a new <code>IntBufferLineIndex</code>.
+   *
+   * @param lineStarts
+   *          is the position of the first code point of each line, indexed by line, sorted, from the index 0 to the
+   *          limit of the buffer. The buffer is not copied and its position is ignored.
+   * @param eosIndex
+   *          is the index of the End Of Stream.
+   */
+  IntBufferLineIndex(final IntBuffer lineStarts, final int eosIndex) {
+    super(lineStarts.limit() - 1, eosIndex);
+    this.lineStarts = lineStarts;
+  }
+
+  @Override
+  int lineStart(final int line) {
+    return this.lineStarts.get(line);
+  }
+}
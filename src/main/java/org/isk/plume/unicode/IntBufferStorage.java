@@ -0,0 +1,71 @@
+package org.isk.plume.unicode;
+
+import java.nio.Buffer;
+import java.nio.IntBuffer;
+import java.util.function.IntConsumer;
+
+/**
+ * An IntBufferStorage holds all the code points of a {@link MappedCodePoints} in an {@link IntBuffer}, for instance a
+ * view of a memory-mapped snapshot (see {@link MappedCodePointsSnapshot}).
+ */
+final class IntBufferStorage extends CodePointStorage {
+
+  /**
+   * The code points, from the position 0 to the End Of Stream (excluded).
+   */
+  final private IntBuffer codePoints;
+
+  /**
+   * Instantiates a new <code>IntBufferStorage</code>.
+   *
+   * @param codePoints
+   *          are the code points, from the index 0 to the End Of Stream (excluded). The buffer is not copied and its
+   *          position is ignored.
+   */
+  IntBufferStorage(final IntBuffer codePoints) {
+    this.codePoints = codePoints;
+  }
+
+  @Override
+  int codePointAt(final int position) {
+    final IntBuffer codePoints = this.codePoints;
+    return position < codePoints.limit() ? codePoints.get(position) : MappedCodePoints.EOS;
+  }
+
+  @Override
+  void appendTo(final StringBuilder sb, final int from, final int to) {
+    final IntBuffer codePoints = this.codePoints;
+    for (int i = from; i < to; i++) {
+      sb.appendCodePoint(codePoints.get(i));
+    }
+  }
+
+  @Override
+  void copyTo(final int from, final int to, final int[] dst, final int offset) {
+    final IntBuffer codePoints = this.codePoints.duplicate();
+
+    // The End Of Stream is not in the buffer
+    final int end = Math.min(to, codePoints.limit());
+    if (from < end) {
+      ((Buffer) codePoints).position(from);
+      codePoints.get(dst, offset, end - from);
+    }
+    if (end < to) {
+      dst[offset + end - from] = MappedCodePoints.EOS;
+    }
+  }
+
+  @Override
+  void forEach(final int from, final int to, final IntConsumer action) {
+    final IntBuffer codePoints = this.codePoints;
+
+    // The End Of Stream is not in the buffer
+    final int end = Math.min(to, codePoints.limit());
+    for (int i = from; i < end; i++) {
+      action.accept(codePoints.get(i));
+    }
+    if (end < to) {
+      action.accept(MappedCodePoints.EOS);
+    }
+  }
+}
@@ -0,0 +1,573 @@
+package org.isk.plume.unicode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.isk.plume.unicode.CodePoints.Charset;
+import org.isk.plume.unicode.exception.MappedCodePointsException;
+import org.isk.plume.unicode.exception.UnicodeException;
+
+/**
+ * <p>
+ * A LargeMappedCodePoints is a {@link MappedCodePoints} addressed with <code>long</code> positions, for files holding
+ * more than 2^31 code points. It offers the reading methods of a {@link MappedCodePoints} (code points, lines, columns
+ * and debug messages), but neither edits nor byte offsets.
+ * <p>
+ * The file is memory-mapped one region of at most {@value #DEFAULT_REGION_SIZE} bytes at a time and decoded in bulk,
+ * CR and CRLF being replaced by LF as in {@link MappedCodePoints}. The code points are kept in segments of
+ * 2^{@value #DEFAULT_SEGMENT_SHIFT} code points, each one with the smallest type able to hold all of its code points
+ * (see {@link CodePointStorage#of(int[], int)}). The start of each line is kept in segments of the same size.
+ * <p>
+ * The position 0 is reserved for debugging purposes, the first code point being at position 1.
+ * <p>
+ * Smaller files should be mapped with {@link MappedCodePoints}, whose <code>int</code> positions and single array are
+ * cheaper to read.
+ * <p>
+ * A LargeMappedCodePoints is immutable once created and doesn't cache anything: the lines are searched from a hint
+ * given by the caller (see {@link #getLine(long, long)}), therefore an instance can be read by many threads without
+ * any synchronization (see {@link org.isk.plume.parser.LargeReader}).
+ */
+public class LargeMappedCodePoints {
+
+  /**
+   * Maximum number of bytes mapped at once.
+   */
+  final static int DEFAULT_REGION_SIZE = 1024 * 1024 * 1024;
+
+  /**
+   * <code>log2</code> of the number of code points (and of line starts) of a segment.
+   */
+  final static int DEFAULT_SEGMENT_SHIFT = 24;
+
+  /**
+   * Number of bytes decoded at once in a temporary array.
+   */
+  final private static int CHUNK_SIZE = 1024 * 1024;
+
+  /**
+   * Number of bytes mapped after a region, so that a code point starting in a region ends in the same mapping.
+   */
+  final private static int REGION_OVERLAP = 4;
+
+  /**
+   * The name of the file mapped.
+   */
+  final public String filename;
+
+  /**
+   * The number of lines before the line in error displayed by the debug messages.
+   */
+  final public int debugLinesBefore;
+
+  /**
+   * The number of lines after the line in error displayed by the debug messages.
+   */
+  final public int debugLinesAfter;
+
+  /**
+   * <code>log2</code> of the number of code points (and of line starts) of a segment.
+   */
+  final private int segmentShift;
+
+  /**
+   * The code points, from the position 0.
+   */
+  final private CodePointStorage[] segments;
+
+  /**
+   * The position of the first code point of each line, indexed by line.
+   */
+  final private long[][] lineStarts;
+
+  /**
+   * The number of the last line (the line of the End Of Stream).
+   */
+  final private long lastLine;
+
+  /**
+   * Index of the End Of Stream.
+   */
+  final private long eosIndex;
+
+  private LargeMappedCodePoints(final String filename, //
+      final Builder builder, //
+      final int debugLinesBefore, //
+      final int debugLinesAfter) {
+    this.filename = filename;
+    this.debugLinesBefore = debugLinesBefore > 0 ? debugLinesBefore : 1;
+    this.debugLinesAfter = debugLinesAfter > 0 ? debugLinesAfter : 1;
+    this.segmentShift = builder.segmentShift;
+    this.segments = builder.segments.toArray(new CodePointStorage[builder.segments.size()]);
+    this.lineStarts = builder.lineStarts.toArray(new long[builder.lineStarts.size()][]);
+    this.eosIndex = builder.eosIndex;
+
+    // Lines starting after the End Of Stream ignored (trailing LFs removed from the stream)
+    long lastLine = builder.numberOfLines - 1;
+    while (this.lineStart(lastLine) > this.eosIndex) {
+      lastLine--;
+    }
+    this.lastLine = lastLine;
+  }
+
+  /**
+   * Instantiates a new <code>LargeMappedCodePoints</code> from a file containing code units of a specified encoding.
+   *
+   * @param path
+   *          is the path of the file to be mapped. Its string representation is used as the name of the file.
+   * @param charset
+   *          is the encoding of the code units.
+   * @return a new <code>LargeMappedCodePoints</code>.
+   * @throws MappedCodePointsException
+   *           if the file is empty or can't be read.
+   * @throws UnicodeException
+   *           if the data are corrupted.
+   */
+  public static LargeMappedCodePoints map(final Path path, final Charset charset) {
+    return LargeMappedCodePoints.map(path, charset, 1, 1);
+  }
+
+  /**
+   * Instantiates a new <code>LargeMappedCodePoints</code> from a file containing code units of a specified encoding.
+   *
+   * @param path
+   *          is the path of the file to be mapped. Its string representation is used as the name of the file.
+   * @param charset
+   *          is the encoding of the code units.
+   * @param debugLinesBefore
+   *          is the number of lines before the line in error to be displayed
+   * @param debugLinesAfter
+   *          is the number of lines after the line in error to be displayed
+   * @return a new <code>LargeMappedCodePoints</code>.
+   * @throws MappedCodePointsException
+   *           if the file is empty or can't be read.
+   * @throws UnicodeException
+   *           if the data are corrupted.
+   */
+  public static LargeMappedCodePoints map(final Path path, //
+      final Charset charset, //
+      final int debugLinesBefore, //
+      final int debugLinesAfter) {
+    return LargeMappedCodePoints.map(path, charset, LargeMappedCodePoints.DEFAULT_REGION_SIZE,
+        LargeMappedCodePoints.DEFAULT_SEGMENT_SHIFT, debugLinesBefore, debugLinesAfter);
+  }
+
+  /**
+   * Instantiates a new <code>LargeMappedCodePoints</code> from a file containing code units of a specified encoding,
+   * with regions and segments of a given size.
+   *
+   * @param path
+   *          is the path of the file to be mapped. Its string representation is used as the name of the file.
+   * @param charset
+   *          is the encoding of the code units.
+   * @param regionSize
+   *          is the maximum number of bytes mapped at once, a multiple of 4.
+   * @param segmentShift
+   *          is the <code>log2</code> of the number of code points of a segment.
+   * @param debugLinesBefore
+   *          is the number of lines before the line in error to be displayed
+   * @param debugLinesAfter
+   *          is the number of lines after the line in error to be displayed
+   * @return a new <code>LargeMappedCodePoints</code>.
+   * @throws MappedCodePointsException
+   *           if the file is empty or can't be read.
+   * @throws UnicodeException
+   *           if the data are corrupted.
+   */
+  static LargeMappedCodePoints map(final Path path, //
+      final Charset charset, //
+      final int regionSize, //
+      final int segmentShift, //
+      final int debugLinesBefore, //
+      final int debugLinesAfter) {
+    final String filename = path.toString();
+    final Builder builder = new Builder(segmentShift);
+
+    try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      final long size = channel.size();
+      // size % codeUnitSize has the same remainder as size
+      BulkDecoder.checkCodeUnits((int) (size % BulkDecoder.codeUnitSize(charset)), charset);
+
+      final int[] chunk = new int[BulkDecoder.maxCodePoints(LargeMappedCodePoints.CHUNK_SIZE
+          + LargeMappedCodePoints.REGION_OVERLAP, charset)];
+      boolean afterCr = false;
+      int from = 0; // The beginning of a region can belong to the last code point of the previous region
+      for (long regionStart = 0; regionStart < size; regionStart += regionSize) {
+        final boolean lastRegion = regionStart + regionSize >= size;
+        final int mappedSize = (int) Math.min(regionSize + LargeMappedCodePoints.REGION_OVERLAP, size - regionStart);
+        final ByteBuffer region = BulkDecoder.withByteOrder(channel.map(MapMode.READ_ONLY, regionStart, mappedSize),
+            charset);
+        final int end = lastRegion ? mappedSize : BulkDecoder.alignToCodeUnit(region, from, regionSize, charset);
+
+        while (from < end) {
+          final int to = end - from <= LargeMappedCodePoints.CHUNK_SIZE ? end
+              : Math.min(end, BulkDecoder.alignToCodeUnit(region, from, from + LargeMappedCodePoints.CHUNK_SIZE,
+                  charset));
+          final int numberOfCodePoints = BulkDecoder.decode(region, from, to, charset, afterCr, chunk, 0, null);
+          builder.add(chunk, numberOfCodePoints);
+          afterCr = BulkDecoder.isAfterCr(region, from, to, charset);
+          from = to;
+        }
+        from -= regionSize;
+      }
+    } catch (final IOException e) {
+      throw new MappedCodePointsException("Impossible to read this file (" + filename + ").", e);
+    }
+
+    if (builder.eosIndex == 0) {
+      throw new MappedCodePointsException("This stream is empty (" + filename + ").");
+    }
+    return new LargeMappedCodePoints(filename, builder.build(), debugLinesBefore, debugLinesAfter);
+  }
+
+  /**
+   * Returns the name of the file mapped.
+   *
+   * @return the name of the file mapped.
+   */
+  public String getFilename() {
+    return this.filename;
+  }
+
+  /**
+   * Returns the index of the End of the Stream.
+   *
+   * @return the index of the End of the Stream.
+   */
+  public long getEosIndex() {
+    return this.eosIndex;
+  }
+
+  /**
+   * <p>
+   * Returns a code point at a given position.
+   * <p>
+   * <u>Important note</u>: the first code point will be at position 1, 0 being reserved for debugging purposes.
+   *
+   * @param position
+   *          is the position of a code point.
+   * @return the code point at a given position.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  public int codePointAt(final long position) {
+    this.checkPosition(position);
+    return position == this.eosIndex ? MappedCodePoints.EOS : this.storedCodePointAt(position);
+  }
+
+  /**
+   * Returns the line of a code point at a given position.
+   *
+   * @param position
+   *          is the position of a code point.
+   * @return the line of a code point at a given position.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  public long getLine(final long position) {
+    this.checkPosition(position);
+    return this.search(position);
+  }
+
+  /**
+   * Returns the line of a code point at a given position, starting the search from a line given by the caller,
+   * typically the line of the previous code point read by the same cursor.
+   *
+   * @param position
+   *          is the position of a code point.
+   * @param lineHint
+   *          is a line where the search starts. If it is not a line of this stream, it is ignored.
+   * @return the line of a code point at a given position.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  public long getLine(final long position, final long lineHint) {
+    this.checkPosition(position);
+    if (lineHint >= 0 && lineHint <= this.lastLine) {
+      if (this.contains(lineHint, position)) {
+        return lineHint;
+      }
+
+      // Sequential reading
+      if (lineHint < this.lastLine && this.contains(lineHint + 1, position)) {
+        return lineHint + 1;
+      }
+    }
+    return this.search(position);
+  }
+
+  /**
+   * Returns the column of a code point at a given position.
+   *
+   * @param position
+   *          is the position of a code point.
+   * @return the column of a code point at a given position.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  public long getColumn(final long position) {
+    return this.columnOf(position, this.getLine(position));
+  }
+
+  /**
+   * Returns the column of a code point at a given position, starting the search of its line from a line given by the
+   * caller (see {@link #getLine(long, long)}).
+   *
+   * @param position
+   *          is the position of a code point.
+   * @param lineHint
+   *          is a line where the search starts. If it is not a line of this stream, it is ignored.
+   * @return the column of a code point at a given position.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  public long getColumn(final long position, final long lineHint) {
+    return this.columnOf(position, this.getLine(position, lineHint));
+  }
+
+  /**
+   * Returns a debug message, in the same format as {@link MappedCodePoints#debug(String, int)}.
+   *
+   * @param msg
+   *          is a custom text displayed after the name of the file if any. Can be <code>null</code> or empty.
+   * @param position
+   *          is the position of the error.
+   * @return a debug message.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  public String debug(final String msg, final long position) {
+    final long line = this.getLine(position);
+    final long firstLine = line == 0 ? 0 : Math.max(1, line - this.debugLinesBefore);
+    final long lastLine = Math.min(line + this.debugLinesAfter, this.lastLine);
+    final long column = this.columnOf(position, line);
+    final DebugExcerpt excerpt = new Excerpt();
+    final long excerptStart = line == 0 ? 0 : excerpt.getExcerptStart(line, column);
+
+    final StringBuilder debugMessage = new StringBuilder();
+    if (this.filename != null) {
+      debugMessage.append("In file ").append(this.filename).append('\n');
+    }
+    if (msg != null && !msg.isEmpty()) {
+      debugMessage.append(msg).append('\n');
+    }
+
+    for (long l = firstLine; l <= lastLine; l++) {
+      // Line 0 is not displayed
+      if (l > 0) {
+        excerpt.appendLine(debugMessage, l, excerptStart);
+      }
+      if (l == line) {
+        excerpt.appendCaret(debugMessage, line, column, excerptStart, true);
+      }
+    }
+
+    // BOM at the beginning of the message removed
+    DebugExcerpt.removeBom(debugMessage, 0);
+
+    // Last new line removed
+    return DebugExcerpt.withoutLastLineFeed(debugMessage);
+  }
+
+  private void checkPosition(final long position) {
+    if (position < 0 || position > this.eosIndex) {
+      throw new MappedCodePointsException("Index outside of range (" + position
+          + "). It should be greater than or equal to 0 and less than or equal to the end of stream.");
+    }
+  }
+
+  /**
+   * Returns the code point stored at a position.
+   *
+   * @param position
+   *          is a position between 0 and the End Of Stream (excluded).
+   * @return the code point at the position.
+   */
+  private int storedCodePointAt(final long position) {
+    final int mask = (1 << this.segmentShift) - 1;
+    return this.segments[(int) (position >>> this.segmentShift)].codePointAt((int) position & mask);
+  }
+
+  /**
+   * Returns the position of the first code point of a line.
+   *
+   * @param line
+   *          is a line between 0 and the last line (included).
+   * @return the position of the first code point of the line.
+   */
+  private long lineStart(final long line) {
+    final int mask = (1 << this.segmentShift) - 1;
+    return this.lineStarts[(int) (line >>> this.segmentShift)][(int) line & mask];
+  }
+
+  /**
+   * Returns the position following the last code point of a line (its LF, if any, is part of the line).
+   *
+   * @param line
+   *          is a line between 0 and the last line (included).
+   * @return the position following the last code point of the line.
+   */
+  private long lineEnd(final long line) {
+    return line < this.lastLine ? this.lineStart(line + 1) : this.eosIndex;
+  }
+
+  private long columnOf(final long position, final long line) {
+    if (position == 0) {
+      return 0;
+    }
+    return position - this.lineStart(line) + 1;
+  }
+
+  private boolean contains(final long line, final long position) {
+    return position >= this.lineStart(line) && (line == this.lastLine || position < this.lineStart(line + 1));
+  }
+
+  /**
+   * Returns the line of a position with a binary search over the line starts.
+   *
+   * @param position
+   *          is a position between 0 and the End Of Stream (included).
+   * @return the last line starting at or before the position.
+   */
+  private long search(final long position) {
+    long low = 0;
+    long high = this.lastLine;
+    while (low < high) {
+      final long middle = low + high + 1 >>> 1;
+      if (this.lineStart(middle) <= position) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * The lines displayed for debugging purpose.
+   */
+  private class Excerpt extends DebugExcerpt {
+    @Override
+    long lineStart(final long line) {
+      return LargeMappedCodePoints.this.lineStart(line);
+    }
+
+    @Override
+    long lineEnd(final long line) {
+      return LargeMappedCodePoints.this.lineEnd(line);
+    }
+
+    @Override
+    int codePointAt(final long position) {
+      return LargeMappedCodePoints.this.storedCodePointAt(position);
+    }
+
+    @Override
+    void appendTo(final StringBuilder debugMessage, final long from, final long to) {
+      for (long i = from; i < to; i++) {
+        debugMessage.appendCodePoint(LargeMappedCodePoints.this.storedCodePointAt(i));
+      }
+    }
+  }
+
+  /**
+   * A Builder collects the code points decoded and the start of the lines, in segments.
+   */
+  private static class Builder {
+    final private int segmentShift;
+    final private int segmentSize;
+    final private List<CodePointStorage> segments = new ArrayList<>();
+    final private List<long[]> lineStarts = new ArrayList<>();
+
+    /**
+     * The segment being filled, with a free element for the End Of Stream.
+     */
+    private int[] segment;
+    private int segmentLength = 0;
+
+    private long[] lineSegment;
+    private int lineSegmentLength = 0;
+    private long numberOfLines = 0;
+
+    /**
+     * The next position.
+     */
+    private long position = 0;
+
+    /**
+     * The position following the last code point which is not a LF.
+     */
+    private long eosIndex = 0;
+
+    Builder(final int segmentShift) {
+      this.segmentShift = segmentShift;
+      this.segmentSize = 1 << segmentShift;
+      this.segment = new int[this.segmentSize + 1];
+      this.lineSegment = new long[this.segmentSize];
+
+      // [before stream], lines 0 and 1
+      this.addCodePoint(MappedCodePoints.LF);
+      this.addLineStart(0);
+      this.addLineStart(1);
+    }
+
+    /**
+     * Adds code points, without any CR.
+     *
+     * @param codePoints
+     *          is an array of code points.
+     * @param length
+     *          is the number of code points to add.
+     */
+    void add(final int[] codePoints, final int length) {
+      for (int i = 0; i < length; i++) {
+        final int codePoint = codePoints[i];
+        if (codePoint == MappedCodePoints.LF) {
+          this.addLineStart(this.position + 1);
+        } else {
+          this.eosIndex = this.position + 1;
+        }
+        this.addCodePoint(codePoint);
+      }
+    }
+
+    /**
+     * Stores the last segments.
+     *
+     * @return this builder.
+     */
+    Builder build() {
+      this.segments.add(CodePointStorage.of(this.segment, this.segmentLength));
+      this.lineStarts.add(Arrays.copyOf(this.lineSegment, this.lineSegmentLength));
+      this.segment = null;
+      this.lineSegment = null;
+      return this;
+    }
+
+    private void addCodePoint(final int codePoint) {
+      if (this.segmentLength == this.segmentSize) {
+        this.segments.add(CodePointStorage.of(this.segment, this.segmentSize));
+        this.segment = new int[this.segmentSize + 1];
+        this.segmentLength = 0;
+      }
+      this.segment[this.segmentLength++] = codePoint;
+      this.position++;
+    }
+
+    private void addLineStart(final long lineStart) {
+      if (this.lineSegmentLength == this.segmentSize) {
+        this.lineStarts.add(this.lineSegment);
+        this.lineSegment = new long[this.segmentSize];
+        this.lineSegmentLength = 0;
+      }
+      this.lineSegment[this.lineSegmentLength++] = lineStart;
+      this.numberOfLines++;
+    }
+  }
+}
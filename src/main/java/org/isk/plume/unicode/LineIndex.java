@@ -0,0 +1,259 @@
+package org.isk.plume.unicode;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A LineIndex maps the positions of a {@link MappedCodePoints} to lines and columns, using the position of the first
+ * code point of each line (sorted). It replaces a line and a column per code point by an <code>int</code> per line.
+ * <p>
+ * The line of a position is found by a binary search over the line starts. Nothing is written by a lookup, therefore
+ * an index can be read by several threads at the same time: a cursor reading the positions in order (as a
+ * {@link org.isk.plume.parser.Reader} does) keeps its own hint instead (see {@link #lineOf(int, int)}), and doesn't
+ * need any search most of the time.
+ * <p>
+ * Line 0 contains only the position 0 (reserved for debugging purposes, column 0), line 1 starts at position 1 and
+ * every other line starts after a LF. The End Of Stream belongs to the last line.
+ * <p>
+ * The line starts are held in an array (see {@link ArrayLineIndex}), or computed from another index after an edit
+ * (see {@link EditedLineIndex}).
+ */
+abstract class LineIndex {
+
+  /**
+   * The number of the last line (the line of the End Of Stream).
+   */
+  final private int lastLine;
+
+  /**
+   * Index of the End Of Stream.
+   */
+  final private int eosIndex;
+
+  /**
+   * Instantiates a new <code>LineIndex</code>.
+   *
+   * @param lastLine
+   *          is the number of the last line.
+   * @param eosIndex
+   *          is the index of the End Of Stream.
+   */
+  LineIndex(final int lastLine, final int eosIndex) {
+    this.lastLine = lastLine;
+    this.eosIndex = eosIndex;
+  }
+
+  /**
+   * Instantiates a new <code>LineIndex</code>, ignoring the lines starting after the End Of Stream (trailing LFs
+   * removed from the stream).
+   *
+   * @param lineStarts
+   *          is the position of the first code point of each line, indexed by line, sorted. The array is not copied if
+   *          all its elements are used.
+   * @param size
+   *          is the number of lines in the array.
+   * @param eosIndex
+   *          is the index of the End Of Stream.
+   * @return a new <code>LineIndex</code>.
+   */
+  static LineIndex of(final int[] lineStarts, final int size, final int eosIndex) {
+    int numberOfLines = size;
+    while (lineStarts[numberOfLines - 1] > eosIndex) {
+      numberOfLines--;
+    }
+
+    if (numberOfLines == lineStarts.length) {
+      return new ArrayLineIndex(lineStarts, eosIndex);
+    }
+    return new ArrayLineIndex(Arrays.copyOf(lineStarts, numberOfLines), eosIndex);
+  }
+
+  /**
+   * Returns the number of the last line.
+   *
+   * @return the number of the last line.
+   */
+  int getLastLine() {
+    return this.lastLine;
+  }
+
+  /**
+   * Returns the index of the End Of Stream.
+   *
+   * @return the index of the End Of Stream.
+   */
+  int getEosIndex() {
+    return this.eosIndex;
+  }
+
+  /**
+   * Returns the line of a position.
+   *
+   * @param position
+   *          is a position between 0 and the End Of Stream (included).
+   * @return the line of the position.
+   */
+  int lineOf(final int position) {
+    return this.search(position);
+  }
+
+  /**
+   * Returns the line of a position, starting from a line given by the caller, usually the line of its previous
+   * lookup: reading the positions in order doesn't need any search.
+   *
+   * @param position
+   *          is a position between 0 and the End Of Stream (included).
+   * @param hint
+   *          is a line between 0 and the last line (included), usually the line of a previous lookup.
+   * @return the line of the position.
+   */
+  int lineOf(final int position, final int hint) {
+    if (this.contains(hint, position)) {
+      return hint;
+    }
+
+    // Sequential reading
+    if (hint < this.lastLine && this.contains(hint + 1, position)) {
+      return hint + 1;
+    }
+
+    return this.search(position);
+  }
+
+  /**
+   * Returns the column of a position in a line.
+   *
+   * @param position
+   *          is a position between 0 and the End Of Stream (included).
+   * @param line
+   *          is the line of the position.
+   * @return the column of the position.
+   */
+  int columnOf(final int position, final int line) {
+    if (position == 0) {
+      return 0;
+    }
+
+    return position - this.lineStart(line) + 1;
+  }
+
+  /**
+   * Returns the column of a position.
+   *
+   * @param position
+   *          is a position between 0 and the End Of Stream (included).
+   * @return the column of the position.
+   */
+  int columnOf(final int position) {
+    return this.columnOf(position, this.lineOf(position));
+  }
+
+  /**
+   * Returns the position of the first code point of a line.
+   *
+   * @param line
+   *          is a line between 0 and the last line (included).
+   * @return the position of the first code point of the line.
+   */
+  abstract int lineStart(int line);
+
+  /**
+   * Returns the position following the last code point of a line (its LF, if any, is part of the line). For the last
+   * line, it is the index of the End Of Stream.
+   *
+   * @param line
+   *          is a line between 0 and the last line (included).
+   * @return the position following the last code point of the line.
+   */
+  int lineEnd(final int line) {
+    return line < this.lastLine ? this.lineStart(line + 1) : this.eosIndex;
+  }
+
+  /**
+   * Returns a <code>LineIndex</code> holding its line starts in an array.
+   *
+   * @return this index if its line starts are already in an array, a copy otherwise.
+   */
+  LineIndex compact() {
+    final int[] lineStarts = new int[this.lastLine + 1];
+    for (int line = 0; line <= this.lastLine; line++) {
+      lineStarts[line] = this.lineStart(line);
+    }
+    return new ArrayLineIndex(lineStarts, this.eosIndex);
+  }
+
+  /**
+   * Returns the line of a position with a binary search over the line starts.
+   *
+   * @param position
+   *          is a position between 0 and the End Of Stream (included).
+   * @return the last line starting at or before the position.
+   */
+  int search(final int position) {
+    int low = 0;
+    int high = this.lastLine;
+    while (low < high) {
+      final int middle = low + high + 1 >>> 1;
+      if (this.lineStart(middle) <= position) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Does a line contain a position ?
+   *
+   * @param line
+   *          is a line between 0 and the last line (included).
+   * @param position
+   *          is a position.
+   * @return <code>true</code> if the line contains the position, <code>false</code> otherwise.
+   */
+  private boolean contains(final int line, final int position) {
+    return position >= this.lineStart(line) && (line == this.lastLine || position < this.lineStart(line + 1));
+  }
+
+  /**
+   * A Builder collects the line starts of a stream, in order.
+   */
+  static class Builder {
+    private int[] lineStarts = new int[64];
+    private int size = 0;
+
+    /**
+     * Instantiates a new <code>Builder</code>, with the lines 0 and 1.
+     */
+    Builder() {
+      this.lineStarts[this.size++] = 0;
+      this.lineStarts[this.size++] = 1;
+    }
+
+    /**
+     * Adds a LF.
+     *
+     * @param position
+     *          is the position of the LF. The next line starts at the following position.
+     */
+    void addLineFeed(final int position) {
+      if (this.size == this.lineStarts.length) {
+        this.lineStarts = Arrays.copyOf(this.lineStarts, this.size * 2);
+      }
+      this.lineStarts[this.size++] = position + 1;
+    }
+
+    /**
+     * Builds the <code>LineIndex</code>, ignoring the lines starting after the End Of Stream (trailing LFs removed from
+     * the stream).
+     *
+     * @param eosIndex
+     *          is the index of the End Of Stream.
+     * @return a new <code>LineIndex</code>.
+     */
+    LineIndex build(final int eosIndex) {
+      return LineIndex.of(this.lineStarts, this.size, eosIndex);
+    }
+  }
+}
@@ -1,11 +1,26 @@
 package org.isk.plume.unicode;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
 
 import org.isk.plume.unicode.CodePoints.Charset;
 import org.isk.plume.unicode.CodePoints.Converter;
 import org.isk.plume.unicode.CodePoints.UtfToCodePoint;
 import org.isk.plume.unicode.exception.MappedCodePointsException;
+import org.isk.plume.unicode.exception.UnicodeException;
 
 /**
  * <p>
@@ -15,20 +30,84 @@ import org.isk.plume.unicode.exception.MappedCodePointsException;
  * After the instantiation a pre-processing is done to standardize the line break, represented by carriage return (CR),
  * a line feed (LF) or a CRLF, by replacing any CR and CRLF by a LF.
  * <p>
- * Even if a buffer of 4kb (by increment) is used internally to add only the right characters (without CR and CRLF) be
- * aware that at the end everything ends up in memory.
+ * The code points are added to a buffer sized from the size of the source when it is known (array of code points,
+ * file, {@link UnicodeInputStream#available()}), otherwise starting at 4kb and growing by half its size each time it
+ * is full. Be aware that at the end everything ends up in memory. The code points are then kept with the smallest
+ * type able to hold all of them: a <code>byte</code> per code point for ASCII and Latin-1 sources, a <code>char</code>
+ * for the Basic Multilingual Plane, an <code>int</code> otherwise.
+ * <p>
+ * A file can also be mapped directly with {@link MappedCodePoints#map(Path, Charset)}: the file is memory-mapped and
+ * its code units are decoded in bulk, without going through an {@link UnicodeInputStream}.
+ * <p>
+ * A {@link String}, or any {@link CharSequence}, is mapped with {@link MappedCodePoints#of(CharSequence)}: its UTF-16
+ * code units are read directly, without an intermediate array of code points.
+ * <p>
+ * For huge files, {@link MappedCodePoints#mapWindowed(Path, Charset)} keeps only a few windows of decoded code points
+ * in memory, the other ones being decoded again from the memory-mapped file when needed.
+ * <p>
+ * For large files, {@link MappedCodePoints#mapParallel(Path, Charset)} decodes chunks of the memory-mapped file in
+ * parallel on a {@link ForkJoinPool}.
+ * <p>
+ * A UTF-8 file can be mapped with {@link MappedCodePoints#mapUtf8(Path)}: its code units are kept as they are and
+ * decoded when read, using the offset of every {@value Utf8Storage#BLOCK_SIZE}th code point (see {@link Utf8Storage}).
+ * <p>
+ * The code points and the lines of a file can be saved in a snapshot and loaded back without decoding the file again
+ * (see {@link MappedCodePointsSnapshot}).
+ * <p>
+ * The lines and columns are not stored for each code point, but computed from the position of the first code point of
+ * each line (see {@link LineIndex}). When the code units are decoded in bulk ({@link MappedCodePoints#map(Path,
+ * Charset)}, {@link MappedCodePoints#decode(String, byte[], Charset)}), this index is built by the decoding loop
+ * itself. Otherwise, it is built the first time a line, a column or a debug message is asked for. The same index
+ * gives the start and the end of any line ({@link MappedCodePoints#getLineStart(int)},
+ * {@link MappedCodePoints#getLineEnd(int)}) without scanning the code points. The columns count code points, unless a
+ * {@link ColumnModel} is given (UTF-16 code units, tabs expanded...), whose columns are computed once and cached.
+ * <p>
+ * An edit ({@link MappedCodePoints#applyEdit(int, int, int[])}) returns a new MappedCodePoints sharing the code points
+ * and the lines of the previous one, so that its cost depends on the size of the edit, not on the size of the stream.
+ * <p>
+ * A MappedCodePoints is immutable once created: its fields are final, except the lines and the columns of each
+ * {@link ColumnModel}, which are built on demand and published through a volatile field and a concurrent map. An
+ * instance can therefore be shared by many threads without any synchronization, each one reading it with its own
+ * cursor (see {@link org.isk.plume.parser.Reader}). A windowed instance ({@link MappedCodePoints#mapWindowed(Path,
+ * Charset)}) remains correct, but doesn't scale across readers: its few decoded windows are shared, so that readers
+ * working on different parts of the stream evict the windows of each other.
+ * <p>
+ * Several MappedCodePoints can be parsed as a single stream, each position keeping its file, line and column (see
+ * {@link ConcatenatedCodePoints}).
  * <p>
  * Moreover the MappedCodePoints class has a {@link MappedCodePoints#debug(String, int)} that display the line
  * containing a precise position, where this position is highlighted, and a given number of lines before and after.
  *
  */
-public class MappedCodePoints {
+public class MappedCodePoints implements CodePointSource {
 
   /**
-   * Size of the buffer.
+   * Initial size of the buffer when the size of the stream is unknown.
    */
   final private static int DEFAULT_BUFFER_SIZE = 1024 * 4;
 
+  /**
+   * Largest array most JVMs can allocate.
+   */
+  final private static int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+  /**
+   * Number of pieces of an {@link EditedStorage} (or of segments of an {@link EditedLineIndex}) after which the code
+   * points (or the lines) are copied in arrays (see {@link #applyEdit(int, int, int[])}).
+   */
+  final private static int MAX_PIECES = 256;
+
+  /**
+   * Maximum number of code points of a line displayed by {@link #debug(String, int)}. Longer lines are cut around the
+   * error.
+   */
+  final static int DEBUG_MAX_LINE_LENGTH = 200;
+
+  /**
+   * Replaces the code points of a line not displayed by {@link #debug(String, int)}.
+   */
+  final static String DEBUG_ELLIPSIS = "...";
+
   /**
    * Number of lines before the line in error to be displayed.
    */
@@ -60,24 +139,31 @@ public class MappedCodePoints {
   final public String filename;
 
   /**
-   * The file as an array of ints.
+   * The code points of the file.
    */
-  private int[] stream = new int[MappedCodePoints.DEFAULT_BUFFER_SIZE];
+  final private CodePointStorage storage;
 
   /**
-   * The line of a character in the stream.
+   * The lines of the stream, built on demand (see {@link #getLineIndex()}). With {@link #columnIndexes}, this is the
+   * only state written after the construction, and it is volatile.
    */
-  private int[] lines = new int[MappedCodePoints.DEFAULT_BUFFER_SIZE];
+  private volatile LineIndex lineIndex;
 
   /**
-   * The column of a character in the stream.
+   * Index of the End Of Stream.
    */
-  private int[] columns = new int[MappedCodePoints.DEFAULT_BUFFER_SIZE];
+  final private int eosIndex;
 
   /**
-   * Index of the End Of Stream.
+   * The columns of each {@link ColumnModel} asked for, built on demand (see {@link #getColumn(int, ColumnModel)}).
+   * Written after the construction, safely published by the map. The indexes are never evicted.
    */
-  private int eosIndex = 0;
+  final private ConcurrentHashMap<ColumnModel, ColumnIndex> columnIndexes = new ConcurrentHashMap<>();
+
+  /**
+   * The byte offsets of the code points in the source, or <code>null</code> if they are unknown.
+   */
+  final private ByteOffsets byteOffsets;
 
   /**
    * Instantiates a new <code>MappedCodePoints</code> from an {@link UnicodeInputStream} containing code units of a
@@ -184,340 +270,1845 @@ public class MappedCodePoints {
   }
 
   /**
-   * Instantiates a new <code>MappedCodePoints</code> from a {@link MappedStreamBuilder}, an object allowing us to
-   * transparently iterate over an array of int or an {@link UnicodeInputStream}.
+   * Instantiates a new <code>MappedCodePoints</code> from the code units of a specified encoding contained in a
+   * {@link ByteBuffer}.
    * 
    * @param filename
    *          is the name of the file to be mapped.
-   * @param builder
-   *          is a {@link MappedStreamBuilder}
+   * @param bytes
+   *          is a {@link ByteBuffer} containing code units, from 0 to its limit.
+   * @param charset
+   *          is the encoding of the code units.
    * @param debugLinesBefore
    *          is the number of lines before the line in error to be displayed.
    * @param debugLinesAfter
    *          is the number of lines after the line in error to be displayed.
    */
   private MappedCodePoints(final String filename, //
-      final MappedStreamBuilder builder, //
+      final ByteBuffer bytes, //
+      final Charset charset, //
       final int debugLinesBefore, //
       final int debugLinesAfter) {
-    this.filename = filename;
-    this.debugLinesBefore = debugLinesBefore > 0 ? debugLinesBefore : 1;
-    this.debugLinesAfter = debugLinesAfter > 0 ? debugLinesAfter : 1;
-    this.init(builder);
+    this(filename, MappedCodePoints.decodeInBulk(filename, bytes, charset), debugLinesBefore, debugLinesAfter);
   }
 
   /**
+   * Instantiates a new <code>MappedCodePoints</code> from a file containing code units of a specified encoding.
    * <p>
-   * Decodes the code units contained by an {@link UnicodeInputStream} from a specified encoding to code points (or
-   * processes the code points directly) and sets the line and the column of this code point in a virtual file.
-   * <p>
-   * Moreover, CR and CRLF are both replaced by LF code point (U+000A).
-   *
-   * @param builder
-   *          is a {@link MappedStreamBuilder} pointing to an array of code units or an array of code points.
+   * The file is memory-mapped and decoded in bulk, which is much faster than going through an
+   * {@link UnicodeInputStream}. As with an {@link UnicodeInputStream}, a BOM is not removed.
+   * 
+   * @param path
+   *          is the path of the file to be mapped. Its string representation is used as the name of the file.
+   * @param charset
+   *          is the encoding of the code units.
+   * @return a new <code>MappedCodePoints</code>.
    * @throws MappedCodePointsException
-   *           if the stream is empty.
+   *           if the file is empty, can't be read or is larger than 2 GB.
+   * @throws UnicodeException
+   *           if the data are corrupted.
    */
-  private void init(final MappedStreamBuilder builder) {
-    try {
-      // Reads the first character to check if the stream is empty or not
-      if (!builder.hasNext()) {
-        if (this.filename == null) {
-          throw new MappedCodePointsException("This stream is empty.");
-        } else {
-          throw new MappedCodePointsException("This stream is empty (" + this.filename + ").");
-        }
-      }
-
-      // Before stream
-      this.stream[0] = MappedCodePoints.LF;
-      this.columns[0] = 0;
-      this.lines[0] = 0;
-
-      int currentChar = 0;
-      int previousChar = 0;
-
-      // Reads characters
-      int index = 1; // 0 is for [before stream]
-      while (builder.hasNext()) {
-        currentChar = builder.nextCodePoint();
-
-        if (previousChar == MappedCodePoints.CR && currentChar == MappedCodePoints.LF) {
-          continue;
-        }
-
-        final int streamSize = this.stream.length;
-        if (index >= streamSize) {
-          this.stream = Arrays.copyOf(this.stream, MappedCodePoints.DEFAULT_BUFFER_SIZE + streamSize);
-          this.columns = Arrays.copyOf(this.columns, MappedCodePoints.DEFAULT_BUFFER_SIZE + streamSize);
-          this.lines = Arrays.copyOf(this.lines, MappedCodePoints.DEFAULT_BUFFER_SIZE + streamSize);
-        }
-
-        // CR replaced by LF
-        if (currentChar == MappedCodePoints.CR) {
-          this.stream[index] = MappedCodePoints.LF;
-        }
-        // Other characters (Skips CRLF)
-        else {
-          this.stream[index] = currentChar;
-        }
-
-        // Compute lines and columns
-        this.computeLinesAndColumns(index);
-
-        previousChar = currentChar;
-        index++;
-      }
-
-      this.setEosIndex(index);
-
-      if (this.eosIndex == 0) {
-        if (this.filename == null) {
-          throw new MappedCodePointsException("This stream is empty.");
-        } else {
-          throw new MappedCodePointsException("This stream is empty (" + this.filename + ").");
-        }
-      }
-
-      this.stream[this.eosIndex] = MappedCodePoints.EOS;
-      this.computeLinesAndColumns(this.eosIndex);
-    } finally {
-      builder.close();
-    }
+  public static MappedCodePoints map(final Path path, final Charset charset) {
+    return MappedCodePoints.map(path, charset, 1, 1);
   }
 
   /**
-   * Removes all new lines at the end of the stream.
+   * Instantiates a new <code>MappedCodePoints</code> from a file containing code units of a specified encoding.
+   * <p>
+   * The file is memory-mapped and decoded in bulk, which is much faster than going through an
+   * {@link UnicodeInputStream}. As with an {@link UnicodeInputStream}, a BOM is not removed.
    * 
-   * @param index
-   *          is the last index used to map the stream.
+   * @param path
+   *          is the path of the file to be mapped. Its string representation is used as the name of the file.
+   * @param charset
+   *          is the encoding of the code units.
+   * @param debugLinesBefore
+   *          is the number of lines before the line in error to be displayed
+   * @param debugLinesAfter
+   *          is the number of lines after the line in error to be displayed
+   * @return a new <code>MappedCodePoints</code>.
+   * @throws MappedCodePointsException
+   *           if the file is empty, can't be read or is larger than 2 GB.
+   * @throws UnicodeException
+   *           if the data are corrupted.
    */
-  private void setEosIndex(final int index) {
-    int i = 0;
-    for (i = index - 1; i >= 0; i--) {
-      if (this.stream[i] != MappedCodePoints.LF) {
-        break;
-      }
-
-      this.stream[i] = 0;
-      this.lines[i] = 0;
-      this.columns[i] = 0;
-    }
-
-    this.eosIndex = i + 1;
+  public static MappedCodePoints map(final Path path, //
+      final Charset charset, //
+      final int debugLinesBefore, //
+      final int debugLinesAfter) {
+    final String filename = path.toString();
+    final ByteBuffer bytes = MappedCodePoints.mapFile(path, filename);
+    return MappedCodePoints.decode(filename, bytes, charset, debugLinesBefore, debugLinesAfter);
   }
 
   /**
-   * Sets the line and column for a given position.
+   * <p>
+   * Instantiates a new <code>MappedCodePoints</code> from an array of code units of a specified encoding.
+   * <p>
+   * Unlike an {@link UnicodeInputStream}, the code units are decoded in a single loop specialized for the encoding,
+   * which also replaces CR and CRLF by LF and records the start of the lines. As with an {@link UnicodeInputStream}, a
+   * BOM is not removed.
    * 
-   * @param position
-   *          is the position from which we want to set the line and the column.
+   * @param filename
+   *          is the name of the file to be mapped. Can be <code>null</code>.
+   * @param bytes
+   *          is an array of code units.
+   * @param charset
+   *          is the encoding of the code units.
+   * @return a new <code>MappedCodePoints</code>.
+   * @throws MappedCodePointsException
+   *           if the array is empty.
+   * @throws UnicodeException
+   *           if the data are corrupted.
    */
-  private void computeLinesAndColumns(final int position) {
-    final int previousIndex = position - 1;
-    if (this.stream[previousIndex] == MappedCodePoints.LF) {
-      this.lines[position] = this.lines[previousIndex] + 1;
-      this.columns[position] = 1;
-    } else {
-      this.lines[position] = this.lines[previousIndex];
-      this.columns[position] = this.columns[previousIndex] + 1;
-    }
+  public static MappedCodePoints decode(final String filename, final byte[] bytes, final Charset charset) {
+    return MappedCodePoints.decode(filename, ByteBuffer.wrap(bytes), charset, 1, 1);
   }
 
   /**
-   * Returns the name of the file mapped.
+   * <p>
+   * Instantiates a new <code>MappedCodePoints</code> from the code units of a specified encoding contained in a
+   * {@link ByteBuffer}.
+   * <p>
+   * Unlike an {@link UnicodeInputStream}, the code units are decoded in a single loop specialized for the encoding,
+   * which also replaces CR and CRLF by LF and records the start of the lines. As with an {@link UnicodeInputStream}, a
+   * BOM is not removed.
    * 
-   * @return the name of the file mapped.
+   * @param filename
+   *          is the name of the file to be mapped. Can be <code>null</code>.
+   * @param bytes
+   *          is a {@link ByteBuffer} containing code units, from 0 to its limit. Its position is ignored and left
+   *          untouched.
+   * @param charset
+   *          is the encoding of the code units.
+   * @param debugLinesBefore
+   *          is the number of lines before the line in error to be displayed
+   * @param debugLinesAfter
+   *          is the number of lines after the line in error to be displayed
+   * @return a new <code>MappedCodePoints</code>.
+   * @throws MappedCodePointsException
+   *           if the buffer is empty or too large.
+   * @throws UnicodeException
+   *           if the data are corrupted.
    */
-  public String getFilename() {
-    return this.filename;
+  public static MappedCodePoints decode(final String filename, //
+      final ByteBuffer bytes, //
+      final Charset charset, //
+      final int debugLinesBefore, //
+      final int debugLinesAfter) {
+    return new MappedCodePoints(filename, bytes, charset, debugLinesBefore, debugLinesAfter);
   }
 
   /**
-   * Returns the index of the End of the Stream.
+   * <p>
+   * Instantiates a new <code>MappedCodePoints</code> from a sequence of UTF-16 code units, such as a {@link String}.
+   * <p>
+   * The code units are read once: the surrogate pairs are combined, CR and CRLF are replaced by LF and the start of the
+   * lines is recorded in the same loop. As long as there is no code point outside of the Basic Multilingual Plane,
+   * they are written directly in the array kept by the <code>MappedCodePoints</code>. An unpaired surrogate is kept as
+   * is, as {@link String#codePoints()} does.
    * 
-   * @return the index of the End of the Stream.
+   * @param chars
+   *          is a sequence of UTF-16 code units.
+   * @return a new <code>MappedCodePoints</code>.
+   * @throws MappedCodePointsException
+   *           if the sequence is empty.
    */
-  public int getEosIndex() {
-    return this.eosIndex;
+  public static MappedCodePoints of(final CharSequence chars) {
+    return MappedCodePoints.of(null, chars, 1, 1);
   }
 
   /**
-   * Returns the line of a code point in the buffer at a given position.
+   * <p>
+   * Instantiates a new <code>MappedCodePoints</code> from a sequence of UTF-16 code units, such as a {@link String}.
+   * <p>
+   * The code units are read once (see {@link MappedCodePoints#of(CharSequence)}).
    * 
-   * @param position
-   *          is the position of a code point in the buffer.
-   * @return the line of a code point in the buffer at a given position.
+   * @param filename
+   *          is the name of the file to be mapped. Can be <code>null</code>.
+   * @param chars
+   *          is a sequence of UTF-16 code units.
+   * @param debugLinesBefore
+   *          is the number of lines before the line in error to be displayed
+   * @param debugLinesAfter
+   *          is the number of lines after the line in error to be displayed
+   * @return a new <code>MappedCodePoints</code>.
    * @throws MappedCodePointsException
-   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   *           if the sequence is empty.
    */
-  public int getLine(final int position) {
-    if (position < 0 || position > this.eosIndex) {
-      throw new MappedCodePointsException("Index outside of range (" + position
-          + "). It should be greater than or equal to 0 and less than or equal to the end of stream.");
-    }
-    return this.lines[position];
+  public static MappedCodePoints of(final String filename, //
+      final CharSequence chars, //
+      final int debugLinesBefore, //
+      final int debugLinesAfter) {
+    return new MappedCodePoints(filename, MappedCodePoints.read(filename, chars), debugLinesBefore, debugLinesAfter);
   }
 
   /**
-   * Returns the column of a code point in the buffer at a given position.
+   * Instantiates a new <code>MappedCodePoints</code> from a {@link WindowedStorage}.
    * 
-   * @param position
-   *          is the position of a code point in the buffer.
-   * @return the column of a code point in the buffer at a given position.
+   * @param filename
+   *          is the name of the file to be mapped.
+   * @param storage
+   *          is a {@link WindowedStorage}.
+   * @param debugLinesBefore
+   *          is the number of lines before the line in error to be displayed.
+   * @param debugLinesAfter
+   *          is the number of lines after the line in error to be displayed.
    * @throws MappedCodePointsException
-   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   *           if the stream is empty.
    */
-  public int getColumn(final int position) {
-    if (position < 0 || position > this.eosIndex) {
-      throw new MappedCodePointsException("Index outside of range (" + position
-          + "). It should be greater than or equal to 0 and less than or equal to the end of stream.");
-    }
-    return this.columns[position];
+  private MappedCodePoints(final String filename, //
+      final WindowedStorage storage, //
+      final int debugLinesBefore, //
+      final int debugLinesAfter) {
+    this(filename, MappedCodePoints.content(filename, storage), debugLinesBefore, debugLinesAfter);
   }
 
   /**
    * <p>
-   * Returns a code point at a given position in the buffer.
+   * Instantiates a new <code>MappedCodePoints</code> from a file containing code units of a specified encoding, keeping
+   * in memory only a few windows of decoded code points.
    * <p>
-   * <u>Important note</u>: the first code point will be at position 1, 0 being reserved for debugging purposes.
+   * The file is memory-mapped and decoded once, to compute the End Of Stream and the lines. Afterwards, the code points
+   * are decoded again, one window of {@value WindowedStorage#DEFAULT_WINDOW_SIZE} bytes at a time, when they are read.
+   * Reading the code points in order is fast, moving back and forth between distant positions is not.
    * 
-   * @param position
-   *          is the position of a code point in the buffer.
-   * @return the code point at a given position in the buffer.
+   * @param path
+   *          is the path of the file to be mapped. Its string representation is used as the name of the file.
+   * @param charset
+   *          is the encoding of the code units.
+   * @return a new <code>MappedCodePoints</code>.
    * @throws MappedCodePointsException
-   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   *           if the file is empty, can't be read or is larger than 2 GB.
+   * @throws UnicodeException
+   *           if the data are corrupted.
    */
-  public int codePointAt(final int position) {
-    if (position < 0 || position > this.eosIndex) {
-      throw new MappedCodePointsException("Index outside of range (" + position
-          + "). It should be greater than or equal to 0 and less than or equal to the end of stream.");
-    }
-    return this.stream[position];
+  public static MappedCodePoints mapWindowed(final Path path, final Charset charset) {
+    return MappedCodePoints.mapWindowed(path, charset, WindowedStorage.DEFAULT_WINDOW_SIZE, 1, 1);
   }
 
   /**
    * <p>
-   * Returns a debug message, showing:
-   * <ul>
-   * <li>the name of the file mapped by this instance, if any
-   * <li>a custom text, if any
-   * <li>a number of lines before the line in error
-   * <li>a visual position of the code point in error and its line
-   * <li>a number of lines a the line in error
-   * </ul>
-   * <p>
-   * Let's take the following text file named 'myTextFile.txt':
-   * 
-   * <pre>
-   * line number 1
-   * line number 2
-   * lane number 3
-   * line number 4
-   * line number 5
-   * </pre>
-   * 
+   * Instantiates a new <code>MappedCodePoints</code> from a file containing code units of a specified encoding, keeping
+   * in memory only a few windows of decoded code points.
    * <p>
-   * If we call this method with msg = "Expected: 'i'" and position = 16 the returned value would be (if we didn't
-   * change the default values of the number of lines to be shown before and after the error):
-   * 
-   * <pre>
-   * Expected: 'i'
-   * line number 2
-   * lane number 3
-   *  ^__ Line 3
-   * line number 4
-   * </pre>
+   * The file is memory-mapped and decoded once, to compute the End Of Stream and the lines. Afterwards, the code points
+   * are decoded again, one window at a time, when they are read. Reading the code points in order is fast, moving back
+   * and forth between distant positions is not.
    * 
-   * @param msg
-   *          is a custom text displayed after the name of the file if any. Can be <code>null</code> or empty.
-   * @param position
-   *          is the position of the error.
-   * @return a debug message.
+   * @param path
+   *          is the path of the file to be mapped. Its string representation is used as the name of the file.
+   * @param charset
+   *          is the encoding of the code units.
+   * @param windowSize
+   *          is the size of a window in bytes.
+   * @param debugLinesBefore
+   *          is the number of lines before the line in error to be displayed
+   * @param debugLinesAfter
+   *          is the number of lines after the line in error to be displayed
+   * @return a new <code>MappedCodePoints</code>.
    * @throws MappedCodePointsException
-   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   *           if the window size is not greater than 0, if the file is empty, can't be read or is larger than 2 GB.
+   * @throws UnicodeException
+   *           if the data are corrupted.
    */
-  public String debug(final String msg, final int position) {
-    if (position < 0 || position > this.eosIndex) {
-      throw new MappedCodePointsException("Index outside of range (" + position
-          + "). It should be greater than or equal to 0 and less than or equal to the end of stream.");
-    }
-
-    final int line = this.getLine(position);
-    final int column = this.getColumn(position);
-    final int startIndex = this.getDebugStartPosition(line, position);
-    final int lastLineToLog = line + this.debugLinesAfter;
-
-    final CodePoints debugMessage = new CodePoints();
-
-    if (this.filename != null) {
-      debugMessage.add("In file " + this.filename + "\n");
-    }
-
-    // Message
-    if (msg != null && !msg.isEmpty()) {
-      debugMessage.add(msg + "\n");
+  public static MappedCodePoints mapWindowed(final Path path, //
+      final Charset charset, //
+      final int windowSize, //
+      final int debugLinesBefore, //
+      final int debugLinesAfter) {
+    if (windowSize <= 0) {
+      throw new MappedCodePointsException("The size of a window should be greater than 0 (" + windowSize + ").");
     }
 
-    // Lines before error and line with error
-    int i = startIndex;
-    while (i < this.eosIndex && this.lines[i] <= line) {
-      debugMessage.add(this.stream[i++]);
-    }
+    final String filename = path.toString();
+    final ByteBuffer bytes = MappedCodePoints.mapFile(path, filename);
+    return new MappedCodePoints(filename, new WindowedStorage(bytes, charset, windowSize), debugLinesBefore,
+        debugLinesAfter);
+  }
 
-    // Dummy line with caret at error position
-    // Add newline in case of last line of the stream
-    if (i > 0 && this.stream[i - 1] != MappedCodePoints.LF) {
-      debugMessage.add(MappedCodePoints.LF);
+  /**
+   * Instantiates a new <code>MappedCodePoints</code> from a {@link Utf8Storage}.
+   * 
+   * @param filename
+   *          is the name of the file to be mapped.
+   * @param storage
+   *          is a {@link Utf8Storage}.
+   * @param debugLinesBefore
+   *          is the number of lines before the line in error to be displayed.
+   * @param debugLinesAfter
+   *          is the number of lines after the line in error to be displayed.
+   * @throws MappedCodePointsException
+   *           if the stream is empty.
+   */
+  private MappedCodePoints(final String filename, //
+      final Utf8Storage storage, //
+      final int debugLinesBefore, //
+      final int debugLinesAfter) {
+    this(filename, MappedCodePoints.content(filename, storage), debugLinesBefore, debugLinesAfter);
+  }
+
+  /**
+   * <p>
+   * Instantiates a new <code>MappedCodePoints</code> from a file containing UTF-8 code units, without decoding them
+   * into an array of code points.
+   * <p>
+   * The file is memory-mapped and scanned once, to compute the End Of Stream, the lines and the offset of every
+   * {@value Utf8Storage#BLOCK_SIZE}th code point. Afterwards, the code points are decoded from the mapped bytes when
+   * they are read: a mostly ASCII file costs about one byte per code point instead of four, outside of the heap.
+   * <p>
+   * A BOM, if any, is the first code point of the stream, as with {@link Charset#UTF8}.
+   * 
+   * @param path
+   *          is the path of the file to be mapped. Its string representation is used as the name of the file.
+   * @return a new <code>MappedCodePoints</code>.
+   * @throws MappedCodePointsException
+   *           if the file is empty, can't be read or is larger than 2 GB.
+   * @throws UnicodeException
+   *           if the data are corrupted.
+   */
+  public static MappedCodePoints mapUtf8(final Path path) {
+    return MappedCodePoints.mapUtf8(path, 1, 1);
+  }
+
+  /**
+   * <p>
+   * Instantiates a new <code>MappedCodePoints</code> from a file containing UTF-8 code units, without decoding them
+   * into an array of code points.
+   * <p>
+   * The file is memory-mapped and scanned once, to compute the End Of Stream, the lines and the offset of every
+   * {@value Utf8Storage#BLOCK_SIZE}th code point. Afterwards, the code points are decoded from the mapped bytes when
+   * they are read: a mostly ASCII file costs about one byte per code point instead of four, outside of the heap.
+   * <p>
+   * A BOM, if any, is the first code point of the stream, as with {@link Charset#UTF8}.
+   * 
+   * @param path
+   *          is the path of the file to be mapped. Its string representation is used as the name of the file.
+   * @param debugLinesBefore
+   *          is the number of lines before the line in error to be displayed
+   * @param debugLinesAfter
+   *          is the number of lines after the line in error to be displayed
+   * @return a new <code>MappedCodePoints</code>.
+   * @throws MappedCodePointsException
+   *           if the file is empty, can't be read or is larger than 2 GB.
+   * @throws UnicodeException
+   *           if the data are corrupted.
+   */
+  public static MappedCodePoints mapUtf8(final Path path, //
+      final int debugLinesBefore, //
+      final int debugLinesAfter) {
+    final String filename = path.toString();
+    final ByteBuffer bytes = MappedCodePoints.mapFile(path, filename);
+    return new MappedCodePoints(filename, new Utf8Storage(bytes), debugLinesBefore, debugLinesAfter);
+  }
+
+  /**
+   * Instantiates a new <code>MappedCodePoints</code> from a {@link ParallelDecoder}.
+   * 
+   * @param filename
+   *          is the name of the file to be mapped.
+   * @param decoder
+   *          is a {@link ParallelDecoder} which has decoded the whole stream.
+   * @param charset
+   *          is the encoding of the code units.
+   * @param debugLinesBefore
+   *          is the number of lines before the line in error to be displayed.
+   * @param debugLinesAfter
+   *          is the number of lines after the line in error to be displayed.
+   * @throws MappedCodePointsException
+   *           if the stream is empty.
+   */
+  private MappedCodePoints(final String filename, //
+      final ParallelDecoder decoder, //
+      final Charset charset, //
+      final int debugLinesBefore, //
+      final int debugLinesAfter) {
+    this(filename, MappedCodePoints.content(filename, decoder, charset), debugLinesBefore, debugLinesAfter);
+  }
+
+  /**
+   * <p>
+   * Instantiates a new <code>MappedCodePoints</code> from a file containing code units of a specified encoding, decoded
+   * in parallel on the common {@link ForkJoinPool}.
+   * <p>
+   * The file is memory-mapped and cut in chunks of at least {@value ParallelDecoder#DEFAULT_CHUNK_SIZE} bytes, decoded
+   * independently of each other. The lines are computed at the same time. Small files are decoded in a single chunk.
+   * 
+   * @param path
+   *          is the path of the file to be mapped. Its string representation is used as the name of the file.
+   * @param charset
+   *          is the encoding of the code units.
+   * @return a new <code>MappedCodePoints</code>.
+   * @throws MappedCodePointsException
+   *           if the file is empty, can't be read or is larger than 2 GB.
+   * @throws UnicodeException
+   *           if the data are corrupted.
+   */
+  public static MappedCodePoints mapParallel(final Path path, final Charset charset) {
+    return MappedCodePoints.mapParallel(path, charset, ForkJoinPool.commonPool(), 1, 1);
+  }
+
+  /**
+   * <p>
+   * Instantiates a new <code>MappedCodePoints</code> from a file containing code units of a specified encoding, decoded
+   * in parallel on a {@link ForkJoinPool}.
+   * <p>
+   * The file is memory-mapped and cut in chunks of at least {@value ParallelDecoder#DEFAULT_CHUNK_SIZE} bytes, decoded
+   * independently of each other. The lines are computed at the same time. Small files are decoded in a single chunk.
+   * 
+   * @param path
+   *          is the path of the file to be mapped. Its string representation is used as the name of the file.
+   * @param charset
+   *          is the encoding of the code units.
+   * @param pool
+   *          is the pool decoding the chunks.
+   * @param debugLinesBefore
+   *          is the number of lines before the line in error to be displayed
+   * @param debugLinesAfter
+   *          is the number of lines after the line in error to be displayed
+   * @return a new <code>MappedCodePoints</code>.
+   * @throws MappedCodePointsException
+   *           if the file is empty, can't be read or is larger than 2 GB.
+   * @throws UnicodeException
+   *           if the data are corrupted.
+   */
+  public static MappedCodePoints mapParallel(final Path path, //
+      final Charset charset, //
+      final ForkJoinPool pool, //
+      final int debugLinesBefore, //
+      final int debugLinesAfter) {
+    final String filename = path.toString();
+    final ByteBuffer bytes = MappedCodePoints.mapFile(path, filename);
+    return MappedCodePoints.mapParallel(filename, bytes, charset, pool, ParallelDecoder.DEFAULT_CHUNK_SIZE,
+        debugLinesBefore, debugLinesAfter);
+  }
+
+  /**
+   * Instantiates a new <code>MappedCodePoints</code> from the code units of a specified encoding contained in a
+   * {@link ByteBuffer}, decoded in parallel on a {@link ForkJoinPool}.
+   * 
+   * @param filename
+   *          is the name of the file to be mapped.
+   * @param bytes
+   *          is a {@link ByteBuffer} containing code units, from 0 to its limit.
+   * @param charset
+   *          is the encoding of the code units.
+   * @param pool
+   *          is the pool decoding the chunks.
+   * @param chunkSize
+   *          is the minimum size of a chunk in bytes.
+   * @param debugLinesBefore
+   *          is the number of lines before the line in error to be displayed
+   * @param debugLinesAfter
+   *          is the number of lines after the line in error to be displayed
+   * @return a new <code>MappedCodePoints</code>.
+   * @throws MappedCodePointsException
+   *           if the buffer is empty or too large.
+   * @throws UnicodeException
+   *           if the data are corrupted.
+   */
+  static MappedCodePoints mapParallel(final String filename, //
+      final ByteBuffer bytes, //
+      final Charset charset, //
+      final ForkJoinPool pool, //
+      final int chunkSize, //
+      final int debugLinesBefore, //
+      final int debugLinesAfter) {
+    MappedCodePoints.checkSize(filename, bytes.limit(), charset);
+    return new MappedCodePoints(filename, new ParallelDecoder(bytes, charset, pool, chunkSize), charset,
+        debugLinesBefore, debugLinesAfter);
+  }
+
+  /**
+   * Instantiates a new <code>MappedCodePoints</code> from the code points of another one, once edited.
+   * 
+   * @param source
+   *          is the <code>MappedCodePoints</code> before the edit.
+   * @param storage
+   *          is the code points after the edit.
+   * @param lineIndex
+   *          is the lines after the edit, or <code>null</code> to build them on demand.
+   * @param eosIndex
+   *          is the index of the End Of Stream after the edit.
+   */
+  private MappedCodePoints(final MappedCodePoints source, //
+      final CodePointStorage storage, //
+      final LineIndex lineIndex, //
+      final int eosIndex) {
+    this.filename = source.filename;
+    this.debugLinesBefore = source.debugLinesBefore;
+    this.debugLinesAfter = source.debugLinesAfter;
+    this.storage = storage;
+    this.lineIndex = lineIndex;
+    this.eosIndex = eosIndex;
+    this.byteOffsets = null;
+  }
+
+  /**
+   * Instantiates a new <code>MappedCodePoints</code> from code points and lines already normalized, for instance
+   * loaded from a snapshot (see {@link MappedCodePointsSnapshot}).
+   * 
+   * @param filename
+   *          is the name of the file mapped.
+   * @param storage
+   *          is the code points, without any CR, the new lines at the end of the stream removed.
+   * @param lineIndex
+   *          is the lines of the code points.
+   * @param eosIndex
+   *          is the index of the End Of Stream.
+   * @param debugLinesBefore
+   *          is the number of lines before the line in error to be displayed.
+   * @param debugLinesAfter
+   *          is the number of lines after the line in error to be displayed.
+   */
+  MappedCodePoints(final String filename, //
+      final CodePointStorage storage, //
+      final LineIndex lineIndex, //
+      final int eosIndex, //
+      final int debugLinesBefore, //
+      final int debugLinesAfter) {
+    this(filename, new Content(storage, eosIndex, lineIndex, null), debugLinesBefore, debugLinesAfter);
+  }
+
+  /**
+   * Instantiates a new <code>MappedCodePoints</code> from code points already decoded and normalized.
+   * 
+   * @param filename
+   *          is the name of the file mapped.
+   * @param content
+   *          is the code points, their lines if they are known and their byte offsets if they are known.
+   * @param debugLinesBefore
+   *          is the number of lines before the line in error to be displayed.
+   * @param debugLinesAfter
+   *          is the number of lines after the line in error to be displayed.
+   */
+  private MappedCodePoints(final String filename, //
+      final Content content, //
+      final int debugLinesBefore, //
+      final int debugLinesAfter) {
+    this.filename = filename;
+    this.debugLinesBefore = debugLinesBefore > 0 ? debugLinesBefore : 1;
+    this.debugLinesAfter = debugLinesAfter > 0 ? debugLinesAfter : 1;
+    this.storage = content.storage;
+    this.lineIndex = content.lineIndex;
+    this.eosIndex = content.eosIndex;
+    this.byteOffsets = content.byteOffsets;
+  }
+
+  /**
+   * Memory-maps a file.
+   * 
+   * @param path
+   *          is the path of the file to be mapped.
+   * @param filename
+   *          is the name of the file, used in the exception messages.
+   * @return a read-only {@link ByteBuffer} containing the whole file.
+   * @throws MappedCodePointsException
+   *           if the file can't be read or is larger than 2 GB.
+   */
+  static ByteBuffer mapFile(final Path path, final String filename) {
+    try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      final long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw MappedCodePoints.tooLargeException(filename);
+      }
+
+      // The mapping remains valid after the channel is closed
+      return channel.map(MapMode.READ_ONLY, 0, size);
+    } catch (final IOException e) {
+      throw new MappedCodePointsException("Impossible to read this file (" + filename + ").", e);
+    }
+  }
+
+  /**
+   * Instantiates a new <code>MappedCodePoints</code> from a {@link MappedStreamBuilder}, an object allowing us to
+   * transparently iterate over an array of int or an {@link UnicodeInputStream}.
+   * 
+   * @param filename
+   *          is the name of the file to be mapped.
+   * @param builder
+   *          is a {@link MappedStreamBuilder}
+   * @param debugLinesBefore
+   *          is the number of lines before the line in error to be displayed.
+   * @param debugLinesAfter
+   *          is the number of lines after the line in error to be displayed.
+   */
+  private MappedCodePoints(final String filename, //
+      final MappedStreamBuilder builder, //
+      final int debugLinesBefore, //
+      final int debugLinesAfter) {
+    this(filename, MappedCodePoints.read(filename, builder), debugLinesBefore, debugLinesAfter);
+  }
+
+  /**
+   * <p>
+   * Decodes the code units contained by an {@link UnicodeInputStream} from a specified encoding to code points (or
+   * processes the code points directly) and sets the line and the column of this code point in a virtual file.
+   * <p>
+   * Moreover, CR and CRLF are both replaced by LF code point (U+000A).
+   *
+   * @param filename
+   *          is the name of the file to be mapped.
+   * @param builder
+   *          is a {@link MappedStreamBuilder} pointing to an array of code units or an array of code points.
+   * @return the code points and their byte offsets if the source is made of code units.
+   * @throws MappedCodePointsException
+   *           if the stream is empty or too large.
+   */
+  private static Content read(final String filename, final MappedStreamBuilder builder) {
+    try {
+      // Reads the first character to check if the stream is empty or not
+      if (!builder.hasNext()) {
+        throw MappedCodePoints.emptyStreamException(filename);
+      }
+
+      final Charset charset = builder.charset();
+      final ByteOffsets.Builder byteOffsets = charset == null ? null : new ByteOffsets.Builder();
+
+      // +2 for [before stream] and the End Of Stream
+      final int sizeHint = builder.sizeHint();
+      int[] stream = new int[sizeHint > 0 && sizeHint <= MappedCodePoints.MAX_ARRAY_SIZE - 2 ? sizeHint + 2
+          : MappedCodePoints.DEFAULT_BUFFER_SIZE];
+
+      // Before stream
+      stream[0] = MappedCodePoints.LF;
+
+      int currentChar = 0;
+      int previousChar = 0;
+
+      // Reads characters
+      int index = 1; // 0 is for [before stream]
+      while (builder.hasNext()) {
+        currentChar = builder.nextCodePoint();
+
+        if (previousChar == MappedCodePoints.CR && currentChar == MappedCodePoints.LF) {
+          // The bytes of the LF are added to the LF replacing the CR
+          if (byteOffsets != null) {
+            byteOffsets.add(index - 1, builder.byteWidth());
+          }
+          previousChar = currentChar;
+          continue;
+        }
+
+        final int streamSize = stream.length;
+        if (index >= streamSize) {
+          if (streamSize >= MappedCodePoints.MAX_ARRAY_SIZE) {
+            throw MappedCodePoints.tooLargeException(filename);
+          }
+          stream = Arrays.copyOf(stream,
+              (int) Math.min(streamSize + (long) (streamSize >> 1), MappedCodePoints.MAX_ARRAY_SIZE));
+        }
+
+        // CR replaced by LF
+        if (currentChar == MappedCodePoints.CR) {
+          stream[index] = MappedCodePoints.LF;
+        }
+        // Other characters (Skips CRLF)
+        else {
+          stream[index] = currentChar;
+        }
+
+        // Code points not encoded with the smallest number of bytes
+        if (byteOffsets != null) {
+          final int extraBytes = builder.byteWidth() - ByteOffsets.width(currentChar, charset);
+          if (extraBytes != 0) {
+            byteOffsets.add(index, extraBytes);
+          }
+        }
+
+        previousChar = currentChar;
+        index++;
+      }
+
+      final Content content = MappedCodePoints.terminate(filename, stream, index);
+      if (byteOffsets == null) {
+        return content;
+      }
+      return content.with(null, byteOffsets.build(charset, content.storage, content.eosIndex));
+    } finally {
+      builder.close();
+    }
+  }
+
+  /**
+   * <p>
+   * Decodes in bulk the code units of a specified encoding contained in a {@link ByteBuffer} to code points.
+   * <p>
+   * Moreover, CR and CRLF are both replaced by LF code point (U+000A), and the start of the lines and the byte offsets
+   * are recorded in the same loop (see {@link BulkDecoder}).
+   *
+   * @param filename
+   *          is the name of the file to be mapped.
+   * @param bytes
+   *          is a {@link ByteBuffer} containing code units, from 0 to its limit.
+   * @param charset
+   *          is the encoding of the code units.
+   * @return the code points, their lines and their byte offsets.
+   * @throws MappedCodePointsException
+   *           if the buffer is empty or too large.
+   * @throws UnicodeException
+   *           if the data are corrupted.
+   */
+  private static Content decodeInBulk(final String filename, final ByteBuffer bytes, final Charset charset) {
+    final int length = bytes.limit();
+    if (length == 0) {
+      throw MappedCodePoints.emptyStreamException(filename);
+    }
+    MappedCodePoints.checkSize(filename, length, charset);
+    BulkDecoder.checkCodeUnits(length, charset);
+
+    // Each code point needs at least one code unit, +2 for [before stream] and the End Of Stream
+    final int[] stream = new int[BulkDecoder.maxCodePoints(length, charset) + 2];
+
+    // Before stream
+    stream[0] = MappedCodePoints.LF;
+
+    final ByteBuffer orderedBytes = BulkDecoder.withByteOrder(bytes, charset);
+    final ByteOffsets.Builder byteOffsets = new ByteOffsets.Builder();
+    final LineIndex.Builder lines = new LineIndex.Builder();
+    final int index = BulkDecoder.decode(orderedBytes, 0, length, charset, false, stream, 1, byteOffsets, lines);
+    final Content content = MappedCodePoints.terminate(filename, stream, index);
+    return content.with(lines.build(content.eosIndex), byteOffsets.build(charset, content.storage, content.eosIndex));
+  }
+
+  /**
+   * <p>
+   * Reads a sequence of UTF-16 code units to code points.
+   * <p>
+   * Moreover, CR and CRLF are both replaced by LF code point (U+000A), and the start of the lines are recorded in the
+   * same loop. The code points are written in an array of <code>char</code> until the first surrogate pair, and kept by
+   * a {@link ByteArrayStorage} if all of them are up to U+00FF, by a {@link CharArrayStorage} otherwise. The rest of
+   * the sequence is then read to an array of <code>int</code> (see {@link CodePointStorage#of(int[], int)}).
+   *
+   * @param filename
+   *          is the name of the file to be mapped.
+   * @param chars
+   *          is a sequence of UTF-16 code units.
+   * @return the code points and their lines.
+   * @throws MappedCodePointsException
+   *           if the sequence is empty.
+   */
+  private static Content read(final String filename, final CharSequence chars) {
+    final int length = chars.length();
+
+    // At most one code point per code unit, +1 for [before stream]
+    final char[] stream = new char[length + 1];
+
+    // Before stream
+    stream[0] = (char) MappedCodePoints.LF;
+
+    final LineIndex.Builder lines = new LineIndex.Builder();
+    int eosIndex = 0; // Position following the last code point which is not a LF
+    int index = 1; // 0 is for [before stream]
+    int bits = 0; // All the bits set in at least one code point
+    for (int i = 0; i < length; i++) {
+      final char c = chars.charAt(i);
+      if (c == MappedCodePoints.CR || c == MappedCodePoints.LF) {
+        // CR replaced by LF, CRLF skipped
+        if (c == MappedCodePoints.CR && i + 1 < length && chars.charAt(i + 1) == MappedCodePoints.LF) {
+          i++;
+        }
+        stream[index] = (char) MappedCodePoints.LF;
+        lines.addLineFeed(index++);
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars.charAt(i + 1))) {
+        return MappedCodePoints.readSupplementary(filename, chars, i, stream, index, lines);
+      } else {
+        stream[index++] = c;
+        bits |= c;
+        eosIndex = index;
+      }
+    }
+
+    if (eosIndex == 0) {
+      throw MappedCodePoints.emptyStreamException(filename);
+    }
+
+    // Trailing new lines removed
+    if ((bits & ~0xFF) == 0) {
+      return new Content(new ByteArrayStorage(stream, eosIndex), eosIndex, lines.build(eosIndex), null);
+    }
+    final char[] codePoints = eosIndex == stream.length ? stream : Arrays.copyOf(stream, eosIndex);
+    return new Content(new CharArrayStorage(codePoints), eosIndex, lines.build(eosIndex), null);
+  }
+
+  /**
+   * Reads the rest of a sequence of UTF-16 code units to code points, from its first surrogate pair.
+   *
+   * @param filename
+   *          is the name of the file to be mapped.
+   * @param chars
+   *          is a sequence of UTF-16 code units.
+   * @param from
+   *          is the index of the first surrogate pair in the sequence.
+   * @param read
+   *          is the code points read before the first surrogate pair.
+   * @param index
+   *          is the position of the first surrogate pair.
+   * @param lines
+   *          is the start of the lines read before the first surrogate pair.
+   * @return the code points and their lines.
+   */
+  private static Content readSupplementary(final String filename, //
+      final CharSequence chars, //
+      final int from, //
+      final char[] read, //
+      final int index, //
+      final LineIndex.Builder lines) {
+    final int length = chars.length();
+
+    // +1 for the End Of Stream
+    final int[] stream = new int[read.length + 1];
+    for (int i = 0; i < index; i++) {
+      stream[i] = read[i];
+    }
+
+    int position = index;
+    for (int i = from; i < length; i++) {
+      final char c = chars.charAt(i);
+      if (c == MappedCodePoints.CR || c == MappedCodePoints.LF) {
+        if (c == MappedCodePoints.CR && i + 1 < length && chars.charAt(i + 1) == MappedCodePoints.LF) {
+          i++;
+        }
+        stream[position] = MappedCodePoints.LF;
+        lines.addLineFeed(position++);
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars.charAt(i + 1))) {
+        stream[position++] = Character.toCodePoint(c, chars.charAt(++i));
+      } else {
+        stream[position++] = c;
+      }
+    }
+
+    final Content content = MappedCodePoints.terminate(filename, stream, position);
+    return content.with(lines.build(content.eosIndex), null);
+  }
+
+  /**
+   * Returns the content of a {@link WindowedStorage}.
+   *
+   * @param filename
+   *          is the name of the file to be mapped.
+   * @param storage
+   *          is a {@link WindowedStorage}.
+   * @return the code points, their lines and their byte offsets.
+   * @throws MappedCodePointsException
+   *           if the stream is empty.
+   */
+  private static Content content(final String filename, final WindowedStorage storage) {
+    if (storage.getEosIndex() == 0) {
+      throw MappedCodePoints.emptyStreamException(filename);
+    }
+    return new Content(storage, storage.getEosIndex(), storage.getLineIndex(), storage.getByteOffsets());
+  }
+
+  /**
+   * Returns the content of a {@link Utf8Storage}.
+   *
+   * @param filename
+   *          is the name of the file to be mapped.
+   * @param storage
+   *          is a {@link Utf8Storage}.
+   * @return the code points, their lines and their byte offsets.
+   * @throws MappedCodePointsException
+   *           if the stream is empty.
+   */
+  private static Content content(final String filename, final Utf8Storage storage) {
+    if (storage.getEosIndex() == 0) {
+      throw MappedCodePoints.emptyStreamException(filename);
+    }
+    return new Content(storage, storage.getEosIndex(), storage.getLineIndex(), storage.getByteOffsets());
+  }
+
+  /**
+   * Returns the content decoded by a {@link ParallelDecoder}.
+   *
+   * @param filename
+   *          is the name of the file to be mapped.
+   * @param decoder
+   *          is a {@link ParallelDecoder} which has decoded the whole stream.
+   * @param charset
+   *          is the encoding of the code units.
+   * @return the code points, their lines and their byte offsets.
+   * @throws MappedCodePointsException
+   *           if the stream is empty.
+   */
+  private static Content content(final String filename, final ParallelDecoder decoder, final Charset charset) {
+    final Content content = MappedCodePoints.terminate(filename, decoder.getCodePoints(), decoder.getIndex());
+    return content.with(decoder.getLineIndex(content.eosIndex),
+        decoder.getByteOffsets().build(charset, content.storage, content.eosIndex));
+  }
+
+  /**
+   * Removes the new lines at the end of the stream and stores the code points with the smallest type able to hold all
+   * of them (see {@link CodePointStorage#of(int[], int)}).
+   *
+   * @param filename
+   *          is the name of the file to be mapped.
+   * @param buffer
+   *          is the array of code points.
+   * @param index
+   *          is the last index used to map the stream.
+   * @return the code points.
+   * @throws MappedCodePointsException
+   *           if the stream is empty.
+   */
+  private static Content terminate(final String filename, final int[] buffer, final int index) {
+    final int eosIndex = MappedCodePoints.removeTrailingNewLines(buffer, index);
+
+    if (eosIndex == 0) {
+      throw MappedCodePoints.emptyStreamException(filename);
+    }
+
+    return new Content(CodePointStorage.of(buffer, eosIndex), eosIndex, null, null);
+  }
+
+  /**
+   * Returns the exception thrown when the stream is empty.
+   *
+   * @param filename
+   *          is the name of the file mapped, if any.
+   * @return the exception thrown when the stream is empty.
+   */
+  private static MappedCodePointsException emptyStreamException(final String filename) {
+    if (filename == null) {
+      return new MappedCodePointsException("This stream is empty.");
+    } else {
+      return new MappedCodePointsException("This stream is empty (" + filename + ").");
+    }
+  }
+
+  /**
+   * Returns the exception thrown when the stream is too large to be mapped.
+   *
+   * @param filename
+   *          is the name of the file mapped, if any.
+   * @return the exception thrown when the stream is too large to be mapped.
+   */
+  private static MappedCodePointsException tooLargeException(final String filename) {
+    if (filename == null) {
+      return new MappedCodePointsException("This stream is too large.");
+    } else {
+      return new MappedCodePointsException("This file is too large (" + filename + ").");
+    }
+  }
+
+  /**
+   * Checks that the code points a number of bytes can hold, [before stream] and the End Of Stream fit in an array.
+   *
+   * @param filename
+   *          is the name of the file mapped, if any.
+   * @param length
+   *          is the number of bytes.
+   * @param charset
+   *          is the encoding of the bytes.
+   * @throws MappedCodePointsException
+   *           if the stream is too large.
+   */
+  static void checkSize(final String filename, final int length, final Charset charset) {
+    if (BulkDecoder.maxCodePoints(length, charset) > MappedCodePoints.MAX_ARRAY_SIZE - 2) {
+      throw MappedCodePoints.tooLargeException(filename);
+    }
+  }
+
+  /**
+   * Removes all new lines at the end of the stream.
+   * 
+   * @param stream
+   *          is the array of code points.
+   * @param index
+   *          is the last index used to map the stream.
+   * @return the index of the End Of Stream.
+   */
+  private static int removeTrailingNewLines(final int[] stream, final int index) {
+    int i = 0;
+    for (i = index - 1; i >= 0; i--) {
+      if (stream[i] != MappedCodePoints.LF) {
+        break;
+      }
+
+      stream[i] = 0;
+    }
+
+    return i + 1;
+  }
+
+  /**
+   * Returns the lines of the stream, building them the first time this method is called. The initialization is done
+   * only once, even if several threads call this method at the same time.
+   *
+   * @return the lines of the stream.
+   */
+  LineIndex getLineIndex() {
+    LineIndex lineIndex = this.lineIndex;
+    if (lineIndex == null) {
+      synchronized (this) {
+        lineIndex = this.lineIndex;
+        if (lineIndex == null) {
+          final LineIndex.Builder builder = new LineIndex.Builder();
+          for (int i = 1; i < this.eosIndex; i++) {
+            if (this.storage.codePointAt(i) == MappedCodePoints.LF) {
+              builder.addLineFeed(i);
+            }
+          }
+
+          lineIndex = builder.build(this.eosIndex);
+          this.lineIndex = lineIndex;
+        }
+      }
+    }
+    return lineIndex;
+  }
+
+  /**
+   * Returns the name of the file mapped.
+   * 
+   * @return the name of the file mapped.
+   */
+  public String getFilename() {
+    return this.filename;
+  }
+
+  /**
+   * Returns the name of the file mapped, which contains all the positions.
+   * 
+   * @param position
+   *          is the position of a code point in the buffer.
+   * @return the name of the file mapped.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  public String getFilename(final int position) {
+    if (position < 0 || position > this.eosIndex) {
+      throw new MappedCodePointsException("Index outside of range (" + position
+          + "). It should be greater than or equal to 0 and less than or equal to the end of stream.");
+    }
+    return this.filename;
+  }
+
+  /**
+   * Returns the index of the End of the Stream.
+   * 
+   * @return the index of the End of the Stream.
+   */
+  public int getEosIndex() {
+    return this.eosIndex;
+  }
+
+  /**
+   * Returns the line of a code point in the buffer at a given position.
+   * 
+   * @param position
+   *          is the position of a code point in the buffer.
+   * @return the line of a code point in the buffer at a given position.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  public int getLine(final int position) {
+    if (position < 0 || position > this.eosIndex) {
+      throw new MappedCodePointsException("Index outside of range (" + position
+          + "). It should be greater than or equal to 0 and less than or equal to the end of stream.");
+    }
+    return this.getLineIndex().lineOf(position);
+  }
+
+  /**
+   * Returns the column of a code point in the buffer at a given position.
+   * 
+   * @param position
+   *          is the position of a code point in the buffer.
+   * @return the column of a code point in the buffer at a given position.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  public int getColumn(final int position) {
+    if (position < 0 || position > this.eosIndex) {
+      throw new MappedCodePointsException("Index outside of range (" + position
+          + "). It should be greater than or equal to 0 and less than or equal to the end of stream.");
+    }
+    return this.getLineIndex().columnOf(position);
+  }
+
+  /**
+   * <p>
+   * Returns the line of a code point in the buffer at a given position, starting the search from a line given by the
+   * caller, typically the line of the previous code point read by the same cursor.
+   * <p>
+   * The hint only saves the binary search of {@link #getLine(int)} when the code points are read sequentially: if the
+   * position is in the line of the hint or in the following one, the line is returned without any search. Otherwise
+   * the result is the same as {@link #getLine(int)}. Neither method writes anything, so many cursors can read the same
+   * instance in parallel.
+   * 
+   * @param position
+   *          is the position of a code point in the buffer.
+   * @param lineHint
+   *          is a line where the search starts. If it is not a line of this stream, it is ignored.
+   * @return the line of a code point in the buffer at a given position.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  public int getLine(final int position, final int lineHint) {
+    if (position < 0 || position > this.eosIndex) {
+      throw new MappedCodePointsException("Index outside of range (" + position
+          + "). It should be greater than or equal to 0 and less than or equal to the end of stream.");
+    }
+    final LineIndex lineIndex = this.getLineIndex();
+    return lineIndex.lineOf(position, lineHint < 0 || lineHint > lineIndex.getLastLine() ? 0 : lineHint);
+  }
+
+  /**
+   * Returns the column of a code point in the buffer at a given position, starting the search of its line from a line
+   * given by the caller (see {@link #getLine(int, int)}).
+   * 
+   * @param position
+   *          is the position of a code point in the buffer.
+   * @param lineHint
+   *          is a line where the search starts. If it is not a line of this stream, it is ignored.
+   * @return the column of a code point in the buffer at a given position.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  public int getColumn(final int position, final int lineHint) {
+    return this.getLineIndex().columnOf(position, this.getLine(position, lineHint));
+  }
+
+  /**
+   * <p>
+   * Returns the column of a code point in the buffer at a given position, the columns being counted with a
+   * {@link ColumnModel} (UTF-16 code units, tabs expanded...).
+   * <p>
+   * The columns of a model are computed in one pass over the stream the first time they are asked for, and kept for
+   * the following calls as long as this MappedCodePoints. The model is the key of this cache: a new instance of a
+   * model which doesn't override {@link Object#equals(Object)} (an anonymous class created for each call, for
+   * instance) adds a new index each time, which is never evicted. Models should therefore be shared constants.
+   * 
+   * @param position
+   *          is the position of a code point in the buffer.
+   * @param model
+   *          is the way the columns are counted.
+   * @return the column of a code point in the buffer at a given position.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  public int getColumn(final int position, final ColumnModel model) {
+    return this.getColumn(position, 0, model);
+  }
+
+  /**
+   * Returns the column of a code point in the buffer at a given position, the columns being counted with a
+   * {@link ColumnModel}, starting the search of its line from a line given by the caller (see
+   * {@link #getLine(int, int)}).
+   * 
+   * @param position
+   *          is the position of a code point in the buffer.
+   * @param lineHint
+   *          is a line where the search starts. If it is not a line of this stream, it is ignored.
+   * @param model
+   *          is the way the columns are counted.
+   * @return the column of a code point in the buffer at a given position.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  public int getColumn(final int position, final int lineHint, final ColumnModel model) {
+    final int line = this.getLine(position, lineHint);
+    if (position == 0) {
+      return 0;
+    }
+
+    final LineIndex lineIndex = this.getLineIndex();
+    final int lineStart = lineIndex.lineStart(line);
+    if (model == ColumnModel.CODE_POINTS) {
+      return position - lineStart + 1;
+    }
+    return this.columnIndexes
+        .computeIfAbsent(model, m -> ColumnIndex.build(this.storage, this.eosIndex, lineIndex.getLastLine(), m))
+        .columnOf(position, line, lineStart);
+  }
+
+  /**
+   * <p>
+   * Returns the number of lines of the stream, the line of the End Of Stream being the last one.
+   * <p>
+   * The lines are numbered from 1 to the number of lines, line 0 containing only the position 0 (reserved for
+   * debugging purposes).
+   * 
+   * @return the number of lines of the stream.
+   */
+  public int getLineCount() {
+    return this.getLineIndex().getLastLine();
+  }
+
+  /**
+   * Returns the position of the first code point of a line.
+   * 
+   * @param line
+   *          is a line between 0 and the number of lines (included).
+   * @return the position of the first code point of the line.
+   * @throws MappedCodePointsException
+   *           if the line is out of range (<tt>line &lt; 0 || line &gt; getLineCount()</tt>).
+   */
+  public int getLineStart(final int line) {
+    final LineIndex lineIndex = this.getLineIndex();
+    this.checkLine(lineIndex, line);
+    return lineIndex.lineStart(line);
+  }
+
+  /**
+   * Returns the position following the last code point of a line, its LF excluded: the position of the LF ending the
+   * line, or the End Of Stream for the last line.
+   * 
+   * @param line
+   *          is a line between 0 and the number of lines (included).
+   * @return the position following the last code point of the line.
+   * @throws MappedCodePointsException
+   *           if the line is out of range (<tt>line &lt; 0 || line &gt; getLineCount()</tt>).
+   */
+  public int getLineEnd(final int line) {
+    final LineIndex lineIndex = this.getLineIndex();
+    this.checkLine(lineIndex, line);
+    return line < lineIndex.getLastLine() ? lineIndex.lineStart(line + 1) - 1 : this.eosIndex;
+  }
+
+  /**
+   * Copies the code points of a line, its LF excluded, to an array: the code points from
+   * {@link #getLineStart(int)} to {@link #getLineEnd(int)}.
+   * 
+   * @param line
+   *          is a line between 0 and the number of lines (included).
+   * @param dst
+   *          is the array receiving the code points.
+   * @param offset
+   *          is the index in <code>dst</code> of the first code point.
+   * @return the number of code points copied.
+   * @throws MappedCodePointsException
+   *           if the line is out of range (<tt>line &lt; 0 || line &gt; getLineCount()</tt>) or if <code>dst</code> is
+   *           too small.
+   */
+  public int copyLine(final int line, final int[] dst, final int offset) {
+    final int start = this.getLineStart(line);
+    final int end = this.getLineEnd(line);
+    this.copyCodePoints(start, end, dst, offset);
+    return end - start;
+  }
+
+  /**
+   * Checks a line.
+   * 
+   * @param lineIndex
+   *          is the lines of the stream.
+   * @param line
+   *          is a line.
+   * @throws MappedCodePointsException
+   *           if the line is out of range (<tt>line &lt; 0 || line &gt; getLineCount()</tt>).
+   */
+  private void checkLine(final LineIndex lineIndex, final int line) {
+    if (line < 0 || line > lineIndex.getLastLine()) {
+      throw new MappedCodePointsException("Line outside of range (" + line
+          + "). It should be greater than or equal to 0 and less than or equal to the number of lines.");
+    }
+  }
+
+  /**
+   * <p>
+   * Returns a code point at a given position in the buffer.
+   * <p>
+   * <u>Important note</u>: the first code point will be at position 1, 0 being reserved for debugging purposes.
+   * 
+   * @param position
+   *          is the position of a code point in the buffer.
+   * @return the code point at a given position in the buffer.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  public int codePointAt(final int position) {
+    if (position < 0 || position > this.eosIndex) {
+      throw new MappedCodePointsException("Index outside of range (" + position
+          + "). It should be greater than or equal to 0 and less than or equal to the end of stream.");
+    }
+    return this.storage.codePointAt(position);
+  }
+
+  /**
+   * <p>
+   * Copies the code points between two positions to an array.
+   * <p>
+   * The positions are checked once for the whole range, and the code points are copied in bulk (with
+   * {@link System#arraycopy(Object, int, Object, int, int)} if they are held as <code>int</code>).
+   * 
+   * @param start
+   *          is the position of the first code point to be copied.
+   * @param end
+   *          is the position following the last code point to be copied.
+   * @param dst
+   *          is the array receiving the code points.
+   * @param offset
+   *          is the index in <code>dst</code> of the first code point.
+   * @throws MappedCodePointsException
+   *           if the positions are out of range (<tt>start &lt; 0 || start &gt; end || end &gt; getEosIndex()</tt>)
+   *           or if <code>dst</code> is too small (<tt>offset &lt; 0 || offset + end - start &gt; dst.length</tt>).
+   */
+  public void copyCodePoints(final int start, final int end, final int[] dst, final int offset) {
+    this.checkRange(start, end);
+    if (offset < 0 || offset > dst.length - (end - start)) {
+      throw new MappedCodePointsException("Destination outside of range (" + offset + ", " + (end - start)
+          + "). The offset should be greater than or equal to 0 and the code points should fit in the array.");
+    }
+    this.storage.copyTo(start, end, dst, offset);
+  }
+
+  /**
+   * <p>
+   * Performs an action for each code point between two positions, in order.
+   * <p>
+   * The positions are checked once for the whole range, and the code points are read in a loop without any call to
+   * {@link #codePointAt(int)}.
+   * 
+   * @param start
+   *          is the position of the first code point.
+   * @param end
+   *          is the position following the last code point.
+   * @param action
+   *          is the action to be performed for each code point.
+   * @throws MappedCodePointsException
+   *           if the positions are out of range (<tt>start &lt; 0 || start &gt; end || end &gt; getEosIndex()</tt>).
+   */
+  public void forEach(final int start, final int end, final IntConsumer action) {
+    this.checkRange(start, end);
+    this.storage.forEach(start, end, action);
+  }
+
+  /**
+   * <p>
+   * Returns a read-only {@link IntBuffer} containing the code points, the index of a code point in the buffer being
+   * its position: from the position 0 (reserved for debugging purposes) to the End Of Stream (included).
+   * <p>
+   * The buffer is a view of the code points if they are held in an array of <code>int</code> (code points outside of
+   * the Basic Multilingual Plane), otherwise a copy.
+   * 
+   * @return a read-only {@link IntBuffer} containing the code points.
+   */
+  public IntBuffer asIntBuffer() {
+    return this.storage.asIntBuffer(this.eosIndex);
+  }
+
+  /**
+   * Checks a range of positions.
+   * 
+   * @param start
+   *          is the position of the first code point of the range.
+   * @param end
+   *          is the position following the last code point of the range.
+   * @throws MappedCodePointsException
+   *           if the positions are out of range (<tt>start &lt; 0 || start &gt; end || end &gt; getEosIndex()</tt>).
+   */
+  private void checkRange(final int start, final int end) {
+    if (start < 0 || start > end || end > this.eosIndex) {
+      throw new MappedCodePointsException("Range outside of the stream (" + start + ", " + end
+          + "). It should be greater than or equal to 0 and less than or equal to the end of stream.");
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the offset of the first byte of a code point in the source, for instance to seek to an error in the
+   * original file. The offset of a LF replacing a CRLF is the offset of the CR. For the End Of Stream, it is the offset
+   * following the last code point (the new lines at the end of the stream being ignored).
+   * <p>
+   * Only the code points not encoded with the smallest number of bytes (CRLF, overlong UTF-8 sequences) are recorded
+   * while decoding. The first call computes the offset of one code point every {@value ByteOffsets#CHECKPOINT_INTERVAL}
+   * code points, the next ones sum the widths of at most {@value ByteOffsets#CHECKPOINT_INTERVAL} code points.
+   * 
+   * @param position
+   *          is the position of a code point in the buffer.
+   * @return the offset of the first byte of the code point in the source (0 for the position 0).
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>), or if the
+   *           offsets are unknown (instance created from an array of code points, loaded from a snapshot, or
+   *           edited).
+   */
+  public long byteOffsetOf(final int position) {
+    if (position < 0 || position > this.eosIndex) {
+      throw new MappedCodePointsException("Index outside of range (" + position
+          + "). It should be greater than or equal to 0 and less than or equal to the end of stream.");
+    }
+    if (this.byteOffsets == null) {
+      throw new MappedCodePointsException("The byte offsets are unknown. "
+          + "This stream has been created from code points, loaded from a snapshot or edited.");
+    }
+    return this.byteOffsets.byteOffsetOf(position);
+  }
+
+  /**
+   * <p>
+   * Returns a new <code>MappedCodePoints</code> in which the code points between two positions have been replaced,
+   * this instance being left untouched.
+   * <p>
+   * As when a <code>MappedCodePoints</code> is created, CR and CRLF are replaced by LF in the replacement, and the new
+   * lines at the end of the stream are removed.
+   * <p>
+   * The code points are not copied: the new instance reads the code points before and after the edit from this one,
+   * through a piece table (see {@link EditedStorage}). Likewise, if the lines of this instance have already been
+   * computed, the lines of the new instance are computed from them, the lines following the edit being shifted only
+   * when they are looked up (see {@link EditedLineIndex}). An edit therefore costs its size plus the number of pieces,
+   * and reading a code point or a line costs a binary search over the pieces. Once there are more than
+   * {@value #MAX_PIECES} pieces, the code points (or the lines) are copied in an array, one piece at a time: that copy
+   * depends on the size of the stream, but happens at most once every {@value #MAX_PIECES} / 2 edits.
+   * 
+   * @param start
+   *          is the position of the first code point to be replaced.
+   * @param end
+   *          is the position following the last code point to be replaced.
+   * @param replacement
+   *          are the new code points.
+   * @return a new <code>MappedCodePoints</code>.
+   * @throws MappedCodePointsException
+   *           if the positions are out of range (<tt>start &lt; 1 || start &gt; end || end &gt; getEosIndex()</tt>),
+   *           if the replacement is null or if the stream is empty after the edit.
+   */
+  public MappedCodePoints applyEdit(final int start, final int end, final int[] replacement) {
+    if (start < 1 || start > end || end > this.eosIndex) {
+      throw new MappedCodePointsException("Edit outside of range (" + start + ", " + end
+          + "). It should be greater than or equal to 1 and less than or equal to the end of stream.");
+    }
+    if (replacement == null) {
+      throw new MappedCodePointsException("This replacement is null.");
+    }
+
+    final int[] codePoints = this.normalizeReplacement(replacement, end);
+
+    // New lines at the end of the stream removed
+    final int untrimmedEosIndex = this.eosIndex + codePoints.length - (end - start);
+    EditedStorage storage = EditedStorage.of(this.storage, this.eosIndex, start, end, codePoints);
+    int eosIndex = untrimmedEosIndex;
+    while (eosIndex > 0 && storage.codePointAt(eosIndex - 1) == MappedCodePoints.LF) {
+      eosIndex--;
+    }
+
+    if (eosIndex == 0) {
+      throw MappedCodePoints.emptyStreamException(this.filename);
+    }
+    if (eosIndex != untrimmedEosIndex) {
+      storage = storage.withEosIndex(eosIndex);
+    }
+
+    final LineIndex lineIndex = this.lineIndex;
+    LineIndex editedLineIndex = null;
+    if (lineIndex != null) {
+      final EditedLineIndex edited = EditedLineIndex.of(lineIndex, start, end, codePoints, eosIndex);
+      editedLineIndex = edited.getSegmentCount() > MappedCodePoints.MAX_PIECES ? edited.compact() : edited;
     }
 
-    int j = 1;
-    while (j++ < column) {
-      debugMessage.add(' ');
+    if (storage.getPieceCount() <= MappedCodePoints.MAX_PIECES) {
+      return new MappedCodePoints(this, storage, editedLineIndex, eosIndex);
     }
 
-    debugMessage.add("^__ Line ");
-    debugMessage.add(String.valueOf(line));
-    debugMessage.add('\n');
+    // Too many pieces: copied one piece at a time
+    final int[] stream = new int[eosIndex + 1];
+    storage.copyTo(0, eosIndex + 1, stream, 0);
+    return new MappedCodePoints(this, CodePointStorage.of(stream, eosIndex), editedLineIndex, eosIndex);
+  }
+
+  /**
+   * Replaces CR and CRLF by LF in the replacement of an edit.
+   * 
+   * @param replacement
+   *          are the new code points.
+   * @param end
+   *          is the position following the last code point to be replaced.
+   * @return a new array of code points, without any CR.
+   */
+  private int[] normalizeReplacement(final int[] replacement, final int end) {
+    final int[] codePoints = new int[replacement.length];
+    int length = 0;
+    int previousChar = 0;
+    for (final int currentChar : replacement) {
+      if (previousChar != MappedCodePoints.CR || currentChar != MappedCodePoints.LF) {
+        codePoints[length++] = currentChar == MappedCodePoints.CR ? MappedCodePoints.LF : currentChar;
+      }
+      previousChar = currentChar;
+    }
 
-    // Lines after error
-    while (i < this.eosIndex && this.lines[i] <= lastLineToLog) {
-      debugMessage.add(this.stream[i++]);
+    // A CR at the end of the replacement and the LF following the edit make a single new line
+    if (previousChar == MappedCodePoints.CR && this.storage.codePointAt(end) == MappedCodePoints.LF) {
+      length--;
     }
 
-    String s = debugMessage.toString();
-    if (s.endsWith("\n")) {
-      s = s.substring(0, s.length() - 1);
+    return length == codePoints.length ? codePoints : Arrays.copyOf(codePoints, length);
+  }
+
+  /**
+   * <p>
+   * Returns a debug message, showing:
+   * <ul>
+   * <li>the name of the file mapped by this instance, if any
+   * <li>a custom text, if any
+   * <li>a number of lines before the line in error
+   * <li>a visual position of the code point in error and its line
+   * <li>a number of lines a the line in error
+   * </ul>
+   * <p>
+   * Let's take the following text file named 'myTextFile.txt':
+   * 
+   * <pre>
+   * line number 1
+   * line number 2
+   * lane number 3
+   * line number 4
+   * line number 5
+   * </pre>
+   * 
+   * <p>
+   * If we call this method with msg = "Expected: 'i'" and position = 16 the returned value would be (if we didn't
+   * change the default values of the number of lines to be shown before and after the error):
+   * 
+   * <pre>
+   * Expected: 'i'
+   * line number 2
+   * lane number 3
+   *  ^__ Line 3
+   * line number 4
+   * </pre>
+   * <p>
+   * The lines are found with the line index, and only the lines displayed are read. A line longer than
+   * {@value #DEBUG_MAX_LINE_LENGTH} code points (minified sources for instance) is not displayed completely: only an
+   * excerpt of {@value #DEBUG_MAX_LINE_LENGTH} code points around the column of the error is, the same columns being
+   * displayed for the other lines.
+   * 
+   * @param msg
+   *          is a custom text displayed after the name of the file if any. Can be <code>null</code> or empty.
+   * @param position
+   *          is the position of the error.
+   * @return a debug message.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
+   */
+  public String debug(final String msg, final int position) {
+    this.checkDebugPosition(position);
+
+    final LineIndex lineIndex = this.getLineIndex();
+    final DebugSnippet snippet = this.newDebugSnippet(lineIndex, new Diagnostic(msg, position));
+    final StringBuilder debugMessage = new StringBuilder(
+        (snippet.lastLine - snippet.firstLine + 3) * (MappedCodePoints.DEBUG_MAX_LINE_LENGTH / 2));
+    this.appendDebugSnippet(debugMessage, lineIndex, snippet);
+
+    // Last new line removed
+    return DebugExcerpt.withoutLastLineFeed(debugMessage);
+  }
+
+  /**
+   * <p>
+   * Writes the debug messages of many errors, in one pass over the lines of the stream.
+   * <p>
+   * The errors are sorted by position. The debug message of an error is the same as the one returned by
+   * {@link #debug(String, int)}, except that the errors whose lines displayed overlap share a single debug message:
+   * the name of the file, the custom texts of the errors, then the lines, each line in error being followed by a
+   * visual position for each of its errors. Every debug message ends with a new line, and two debug messages are
+   * separated by an empty line.
+   * <p>
+   * Let's take the file of {@link #debug(String, int)}. If we call this method with the errors ("Expected: 'i'", 30)
+   * and ("Expected: ' '", 47), the text written would be:
+   * 
+   * <pre>
+   * Expected: 'i'
+   * Expected: ' '
+   * line number 2
+   * lane number 3
+   *  ^__ Line 3
+   * line number 4
+   *     ^__ Line 4
+   * line number 5
+   * </pre>
+   * 
+   * @param diagnostics
+   *          are the errors, in any order.
+   * @param out
+   *          receives the debug messages.
+   * @throws MappedCodePointsException
+   *           if the position of an error is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>) or
+   *           if the debug messages can't be written.
+   */
+  public void debug(final Collection<Diagnostic> diagnostics, final Appendable out) {
+    final List<Diagnostic> sortedDiagnostics = new ArrayList<>(diagnostics);
+    for (final Diagnostic diagnostic : sortedDiagnostics) {
+      this.checkDebugPosition(diagnostic.getPosition());
     }
+    sortedDiagnostics.sort(Comparator.comparingInt(Diagnostic::getPosition));
+
+    final LineIndex lineIndex = this.getLineIndex();
+    final StringBuilder debugMessage = new StringBuilder();
+    DebugSnippet snippet = null;
 
-    return s;
+    try {
+      for (final Diagnostic diagnostic : sortedDiagnostics) {
+        final DebugSnippet next = this.newDebugSnippet(lineIndex, diagnostic);
+        if (snippet != null && !snippet.merge(next)) {
+          this.writeDebugSnippet(debugMessage, lineIndex, snippet, out);
+          out.append('\n');
+          snippet = next;
+        } else if (snippet == null) {
+          snippet = next;
+        }
+      }
+
+      if (snippet != null) {
+        this.writeDebugSnippet(debugMessage, lineIndex, snippet, out);
+      }
+    } catch (final IOException e) {
+      throw new MappedCodePointsException("Impossible to write the debug messages.", e);
+    }
   }
 
   /**
-   * Returns the position of the first line to be displayed for debugging purpose.
+   * Checks the position of an error.
    * 
-   * @param currentLine
-   *          is the line of the error.
    * @param position
-   *          if the position of the code point in the buffer in error.
-   * @return the position of the first line to be displayed.
+   *          is the position of an error.
+   * @throws MappedCodePointsException
+   *           if the index is out of range (<tt>position &lt; 0 || position &gt; getEosIndex()</tt>).
    */
-  private int getDebugStartPosition(final int currentLine, final int position) {
-    if (currentLine <= this.debugLinesBefore + 1) {
-      return 1;
-    } else {
-      final int expectedLine = currentLine - this.debugLinesBefore;
-      int i = position - 1;
+  private void checkDebugPosition(final int position) {
+    if (position < 0 || position > this.eosIndex) {
+      throw new MappedCodePointsException("Index outside of range (" + position
+          + "). It should be greater than or equal to 0 and less than or equal to the end of stream.");
+    }
+  }
+
+  /**
+   * Returns the lines to be displayed for an error.
+   * 
+   * @param lineIndex
+   *          is the lines of the stream.
+   * @param diagnostic
+   *          is an error.
+   * @return the lines to be displayed for the error.
+   */
+  private DebugSnippet newDebugSnippet(final LineIndex lineIndex, final Diagnostic diagnostic) {
+    final int position = diagnostic.getPosition();
+    final int line = lineIndex.lineOf(position);
+    final int firstLine = line <= this.debugLinesBefore + 1 ? 1 : line - this.debugLinesBefore;
+    final int lastLine = Math.min(line + this.debugLinesAfter, lineIndex.getLastLine());
+    final int excerptStart = (int) this.newDebugExcerpt(lineIndex).getExcerptStart(line, lineIndex.columnOf(position));
+    return new DebugSnippet(diagnostic, line == 0 ? 0 : firstLine, lastLine, excerptStart);
+  }
+
+  /**
+   * Writes the debug message of a group of errors, ending with a new line.
+   * 
+   * @param debugMessage
+   *          is a {@link StringBuilder} reused for each debug message.
+   * @param lineIndex
+   *          is the lines of the stream.
+   * @param snippet
+   *          is a group of errors.
+   * @param out
+   *          receives the debug message.
+   * @throws IOException
+   *           if the debug message can't be written.
+   */
+  private void writeDebugSnippet(final StringBuilder debugMessage, //
+      final LineIndex lineIndex, //
+      final DebugSnippet snippet, //
+      final Appendable out) throws IOException {
+    debugMessage.setLength(0);
+    this.appendDebugSnippet(debugMessage, lineIndex, snippet);
+
+    final int length = debugMessage.length();
+    if (length == 0 || debugMessage.charAt(length - 1) != '\n') {
+      debugMessage.append('\n');
+    }
+    out.append(debugMessage);
+  }
+
+  /**
+   * Appends the debug message of a group of errors.
+   * 
+   * @param debugMessage
+   *          is the debug message.
+   * @param lineIndex
+   *          is the lines of the stream.
+   * @param snippet
+   *          is a group of errors, sorted by position.
+   */
+  private void appendDebugSnippet(final StringBuilder debugMessage, //
+      final LineIndex lineIndex, //
+      final DebugSnippet snippet) {
+    final int start = debugMessage.length();
+
+    if (this.filename != null) {
+      debugMessage.append("In file ").append(this.filename).append('\n');
+    }
 
-      while (i >= 0 && this.lines[i] >= expectedLine) {
-        i--;
+    // Messages
+    for (final Diagnostic diagnostic : snippet.diagnostics) {
+      final String msg = diagnostic.getMessage();
+      if (msg != null && !msg.isEmpty()) {
+        debugMessage.append(msg).append('\n');
       }
+    }
+
+    // Lines, each line with errors being followed by a dummy line with a caret at each error position
+    final DebugExcerpt excerpt = this.newDebugExcerpt(lineIndex);
+    final List<Diagnostic> diagnostics = snippet.diagnostics;
+    int d = 0;
+    for (int line = snippet.firstLine; line <= snippet.lastLine; line++) {
+      // Line 0 is not displayed
+      if (line > 0) {
+        excerpt.appendLine(debugMessage, line, snippet.excerptStart);
+      }
+
+      boolean firstCaret = true;
+      while (d < diagnostics.size() && lineIndex.lineOf(diagnostics.get(d).getPosition(), line) == line) {
+        final int column = lineIndex.columnOf(diagnostics.get(d++).getPosition(), line);
+        excerpt.appendCaret(debugMessage, line, column, snippet.excerptStart, firstCaret);
+        firstCaret = false;
+      }
+    }
+
+    // BOM at the beginning of the message removed
+    DebugExcerpt.removeBom(debugMessage, start);
+  }
+
+  /**
+   * Returns the lines displayed for debugging purpose.
+   * 
+   * @param lineIndex
+   *          is the lines of the stream.
+   * @return the lines displayed for debugging purpose.
+   */
+  private DebugExcerpt newDebugExcerpt(final LineIndex lineIndex) {
+    final CodePointStorage storage = this.storage;
+    return new DebugExcerpt() {
+      @Override
+      long lineStart(final long line) {
+        return lineIndex.lineStart((int) line);
+      }
+
+      @Override
+      long lineEnd(final long line) {
+        return lineIndex.lineEnd((int) line);
+      }
+
+      @Override
+      int codePointAt(final long position) {
+        return storage.codePointAt((int) position);
+      }
+
+      @Override
+      void appendTo(final StringBuilder debugMessage, final long from, final long to) {
+        storage.appendTo(debugMessage, (int) from, (int) to);
+      }
+    };
+  }
+
+  /**
+   * The code points of a stream once decoded and normalized, their lines and their byte offsets if they are known.
+   */
+  private static class Content {
+    final private CodePointStorage storage;
+    final private int eosIndex;
+    final private LineIndex lineIndex;
+    final private ByteOffsets byteOffsets;
+
+    Content(final CodePointStorage storage, //
+        final int eosIndex, //
+        final LineIndex lineIndex, //
+        final ByteOffsets byteOffsets) {
+      this.storage = storage;
+      this.eosIndex = eosIndex;
+      this.lineIndex = lineIndex;
+      this.byteOffsets = byteOffsets;
+    }
+
+    Content with(final LineIndex lineIndex, final ByteOffsets byteOffsets) {
+      return new Content(this.storage, this.eosIndex, lineIndex, byteOffsets);
+    }
+  }
+
+  /**
+   * An error to be displayed by {@link MappedCodePoints#debug(Collection, Appendable)}: a custom text and the
+   * position of the error.
+   */
+  public static class Diagnostic {
+    final private String message;
+    final private int position;
+
+    /**
+     * Instantiates a new <code>Diagnostic</code>.
+     * 
+     * @param message
+     *          is a custom text. Can be <code>null</code> or empty.
+     * @param position
+     *          is the position of the error.
+     */
+    public Diagnostic(final String message, final int position) {
+      this.message = message;
+      this.position = position;
+    }
+
+    /**
+     * Returns the custom text.
+     * 
+     * @return the custom text.
+     */
+    public String getMessage() {
+      return this.message;
+    }
+
+    /**
+     * Returns the position of the error.
+     * 
+     * @return the position of the error.
+     */
+    public int getPosition() {
+      return this.position;
+    }
+  }
+
+  /**
+   * The lines displayed for a group of errors, sorted by position.
+   */
+  private static class DebugSnippet {
+    final private List<Diagnostic> diagnostics = new ArrayList<>(1);
+    final private int firstLine;
+    final private int excerptStart;
+    private int lastLine;
+
+    DebugSnippet(final Diagnostic diagnostic, final int firstLine, final int lastLine, final int excerptStart) {
+      this.diagnostics.add(diagnostic);
+      this.firstLine = firstLine;
+      this.lastLine = lastLine;
+      this.excerptStart = excerptStart;
+    }
 
-      return i + 1;
+    /**
+     * Adds the errors of the next group if their lines overlap with the lines of this group and the same columns are
+     * displayed.
+     */
+    boolean merge(final DebugSnippet next) {
+      if (next.firstLine > this.lastLine || next.excerptStart != this.excerptStart) {
+        return false;
+      }
+
+      this.diagnostics.addAll(next.diagnostics);
+      this.lastLine = Math.max(this.lastLine, next.lastLine);
+      return true;
     }
   }
 
   private static interface MappedStreamBuilder {
+    /**
+     * Returns the expected number of code points (at most), or 0 if it is unknown.
+     */
+    int sizeHint();
+
+    /**
+     * Returns the encoding of the source, or <code>null</code> if the source is made of code points.
+     */
+    Charset charset();
+
+    /**
+     * Returns the number of bytes of the last code point returned by {@link #nextCodePoint()}.
+     */
+    int byteWidth();
+
     boolean hasNext();
 
     void close();
@@ -528,6 +2119,8 @@ public class MappedCodePoints {
   private static class UncodeInputStreamBuilder implements MappedStreamBuilder {
     final private UtfToCodePoint utfToCodePoint;
     final private UnicodeInputStream inputStream;
+    final private Charset charset;
+    private int byteWidth = 0;
 
     public UncodeInputStreamBuilder(final String filename, final Charset charset, final UnicodeInputStream inputStream) {
 
@@ -541,6 +2134,17 @@ public class MappedCodePoints {
 
       this.utfToCodePoint = Converter.findUtfToCodePoint(charset);
       this.inputStream = inputStream;
+      this.charset = charset;
+    }
+
+    @Override
+    public int sizeHint() {
+      // Some InputStream wrappers return Integer.MAX_VALUE when the size is unknown
+      final int available = this.inputStream.available();
+      if (available == Integer.MAX_VALUE) {
+        return 0;
+      }
+      return BulkDecoder.maxCodePoints(available, this.charset);
     }
 
     @Override
@@ -548,9 +2152,22 @@ public class MappedCodePoints {
       return this.inputStream.hasNext();
     }
 
+    @Override
+    public Charset charset() {
+      return this.charset;
+    }
+
+    @Override
+    public int byteWidth() {
+      return this.byteWidth;
+    }
+
     @Override
     public int nextCodePoint() {
-      return this.utfToCodePoint.toCodePoint(this.inputStream);
+      final long position = this.inputStream.getPosition();
+      final int codePoint = this.utfToCodePoint.toCodePoint(this.inputStream);
+      this.byteWidth = (int) (this.inputStream.getPosition() - position);
+      return codePoint;
     }
 
     @Override
@@ -568,6 +2185,21 @@ public class MappedCodePoints {
       this.codePoints = codePoints;
     }
 
+    @Override
+    public int sizeHint() {
+      return this.codePoints.length;
+    }
+
+    @Override
+    public Charset charset() {
+      return null;
+    }
+
+    @Override
+    public int byteWidth() {
+      return 0;
+    }
+
     @Override
     public boolean hasNext() {
       return this.index < this.codePoints.length;
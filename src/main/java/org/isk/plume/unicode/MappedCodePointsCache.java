@@ -0,0 +1,307 @@
+package org.isk.plume.unicode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.zip.CRC32;
+
+import org.isk.plume.unicode.CodePoints.Charset;
+import org.isk.plume.unicode.exception.MappedCodePointsException;
+import org.isk.plume.unicode.exception.UnicodeException;
+
+/**
+ * <p>
+ * A MappedCodePointsCache holds the {@link MappedCodePoints} of the files already mapped, so that a file read several
+ * times by the same process (e.g. imported by several sources) is decoded only once.
+ * <p>
+ * An entry is identified by the path of the file and its encoding, and is valid as long as the last modification
+ * time, the size and the CRC-32 of the file are the same. Checking an entry therefore costs a memory mapping and a
+ * checksum, which is much cheaper than decoding the file and doesn't allocate anything on the heap.
+ * <p>
+ * The cache is bounded by the number of code points it holds: the least recently used entries are evicted when a new
+ * entry doesn't fit. A file with more code points than the bound is never cached.
+ * <p>
+ * A MappedCodePointsCache can be shared between threads. The files are decoded outside of the lock, therefore two
+ * threads missing the same file at the same time both decode it, the last one replacing the entry of the first one.
+ */
+public class MappedCodePointsCache {
+
+  /**
+   * Default number of code points held by the default cache (32 Mi code points). The memory used depends on the
+   * storage of the entries, from 1 to 4 bytes per code point, plus their lines.
+   */
+  final public static long DEFAULT_MAX_SIZE = 32 * 1024 * 1024;
+
+  /**
+   * The cache shared by the whole process.
+   */
+  final private static MappedCodePointsCache DEFAULT = new MappedCodePointsCache(
+      MappedCodePointsCache.DEFAULT_MAX_SIZE, 1, 1);
+
+  /**
+   * The maximum number of code points held by this cache.
+   */
+  final private long maxSize;
+
+  /**
+   * The number of lines before the line in error displayed by the debug messages of the cached streams.
+   */
+  final private int debugLinesBefore;
+
+  /**
+   * The number of lines after the line in error displayed by the debug messages of the cached streams.
+   */
+  final private int debugLinesAfter;
+
+  /**
+   * The entries, from the least recently used to the most recently used.
+   */
+  final private LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * The number of code points held by this cache.
+   */
+  private long size = 0;
+
+  private long hitCount = 0;
+  private long missCount = 0;
+  private long evictionCount = 0;
+
+  /**
+   * Instantiates a new <code>MappedCodePointsCache</code>.
+   *
+   * @param maxSize
+   *          is the maximum number of code points held by the cache.
+   * @param debugLinesBefore
+   *          is the number of lines before the line in error to be displayed
+   * @param debugLinesAfter
+   *          is the number of lines after the line in error to be displayed
+   */
+  public MappedCodePointsCache(final long maxSize, final int debugLinesBefore, final int debugLinesAfter) {
+    if (maxSize < 0) {
+      throw new IllegalArgumentException("The maximum size of a cache should be greater than or equal to 0.");
+    }
+
+    this.maxSize = maxSize;
+    this.debugLinesBefore = debugLinesBefore;
+    this.debugLinesAfter = debugLinesAfter;
+  }
+
+  /**
+   * Returns the cache shared by the whole process, holding at most {@value #DEFAULT_MAX_SIZE} code points.
+   *
+   * @return the default cache.
+   */
+  public static MappedCodePointsCache getDefault() {
+    return MappedCodePointsCache.DEFAULT;
+  }
+
+  /**
+   * Returns the <code>MappedCodePoints</code> of a file, mapping it with {@link MappedCodePoints#map(Path, Charset)}
+   * if it is not in the cache or if it has changed.
+   *
+   * @param path
+   *          is the path of the file to be mapped. Its string representation is used as the name of the file.
+   * @param charset
+   *          is the encoding of the code units.
+   * @return the <code>MappedCodePoints</code> of the file.
+   * @throws MappedCodePointsException
+   *           if the file is empty, can't be read or is larger than 2 GB.
+   * @throws UnicodeException
+   *           if the data are corrupted.
+   */
+  public MappedCodePoints get(final Path path, final Charset charset) {
+    final String filename = path.toString();
+    final long lastModified = MappedCodePointsCache.getLastModifiedTime(path, filename);
+    final ByteBuffer bytes = MappedCodePoints.mapFile(path, filename);
+    final long checksum = MappedCodePointsCache.checksum(bytes);
+
+    final Key key = new Key(path.toAbsolutePath().normalize(), charset);
+    synchronized (this) {
+      final Entry entry = this.entries.get(key);
+      if (entry != null && entry.lastModified == lastModified && entry.byteSize == bytes.limit()
+          && entry.checksum == checksum) {
+        this.hitCount++;
+        return entry.codePoints;
+      }
+      this.missCount++;
+    }
+
+    final MappedCodePoints codePoints = MappedCodePoints.decode(filename, bytes, charset, this.debugLinesBefore,
+        this.debugLinesAfter);
+    this.put(key, new Entry(lastModified, bytes.limit(), checksum, codePoints));
+    return codePoints;
+  }
+
+  /**
+   * Adds an entry, replacing the previous entry of the same file, and evicts the least recently used entries until
+   * the cache doesn't hold more than {@link #maxSize} code points.
+   *
+   * @param key
+   *          identifies the file.
+   * @param entry
+   *          is the new entry.
+   */
+  private synchronized void put(final Key key, final Entry entry) {
+    final Entry previous = this.entries.remove(key);
+    if (previous != null) {
+      this.size -= previous.weight();
+    }
+
+    if (entry.weight() > this.maxSize) {
+      return;
+    }
+
+    final Iterator<Entry> iterator = this.entries.values().iterator();
+    while (this.size + entry.weight() > this.maxSize) {
+      this.size -= iterator.next().weight();
+      iterator.remove();
+      this.evictionCount++;
+    }
+
+    this.entries.put(key, entry);
+    this.size += entry.weight();
+  }
+
+  /**
+   * Removes all the entries. The counters are not reset.
+   */
+  public synchronized void clear() {
+    this.entries.clear();
+    this.size = 0;
+  }
+
+  /**
+   * Returns the number of calls to {@link #get(Path, Charset)} that found a valid entry.
+   *
+   * @return the number of hits.
+   */
+  public synchronized long getHitCount() {
+    return this.hitCount;
+  }
+
+  /**
+   * Returns the number of calls to {@link #get(Path, Charset)} that mapped the file.
+   *
+   * @return the number of misses.
+   */
+  public synchronized long getMissCount() {
+    return this.missCount;
+  }
+
+  /**
+   * Returns the number of entries evicted to make room for other ones.
+   *
+   * @return the number of evictions.
+   */
+  public synchronized long getEvictionCount() {
+    return this.evictionCount;
+  }
+
+  /**
+   * Returns the number of code points held by this cache.
+   *
+   * @return the number of code points held by this cache.
+   */
+  public synchronized long getSize() {
+    return this.size;
+  }
+
+  /**
+   * Returns the maximum number of code points held by this cache.
+   *
+   * @return the maximum number of code points held by this cache.
+   */
+  public long getMaxSize() {
+    return this.maxSize;
+  }
+
+  /**
+   * Returns the number of files in this cache.
+   *
+   * @return the number of files in this cache.
+   */
+  public synchronized int getEntryCount() {
+    return this.entries.size();
+  }
+
+  private static long getLastModifiedTime(final Path path, final String filename) {
+    try {
+      return Files.getLastModifiedTime(path).toMillis();
+    } catch (final IOException e) {
+      throw new MappedCodePointsException("Impossible to read this file (" + filename + ").", e);
+    }
+  }
+
+  /**
+   * Computes the CRC-32 of the content of a buffer, without moving its position.
+   *
+   * @param bytes
+   *          is a {@link ByteBuffer}.
+   * @return the CRC-32 of the bytes from 0 to the limit of the buffer.
+   */
+  static long checksum(final ByteBuffer bytes) {
+    final CRC32 crc = new CRC32();
+    crc.update(bytes.duplicate());
+    return crc.getValue();
+  }
+
+  /**
+   * A Key identifies a file mapped with a given encoding.
+   */
+  private static class Key {
+    final private Path path;
+    final private Charset charset;
+
+    Key(final Path path, final Charset charset) {
+      this.path = path;
+      this.charset = charset;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * this.path.hashCode() + this.charset.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      final Key other = (Key) obj;
+      return this.path.equals(other.path) && this.charset == other.charset;
+    }
+  }
+
+  /**
+   * An Entry is a <code>MappedCodePoints</code> and the state of the file it has been mapped from.
+   */
+  private static class Entry {
+    final private long lastModified;
+    final private int byteSize;
+    final private long checksum;
+    final private MappedCodePoints codePoints;
+
+    Entry(final long lastModified, final int byteSize, final long checksum, final MappedCodePoints codePoints) {
+      this.lastModified = lastModified;
+      this.byteSize = byteSize;
+      this.checksum = checksum;
+      this.codePoints = codePoints;
+    }
+
+    /**
+     * Returns the number of code points held by the entry.
+     *
+     * @return the number of code points held by the entry.
+     */
+    long weight() {
+      return this.codePoints.getEosIndex() + 1;
+    }
+  }
+}
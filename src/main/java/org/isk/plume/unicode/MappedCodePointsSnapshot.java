@@ -0,0 +1,395 @@
+package org.isk.plume.unicode;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import org.isk.plume.unicode.CodePoints.Charset;
+import org.isk.plume.unicode.exception.MappedCodePointsException;
+import org.isk.plume.unicode.exception.UnicodeException;
+
+/**
+ * <p>
+ * A MappedCodePointsSnapshot saves the code points and the lines of a {@link MappedCodePoints} in a file, and loads
+ * them back without decoding or normalizing anything: the snapshot is memory-mapped and read in place, therefore
+ * loading it only costs the I/O of the pages actually read.
+ * <p>
+ * A snapshot is identified by the hash of its source (see {@link #hash(ByteBuffer, Charset)}). A snapshot written for
+ * another source, another encoding or by another version of this format is stale, and
+ * {@link #load(Path, long, int, int)} returns <code>null</code>.
+ * <p>
+ * As in {@link CodePointStorage#of(int[], int)}, the code points are saved with the smallest width able to hold all of
+ * them: a byte up to U+00FF, 2 bytes up to U+FFFF, otherwise 4 bytes. The snapshot of an ASCII source is therefore
+ * about the size of the source.
+ * <p>
+ * The format is the following, every number being little-endian:
+ *
+ * <pre>
+ * int    magic number ({@value #MAGIC})
+ * int    version ({@value #VERSION})
+ * long   hash of the source
+ * int    index of the End Of Stream
+ * int    number of lines
+ * int    width of a code point in bytes (1, 2 or 4)
+ * int    length of the filename in bytes (-1 if there is none)
+ * byte[] filename in UTF-8, followed by 0 to 3 bytes of padding
+ * byte[] code points, from the position 0 to the End Of Stream (excluded), followed by 0 to 3 bytes of padding
+ * int[]  position of the first code point of each line
+ * </pre>
+ * <p>
+ * The byte offsets of the code points in the source are not saved.
+ */
+public final class MappedCodePointsSnapshot {
+
+  /**
+   * The first 4 bytes of a snapshot ("PLCP" in ASCII, read as a little-endian <code>int</code>).
+   */
+  final public static int MAGIC = 0x50434C50;
+
+  /**
+   * The version of the format, incremented each time the format changes.
+   */
+  final public static int VERSION = 2;
+
+  /**
+   * The size of the fixed part of the header in bytes.
+   */
+  final private static int HEADER_SIZE = 32;
+
+  /**
+   * The size of the buffer used to write a snapshot.
+   */
+  final private static int WRITE_BUFFER_SIZE = 64 * 1024;
+
+  private MappedCodePointsSnapshot() {
+  }
+
+  /**
+   * Returns the hash of a source: the CRC-32 of its bytes followed by its encoding (the ordinal of the {@link Charset})
+   * in the low 32 bits, and its length in bytes in the high 32 bits. As in {@link MappedCodePointsCache}, two sources
+   * of different lengths never have the same hash, and a single byte (the encoding) always changes the CRC-32.
+   *
+   * @param bytes
+   *          is a {@link ByteBuffer} containing the code units of the source, from 0 to its limit. Its position is
+   *          not moved.
+   * @param charset
+   *          is the encoding of the code units.
+   * @return the hash of the source.
+   */
+  public static long hash(final ByteBuffer bytes, final Charset charset) {
+    final CRC32 crc = new CRC32();
+    crc.update(bytes.duplicate());
+    crc.update(charset.ordinal());
+    return (long) bytes.limit() << 32 | crc.getValue();
+  }
+
+  /**
+   * Returns the <code>MappedCodePoints</code> of a file, loading it from a snapshot if the snapshot exists and is not
+   * stale, otherwise mapping the file with {@link MappedCodePoints#map(Path, Charset, int, int)} and writing the
+   * snapshot. A corrupted snapshot is replaced. The snapshot being only a cache, the file is still mapped if the
+   * snapshot can't be written (read-only directory, full disk...).
+   *
+   * @param source
+   *          is the path of the file to be mapped. Its string representation is used as the name of the file.
+   * @param charset
+   *          is the encoding of the code units.
+   * @param snapshot
+   *          is the path of the snapshot.
+   * @param debugLinesBefore
+   *          is the number of lines before the line in error to be displayed
+   * @param debugLinesAfter
+   *          is the number of lines after the line in error to be displayed
+   * @return the <code>MappedCodePoints</code> of the file.
+   * @throws MappedCodePointsException
+   *           if the file is empty, can't be read or is larger than 2 GB.
+   * @throws UnicodeException
+   *           if the data are corrupted.
+   */
+  public static MappedCodePoints map(final Path source, //
+      final Charset charset, //
+      final Path snapshot, //
+      final int debugLinesBefore, //
+      final int debugLinesAfter) {
+    final String filename = source.toString();
+    final ByteBuffer bytes = MappedCodePoints.mapFile(source, filename);
+    final long sourceHash = MappedCodePointsSnapshot.hash(bytes, charset);
+
+    if (Files.isRegularFile(snapshot)) {
+      try {
+        final MappedCodePoints codePoints = MappedCodePointsSnapshot.load(snapshot, sourceHash, debugLinesBefore,
+            debugLinesAfter);
+        if (codePoints != null) {
+          return codePoints;
+        }
+      } catch (final MappedCodePointsException e) {
+        // Corrupted snapshot, written again
+      }
+    }
+
+    final MappedCodePoints codePoints = MappedCodePoints.decode(filename, bytes, charset, debugLinesBefore,
+        debugLinesAfter);
+    try {
+      MappedCodePointsSnapshot.write(codePoints, sourceHash, snapshot);
+    } catch (final MappedCodePointsException e) {
+      // Not saved, decoded again next time
+    }
+    return codePoints;
+  }
+
+  /**
+   * Writes the snapshot of a <code>MappedCodePoints</code>. The snapshot is written in a temporary file of the same
+   * directory, unique to each call, then moved to its path: a snapshot being written is never loaded, and concurrent
+   * writers of the same snapshot don't write the same file. The temporary file is deleted if the snapshot can't be
+   * written.
+   *
+   * @param codePoints
+   *          is the <code>MappedCodePoints</code> to be saved.
+   * @param sourceHash
+   *          is the hash of the source of the code points (see {@link #hash(ByteBuffer, Charset)}).
+   * @param snapshot
+   *          is the path of the snapshot.
+   * @throws MappedCodePointsException
+   *           if the snapshot can't be written.
+   */
+  public static void write(final MappedCodePoints codePoints, final long sourceHash, final Path snapshot) {
+    final LineIndex lineIndex = codePoints.getLineIndex();
+    final int eosIndex = codePoints.getEosIndex();
+    final int numberOfLines = lineIndex.getLastLine() + 1;
+    final int width = MappedCodePointsSnapshot.width(codePoints);
+    final byte[] filename = codePoints.filename == null ? null : codePoints.filename.getBytes(StandardCharsets.UTF_8);
+
+    Path temporary = null;
+    try {
+      temporary = Files.createTempFile(snapshot.toAbsolutePath().getParent(), snapshot.getFileName() + ".", ".tmp");
+      try (final FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+        final ByteBuffer buffer = ByteBuffer.allocate(MappedCodePointsSnapshot.WRITE_BUFFER_SIZE)
+            .order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(MappedCodePointsSnapshot.MAGIC);
+        buffer.putInt(MappedCodePointsSnapshot.VERSION);
+        buffer.putLong(sourceHash);
+        buffer.putInt(eosIndex);
+        buffer.putInt(numberOfLines);
+        buffer.putInt(width);
+        if (filename == null) {
+          buffer.putInt(-1);
+        } else {
+          buffer.putInt(filename.length);
+          MappedCodePointsSnapshot.put(channel, buffer, filename);
+          MappedCodePointsSnapshot.put(channel, buffer, new byte[MappedCodePointsSnapshot.padding(filename.length)]);
+        }
+
+        for (int i = 0; i < eosIndex; i++) {
+          if (buffer.remaining() < width) {
+            MappedCodePointsSnapshot.flush(channel, buffer);
+          }
+          final int codePoint = codePoints.codePointAt(i);
+          if (width == 1) {
+            buffer.put((byte) codePoint);
+          } else if (width == 2) {
+            buffer.putChar((char) codePoint);
+          } else {
+            buffer.putInt(codePoint);
+          }
+        }
+        MappedCodePointsSnapshot.put(channel, buffer,
+            new byte[MappedCodePointsSnapshot.padding(width * eosIndex)]);
+        for (int line = 0; line < numberOfLines; line++) {
+          MappedCodePointsSnapshot.putInt(channel, buffer, lineIndex.lineStart(line));
+        }
+
+        MappedCodePointsSnapshot.flush(channel, buffer);
+      }
+
+      Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (final IOException e) {
+      final MappedCodePointsException exception = new MappedCodePointsException("Impossible to write this snapshot ("
+          + snapshot + ").", e);
+      if (temporary != null) {
+        try {
+          Files.deleteIfExists(temporary);
+        } catch (final IOException suppressed) {
+          exception.addSuppressed(suppressed);
+        }
+      }
+      throw exception;
+    }
+  }
+
+  /**
+   * Loads a <code>MappedCodePoints</code> from a snapshot. The snapshot is memory-mapped, and neither the code points
+   * nor the lines are copied on the heap.
+   *
+   * @param snapshot
+   *          is the path of the snapshot.
+   * @param sourceHash
+   *          is the hash of the current source (see {@link #hash(ByteBuffer, Charset)}).
+   * @param debugLinesBefore
+   *          is the number of lines before the line in error to be displayed
+   * @param debugLinesAfter
+   *          is the number of lines after the line in error to be displayed
+   * @return a new <code>MappedCodePoints</code>, named after the filename saved in the snapshot, or <code>null</code>
+   *         if the snapshot is stale (other source or other version).
+   * @throws MappedCodePointsException
+   *           if the snapshot can't be read, is not a snapshot or is corrupted. The code points saved with 4 bytes are
+   *           all checked to be in the Unicode codespace, the other ones always are.
+   */
+  public static MappedCodePoints load(final Path snapshot, //
+      final long sourceHash, //
+      final int debugLinesBefore, //
+      final int debugLinesAfter) {
+    final ByteBuffer bytes = MappedCodePoints.mapFile(snapshot, snapshot.toString())
+        .order(ByteOrder.LITTLE_ENDIAN);
+    final int length = bytes.limit();
+
+    if (length < MappedCodePointsSnapshot.HEADER_SIZE || bytes.getInt(0) != MappedCodePointsSnapshot.MAGIC) {
+      throw new MappedCodePointsException("This file is not a snapshot (" + snapshot + ").");
+    }
+    if (bytes.getInt(4) != MappedCodePointsSnapshot.VERSION || bytes.getLong(8) != sourceHash) {
+      return null;
+    }
+
+    final int eosIndex = bytes.getInt(16);
+    final int numberOfLines = bytes.getInt(20);
+    final int width = bytes.getInt(24);
+    final int filenameLength = bytes.getInt(28);
+
+    final long filenameEnd = MappedCodePointsSnapshot.HEADER_SIZE
+        + (filenameLength < 0 ? 0 : filenameLength + MappedCodePointsSnapshot.padding(filenameLength));
+    final long codePointsSize = (long) width * eosIndex;
+    if (eosIndex < 1 || numberOfLines < 2 || filenameLength < -1 || width != 1 && width != 2 && width != 4
+        || filenameEnd + codePointsSize + (-codePointsSize & 3) + 4L * numberOfLines != length) {
+      throw MappedCodePointsSnapshot.corruptedSnapshotException(snapshot);
+    }
+
+    String filename = null;
+    if (filenameLength >= 0) {
+      final byte[] filenameBytes = new byte[filenameLength];
+      final ByteBuffer filenameBuffer = bytes.duplicate();
+      ((Buffer) filenameBuffer).position(MappedCodePointsSnapshot.HEADER_SIZE);
+      filenameBuffer.get(filenameBytes);
+      filename = new String(filenameBytes, StandardCharsets.UTF_8);
+    }
+
+    final int codePointsStart = (int) filenameEnd;
+    final int codePointsEnd = codePointsStart + (int) codePointsSize;
+    final int lineStartsStart = codePointsEnd + MappedCodePointsSnapshot.padding((int) codePointsSize);
+    final ByteBuffer codePointBytes = MappedCodePointsSnapshot.slice(bytes, codePointsStart, codePointsEnd);
+    final IntBuffer lineStarts = MappedCodePointsSnapshot.slice(bytes, lineStartsStart, length).asIntBuffer();
+
+    final CodePointStorage storage;
+    if (width == 1) {
+      storage = new ByteBufferStorage(codePointBytes);
+    } else if (width == 2) {
+      storage = new CharBufferStorage(codePointBytes.asCharBuffer());
+    } else {
+      final IntBuffer codePoints = codePointBytes.asIntBuffer();
+      for (int i = 0; i < eosIndex; i++) {
+        if (Integer.compareUnsigned(codePoints.get(i), Character.MAX_CODE_POINT) > 0) {
+          throw MappedCodePointsSnapshot.corruptedSnapshotException(snapshot);
+        }
+      }
+      storage = new IntBufferStorage(codePoints);
+    }
+
+    // Cheap consistency checks, the lines are not all verified
+    if (storage.codePointAt(0) != MappedCodePoints.LF || lineStarts.get(0) != 0 || lineStarts.get(1) != 1
+        || lineStarts.get(numberOfLines - 1) > eosIndex) {
+      throw MappedCodePointsSnapshot.corruptedSnapshotException(snapshot);
+    }
+
+    return new MappedCodePoints(filename, storage, new IntBufferLineIndex(lineStarts, eosIndex), eosIndex,
+        debugLinesBefore, debugLinesAfter);
+  }
+
+  /**
+   * Returns the smallest number of bytes able to hold each code point of a <code>MappedCodePoints</code>, as
+   * {@link CodePointStorage#of(int[], int)} does.
+   *
+   * @param codePoints
+   *          is a <code>MappedCodePoints</code>.
+   * @return 1 up to U+00FF, 2 up to U+FFFF, otherwise 4.
+   */
+  private static int width(final MappedCodePoints codePoints) {
+    final int[] bits = { 0 };
+    codePoints.forEach(0, codePoints.getEosIndex(), codePoint -> bits[0] |= codePoint);
+    return (bits[0] & ~0xFF) == 0 ? 1 : (bits[0] & ~0xFFFF) == 0 ? 2 : 4;
+  }
+
+  /**
+   * Returns the exception thrown when a snapshot is corrupted.
+   *
+   * @param snapshot
+   *          is the path of the snapshot.
+   * @return the exception thrown when a snapshot is corrupted.
+   */
+  private static MappedCodePointsException corruptedSnapshotException(final Path snapshot) {
+    return new MappedCodePointsException("This snapshot is corrupted (" + snapshot + ").");
+  }
+
+  /**
+   * Returns the number of bytes needed to align a length on 4 bytes.
+   *
+   * @param length
+   *          is a number of bytes.
+   * @return a number between 0 and 3.
+   */
+  private static int padding(final int length) {
+    return -length & 3;
+  }
+
+  /**
+   * Returns a view of the bytes between two offsets of a buffer.
+   *
+   * @param bytes
+   *          is a little-endian buffer.
+   * @param start
+   *          is the offset of the first byte.
+   * @param end
+   *          is the offset following the last byte.
+   * @return a little-endian {@link ByteBuffer} sharing the content of the buffer.
+   */
+  private static ByteBuffer slice(final ByteBuffer bytes, final int start, final int end) {
+    final ByteBuffer slice = bytes.duplicate();
+    ((Buffer) slice).limit(end).position(start);
+    return slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static void putInt(final FileChannel channel, final ByteBuffer buffer, final int value)
+      throws IOException {
+    if (buffer.remaining() < 4) {
+      MappedCodePointsSnapshot.flush(channel, buffer);
+    }
+    buffer.putInt(value);
+  }
+
+  private static void put(final FileChannel channel, final ByteBuffer buffer, final byte[] values)
+      throws IOException {
+    int offset = 0;
+    while (offset < values.length) {
+      if (!buffer.hasRemaining()) {
+        MappedCodePointsSnapshot.flush(channel, buffer);
+      }
+      final int length = Math.min(buffer.remaining(), values.length - offset);
+      buffer.put(values, offset, length);
+      offset += length;
+    }
+  }
+
+  private static void flush(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+    ((Buffer) buffer).flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    ((Buffer) buffer).clear();
+  }
+}
@@ -0,0 +1,220 @@
+package org.isk.plume.unicode;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.isk.plume.unicode.CodePoints.Charset;
+import org.isk.plume.unicode.exception.UnicodeException;
+
+/**
+ * <p>
+ * A ParallelDecoder decodes the code units contained in a {@link ByteBuffer} to code points on a {@link ForkJoinPool},
+ * replacing CR and CRLF by LF and computing the start of each line, as needed by {@link MappedCodePoints}.
+ * <p>
+ * The buffer is cut in chunks starting on sequence boundaries, found with the same rules as the sequential decoding
+ * (see {@link BulkDecoder#alignToCodeUnit(ByteBuffer, int, int, Charset)}), so that a malformed sequence is decoded
+ * the same way wherever the chunks are cut. All the chunks are decoded in a single array, sized for the maximum number
+ * of code points the buffer can hold, so that the stream is never held twice:
+ * <ol>
+ * <li>each chunk is decoded in parallel at the maximum position of its first code point, and its LFs are counted. A LF
+ * at the beginning of a chunk is skipped if the previous chunk ends with a CR ;
+ * <li>the position of the first code point and the first line of each chunk being known (prefix sums of the previous
+ * step), each chunk is moved down to its position, in order, a chunk never overlapping the chunks following it ;
+ * <li>the start of the lines of each chunk are set in parallel.
+ * </ol>
+ * The elements following the End Of Stream are not used: {@link CodePointStorage#of(int[], int)} copies the code
+ * points when the array is much larger than needed.
+ */
+final class ParallelDecoder {
+
+  /**
+   * Default minimum size of a chunk in bytes.
+   */
+  final static int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+  /**
+   * The code points: [before stream], the decoded code points and a free element for the End Of Stream.
+   */
+  final private int[] codePoints;
+
+  /**
+   * The last index used by the decoded code points + 1.
+   */
+  final private int index;
+
+  /**
+   * The position of the first code point of each line, indexed by line.
+   */
+  final private int[] lineStarts;
+
+  /**
+   * The code points not encoded with the smallest number of bytes.
+   */
+  final private ByteOffsets.Builder byteOffsets = new ByteOffsets.Builder();
+
+  /**
+   * Decodes a {@link ByteBuffer}.
+   *
+   * @param bytes
+   *          is a {@link ByteBuffer} containing code units, from 0 to its limit. The maximum number of code points it
+   *          can hold + 2 must be less than the maximum size of an array (see
+   *          {@link MappedCodePoints#checkSize(String, int, Charset)}).
+   * @param charset
+   *          is the encoding of the code units.
+   * @param pool
+   *          is the pool running the decoding.
+   * @param chunkSize
+   *          is the minimum size of a chunk in bytes.
+   * @throws UnicodeException
+   *           if the data are corrupted.
+   */
+  ParallelDecoder(final ByteBuffer bytes, final Charset charset, final ForkJoinPool pool, final int chunkSize) {
+    final int length = bytes.limit();
+    BulkDecoder.checkCodeUnits(length, charset);
+    final ByteBuffer orderedBytes = BulkDecoder.withByteOrder(bytes, charset);
+
+    // Chunks (4 by thread, to balance the work)
+    final int numberOfChunks = Math.max(1, Math.min(length / chunkSize, pool.getParallelism() * 4));
+    final int[] offsets = new int[numberOfChunks + 1];
+    for (int c = 1; c < numberOfChunks; c++) {
+      offsets[c] = BulkDecoder.alignToCodeUnit(orderedBytes, offsets[c - 1], (int) ((long) length * c / numberOfChunks),
+          charset);
+    }
+    offsets[numberOfChunks] = length;
+
+    // Maximum position of the first code point of each chunk (0 is for [before stream])
+    final int[] bounds = new int[numberOfChunks + 1];
+    bounds[0] = 1;
+    for (int c = 0; c < numberOfChunks; c++) {
+      bounds[c + 1] = bounds[c] + BulkDecoder.maxCodePoints(offsets[c + 1] - offsets[c], charset);
+    }
+
+    // +1 for the End Of Stream
+    this.codePoints = new int[bounds[numberOfChunks] + 1];
+    this.codePoints[0] = MappedCodePoints.LF;
+
+    // 1. Decodes each chunk at its maximum position and counts its LFs
+    final int[] sizes = new int[numberOfChunks];
+    final int[] lineFeeds = new int[numberOfChunks];
+    final ByteOffsets.Builder[] chunkByteOffsets = new ByteOffsets.Builder[numberOfChunks];
+    ParallelDecoder.invokeAll(pool, numberOfChunks, c -> {
+      final int from = offsets[c];
+      final boolean afterCr = BulkDecoder.isAfterCr(orderedBytes, c == 0 ? 0 : offsets[c - 1], from, charset);
+      final ByteOffsets.Builder byteOffsets = new ByteOffsets.Builder();
+      final int end = BulkDecoder.decode(orderedBytes, from, offsets[c + 1], charset, afterCr, this.codePoints,
+          bounds[c], byteOffsets);
+
+      int count = 0;
+      for (int i = bounds[c]; i < end; i++) {
+        if (this.codePoints[i] == MappedCodePoints.LF) {
+          count++;
+        }
+      }
+
+      sizes[c] = end - bounds[c];
+      lineFeeds[c] = count;
+      chunkByteOffsets[c] = byteOffsets;
+    });
+
+    // Prefix sums: position of the first code point and index of the first LF of each chunk (and byte offsets)
+    final int[] positions = new int[numberOfChunks];
+    final int[] firstLineFeeds = new int[numberOfChunks];
+    int position = 1; // 0 is for [before stream]
+    int lineFeed = 0;
+    for (int c = 0; c < numberOfChunks; c++) {
+      positions[c] = position;
+      firstLineFeeds[c] = lineFeed;
+      position += sizes[c];
+      lineFeed += lineFeeds[c];
+      this.byteOffsets.addAll(chunkByteOffsets[c], positions[c] - bounds[c]);
+    }
+    this.index = position;
+
+    // 2. Moves each chunk down to its position (never after its maximum position)
+    for (int c = 1; c < numberOfChunks; c++) {
+      if (positions[c] != bounds[c]) {
+        System.arraycopy(this.codePoints, bounds[c], this.codePoints, positions[c], sizes[c]);
+      }
+    }
+
+    // 3. Sets the start of the lines of each chunk (lines 0 and 1 start at 0 and 1)
+    this.lineStarts = new int[lineFeed + 2];
+    this.lineStarts[1] = 1;
+    ParallelDecoder.invokeAll(pool, numberOfChunks, c -> {
+      final int start = positions[c];
+      final int end = start + sizes[c];
+      int line = firstLineFeeds[c] + 2;
+      for (int i = start; i < end; i++) {
+        if (this.codePoints[i] == MappedCodePoints.LF) {
+          this.lineStarts[line++] = i + 1;
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns the code points: [before stream], the decoded code points and a free element for the End Of Stream,
+   * followed by unused elements.
+   *
+   * @return the code points.
+   */
+  int[] getCodePoints() {
+    return this.codePoints;
+  }
+
+  /**
+   * Returns the last index used by the decoded code points + 1.
+   *
+   * @return the last index used by the decoded code points + 1.
+   */
+  int getIndex() {
+    return this.index;
+  }
+
+  /**
+   * Returns the lines of the stream.
+   *
+   * @param eosIndex
+   *          is the index of the End Of Stream, once the new lines at the end of the stream have been removed.
+   * @return the lines of the stream.
+   */
+  LineIndex getLineIndex(final int eosIndex) {
+    return LineIndex.of(this.lineStarts, this.lineStarts.length, eosIndex);
+  }
+
+  /**
+   * Returns the code points not encoded with the smallest number of bytes.
+   *
+   * @return the code points not encoded with the smallest number of bytes.
+   */
+  ByteOffsets.Builder getByteOffsets() {
+    return this.byteOffsets;
+  }
+
+  /**
+   * Runs a task for each chunk on a pool and waits for all of them.
+   *
+   * @param pool
+   *          is the pool running the tasks.
+   * @param numberOfChunks
+   *          is the number of chunks.
+   * @param task
+   *          is the task, taking the number of the chunk.
+   */
+  private static void invokeAll(final ForkJoinPool pool, final int numberOfChunks, final ChunkTask task) {
+    final List<ForkJoinTask<?>> tasks = new ArrayList<>(numberOfChunks);
+    for (int c = 0; c < numberOfChunks; c++) {
+      final int chunk = c;
+      tasks.add(ForkJoinTask.adapt(() -> task.run(chunk)));
+    }
+    pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+  }
+
+  @FunctionalInterface
+  private static interface ChunkTask {
+    void run(int chunk);
+  }
+}
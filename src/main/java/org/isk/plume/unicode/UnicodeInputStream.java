@@ -21,6 +21,11 @@ public class UnicodeInputStream implements QuietAutoCloseable {
 
   final private PushbackInputStream inputStream;
 
+  /**
+   * Number of bytes read, minus the bytes unread.
+   */
+  private long position = 0;
+
   /**
    * <p>
    * Instantiates a new {@link UnicodeInputStream}.
@@ -77,6 +82,31 @@ public class UnicodeInputStream implements QuietAutoCloseable {
     }
   }
 
+  /**
+   * Returns an estimate of the number of bytes that can still be read without blocking (the exact number for a byte
+   * array or a file).
+   * 
+   * @return an estimate of the number of bytes that can still be read, or 0 if it is unknown.
+   * @throws UnicodeException
+   *           if the {@link InputStream} can't be read.
+   */
+  public int available() {
+    try {
+      return this.inputStream.available();
+    } catch (final IOException e) {
+      throw new UnicodeException("Something went wrong while reading this UnicodeInputStream!", e);
+    }
+  }
+
+  /**
+   * Returns the offset of the next byte to be read (the number of bytes read, minus the bytes unread).
+   * 
+   * @return the offset of the next byte to be read.
+   */
+  public long getPosition() {
+    return this.position;
+  }
+
   /**
    * <p>
    * Reads the next byte.
@@ -92,6 +122,7 @@ public class UnicodeInputStream implements QuietAutoCloseable {
       if (next == -1) {
         throw new UnicodeException("This UnicodeInputStream has been read completely!");
       } else {
+        this.position++;
         return next;
       }
     } catch (final IOException e) {
@@ -110,6 +141,7 @@ public class UnicodeInputStream implements QuietAutoCloseable {
   public void unread(final int b) {
     try {
       this.inputStream.unread(b);
+      this.position--;
     } catch (final IOException e) {
       throw new UnicodeException("Something went wrong while unreading this UnicodeInputStream!", e);
     }
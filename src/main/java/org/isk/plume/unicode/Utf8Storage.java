@@ -0,0 +1,342 @@
+package org.isk.plume.unicode;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import org.isk.plume.unicode.CodePoints.Charset;
+import org.isk.plume.unicode.CodePoints.Converter;
+import org.isk.plume.unicode.exception.UnicodeException;
+
+/**
+ * <p>
+ * A Utf8Storage keeps the UTF-8 code units of a {@link MappedCodePoints} (typically a memory-mapped file) and decodes
+ * the code points when they are read, instead of holding an array of code points.
+ * <p>
+ * When the storage is created, the code units are scanned once to find the End Of Stream, the start of each line, and
+ * the offset of every {@value #BLOCK_SIZE}th code point. A code point is then read from the offset of its block:
+ * <ul>
+ * <li>if every code point of the block is a single byte (ASCII without any CR), its offset is computed directly;
+ * <li>otherwise, its offset from the first byte of the block is kept in a byte, one array of {@value #BLOCK_SIZE}
+ * bytes being held by such a block. A position taking at most 4 bytes, the offsets fit in a byte, except with overlong
+ * sequences: the code points of such a block before the code point read are skipped from the first byte of the block.
+ * </ul>
+ * <p>
+ * As in {@link MappedCodePoints}, a CR followed by a LF is a single LF: a position covers the bytes of both.
+ * <p>
+ * Nothing is written once the storage is created, therefore it can be read by several threads at the same time.
+ */
+final class Utf8Storage extends CodePointStorage {
+
+  /**
+   * Number of code points between two indexed offsets (a power of 2).
+   */
+  final static int BLOCK_SIZE = 64;
+
+  /**
+   * <code>log2(BLOCK_SIZE)</code>.
+   */
+  final private static int BLOCK_SHIFT = 6;
+
+  /**
+   * The code units.
+   */
+  final private ByteBuffer bytes;
+
+  /**
+   * The offset of the first byte of each block: the positions <code>1 + k * BLOCK_SIZE</code>.
+   */
+  final private int[] blockOffsets;
+
+  /**
+   * The offset of each code point of a block from the first byte of the block (unsigned), <code>null</code> if every
+   * code point of the block is a single byte, empty if an offset doesn't fit in a byte.
+   */
+  final private byte[][] relativeOffsets;
+
+  /**
+   * Index of the End Of Stream.
+   */
+  final private int eosIndex;
+
+  /**
+   * The lines of the stream.
+   */
+  final private LineIndex lineIndex;
+
+  /**
+   * The byte offsets of the code points.
+   */
+  final private ByteOffsets byteOffsets;
+
+  /**
+   * Instantiates a new <code>Utf8Storage</code>, scanning all the code units once.
+   *
+   * @param bytes
+   *          is a {@link ByteBuffer} containing UTF-8 code units, from 0 to its limit.
+   * @throws UnicodeException
+   *           if the data are corrupted.
+   */
+  Utf8Storage(final ByteBuffer bytes) {
+    this.bytes = bytes.duplicate();
+    final int length = bytes.limit();
+
+    // At most one code point per byte
+    final int maxBlocks = (length >>> Utf8Storage.BLOCK_SHIFT) + 1;
+    final int[] blockOffsets = new int[maxBlocks];
+    final byte[][] relativeOffsets = new byte[maxBlocks][];
+    final byte[] blockRelativeOffsets = new byte[Utf8Storage.BLOCK_SIZE];
+    final byte[] irregular = new byte[0];
+
+    final LineIndex.Builder lineIndexBuilder = new LineIndex.Builder();
+    final ByteOffsets.Builder byteOffsetsBuilder = new ByteOffsets.Builder();
+    int position = 1; // 0 is for [before stream]
+    int lastCodePoint = 0; // Position following the last code point which is not a LF
+    int block = -1;
+    boolean singleByte = true;
+    boolean regular = true;
+
+    int i = 0;
+    while (i < length) {
+      // New block
+      final int index = position - 1 & Utf8Storage.BLOCK_SIZE - 1;
+      if (index == 0) {
+        if (block >= 0 && !singleByte) {
+          relativeOffsets[block] = regular ? blockRelativeOffsets.clone() : irregular;
+        }
+        blockOffsets[++block] = i;
+        singleByte = true;
+        regular = true;
+      }
+      blockRelativeOffsets[index] = (byte) (i - blockOffsets[block]);
+      regular &= i - blockOffsets[block] <= 0xFF;
+
+      final int sequenceLength = Utf8Storage.sequenceLength(this.bytes.get(i));
+      if (i + sequenceLength > length) {
+        throw new UnicodeException("Corrupted " + Converter.charsetName(Charset.UTF8) + " data. Expected "
+            + (sequenceLength - 1) + " more byte(s) from byte " + (i + 1) + ".");
+      }
+      final int codePoint = this.decode(i, sequenceLength);
+      final int positionLength = this.positionLength(i, sequenceLength, codePoint);
+
+      // Code points not encoded with the smallest number of bytes (CRLF, overlong sequences)
+      final int extraBytes = positionLength - ByteOffsets.width(codePoint == MappedCodePoints.CR
+          ? MappedCodePoints.LF : codePoint, Charset.UTF8);
+      if (extraBytes != 0) {
+        byteOffsetsBuilder.add(position, extraBytes);
+      }
+
+      if (codePoint == MappedCodePoints.CR || codePoint == MappedCodePoints.LF) {
+        lineIndexBuilder.addLineFeed(position);
+        singleByte &= codePoint == MappedCodePoints.LF && positionLength == 1;
+      } else {
+        lastCodePoint = position + 1;
+        // Invalid lead bytes decode as one-byte sequences but are not read as they are
+        singleByte &= (this.bytes.get(i) & 0x80) == 0;
+      }
+
+      i += positionLength;
+      position++;
+    }
+    if (block >= 0 && !singleByte) {
+      relativeOffsets[block] = regular
+          ? Arrays.copyOf(blockRelativeOffsets, position - 1 - (block << Utf8Storage.BLOCK_SHIFT))
+          : irregular;
+    }
+
+    this.blockOffsets = blockOffsets;
+    this.relativeOffsets = relativeOffsets;
+
+    // Trailing new lines removed
+    this.eosIndex = lastCodePoint;
+    this.lineIndex = lineIndexBuilder.build(this.eosIndex);
+    this.byteOffsets = byteOffsetsBuilder.build(Charset.UTF8, this, this.eosIndex);
+  }
+
+  /**
+   * Returns the index of the End Of Stream.
+   *
+   * @return the index of the End Of Stream (0 if there is no code point).
+   */
+  int getEosIndex() {
+    return this.eosIndex;
+  }
+
+  /**
+   * Returns the lines of the stream.
+   *
+   * @return the lines of the stream.
+   */
+  LineIndex getLineIndex() {
+    return this.lineIndex;
+  }
+
+  /**
+   * Returns the byte offsets of the code points.
+   *
+   * @return the byte offsets of the code points.
+   */
+  ByteOffsets getByteOffsets() {
+    return this.byteOffsets;
+  }
+
+  @Override
+  int codePointAt(final int position) {
+    if (position == 0) {
+      return MappedCodePoints.LF;
+    }
+    if (position >= this.eosIndex) {
+      return MappedCodePoints.EOS;
+    }
+
+    final int block = position - 1 >>> Utf8Storage.BLOCK_SHIFT;
+    if (this.relativeOffsets[block] == null) {
+      return this.bytes.get(this.blockOffsets[block] + (position - 1 & Utf8Storage.BLOCK_SIZE - 1));
+    }
+
+    final int offset = this.offsetOf(position);
+    final int codePoint = this.decode(offset, Utf8Storage.sequenceLength(this.bytes.get(offset)));
+    return codePoint == MappedCodePoints.CR ? MappedCodePoints.LF : codePoint;
+  }
+
+  @Override
+  void appendTo(final StringBuilder sb, final int from, final int to) {
+    this.forEach(from, to, sb::appendCodePoint);
+  }
+
+  @Override
+  void copyTo(final int from, final int to, final int[] dst, final int offset) {
+    final int[] index = { offset };
+    this.forEach(from, to, codePoint -> dst[index[0]++] = codePoint);
+  }
+
+  @Override
+  void forEach(final int from, final int to, final IntConsumer action) {
+    int position = from;
+    if (position == 0 && position < to) {
+      action.accept(MappedCodePoints.LF);
+      position++;
+    }
+
+    // Decoded in order, without looking up the offset of each code point
+    final int end = Math.min(to, this.eosIndex);
+    if (position < end) {
+      int offset = this.offsetOf(position);
+      for (; position < end; position++) {
+        final int sequenceLength = Utf8Storage.sequenceLength(this.bytes.get(offset));
+        final int codePoint = this.decode(offset, sequenceLength);
+        action.accept(codePoint == MappedCodePoints.CR ? MappedCodePoints.LF : codePoint);
+        offset += this.positionLength(offset, sequenceLength, codePoint);
+      }
+    }
+
+    for (position = Math.max(position, this.eosIndex); position < to; position++) {
+      action.accept(MappedCodePoints.EOS);
+    }
+  }
+
+  /**
+   * Returns the offset of the first byte of a position.
+   *
+   * @param position
+   *          is a position between 1 and the End Of Stream (excluded).
+   * @return the offset of the first byte of the position.
+   */
+  private int offsetOf(final int position) {
+    final int block = position - 1 >>> Utf8Storage.BLOCK_SHIFT;
+    final int index = position - 1 & Utf8Storage.BLOCK_SIZE - 1;
+    final byte[] relativeOffsets = this.relativeOffsets[block];
+    if (relativeOffsets == null) {
+      return this.blockOffsets[block] + index;
+    }
+    if (relativeOffsets.length > 0) {
+      return this.blockOffsets[block] + (relativeOffsets[index] & 0xFF);
+    }
+
+    // Overlong sequences
+    int offset = this.blockOffsets[block];
+    for (int i = 0; i < index; i++) {
+      final int sequenceLength = Utf8Storage.sequenceLength(this.bytes.get(offset));
+      offset += this.positionLength(offset, sequenceLength, this.decode(offset, sequenceLength));
+    }
+    return offset;
+  }
+
+  /**
+   * Returns the number of bytes of a UTF-8 sequence from its first byte. As in {@link BulkDecoder}, an invalid first
+   * byte is a sequence of one byte.
+   *
+   * @param firstByte
+   *          is the first byte of the sequence.
+   * @return the number of bytes of the sequence, between 1 and 4.
+   */
+  private static int sequenceLength(final byte firstByte) {
+    final int character = firstByte & 0xFF;
+    if (character >> 7 == 0) {
+      return 1;
+    } else if (character >> 5 == 0b110) {
+      return 2;
+    } else if (character >> 4 == 0b1110) {
+      return 3;
+    } else if (character >> 3 == 0b1_1110) {
+      return 4;
+    }
+    return 1;
+  }
+
+  /**
+   * Decodes a UTF-8 sequence as {@link BulkDecoder} does (CR is not replaced).
+   *
+   * @param offset
+   *          is the offset of the first byte of the sequence.
+   * @param sequenceLength
+   *          is the number of bytes of the sequence.
+   * @return the code point.
+   */
+  private int decode(final int offset, final int sequenceLength) {
+    final ByteBuffer bytes = this.bytes;
+    final int character = bytes.get(offset) & 0xFF;
+    switch (sequenceLength) {
+    case 1:
+      // An invalid first byte is decoded as U+0000
+      return character >> 7 == 0 ? character : 0;
+    case 2:
+      return (character & 0b0001_1111) << 6 //
+          | bytes.get(offset + 1) & 0b0011_1111;
+    case 3:
+      return (character & 0b0000_1111) << 12 //
+          | (bytes.get(offset + 1) & 0b0011_1111) << 6 //
+          | bytes.get(offset + 2) & 0b0011_1111;
+    default:
+      return (character & 0b0000_0111) << 18 //
+          | (bytes.get(offset + 1) & 0b0011_1111) << 12 //
+          | (bytes.get(offset + 2) & 0b0011_1111) << 6 //
+          | bytes.get(offset + 3) & 0b0011_1111;
+    }
+  }
+
+  /**
+   * Returns the number of bytes of a position: the bytes of its code point, and those of the LF following it if it is
+   * a CR.
+   *
+   * @param offset
+   *          is the offset of the first byte of the position.
+   * @param sequenceLength
+   *          is the number of bytes of the code point.
+   * @param codePoint
+   *          is the code point, as decoded.
+   * @return the number of bytes of the position.
+   */
+  private int positionLength(final int offset, final int sequenceLength, final int codePoint) {
+    final int next = offset + sequenceLength;
+    if (codePoint != MappedCodePoints.CR || next >= this.bytes.limit()) {
+      return sequenceLength;
+    }
+
+    final int nextLength = Utf8Storage.sequenceLength(this.bytes.get(next));
+    if (next + nextLength <= this.bytes.limit() && this.decode(next, nextLength) == MappedCodePoints.LF) {
+      return sequenceLength + nextLength;
+    }
+    return sequenceLength;
+  }
+}
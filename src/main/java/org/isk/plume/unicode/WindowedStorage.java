@@ -0,0 +1,242 @@
+package org.isk.plume.unicode;
+
+import java.nio.ByteBuffer;
+
+import org.isk.plume.unicode.CodePoints.Charset;
+import org.isk.plume.unicode.exception.UnicodeException;
+
+/**
+ * <p>
+ * A WindowedStorage keeps the code units of a {@link MappedCodePoints} (typically a memory-mapped file) and decodes
+ * only the windows of code points being read, so that the memory used does not depend on the size of the source.
+ * <p>
+ * The source is cut in windows of a fixed number of bytes, moved forward to the start of the next sequence as read by
+ * the sequential decoder (a malformed sequence is never split between two windows). When the storage is created, every
+ * window is decoded once to find the position of its first code point, the End Of Stream and the start of each line.
+ * Afterwards, a window is decoded again each time a position outside of the windows in cache is read. Only the last
+ * {@link #CACHE_SIZE} windows are kept, one for each slot of a direct-mapped cache.
+ * <p>
+ * The windows in cache are immutable, therefore a storage can be read by several threads at the same time: at worst, a
+ * window is decoded several times. However, the cache is shared: readers working on different parts of the stream
+ * write the same slots and evict the windows of each other, so that a windowed storage doesn't scale across readers.
+ * It is meant for a single cursor going through a huge source.
+ */
+final class WindowedStorage extends CodePointStorage {
+
+  /**
+   * Default size of a window in bytes.
+   */
+  final static int DEFAULT_WINDOW_SIZE = 64 * 1024;
+
+  /**
+   * Number of windows in cache (a power of 2).
+   */
+  final private static int CACHE_SIZE = 4;
+
+  /**
+   * The code units (ordered with {@link BulkDecoder#withByteOrder(ByteBuffer, Charset)}).
+   */
+  final private ByteBuffer bytes;
+
+  /**
+   * The encoding of the code units.
+   */
+  final private Charset charset;
+
+  /**
+   * The offset of the first byte of each window, followed by the number of bytes.
+   */
+  final private int[] windowOffsets;
+
+  /**
+   * The position of the first code point of each window.
+   */
+  final private int[] windowPositions;
+
+  /**
+   * Index of the End Of Stream.
+   */
+  final private int eosIndex;
+
+  /**
+   * The lines of the stream.
+   */
+  final private LineIndex lineIndex;
+
+  /**
+   * The byte offsets of the code points.
+   */
+  final private ByteOffsets byteOffsets;
+
+  /**
+   * The windows in cache, at the index <code>window number % CACHE_SIZE</code>.
+   */
+  final private Window[] cache = new Window[WindowedStorage.CACHE_SIZE];
+
+  /**
+   * Instantiates a new <code>WindowedStorage</code>, decoding all the windows once.
+   *
+   * @param bytes
+   *          is a {@link ByteBuffer} containing code units, from 0 to its limit.
+   * @param charset
+   *          is the encoding of the code units.
+   * @param windowSize
+   *          is the size of a window in bytes.
+   * @throws UnicodeException
+   *           if the data are corrupted.
+   */
+  WindowedStorage(final ByteBuffer bytes, final Charset charset, final int windowSize) {
+    final int length = bytes.limit();
+    BulkDecoder.checkCodeUnits(length, charset);
+
+    this.bytes = BulkDecoder.withByteOrder(bytes, charset);
+    this.charset = charset;
+
+    final int numberOfWindows = (int) ((length + (long) windowSize - 1) / windowSize);
+    this.windowOffsets = new int[numberOfWindows + 1];
+    this.windowPositions = new int[numberOfWindows];
+    for (int w = 1; w < numberOfWindows; w++) {
+      this.windowOffsets[w] = BulkDecoder.alignToCodeUnit(this.bytes, this.windowOffsets[w - 1], w * windowSize,
+          charset);
+    }
+    this.windowOffsets[numberOfWindows] = length;
+
+    final LineIndex.Builder lineIndexBuilder = new LineIndex.Builder();
+    final ByteOffsets.Builder byteOffsetsBuilder = new ByteOffsets.Builder();
+    final int[] codePoints = new int[BulkDecoder.maxCodePoints(windowSize, charset) + 4];
+    int position = 1; // 0 is for [before stream]
+    int lastCodePoint = 0; // Position following the last code point which is not a LF
+
+    for (int w = 0; w < numberOfWindows; w++) {
+      this.windowPositions[w] = position;
+
+      final ByteOffsets.Builder windowByteOffsets = new ByteOffsets.Builder();
+      final int count = this.decodeWindow(w, codePoints, windowByteOffsets);
+      byteOffsetsBuilder.addAll(windowByteOffsets, position);
+      for (int i = 0; i < count; i++) {
+        if (codePoints[i] == MappedCodePoints.LF) {
+          lineIndexBuilder.addLineFeed(position + i);
+        } else {
+          lastCodePoint = position + i + 1;
+        }
+      }
+      position += count;
+    }
+
+    // Trailing new lines removed
+    this.eosIndex = lastCodePoint;
+    this.lineIndex = lineIndexBuilder.build(this.eosIndex);
+    this.byteOffsets = byteOffsetsBuilder.build(charset, this, this.eosIndex);
+  }
+
+  /**
+   * Returns the index of the End Of Stream.
+   *
+   * @return the index of the End Of Stream (0 if there is no code point).
+   */
+  int getEosIndex() {
+    return this.eosIndex;
+  }
+
+  /**
+   * Returns the lines of the stream.
+   *
+   * @return the lines of the stream.
+   */
+  LineIndex getLineIndex() {
+    return this.lineIndex;
+  }
+
+  /**
+   * Returns the byte offsets of the code points.
+   *
+   * @return the byte offsets of the code points.
+   */
+  ByteOffsets getByteOffsets() {
+    return this.byteOffsets;
+  }
+
+  @Override
+  int codePointAt(final int position) {
+    if (position == 0) {
+      return MappedCodePoints.LF;
+    }
+    if (position >= this.eosIndex) {
+      return MappedCodePoints.EOS;
+    }
+
+    final int number = this.windowOf(position);
+    final int slot = number & WindowedStorage.CACHE_SIZE - 1;
+
+    Window window = this.cache[slot];
+    if (window == null || window.number != number) {
+      final int from = this.windowOffsets[number];
+      final int[] codePoints = new int[BulkDecoder.maxCodePoints(this.windowOffsets[number + 1] - from,
+          this.charset)];
+      this.decodeWindow(number, codePoints, null);
+      window = new Window(number, this.windowPositions[number], codePoints);
+      this.cache[slot] = window;
+    }
+
+    return window.codePoints[position - window.position];
+  }
+
+  /**
+   * Decodes a window.
+   *
+   * @param number
+   *          is the number of the window.
+   * @param codePoints
+   *          is the array receiving the code points.
+   * @param byteOffsets
+   *          receives the code points not encoded with the smallest number of bytes. Can be <code>null</code>.
+   * @return the number of code points.
+   */
+  private int decodeWindow(final int number, final int[] codePoints, final ByteOffsets.Builder byteOffsets) {
+    final int from = this.windowOffsets[number];
+    final boolean afterCr = BulkDecoder.isAfterCr(this.bytes, number == 0 ? 0 : this.windowOffsets[number - 1], from,
+        this.charset);
+    return BulkDecoder.decode(this.bytes, from, this.windowOffsets[number + 1], this.charset, afterCr, codePoints, 0,
+        byteOffsets);
+  }
+
+  /**
+   * Returns the number of the window containing a position.
+   *
+   * @param position
+   *          is a position between 1 and the End Of Stream (excluded).
+   * @return the number of the window containing the position.
+   */
+  private int windowOf(final int position) {
+    final int[] positions = this.windowPositions;
+
+    // Last window starting at or before the position (empty windows have the same position as the next one)
+    int low = 0;
+    int high = positions.length - 1;
+    while (low < high) {
+      final int middle = low + high + 1 >>> 1;
+      if (positions[middle] <= position) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+
+    return low;
+  }
+
+  /**
+   * A decoded window.
+   */
+  private static class Window {
+    final private int number;
+    final private int position;
+    final private int[] codePoints;
+
+    Window(final int number, final int position, final int[] codePoints) {
+      this.number = number;
+      this.position = position;
+      this.codePoints = codePoints;
+    }
+  }
+}
@@ -6,4 +6,8 @@ public class MappedCodePointsException extends RuntimeException {
   public MappedCodePointsException(final String message) {
     super(message);
   }
+
+  public MappedCodePointsException(final String message, final Throwable cause) {
+    super(message, cause);
+  }
 }
@@ -0,0 +1,91 @@
+package org.isk.plume.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.isk.plume.parser.Reader;
+import org.isk.plume.unicode.MappedCodePoints;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads the same {@link MappedCodePoints} with a given number of {@link Reader} in parallel, each one reading the whole
+ * stream and asking for the line and the column of every code point. As the readers don't share any mutable state,
+ * the time should not depend on the number of readers as long as there are enough cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class ConcurrentReadersBenchmark {
+
+  /**
+   * Number of readers running in parallel.
+   */
+  @Param({ "1", "2", "4", "8" })
+  public int readers;
+
+  /**
+   * Size of the stream in millions of code points.
+   */
+  @Param({ "10" })
+  public int sizeInMillions;
+
+  private MappedCodePoints stream;
+  private ExecutorService executor;
+
+  @Setup
+  public void createStream() {
+    final StringBuilder sb = new StringBuilder();
+    int lineNumber = 0;
+    while (sb.length() < this.sizeInMillions * 1_000_000) {
+      sb.append("  self assert: (anArray at: ").append(lineNumber++).append(") = #(1 2 3) printString.\n");
+    }
+    this.stream = new MappedCodePoints(sb.codePoints().toArray());
+    this.stream.getLine(1); // Builds the lines
+    this.executor = Executors.newFixedThreadPool(this.readers);
+  }
+
+  @TearDown
+  public void shutdown() {
+    this.executor.shutdown();
+  }
+
+  @Benchmark
+  public long readInParallel() throws InterruptedException, ExecutionException {
+    final List<Future<Long>> results = new ArrayList<>(this.readers);
+    for (int r = 0; r < this.readers; r++) {
+      final Reader reader = new Reader(this.stream);
+      results.add(this.executor.submit(() -> {
+        long sum = 0;
+        while (reader.peek() != MappedCodePoints.EOS) {
+          sum += reader.read() + reader.getLine() + reader.getColumn();
+        }
+        return sum;
+      }));
+    }
+
+    long sum = 0;
+    for (final Future<Long> result : results) {
+      sum += result.get();
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,72 @@
+package org.isk.plume.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.isk.plume.unicode.CodePoints.Charset;
+import org.isk.plume.unicode.MappedCodePoints;
+import org.isk.plume.unicode.UnicodeInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Builds a {@link MappedCodePoints} from an array of code units held in memory, through an {@link UnicodeInputStream}
+ * or with the loop decoding, normalizing the new lines and indexing the lines at once. The line of the End Of Stream is
+ * asked for, so that both paths build their lines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class DecodePipelineBenchmark {
+
+  @Param({ "UTF8", "UTF16LE" })
+  public Charset charset;
+
+  /**
+   * Size of the source in millions of characters.
+   */
+  @Param({ "10" })
+  public int sizeInMillions;
+
+  private byte[] bytes;
+
+  @Setup
+  public void createSource() {
+    final StringBuilder sb = new StringBuilder();
+    int lineNumber = 0;
+    while (sb.length() < this.sizeInMillions * 1_000_000) {
+      if (lineNumber % 10 == 0) {
+        sb.append("\"Comment: déjà vu 亜 ").append(lineNumber++).append("\"\r\n");
+      } else {
+        sb.append("  self assert: (anArray at: ").append(lineNumber++).append(") = #(1 2 3) printString.\r\n");
+      }
+    }
+
+    this.bytes = sb.toString().getBytes(
+        this.charset == Charset.UTF8 ? StandardCharsets.UTF_8 : StandardCharsets.UTF_16LE);
+  }
+
+  @Benchmark
+  public int unicodeInputStream() {
+    final MappedCodePoints mcp = new MappedCodePoints(null, this.charset, new UnicodeInputStream(this.bytes));
+    return mcp.getLine(mcp.getEosIndex());
+  }
+
+  @Benchmark
+  public int fusedDecoding() {
+    final MappedCodePoints mcp = MappedCodePoints.decode(null, this.bytes, this.charset);
+    return mcp.getLine(mcp.getEosIndex());
+  }
+}
@@ -0,0 +1,103 @@
+package org.isk.plume.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.isk.plume.unicode.CodePoints.Charset;
+import org.isk.plume.unicode.LargeMappedCodePoints;
+import org.isk.plume.unicode.MappedCodePoints;
+import org.isk.plume.unicode.UnicodeInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the ways to map a source file (UTF-8, CRLF line breaks, mostly ASCII) of a given size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = { "-Xms4g", "-Xmx4g" })
+public class MappedCodePointsBenchmark {
+
+  /**
+   * Size of the source file in MB.
+   */
+  @Param({ "100" })
+  public int sizeInMb;
+
+  private Path path;
+
+  @Setup
+  public void createFile() throws IOException {
+    this.path = Files.createTempFile("plume-benchmark", ".st");
+
+    final long size = this.sizeInMb * 1024L * 1024L;
+    long written = 0;
+    int lineNumber = 0;
+    try (final BufferedWriter writer = Files.newBufferedWriter(this.path, StandardCharsets.UTF_8)) {
+      while (written < size) {
+        final String line = lineNumber % 10 == 0 //
+            ? "\"Comment: déjà vu 亜 " + lineNumber + "\"\r\n" //
+            : "  self assert: (anArray at: " + lineNumber + ") = #(1 2 3) printString.\r\n";
+        writer.write(line);
+        written += line.getBytes(StandardCharsets.UTF_8).length;
+        lineNumber++;
+      }
+    }
+  }
+
+  @TearDown
+  public void deleteFile() throws IOException {
+    Files.delete(this.path);
+  }
+
+  @Benchmark
+  public int unicodeInputStream() throws IOException {
+    try (final BufferedInputStream inputStream = new BufferedInputStream(Files.newInputStream(this.path))) {
+      final MappedCodePoints mcp = new MappedCodePoints(this.path.toString(), Charset.UTF8,
+          new UnicodeInputStream(inputStream));
+      return mcp.getEosIndex();
+    }
+  }
+
+  @Benchmark
+  public int memoryMappedFile() {
+    final MappedCodePoints mcp = MappedCodePoints.map(this.path, Charset.UTF8);
+    return mcp.getEosIndex();
+  }
+
+  @Benchmark
+  public int memoryMappedFileInParallel() {
+    final MappedCodePoints mcp = MappedCodePoints.mapParallel(this.path, Charset.UTF8);
+    return mcp.getEosIndex();
+  }
+
+  @Benchmark
+  public int memoryMappedUtf8File() {
+    final MappedCodePoints mcp = MappedCodePoints.mapUtf8(this.path);
+    return mcp.getEosIndex();
+  }
+
+  @Benchmark
+  public long largeMemoryMappedFile() {
+    final LargeMappedCodePoints mcp = LargeMappedCodePoints.map(this.path, Charset.UTF8);
+    return mcp.getEosIndex();
+  }
+}
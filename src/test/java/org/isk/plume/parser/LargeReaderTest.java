@@ -0,0 +1,129 @@
+package org.isk.plume.parser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.isk.plume.parser.exception.ReaderException;
+import org.isk.plume.unicode.CodePoints.Charset;
+import org.isk.plume.unicode.LargeMappedCodePoints;
+import org.isk.plume.unicode.MappedCodePoints;
+import org.isk.plume.unicode.UnicodeTestData;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LargeReaderTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path newFile(final String content) throws IOException {
+    final Path path = this.folder.newFile("file.txt").toPath();
+    Files.write(path, content.getBytes(UnicodeTestData.NIO_CHARSET_UTF8));
+    return path;
+  }
+
+  @Test
+  public void read_sameAsReader() throws IOException {
+    final Path path = this.newFile("abc\r\nd\r\n\n\u00E9\uD800\uDF83 f\n");
+    final Reader expected = new Reader(MappedCodePoints.map(path, Charset.UTF8));
+    final LargeReader reader = new LargeReader(LargeMappedCodePoints.map(path, Charset.UTF8));
+
+    Assert.assertEquals(expected.getLine(), reader.getLine());
+    Assert.assertEquals(expected.getColumn(), reader.getColumn());
+    Assert.assertEquals(path.toString(), reader.getFilename());
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(expected.peek(), reader.peek());
+      Assert.assertEquals(expected.read(), reader.read());
+      Assert.assertEquals(expected.getLine(), reader.getLine());
+      Assert.assertEquals(expected.getColumn(), reader.getColumn());
+      Assert.assertEquals(expected.debug("Error"), reader.debug("Error"));
+    }
+  }
+
+  @Test
+  public void read_afterEOS() throws IOException {
+    final LargeReader reader = new LargeReader(LargeMappedCodePoints.map(this.newFile("a"), Charset.UTF8));
+
+    reader.read(); // a
+    Assert.assertEquals(MappedCodePoints.EOS, reader.read());
+
+    try {
+      reader.read(); // too far
+      Assert.fail();
+    } catch (final ReaderException e) {
+      Assert.assertEquals("In file " + reader.getFilename() + "\n" //
+          + "End of stream reached. No more character to read.\n" //
+          + "a\n" //
+          + " ^__ Line 1", e.getMessage());
+    }
+  }
+
+  @Test
+  public void unread_beforestart() throws IOException {
+    final LargeReader reader = new LargeReader(LargeMappedCodePoints.map(this.newFile("a"), Charset.UTF8));
+
+    try {
+      reader.unread();
+      Assert.fail();
+    } catch (final ReaderException e) {
+      Assert.assertEquals("In file " + reader.getFilename() + "\n" //
+          + "Nothing to unread.\n" //
+          + "^__ Line 0\n" //
+          + "a", e.getMessage());
+    }
+  }
+
+  @Test
+  public void markAndReset() throws IOException {
+    final LargeReader reader = new LargeReader(LargeMappedCodePoints.map(this.newFile("ab\ncd"), Charset.UTF8));
+
+    reader.read(); // a
+    reader.mark();
+    reader.read(); // b
+    reader.read(); // LF
+    reader.mark();
+    Assert.assertEquals('c', reader.read());
+    Assert.assertEquals(2, reader.getLine());
+    Assert.assertEquals(1, reader.getColumn());
+
+    reader.reset();
+    Assert.assertEquals('c', reader.read());
+    reader.fullReset();
+    Assert.assertTrue(reader.isMarkEmpty());
+    Assert.assertEquals('b', reader.read());
+    Assert.assertEquals(1, reader.getLine());
+
+    // Not before the first code point
+    reader.unread();
+    reader.unreadNotBeforeStart();
+    Assert.assertEquals('b', reader.read());
+
+    try {
+      reader.reset();
+      Assert.fail();
+    } catch (final ReaderException e) {
+      Assert.assertTrue(e.getMessage().contains("No position has been saved. You must call mark() before."));
+    }
+  }
+
+  @Test
+  public void fork() throws IOException {
+    final LargeReader reader = new LargeReader(LargeMappedCodePoints.map(this.newFile("ab\ncd"), Charset.UTF8));
+    reader.read(); // a
+    reader.read(); // b
+    reader.mark();
+
+    final LargeReader fork = reader.fork();
+    Assert.assertTrue(fork.isMarkEmpty());
+    Assert.assertEquals(MappedCodePoints.LF, fork.read());
+    Assert.assertEquals('c', fork.read());
+    Assert.assertEquals(2, fork.getLine());
+
+    // The first reader hasn't moved
+    Assert.assertEquals(MappedCodePoints.LF, reader.read());
+    Assert.assertEquals(1, reader.getLine());
+  }
+}
@@ -1,9 +1,17 @@
 package org.isk.plume.parser;
 
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.isk.plume.parser.exception.ReaderException;
 import org.isk.plume.unicode.CodePoints.Charset;
+import org.isk.plume.unicode.ColumnModel;
+import org.isk.plume.unicode.ConcatenatedCodePoints;
 import org.isk.plume.unicode.MappedCodePoints;
 import org.isk.plume.unicode.UnicodeInputStream;
 import org.isk.plume.unicode.UnicodeTestData;
@@ -727,4 +735,132 @@ public class ReaderTest {
       Assert.assertEquals(output, debug);
     }
   }
+
+  @Test
+  public void getColumn_model() throws UnsupportedEncodingException {
+    final String string = "a\tb\n\tc";
+
+    try (final UnicodeInputStream inputStream = new UnicodeInputStream(string.getBytes("utf-8"))) {
+      final Reader reader = new Reader(null, Charset.UTF8, inputStream);
+      final int[] expected = { 1, 2, 5, 6, 1, 5 };
+      for (final int column : expected) {
+        reader.read();
+        Assert.assertEquals(column, reader.getColumn(ColumnModel.tabs(4)));
+      }
+      Assert.assertEquals(2, reader.getColumn());
+    }
+  }
+
+  @Test
+  public void fork() throws UnsupportedEncodingException {
+    final String string = "abc\nxyz";
+
+    try (final UnicodeInputStream inputStream = new UnicodeInputStream(string.getBytes("utf-8"))) {
+      final Reader reader = new Reader(null, Charset.UTF8, inputStream);
+      reader.read(); // a
+      reader.read(); // b
+      reader.mark();
+
+      final Reader fork = reader.fork();
+      Assert.assertTrue(fork.isMarkEmpty());
+      Assert.assertEquals('c', fork.read());
+      Assert.assertEquals('\n', fork.read());
+      Assert.assertEquals('x', fork.read());
+      Assert.assertEquals(2, fork.getLine());
+      Assert.assertEquals(1, fork.getColumn());
+
+      // The original reader has not moved
+      Assert.assertEquals(1, reader.getLine());
+      Assert.assertEquals(2, reader.getColumn());
+      Assert.assertEquals('c', reader.read());
+    }
+  }
+
+  @Test
+  public void concurrentReaders() throws Exception {
+    final StringBuilder sb = new StringBuilder();
+    for (int line = 1; line <= 2000; line++) {
+      sb.append("line ").append(line).append(line % 3 == 0 ? "\r\n" : "\n");
+    }
+    final int[] codePoints = sb.codePoints().toArray();
+
+    // Expected values, computed by a single thread on another instance
+    final MappedCodePoints expected = new MappedCodePoints(codePoints);
+    final int eosIndex = expected.getEosIndex();
+    final int[] lines = new int[eosIndex + 1];
+    final int[] columns = new int[eosIndex + 1];
+    for (int i = 0; i <= eosIndex; i++) {
+      lines[i] = expected.getLine(i);
+      columns[i] = expected.getColumn(i);
+    }
+
+    final MappedCodePoints stream = new MappedCodePoints(codePoints);
+    final int numberOfReaders = 8;
+    final CountDownLatch start = new CountDownLatch(1);
+    final ExecutorService executor = Executors.newFixedThreadPool(numberOfReaders);
+    try {
+      final List<Future<Integer>> results = new ArrayList<>();
+      for (int r = 0; r < numberOfReaders; r++) {
+        // Each reader starts at a different position, so that they don't read the same lines at the same time
+        final int skip = r * eosIndex / numberOfReaders;
+        final Reader first = new Reader(stream);
+        for (int i = 0; i < skip; i++) {
+          first.read();
+        }
+
+        results.add(executor.submit(() -> {
+          start.await();
+          int checked = 0;
+          for (int pass = 0; pass < 5; pass++) {
+            final Reader reader = first.fork();
+            for (int position = skip + 1; position < eosIndex; position++) {
+              Assert.assertEquals(expected.codePointAt(position), reader.read());
+              Assert.assertEquals(lines[position], reader.getLine());
+              Assert.assertEquals(columns[position], reader.getColumn());
+
+              // Shared stream, without any hint
+              Assert.assertEquals(lines[position], stream.getLine(position));
+              Assert.assertEquals(columns[position], stream.getColumn(position));
+              checked++;
+            }
+          }
+          return checked;
+        }));
+      }
+
+      start.countDown();
+      for (int r = 0; r < numberOfReaders; r++) {
+        Assert.assertEquals(5 * (eosIndex - 1 - r * eosIndex / numberOfReaders), results.get(r).get().intValue());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void concatenatedSources() {
+    final Reader reader = new Reader(new ConcatenatedCodePoints( //
+        MappedCodePoints.of("main.st", "ab\ncd\n", 1, 1), //
+        MappedCodePoints.of("included.st", "xy", 1, 1)));
+
+    Assert.assertEquals("main.st", reader.getFilename());
+    final StringBuilder sb = new StringBuilder();
+    while (reader.peek() != MappedCodePoints.EOS) {
+      final int codePoint = reader.read();
+      sb.appendCodePoint(codePoint);
+      Assert.assertEquals(codePoint == 'x' || codePoint == 'y' ? "included.st" : "main.st", reader.getFilename());
+      if (codePoint == 'x') {
+        Assert.assertEquals(1, reader.getLine());
+        Assert.assertEquals(1, reader.getColumn());
+      }
+    }
+    Assert.assertEquals("ab\ncd\nxy", sb.toString());
+
+    // The LF separating the sources is the end of the last line of the first one
+    reader.unread();
+    reader.unread();
+    Assert.assertEquals("main.st", reader.getFilename());
+    Assert.assertEquals(2, reader.getLine());
+    Assert.assertEquals(3, reader.getColumn());
+  }
 }
@@ -0,0 +1,97 @@
+package org.isk.plume.unicode;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CodePointPropertiesTest {
+
+  // -------------------------------------------------------------------------------------------------------------------
+  // ASCII
+  // -------------------------------------------------------------------------------------------------------------------
+
+  @Test
+  public void ascii_letters() {
+    Assert.assertTrue(CodePointProperties.isLetter('a'));
+    Assert.assertTrue(CodePointProperties.isLetter('Z'));
+    Assert.assertFalse(CodePointProperties.isLetter('0'));
+    Assert.assertFalse(CodePointProperties.isLetter('_'));
+  }
+
+  @Test
+  public void ascii_digits() {
+    Assert.assertTrue(CodePointProperties.isDigit('0'));
+    Assert.assertTrue(CodePointProperties.isDigit('9'));
+    Assert.assertFalse(CodePointProperties.isDigit('a'));
+    Assert.assertTrue(CodePointProperties.isLetterOrDigit('a'));
+    Assert.assertTrue(CodePointProperties.isLetterOrDigit('7'));
+    Assert.assertFalse(CodePointProperties.isLetterOrDigit('+'));
+  }
+
+  @Test
+  public void ascii_whitespaces() {
+    Assert.assertTrue(CodePointProperties.isWhitespace(' '));
+    Assert.assertTrue(CodePointProperties.isWhitespace('\t'));
+    Assert.assertTrue(CodePointProperties.isWhitespace('\n'));
+    Assert.assertTrue(CodePointProperties.isWhitespace('\r'));
+    Assert.assertFalse(CodePointProperties.isWhitespace('a'));
+  }
+
+  @Test
+  public void ascii_binarySelectors() {
+    for (final char c : "!%&*+,-/<=>?@\\~|".toCharArray()) {
+      Assert.assertTrue(String.valueOf(c), CodePointProperties.isBinarySelector(c));
+    }
+
+    for (final char c : "#$^_'\"()[]{}.:;`".toCharArray()) {
+      Assert.assertFalse(String.valueOf(c), CodePointProperties.isBinarySelector(c));
+    }
+  }
+
+  // -------------------------------------------------------------------------------------------------------------------
+  // Outside of ASCII
+  // -------------------------------------------------------------------------------------------------------------------
+
+  @Test
+  public void nonAscii() {
+    Assert.assertTrue(CodePointProperties.isLetter(0x00E9)); // LATIN SMALL LETTER E WITH ACUTE
+    Assert.assertTrue(CodePointProperties.isLetter(0x4E9C)); // CJK
+    Assert.assertTrue(CodePointProperties.isLetter(0x10083)); // LINEAR B IDEOGRAM B105M STALLION
+    Assert.assertTrue(CodePointProperties.isDigit(0x0967)); // DEVANAGARI DIGIT ONE
+    Assert.assertTrue(CodePointProperties.isWhitespace(0x00A0)); // NO-BREAK SPACE
+    Assert.assertTrue(CodePointProperties.isWhitespace(0x0085)); // NEXT LINE
+    Assert.assertTrue(CodePointProperties.isWhitespace(0x2028)); // LINE SEPARATOR
+    Assert.assertTrue(CodePointProperties.isBinarySelector(0x2260)); // NOT EQUAL TO
+    Assert.assertFalse(CodePointProperties.isBinarySelector(0x00E9));
+  }
+
+  @Test
+  public void outsideOfCodespace() {
+    Assert.assertEquals(0, CodePointProperties.of(MappedCodePoints.EOS));
+    Assert.assertEquals(0, CodePointProperties.of(0x110000));
+    Assert.assertEquals(0, CodePointProperties.of(Integer.MAX_VALUE));
+    Assert.assertEquals(0, CodePointProperties.of(Integer.MIN_VALUE));
+
+    // Not aliased to 'A' by the 21 lower bits
+    Assert.assertFalse(CodePointProperties.isLetter(0x200041));
+    Assert.assertFalse(CodePointProperties.isLetter(0xFFE00041));
+  }
+
+  // -------------------------------------------------------------------------------------------------------------------
+  // All code points
+  // -------------------------------------------------------------------------------------------------------------------
+
+  @Test
+  public void allCodePoints() {
+    for (int codePoint = 0; codePoint <= Character.MAX_CODE_POINT; codePoint++) {
+      Assert.assertEquals(Character.isLetter(codePoint), CodePointProperties.isLetter(codePoint));
+      Assert.assertEquals(Character.isDigit(codePoint), CodePointProperties.isDigit(codePoint));
+      Assert.assertEquals(Character.isWhitespace(codePoint) || Character.isSpaceChar(codePoint) || codePoint == 0x85,
+          CodePointProperties.isWhitespace(codePoint));
+
+      if (codePoint >= 0x80) {
+        Assert.assertEquals(Character.getType(codePoint) == Character.MATH_SYMBOL,
+            CodePointProperties.isBinarySelector(codePoint));
+      }
+    }
+  }
+}
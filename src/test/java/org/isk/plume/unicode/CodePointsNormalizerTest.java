@@ -0,0 +1,115 @@
+package org.isk.plume.unicode;
+
+import java.text.Normalizer;
+
+import org.isk.plume.unicode.CodePointsNormalizer.Form;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CodePointsNormalizerTest {
+
+  // -------------------------------------------------------------------------------------------------------------------
+  // Quick check
+  // -------------------------------------------------------------------------------------------------------------------
+
+  @Test
+  public void isStableStarter() {
+    Assert.assertTrue(Form.NFC.isStableStarter('a'));
+    Assert.assertTrue(Form.NFC.isStableStarter(0x00E9)); // LATIN SMALL LETTER E WITH ACUTE
+    Assert.assertFalse(Form.NFC.isStableStarter(0x0301)); // COMBINING ACUTE ACCENT
+    Assert.assertFalse(Form.NFC.isStableStarter(0x1161)); // HANGUL JUNGSEONG A
+    Assert.assertFalse(Form.NFC.isStableStarter(0x212B)); // ANGSTROM SIGN
+    Assert.assertTrue(Form.NFC.isStableStarter(0xFB01)); // LATIN SMALL LIGATURE FI
+    Assert.assertFalse(Form.NFKC.isStableStarter(0xFB01));
+  }
+
+  @Test
+  public void normalize_alreadyNormalized_sameArray() {
+    final int[] codePoints = "Transcript show: 'h\u00E9llo'".codePoints().toArray();
+    Assert.assertSame(codePoints, CodePointsNormalizer.normalize(codePoints, Form.NFC));
+    Assert.assertTrue(CodePointsNormalizer.isNormalized(codePoints, Form.NFC));
+  }
+
+  // -------------------------------------------------------------------------------------------------------------------
+  // Normalization
+  // -------------------------------------------------------------------------------------------------------------------
+
+  @Test
+  public void normalize_nfc_combiningMark() {
+    final int[] codePoints = "he\u0301llo".codePoints().toArray();
+    Assert.assertArrayEquals("h\u00E9llo".codePoints().toArray(), CodePointsNormalizer.normalize(codePoints, Form.NFC));
+    Assert.assertFalse(CodePointsNormalizer.isNormalized(codePoints, Form.NFC));
+  }
+
+  @Test
+  public void normalize_nfc_reorderedMarks() {
+    // COMBINING DOT BELOW (ccc 220) must come before COMBINING DOT ABOVE (ccc 230)
+    final int[] codePoints = "aq\u0307\u0323b".codePoints().toArray();
+    Assert.assertArrayEquals("aq\u0323\u0307b".codePoints().toArray(),
+        CodePointsNormalizer.normalize(codePoints, Form.NFC));
+  }
+
+  @Test
+  public void normalize_nfc_hangul() {
+    final int[] codePoints = "\u1100\u1161\u11A8".codePoints().toArray();
+    Assert.assertArrayEquals(new int[] { 0xAC01 }, CodePointsNormalizer.normalize(codePoints, Form.NFC));
+  }
+
+  @Test
+  public void normalize_nfc_startsWithMark() {
+    final int[] codePoints = "\u0301a".codePoints().toArray();
+    Assert.assertArrayEquals(codePoints, CodePointsNormalizer.normalize(codePoints, Form.NFC));
+  }
+
+  @Test
+  public void normalize_nfkc_ligature() {
+    final int[] codePoints = "\uFB01x".codePoints().toArray();
+    Assert.assertArrayEquals("fix".codePoints().toArray(), CodePointsNormalizer.normalize(codePoints, Form.NFKC));
+    Assert.assertTrue(CodePointsNormalizer.isNormalized(codePoints, Form.NFC));
+    Assert.assertFalse(CodePointsNormalizer.isNormalized(codePoints, Form.NFKC));
+  }
+
+  @Test
+  public void normalize_supplementaryCodePoints() {
+    final int[] codePoints = { 0x0061, 0x4E9C, 0x10083 };
+    Assert.assertSame(codePoints, CodePointsNormalizer.normalize(codePoints, Form.NFC));
+  }
+
+  // -------------------------------------------------------------------------------------------------------------------
+  // Streaming
+  // -------------------------------------------------------------------------------------------------------------------
+
+  @Test
+  public void stream() {
+    final CodePoints output = new CodePoints();
+    final CodePointsNormalizer normalizer = new CodePointsNormalizer(Form.NFC, output);
+
+    "A\u030A".codePoints().forEach(normalizer::add);
+    Assert.assertEquals(0, output.length()); // The segment is still buffered
+
+    "ngstro\u0308m".codePoints().forEach(normalizer::add);
+    normalizer.flush();
+    Assert.assertEquals("\u00C5ngstr\u00F6m", output.toString());
+  }
+
+  // -------------------------------------------------------------------------------------------------------------------
+  // Comparison with java.text.Normalizer
+  // -------------------------------------------------------------------------------------------------------------------
+
+  @Test
+  public void allBmpCodePoints_withMarks() {
+    for (final Form form : Form.values()) {
+      final Normalizer.Form jdkForm = Normalizer.Form.valueOf(form.name());
+      for (int codePoint = 0; codePoint <= 0xFFFF; codePoint++) {
+        if (Character.isSurrogate((char) codePoint)) {
+          continue;
+        }
+
+        final String s = new String(new int[] { 'a', codePoint, 0x0301, 'b', codePoint }, 0, 5);
+        final int[] expected = Normalizer.normalize(s, jdkForm).codePoints().toArray();
+        final int[] actual = CodePointsNormalizer.normalize(s.codePoints().toArray(), form);
+        Assert.assertArrayEquals(form + " U+" + Integer.toHexString(codePoint), expected, actual);
+      }
+    }
+  }
+}
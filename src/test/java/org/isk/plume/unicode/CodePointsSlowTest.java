@@ -498,10 +498,94 @@ public class CodePointsSlowTest {
     Assert.assertArrayEquals(CodePointsSlowTest.ALL_UTF16LE, utf16le);
   }
 
+  // -------------------------------------------------------------------------------------------------------------------
+  // Converter.encode
+  // -------------------------------------------------------------------------------------------------------------------
+
+  @Test
+  public void encodeToUtf8() {
+    final byte[] utf8 = Converter.encode(CodePointsSlowTest.allCodePointsAsString(), Charset.UTF8);
+    Assert.assertArrayEquals(CodePointsSlowTest.ALL_UTF8, utf8);
+  }
+
+  @Test
+  public void encodeToUtf8bom() {
+    final byte[] utf8bom = Converter.encode(CodePointsSlowTest.allCodePointsAsString(), Charset.UTF8BOM);
+    Assert.assertArrayEquals(CodePointsSlowTest.ALL_UTF8BOM, utf8bom);
+  }
+
+  @Test
+  public void encodeToUtf16be() {
+    final byte[] utf16be = Converter.encode(CodePointsSlowTest.allCodePointsAsString(), Charset.UTF16BE);
+    Assert.assertArrayEquals(CodePointsSlowTest.ALL_UTF16BE, utf16be);
+  }
+
+  @Test
+  public void encodeToUtf16le() {
+    final byte[] utf16le = Converter.encode(CodePointsSlowTest.allCodePointsAsString(), Charset.UTF16LE);
+    Assert.assertArrayEquals(CodePointsSlowTest.ALL_UTF16LE, utf16le);
+  }
+
+  @Test
+  public void encodeToUtf32be() {
+    final byte[] utf32be = Converter.encode(CodePointsSlowTest.allCodePointsAsString(), Charset.UTF32BE);
+    Assert.assertArrayEquals(CodePointsSlowTest.ALL_UTF32BE, utf32be);
+  }
+
+  @Test
+  public void encodeToUtf32le() {
+    final byte[] utf32le = Converter.encode(CodePointsSlowTest.allCodePointsAsString(), Charset.UTF32LE);
+    Assert.assertArrayEquals(CodePointsSlowTest.ALL_UTF32LE, utf32le);
+  }
+
+  // -------------------------------------------------------------------------------------------------------------------
+  // Converter.decodeToString
+  // -------------------------------------------------------------------------------------------------------------------
+
+  @Test
+  public void utf8DecodeToString() {
+    final String s = Converter.decodeToString(CodePointsSlowTest.ALL_UTF8, Charset.UTF8);
+    Assert.assertEquals(CodePointsSlowTest.allCodePointsAsString(), s);
+  }
+
+  @Test
+  public void utf8bomDecodeToString() {
+    final String s = Converter.decodeToString(CodePointsSlowTest.ALL_UTF8BOM, Charset.UTF8BOM);
+    Assert.assertEquals(CodePointsSlowTest.allCodePointsAsString(), s);
+  }
+
+  @Test
+  public void utf16beDecodeToString() {
+    final String s = Converter.decodeToString(CodePointsSlowTest.ALL_UTF16BE, Charset.UTF16BE);
+    Assert.assertEquals(CodePointsSlowTest.allCodePointsAsString(), s);
+  }
+
+  @Test
+  public void utf16leDecodeToString() {
+    final String s = Converter.decodeToString(CodePointsSlowTest.ALL_UTF16LE, Charset.UTF16LE);
+    Assert.assertEquals(CodePointsSlowTest.allCodePointsAsString(), s);
+  }
+
+  @Test
+  public void utf32beDecodeToString() {
+    final String s = Converter.decodeToString(CodePointsSlowTest.ALL_UTF32BE, Charset.UTF32BE);
+    Assert.assertEquals(CodePointsSlowTest.allCodePointsAsString(), s);
+  }
+
+  @Test
+  public void utf32leDecodeToString() {
+    final String s = Converter.decodeToString(CodePointsSlowTest.ALL_UTF32LE, Charset.UTF32LE);
+    Assert.assertEquals(CodePointsSlowTest.allCodePointsAsString(), s);
+  }
+
   // -------------------------------------------------------------------------------------------------------------------
   // Helpers
   // -------------------------------------------------------------------------------------------------------------------
 
+  public static String allCodePointsAsString() {
+    return new String(CodePointsSlowTest.ALL_CODEPOINTS, 0, CodePointsSlowTest.ALL_CODEPOINTS.length);
+  }
+
   // Test all code points
   public void testUtfToCodePoint(final Predicate<Line> predicate) {
     final long count = CodePointsSlowTest.ALL_CODEPOINTS_AND_UTF.stream().parallel().filter(predicate).count();
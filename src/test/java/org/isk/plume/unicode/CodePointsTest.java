@@ -460,6 +460,147 @@ public class CodePointsTest {
     Assert.assertArrayEquals(UnicodeTestData.UTF32_LE_BOM_BYTEARRAY, utf32);
   }
 
+  // -------------------------------------------------------------------------------------------------------------------
+  // Converter.encode
+  // -------------------------------------------------------------------------------------------------------------------
+
+  @Test
+  public void encode_utf8_noBOM() {
+    final byte[] utf8 = Converter.encode(UnicodeTestData.CODEPOINTS_AS_STRING, Charset.UTF8);
+    Assert.assertArrayEquals(UnicodeTestData.UTF8_NOBOM_BYTEARRAY, utf8);
+  }
+
+  @Test
+  public void encode_utf8_wBOM() {
+    final byte[] utf8 = Converter.encode(UnicodeTestData.CODEPOINTS_AS_STRING, Charset.UTF8BOM);
+    Assert.assertArrayEquals(UnicodeTestData.UTF8_BOM_BYTEARRAY, utf8);
+  }
+
+  @Test
+  public void encode_utf16BE() {
+    final byte[] utf16 = Converter.encode(UnicodeTestData.CODEPOINTS_AS_STRING, Charset.UTF16BE);
+    Assert.assertArrayEquals(UnicodeTestData.UTF16_BE_BOM_BYTEARRAY, utf16);
+  }
+
+  @Test
+  public void encode_utf16LE() {
+    final byte[] utf16 = Converter.encode(UnicodeTestData.CODEPOINTS_AS_STRING, Charset.UTF16LE);
+    Assert.assertArrayEquals(UnicodeTestData.UTF16_LE_BOM_BYTEARRAY, utf16);
+  }
+
+  @Test
+  public void encode_utf32BE() {
+    final byte[] utf32 = Converter.encode(UnicodeTestData.CODEPOINTS_AS_STRING, Charset.UTF32BE);
+    Assert.assertArrayEquals(UnicodeTestData.UTF32_BE_BOM_BYTEARRAY, utf32);
+  }
+
+  @Test
+  public void encode_utf32LE() {
+    final byte[] utf32 = Converter.encode(UnicodeTestData.CODEPOINTS_AS_STRING, Charset.UTF32LE);
+    Assert.assertArrayEquals(UnicodeTestData.UTF32_LE_BOM_BYTEARRAY, utf32);
+  }
+
+  @Test
+  public void encode_stringBuilder() {
+    final byte[] utf8 = Converter.encode(new StringBuilder(UnicodeTestData.CODEPOINTS_AS_STRING), Charset.UTF8);
+    Assert.assertArrayEquals(UnicodeTestData.UTF8_NOBOM_BYTEARRAY, utf8);
+  }
+
+  @Test
+  public void encode_loneSurrogate() {
+    final String s = "a\uD800b";
+    Assert.assertArrayEquals(CodePoints.toUtf(s.codePoints().toArray(), Charset.UTF8),
+        Converter.encode(s, Charset.UTF8));
+    Assert.assertArrayEquals(CodePoints.toUtf(s.codePoints().toArray(), Charset.UTF32BE),
+        Converter.encode(s, Charset.UTF32BE));
+  }
+
+  @Test
+  public void encode_empty() {
+    Assert.assertArrayEquals(new byte[0], Converter.encode("", Charset.UTF8));
+    Assert.assertArrayEquals(CodePoints.UTF16LE_BOM, Converter.encode("", Charset.UTF16LE));
+  }
+
+  // -------------------------------------------------------------------------------------------------------------------
+  // Converter.decodeToString
+  // -------------------------------------------------------------------------------------------------------------------
+
+  @Test
+  public void decodeToString_utf8_noBOM() {
+    final String s = Converter.decodeToString(UnicodeTestData.UTF8_NOBOM_BYTEARRAY, Charset.UTF8);
+    Assert.assertEquals(UnicodeTestData.CODEPOINTS_AS_STRING, s);
+  }
+
+  @Test
+  public void decodeToString_utf8_wBOM() {
+    final String s = Converter.decodeToString(UnicodeTestData.UTF8_BOM_BYTEARRAY, Charset.UTF8BOM);
+    Assert.assertEquals(UnicodeTestData.CODEPOINTS_AS_STRING, s);
+  }
+
+  @Test
+  public void decodeToString_utf16BE() {
+    final String s = Converter.decodeToString(UnicodeTestData.UTF16_BE_BOM_BYTEARRAY, Charset.UTF16BE);
+    Assert.assertEquals(UnicodeTestData.CODEPOINTS_AS_STRING, s);
+  }
+
+  @Test
+  public void decodeToString_utf16LE() {
+    final String s = Converter.decodeToString(UnicodeTestData.UTF16_LE_BOM_BYTEARRAY, Charset.UTF16LE);
+    Assert.assertEquals(UnicodeTestData.CODEPOINTS_AS_STRING, s);
+  }
+
+  @Test
+  public void decodeToString_utf32BE() {
+    final String s = Converter.decodeToString(UnicodeTestData.UTF32_BE_BOM_BYTEARRAY, Charset.UTF32BE);
+    Assert.assertEquals(UnicodeTestData.CODEPOINTS_AS_STRING, s);
+  }
+
+  @Test
+  public void decodeToString_utf32LE() {
+    final String s = Converter.decodeToString(UnicodeTestData.UTF32_LE_BOM_BYTEARRAY, Charset.UTF32LE);
+    Assert.assertEquals(UnicodeTestData.CODEPOINTS_AS_STRING, s);
+  }
+
+  @Test
+  public void decodeToString_utf16BE_noBOM() {
+    try {
+      Converter.decodeToString(UnicodeTestData.UTF16_BE_NOBOM_BYTEARRAY, Charset.UTF16BE);
+      Assert.fail();
+    } catch (final UnicodeException e) {
+      Assert.assertEquals("Wrong UTF-16-BE BOM. Expected 0xFE (byte 0).", e.getMessage());
+    }
+  }
+
+  @Test
+  public void decodeToString_utf32BE_noBOM() {
+    try {
+      Converter.decodeToString(UnicodeTestData.UTF32_BE_NOBOM_BYTEARRAY, Charset.UTF32BE);
+      Assert.fail();
+    } catch (final UnicodeException e) {
+      Assert.assertEquals("Wrong UTF-32-BE BOM. Expected 0xFE (byte 2).", e.getMessage());
+    }
+  }
+
+  @Test
+  public void decodeToString_utf8_truncated() {
+    try {
+      Converter.decodeToString(new byte[] { 0x61, (byte) 0xE4, (byte) 0xBA }, Charset.UTF8);
+      Assert.fail();
+    } catch (final UnicodeException e) {
+      Assert.assertEquals("Corrupted UTF-8 data. Expected 2 more byte(s) from byte 2.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void decodeToString_utf16LE_truncated() {
+    try {
+      Converter.decodeToString(new byte[] { (byte) 0xFF, (byte) 0xFE, 0x61, 0, 0x62 }, Charset.UTF16LE);
+      Assert.fail();
+    } catch (final UnicodeException e) {
+      Assert.assertEquals("Corrupted UTF-16-LE data. The number of bytes is not a multiple of 2.", e.getMessage());
+    }
+  }
+
   // -------------------------------------------------------------------------------------------------------------------
   // Converter.readBom
   // -------------------------------------------------------------------------------------------------------------------
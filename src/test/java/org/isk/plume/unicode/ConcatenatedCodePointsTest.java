@@ -0,0 +1,105 @@
+package org.isk.plume.unicode;
+
+import org.isk.plume.unicode.exception.MappedCodePointsException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcatenatedCodePointsTest {
+
+  private static MappedCodePoints[] getSources() {
+    return new MappedCodePoints[] { //
+        MappedCodePoints.of("main.st", "line 1\r\nline 2\n\n", 1, 1), //
+        MappedCodePoints.of("included.st", "a\u00E9\uD800\uDF83", 1, 1), //
+        MappedCodePoints.of(null, "\nx\ny\rz", 1, 1) };
+  }
+
+  @Test
+  public void sameAsConcatenatedText() {
+    final MappedCodePoints[] sources = ConcatenatedCodePointsTest.getSources();
+    final ConcatenatedCodePoints ccp = new ConcatenatedCodePoints(sources);
+    final MappedCodePoints expected = MappedCodePoints.of("line 1\nline 2\na\u00E9\uD800\uDF83\n\nx\ny\nz");
+
+    Assert.assertEquals(3, ccp.getSourceCount());
+    Assert.assertEquals(expected.getEosIndex(), ccp.getEosIndex());
+    for (int i = 0; i <= ccp.getEosIndex(); i++) {
+      Assert.assertEquals(expected.codePointAt(i), ccp.codePointAt(i));
+    }
+  }
+
+  @Test
+  public void positionsOfTheSources() {
+    final MappedCodePoints[] sources = ConcatenatedCodePointsTest.getSources();
+    final ConcatenatedCodePoints ccp = new ConcatenatedCodePoints(sources);
+
+    for (int i = 0; i <= ccp.getEosIndex(); i++) {
+      final int index = ccp.getSourceIndex(i);
+      final MappedCodePoints source = ccp.getSource(index);
+      final int position = i - ccp.getSourceOffset(index);
+      Assert.assertSame(sources[index], source);
+      Assert.assertTrue(i == 0 ? position == 0 : position >= 1 && position <= source.getEosIndex());
+
+      Assert.assertEquals(source.getFilename(), ccp.getFilename(i));
+      Assert.assertEquals(source.getLine(position), ccp.getLine(i));
+      Assert.assertEquals(source.getLine(position), ccp.getLine(i, 2));
+      Assert.assertEquals(source.getColumn(position), ccp.getColumn(i));
+      Assert.assertEquals(source.getColumn(position), ccp.getColumn(i, 1));
+      Assert.assertEquals(source.getColumn(position, ColumnModel.UTF16), ccp.getColumn(i, 0, ColumnModel.UTF16));
+      Assert.assertEquals(source.debug("Error", position), ccp.debug("Error", i));
+    }
+
+    // Backward, so that the last source located is never the right one at the start of a source
+    final ConcatenatedCodePoints backward = new ConcatenatedCodePoints(sources);
+    for (int i = ccp.getEosIndex(); i >= 0; i--) {
+      Assert.assertEquals(ccp.getSourceIndex(i), backward.getSourceIndex(i));
+    }
+    Assert.assertEquals(0, backward.getSourceIndex(14));
+    Assert.assertEquals(2, backward.getSourceIndex(ccp.getEosIndex()));
+    Assert.assertEquals(1, backward.getSourceIndex(15));
+    Assert.assertEquals(0, backward.getSourceIndex(1));
+    Assert.assertEquals(2, backward.getSourceIndex(20));
+  }
+
+  @Test
+  public void debug() {
+    final MappedCodePoints[] sources = ConcatenatedCodePointsTest.getSources();
+    final ConcatenatedCodePoints ccp = new ConcatenatedCodePoints(sources);
+    final String debug = ccp.debug("Error", 16);
+    Assert.assertEquals(sources[1].debug("Error", 2), debug);
+    Assert.assertTrue(debug.contains("included.st"));
+  }
+
+  @Test
+  public void singleSource() {
+    final MappedCodePoints source = MappedCodePoints.of("main.st", "abc\nd", 1, 1);
+    final ConcatenatedCodePoints ccp = new ConcatenatedCodePoints(source);
+    Assert.assertEquals(source.getEosIndex(), ccp.getEosIndex());
+    Assert.assertEquals(MappedCodePoints.EOS, ccp.codePointAt(ccp.getEosIndex()));
+    Assert.assertEquals(MappedCodePoints.LF, ccp.codePointAt(0));
+    Assert.assertEquals(2, ccp.getLine(5));
+  }
+
+  @Test
+  public void noSource() {
+    try {
+      new ConcatenatedCodePoints();
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("There should be at least one source.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void outOfRange() {
+    final ConcatenatedCodePoints ccp = new ConcatenatedCodePoints(ConcatenatedCodePointsTest.getSources());
+    for (final int position : new int[] { -1, ccp.getEosIndex() + 1 }) {
+      try {
+        ccp.codePointAt(position);
+        Assert.fail();
+      } catch (final MappedCodePointsException e) {
+        Assert.assertEquals("Index outside of range (" + position
+            + "). It should be greater than or equal to 0 and less than or equal to the end of stream.",
+            e.getMessage());
+      }
+    }
+  }
+}
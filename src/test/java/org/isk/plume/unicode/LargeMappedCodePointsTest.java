@@ -0,0 +1,183 @@
+package org.isk.plume.unicode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.isk.plume.unicode.CodePoints.Charset;
+import org.isk.plume.unicode.exception.MappedCodePointsException;
+import org.isk.plume.unicode.exception.UnicodeException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LargeMappedCodePointsTest {
+
+  final private static String MIXED_TEXT = "line 1\r\nline 2\rline 3\n\r\n\n\u00E9\u4E9C \uD800\uDF83\r\r\n\n";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static void assertSameMapping(final MappedCodePoints expected, final LargeMappedCodePoints actual) {
+    Assert.assertEquals(expected.getEosIndex(), actual.getEosIndex());
+    for (int i = 0; i <= expected.getEosIndex(); i++) {
+      Assert.assertEquals(expected.codePointAt(i), actual.codePointAt(i));
+      Assert.assertEquals(expected.getLine(i), actual.getLine(i));
+      Assert.assertEquals(expected.getColumn(i), actual.getColumn(i));
+      Assert.assertEquals(expected.getLine(i), actual.getLine(i, i == 0 ? 0 : actual.getLine(i - 1)));
+      Assert.assertEquals(expected.debug("Error", i), actual.debug("Error", i));
+    }
+  }
+
+  @Test
+  public void map_allCharsets_allRegionSizes() throws IOException {
+    final Object[][] charsets = { //
+        { Charset.UTF8, UnicodeTestData.NIO_CHARSET_UTF8 }, //
+        { Charset.UTF16BE, UnicodeTestData.NIO_CHARSET_UTF16BE }, //
+        { Charset.UTF16LE, UnicodeTestData.NIO_CHARSET_UTF16LE }, //
+        { Charset.UTF32BE, UnicodeTestData.NIO_CHARSET_UTF32BE }, //
+        { Charset.UTF32LE, UnicodeTestData.NIO_CHARSET_UTF32LE } };
+
+    for (final Object[] charset : charsets) {
+      final Path path = this.folder.newFile().toPath();
+      Files.write(path, LargeMappedCodePointsTest.MIXED_TEXT.getBytes((java.nio.charset.Charset) charset[1]));
+      final MappedCodePoints expected = MappedCodePoints.map(path, (Charset) charset[0]);
+
+      // Regions splitting CRLF, UTF-8 sequences and surrogate pairs, segments of 1 to 16 code points
+      for (int regionSize = 4; regionSize <= 40; regionSize += 4) {
+        for (int segmentShift = 0; segmentShift <= 4; segmentShift++) {
+          LargeMappedCodePointsTest.assertSameMapping(expected,
+              LargeMappedCodePoints.map(path, (Charset) charset[0], regionSize, segmentShift, 1, 1));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void map_malformedSequences_allRegionSizes() throws IOException {
+    for (final Object[] malformed : MappedCodePointsTest.MALFORMED_SEQUENCES) {
+      final Path path = this.folder.newFile().toPath();
+      Files.write(path, (byte[]) malformed[1]);
+      final MappedCodePoints expected = MappedCodePoints.map(path, (Charset) malformed[0]);
+
+      // Regions split in the middle of the sequences swallowing the following code units
+      for (int regionSize = 4; regionSize <= 40; regionSize += 4) {
+        LargeMappedCodePointsTest.assertSameMapping(expected,
+            LargeMappedCodePoints.map(path, (Charset) malformed[0], regionSize, 2, 1, 1));
+      }
+    }
+  }
+
+  @Test
+  public void map_malformedSequenceAtChunkBoundary() throws IOException {
+    // A lead byte of 3 bytes swallowing the first byte of the second chunk (1 MB)
+    final byte[] bytes = new byte[3 * 1024 * 1024];
+    Arrays.fill(bytes, (byte) 'a');
+    bytes[1024 * 1024 - 1] = (byte) 0xE0;
+
+    final Path path = this.folder.newFile().toPath();
+    Files.write(path, bytes);
+    final LargeMappedCodePoints mcp = LargeMappedCodePoints.map(path, Charset.UTF8);
+    LargeMappedCodePointsTest.assertSameMapping(MappedCodePoints.map(path, Charset.UTF8), mcp);
+    Assert.assertEquals(3 * 1024 * 1024 - 1, mcp.getEosIndex());
+  }
+
+  @Test
+  public void map_sameAsMappedCodePoints() throws IOException {
+    final StringBuilder sb = new StringBuilder();
+    final Random random = new Random(42);
+    for (int i = 0; i < 20_000; i++) {
+      final int n = random.nextInt(100);
+      sb.append(n == 0 ? "\r\n" : n == 1 ? "\n" : n == 2 ? "\u00E9" : n == 3 ? "\uD800\uDF83" : "a");
+    }
+
+    final Path path = this.folder.newFile().toPath();
+    Files.write(path, sb.toString().getBytes(UnicodeTestData.NIO_CHARSET_UTF8));
+    LargeMappedCodePointsTest.assertSameMapping(MappedCodePoints.map(path, Charset.UTF8, 2, 3),
+        LargeMappedCodePoints.map(path, Charset.UTF8, 1000, 8, 2, 3));
+    LargeMappedCodePointsTest.assertSameMapping(MappedCodePoints.map(path, Charset.UTF8),
+        LargeMappedCodePoints.map(path, Charset.UTF8));
+  }
+
+  @Test
+  public void map_longLine() throws IOException {
+    final StringBuilder sb = new StringBuilder("first line\n");
+    for (int i = 0; i < 1000; i++) {
+      sb.append((char) ('a' + i % 26));
+    }
+
+    final Path path = this.folder.newFile().toPath();
+    Files.write(path, sb.toString().getBytes(UnicodeTestData.NIO_CHARSET_UTF8));
+    final MappedCodePoints expected = MappedCodePoints.map(path, Charset.UTF8);
+    final LargeMappedCodePoints mcp = LargeMappedCodePoints.map(path, Charset.UTF8, 64, 4, 1, 1);
+    for (final int position : new int[] { 12, 15, 111, 112, 500, 911, 912, 1011 }) {
+      Assert.assertEquals(expected.debug(null, position), mcp.debug(null, position));
+    }
+  }
+
+  @Test
+  public void map_emptyFile() throws IOException {
+    final Path path = this.folder.newFile("myFile.txt").toPath();
+    Files.write(path, new byte[] { '\r', '\n', '\n' });
+    try {
+      LargeMappedCodePoints.map(path, Charset.UTF8);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("This stream is empty (" + path + ").", e.getMessage());
+    }
+  }
+
+  @Test
+  public void map_missingFile() {
+    final Path path = this.folder.getRoot().toPath().resolve("missing.txt");
+    try {
+      LargeMappedCodePoints.map(path, Charset.UTF8);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("Impossible to read this file (" + path + ").", e.getMessage());
+      Assert.assertTrue(e.getCause() instanceof IOException);
+    }
+  }
+
+  @Test
+  public void map_corruptedData() throws IOException {
+    final Path path = this.folder.newFile().toPath();
+
+    Files.write(path, new byte[] { 'a', (byte) 0xE4, (byte) 0xBA });
+    try {
+      LargeMappedCodePoints.map(path, Charset.UTF8);
+      Assert.fail();
+    } catch (final UnicodeException e) {
+      Assert.assertEquals("Corrupted UTF-8 data. Expected 2 more byte(s) from byte 2.", e.getMessage());
+    }
+
+    Files.write(path, new byte[] { 0, 'a', 0 });
+    try {
+      LargeMappedCodePoints.map(path, Charset.UTF16BE);
+      Assert.fail();
+    } catch (final UnicodeException e) {
+      Assert.assertEquals("Corrupted UTF-16-BE data. The number of bytes is not a multiple of 2.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void codePointAt_outOfRange() throws IOException {
+    final Path path = this.folder.newFile().toPath();
+    Files.write(path, "abc".getBytes(UnicodeTestData.NIO_CHARSET_UTF8));
+    final LargeMappedCodePoints mcp = LargeMappedCodePoints.map(path, Charset.UTF8);
+
+    for (final long position : new long[] { -1, 5, Integer.MAX_VALUE + 1L }) {
+      try {
+        mcp.codePointAt(position);
+        Assert.fail();
+      } catch (final MappedCodePointsException e) {
+        Assert.assertEquals("Index outside of range (" + position
+            + "). It should be greater than or equal to 0 and less than or equal to the end of stream.",
+            e.getMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,198 @@
+package org.isk.plume.unicode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.isk.plume.unicode.CodePoints.Charset;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedCodePointsCacheTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path newFile(final String content) throws IOException {
+    final Path path = this.folder.newFile().toPath();
+    Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    return path;
+  }
+
+  @Test
+  public void get_hit() throws IOException {
+    final MappedCodePointsCache cache = new MappedCodePointsCache(1000, 1, 1);
+    final Path path = this.newFile("abc\ndef");
+
+    final MappedCodePoints first = cache.get(path, Charset.UTF8);
+    Assert.assertEquals('a', first.codePointAt(1));
+    Assert.assertEquals(path.toString(), first.getFilename());
+    Assert.assertEquals(0, cache.getHitCount());
+    Assert.assertEquals(1, cache.getMissCount());
+
+    Assert.assertSame(first, cache.get(path, Charset.UTF8));
+    Assert.assertEquals(1, cache.getHitCount());
+    Assert.assertEquals(1, cache.getMissCount());
+    Assert.assertEquals(1, cache.getEntryCount());
+    Assert.assertEquals(first.getEosIndex() + 1, cache.getSize());
+  }
+
+  @Test
+  public void get_otherCharset() throws IOException {
+    final MappedCodePointsCache cache = new MappedCodePointsCache(1000, 1, 1);
+    final Path path = this.newFile("abcd");
+
+    final MappedCodePoints utf8 = cache.get(path, Charset.UTF8);
+    final MappedCodePoints utf16 = cache.get(path, Charset.UTF16BE);
+    Assert.assertNotSame(utf8, utf16);
+    Assert.assertEquals(0x6162, utf16.codePointAt(1));
+    Assert.assertEquals(2, cache.getMissCount());
+    Assert.assertEquals(2, cache.getEntryCount());
+  }
+
+  @Test
+  public void get_modifiedContent() throws IOException {
+    final MappedCodePointsCache cache = new MappedCodePointsCache(1000, 1, 1);
+    final Path path = this.newFile("abc");
+    final FileTime lastModified = Files.getLastModifiedTime(path);
+
+    final MappedCodePoints first = cache.get(path, Charset.UTF8);
+
+    // Same size and same modification time: only the checksum differs
+    Files.write(path, "xyz".getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(path, lastModified);
+
+    final MappedCodePoints second = cache.get(path, Charset.UTF8);
+    Assert.assertNotSame(first, second);
+    Assert.assertEquals('x', second.codePointAt(1));
+    Assert.assertEquals(2, cache.getMissCount());
+    Assert.assertEquals(1, cache.getEntryCount());
+    Assert.assertEquals(second.getEosIndex() + 1, cache.getSize());
+  }
+
+  @Test
+  public void get_modifiedTime() throws IOException {
+    final MappedCodePointsCache cache = new MappedCodePointsCache(1000, 1, 1);
+    final Path path = this.newFile("abc");
+
+    final MappedCodePoints first = cache.get(path, Charset.UTF8);
+    Files.setLastModifiedTime(path, FileTime.fromMillis(Files.getLastModifiedTime(path).toMillis() - 10000));
+
+    Assert.assertNotSame(first, cache.get(path, Charset.UTF8));
+    Assert.assertEquals(0, cache.getHitCount());
+    Assert.assertEquals(2, cache.getMissCount());
+  }
+
+  @Test
+  public void get_eviction() throws IOException {
+    // "abcd" holds 6 code points (position 0, 4 code points, EOS)
+    final MappedCodePointsCache cache = new MappedCodePointsCache(12, 1, 1);
+    final Path path1 = this.newFile("abcd");
+    final Path path2 = this.newFile("efgh");
+    final Path path3 = this.newFile("ijkl");
+
+    final MappedCodePoints mcp1 = cache.get(path1, Charset.UTF8);
+    cache.get(path2, Charset.UTF8);
+    Assert.assertEquals(12, cache.getSize());
+
+    // path1 becomes the most recently used
+    Assert.assertSame(mcp1, cache.get(path1, Charset.UTF8));
+
+    cache.get(path3, Charset.UTF8);
+    Assert.assertEquals(1, cache.getEvictionCount());
+    Assert.assertEquals(12, cache.getSize());
+    Assert.assertEquals(2, cache.getEntryCount());
+
+    Assert.assertSame(mcp1, cache.get(path1, Charset.UTF8));
+    Assert.assertEquals(2, cache.getHitCount());
+
+    cache.get(path2, Charset.UTF8);
+    Assert.assertEquals(4, cache.getMissCount());
+    Assert.assertEquals(2, cache.getEvictionCount());
+  }
+
+  @Test
+  public void get_tooLarge() throws IOException {
+    final MappedCodePointsCache cache = new MappedCodePointsCache(5, 1, 1);
+    final Path path = this.newFile("abcd");
+
+    final MappedCodePoints first = cache.get(path, Charset.UTF8);
+    Assert.assertEquals('d', first.codePointAt(4));
+    Assert.assertEquals(0, cache.getSize());
+    Assert.assertEquals(0, cache.getEntryCount());
+
+    Assert.assertNotSame(first, cache.get(path, Charset.UTF8));
+    Assert.assertEquals(2, cache.getMissCount());
+    Assert.assertEquals(0, cache.getEvictionCount());
+  }
+
+  @Test
+  public void clear() throws IOException {
+    final MappedCodePointsCache cache = new MappedCodePointsCache(1000, 1, 1);
+    final Path path = this.newFile("abcd");
+
+    final MappedCodePoints first = cache.get(path, Charset.UTF8);
+    cache.clear();
+    Assert.assertEquals(0, cache.getSize());
+    Assert.assertEquals(0, cache.getEntryCount());
+
+    Assert.assertNotSame(first, cache.get(path, Charset.UTF8));
+    Assert.assertEquals(2, cache.getMissCount());
+  }
+
+  @Test
+  public void getDefault() {
+    Assert.assertSame(MappedCodePointsCache.getDefault(), MappedCodePointsCache.getDefault());
+    Assert.assertEquals(MappedCodePointsCache.DEFAULT_MAX_SIZE, MappedCodePointsCache.getDefault().getMaxSize());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void negativeMaxSize() {
+    new MappedCodePointsCache(-1, 1, 1);
+  }
+
+  @Test
+  public void get_concurrent() throws Exception {
+    final MappedCodePointsCache cache = new MappedCodePointsCache(60, 1, 1);
+    final List<Path> paths = new ArrayList<>();
+    for (int i = 0; i < 16; i++) {
+      paths.add(this.newFile("file " + (char) ('a' + i)));
+    }
+
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<Integer>> results = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        results.add(executor.submit(() -> {
+          int checked = 0;
+          for (int i = 0; i < 200; i++) {
+            final int file = i * 7 % paths.size();
+            final MappedCodePoints mcp = cache.get(paths.get(file), Charset.UTF8);
+            Assert.assertEquals('a' + file, mcp.codePointAt(6));
+            checked++;
+          }
+          return checked;
+        }));
+      }
+
+      for (final Future<Integer> result : results) {
+        Assert.assertEquals(200, result.get().intValue());
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    Assert.assertEquals(800, cache.getHitCount() + cache.getMissCount());
+    Assert.assertTrue(cache.getSize() <= 60);
+    Assert.assertEquals(cache.getEntryCount() * 8, cache.getSize());
+  }
+}
@@ -0,0 +1,247 @@
+package org.isk.plume.unicode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.isk.plume.unicode.CodePoints.Charset;
+import org.isk.plume.unicode.exception.MappedCodePointsException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedCodePointsSnapshotTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  final private static String TEXT = "line 1\r\nline 2\rline 3\n\r\n\n\u00E9\u4E9C \uD800\uDF83\r\r\n\n";
+
+  private static void assertSameContent(final MappedCodePoints expected, final MappedCodePoints actual) {
+    Assert.assertEquals(expected.getFilename(), actual.getFilename());
+    Assert.assertEquals(expected.getEosIndex(), actual.getEosIndex());
+    for (int i = 0; i <= expected.getEosIndex(); i++) {
+      Assert.assertEquals(expected.codePointAt(i), actual.codePointAt(i));
+      Assert.assertEquals(expected.getLine(i), actual.getLine(i));
+      Assert.assertEquals(expected.getColumn(i), actual.getColumn(i));
+    }
+    Assert.assertEquals(expected.debug("msg", expected.getEosIndex() - 1),
+        actual.debug("msg", actual.getEosIndex() - 1));
+  }
+
+  @Test
+  public void write_load() throws IOException {
+    final Path source = this.folder.newFile("source.txt").toPath();
+    final byte[] bytes = MappedCodePointsSnapshotTest.TEXT.getBytes(StandardCharsets.UTF_8);
+    Files.write(source, bytes);
+    final Path snapshot = this.folder.getRoot().toPath().resolve("source.snapshot");
+
+    final MappedCodePoints expected = MappedCodePoints.map(source, Charset.UTF8);
+    final long hash = MappedCodePointsSnapshot.hash(ByteBuffer.wrap(bytes), Charset.UTF8);
+    MappedCodePointsSnapshot.write(expected, hash, snapshot);
+
+    final MappedCodePoints actual = MappedCodePointsSnapshot.load(snapshot, hash, 1, 1);
+    MappedCodePointsSnapshotTest.assertSameContent(expected, actual);
+
+    // No temporary file left
+    final String[] files = this.folder.getRoot().list();
+    Arrays.sort(files);
+    Assert.assertArrayEquals(new String[] { "source.snapshot", "source.txt" }, files);
+  }
+
+  @Test
+  public void write_missingDirectory() throws IOException {
+    final Path snapshot = this.folder.getRoot().toPath().resolve("missing").resolve("source.snapshot");
+    try {
+      MappedCodePointsSnapshot.write(new MappedCodePoints(new int[] { 'a' }), 1, snapshot);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("Impossible to write this snapshot (" + snapshot + ").", e.getMessage());
+      Assert.assertTrue(e.getCause() instanceof IOException);
+    }
+  }
+
+  @Test
+  public void write_load_noFilename() throws IOException {
+    final Path snapshot = this.folder.newFile().toPath();
+    final MappedCodePoints expected = new MappedCodePoints(new int[] { 'a', '\n', 'b', 'c' });
+    MappedCodePointsSnapshot.write(expected, 42, snapshot);
+
+    final MappedCodePoints actual = MappedCodePointsSnapshot.load(snapshot, 42, 1, 1);
+    Assert.assertNull(actual.getFilename());
+    MappedCodePointsSnapshotTest.assertSameContent(expected, actual);
+  }
+
+  @Test
+  public void write_load_allFilenameLengths() throws IOException {
+    final Path snapshot = this.folder.newFile().toPath();
+    for (final String filename : new String[] { "", "a", "ab", "abc", "abcd", "\u00E9\u4E9C" }) {
+      final MappedCodePoints expected = new MappedCodePoints(filename, new int[] { 'x', 'y' }, 1, 1);
+      MappedCodePointsSnapshot.write(expected, 0, snapshot);
+      MappedCodePointsSnapshotTest.assertSameContent(expected, MappedCodePointsSnapshot.load(snapshot, 0, 1, 1));
+    }
+  }
+
+  @Test
+  public void write_smallestWidth() throws IOException {
+    final Path snapshot = this.folder.newFile().toPath();
+    final String[] texts = { "abc\u00E9", "abc\u4E9C", "abc\uD800\uDF83" };
+    final int[] widths = { 1, 2, 4 };
+    for (int i = 0; i < texts.length; i++) {
+      final MappedCodePoints expected = new MappedCodePoints(null, texts[i].codePoints().toArray(), 1, 1);
+      MappedCodePointsSnapshot.write(expected, 0, snapshot);
+
+      // Header, code points from the position 0 padded to 4 bytes, lines 0 and 1
+      final int eosIndex = expected.getEosIndex();
+      Assert.assertEquals(32 + (widths[i] * eosIndex + 3 & ~3) + 8, Files.size(snapshot));
+      MappedCodePointsSnapshotTest.assertSameContent(expected, MappedCodePointsSnapshot.load(snapshot, 0, 1, 1));
+    }
+  }
+
+  @Test
+  public void load_invalidCodePoint() throws IOException {
+    final Path snapshot = this.folder.newFile().toPath();
+    MappedCodePointsSnapshot.write(new MappedCodePoints(null, new int[] { 'a', 0x10000 }, 1, 1), 1, snapshot);
+
+    // Code point at the position 1, after the header and the LF at the position 0
+    final byte[] bytes = Files.readAllBytes(snapshot);
+    bytes[32 + 4 + 2] = 0x11;
+    Files.write(snapshot, bytes);
+    try {
+      MappedCodePointsSnapshot.load(snapshot, 1, 1, 1);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("This snapshot is corrupted (" + snapshot + ").", e.getMessage());
+    }
+  }
+
+  @Test
+  public void load_stale() throws IOException {
+    final Path snapshot = this.folder.newFile().toPath();
+    MappedCodePointsSnapshot.write(new MappedCodePoints(new int[] { 'a' }), 1, snapshot);
+    Assert.assertNull(MappedCodePointsSnapshot.load(snapshot, 2, 1, 1));
+  }
+
+  @Test
+  public void load_otherVersion() throws IOException {
+    final Path snapshot = this.folder.newFile().toPath();
+    MappedCodePointsSnapshot.write(new MappedCodePoints(new int[] { 'a' }), 1, snapshot);
+
+    final byte[] bytes = Files.readAllBytes(snapshot);
+    bytes[4] = (byte) (MappedCodePointsSnapshot.VERSION + 1);
+    Files.write(snapshot, bytes);
+    Assert.assertNull(MappedCodePointsSnapshot.load(snapshot, 1, 1, 1));
+  }
+
+  @Test
+  public void load_notSnapshot() throws IOException {
+    final Path snapshot = this.folder.newFile().toPath();
+    Files.write(snapshot, "not a snapshot, not at all".getBytes(StandardCharsets.UTF_8));
+    try {
+      MappedCodePointsSnapshot.load(snapshot, 1, 1, 1);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("This file is not a snapshot (" + snapshot + ").", e.getMessage());
+    }
+  }
+
+  @Test
+  public void load_truncated() throws IOException {
+    final Path snapshot = this.folder.newFile().toPath();
+    MappedCodePointsSnapshot.write(new MappedCodePoints(new int[] { 'a', 'b' }), 1, snapshot);
+
+    final byte[] bytes = Files.readAllBytes(snapshot);
+    Files.write(snapshot, Arrays.copyOf(bytes, bytes.length - 4));
+    try {
+      MappedCodePointsSnapshot.load(snapshot, 1, 1, 1);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("This snapshot is corrupted (" + snapshot + ").", e.getMessage());
+    }
+  }
+
+  @Test
+  public void load_byteOffsetsUnknown() throws IOException {
+    final Path snapshot = this.folder.newFile().toPath();
+    MappedCodePointsSnapshot.write(new MappedCodePoints(new int[] { 'a' }), 1, snapshot);
+    try {
+      MappedCodePointsSnapshot.load(snapshot, 1, 1, 1).byteOffsetOf(1);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("The byte offsets are unknown. "
+          + "This stream has been created from code points, loaded from a snapshot or edited.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void hash() {
+    final ByteBuffer bytes = ByteBuffer.wrap("abcd".getBytes(StandardCharsets.UTF_8));
+    Assert.assertEquals(MappedCodePointsSnapshot.hash(bytes, Charset.UTF8),
+        MappedCodePointsSnapshot.hash(bytes, Charset.UTF8));
+    Assert.assertEquals(0, bytes.position());
+    Assert.assertNotEquals(MappedCodePointsSnapshot.hash(bytes, Charset.UTF8),
+        MappedCodePointsSnapshot.hash(bytes, Charset.UTF16BE));
+    Assert.assertNotEquals(MappedCodePointsSnapshot.hash(bytes, Charset.UTF8),
+        MappedCodePointsSnapshot.hash(ByteBuffer.wrap("abce".getBytes(StandardCharsets.UTF_8)), Charset.UTF8));
+    Assert.assertEquals(4, MappedCodePointsSnapshot.hash(bytes, Charset.UTF8) >>> 32);
+    Assert.assertNotEquals(MappedCodePointsSnapshot.hash(bytes, Charset.UTF8),
+        MappedCodePointsSnapshot.hash(ByteBuffer.wrap("abcd\0".getBytes(StandardCharsets.UTF_8)), Charset.UTF8));
+  }
+
+  @Test
+  public void map() throws IOException {
+    final Path source = this.folder.newFile().toPath();
+    Files.write(source, MappedCodePointsSnapshotTest.TEXT.getBytes(StandardCharsets.UTF_8));
+    final Path snapshot = this.folder.getRoot().toPath().resolve("snapshot");
+
+    // Written
+    final MappedCodePoints expected = MappedCodePoints.map(source, Charset.UTF8);
+    MappedCodePointsSnapshotTest.assertSameContent(expected,
+        MappedCodePointsSnapshot.map(source, Charset.UTF8, snapshot, 1, 1));
+    Assert.assertTrue(Files.exists(snapshot));
+
+    // Loaded
+    final MappedCodePoints loaded = MappedCodePointsSnapshot.map(source, Charset.UTF8, snapshot, 1, 1);
+    MappedCodePointsSnapshotTest.assertSameContent(expected, loaded);
+    try {
+      loaded.byteOffsetOf(1);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      // Expected: no byte offsets in a snapshot
+    }
+
+    // Source modified: written again
+    Files.write(source, "other".getBytes(StandardCharsets.UTF_8));
+    final MappedCodePoints modified = MappedCodePointsSnapshot.map(source, Charset.UTF8, snapshot, 1, 1);
+    Assert.assertEquals('o', modified.codePointAt(1));
+    Assert.assertEquals('o', MappedCodePointsSnapshot.map(source, Charset.UTF8, snapshot, 1, 1).codePointAt(1));
+  }
+
+  @Test
+  public void map_snapshotNotWritten() throws IOException {
+    final Path source = this.folder.newFile().toPath();
+    Files.write(source, "abc".getBytes(StandardCharsets.UTF_8));
+    final Path snapshot = this.folder.getRoot().toPath().resolve("missing").resolve("snapshot");
+
+    // Still mapped
+    Assert.assertEquals('a', MappedCodePointsSnapshot.map(source, Charset.UTF8, snapshot, 1, 1).codePointAt(1));
+    Assert.assertFalse(Files.exists(snapshot));
+  }
+
+  @Test
+  public void map_corruptedSnapshot() throws IOException {
+    final Path source = this.folder.newFile().toPath();
+    Files.write(source, "abc".getBytes(StandardCharsets.UTF_8));
+    final Path snapshot = this.folder.newFile().toPath();
+    Files.write(snapshot, new byte[] { 1, 2, 3 });
+
+    Assert.assertEquals('a', MappedCodePointsSnapshot.map(source, Charset.UTF8, snapshot, 1, 1).codePointAt(1));
+    Assert.assertEquals('a', MappedCodePointsSnapshot.load(snapshot,
+        MappedCodePointsSnapshot.hash(ByteBuffer.wrap("abc".getBytes(StandardCharsets.UTF_8)), Charset.UTF8), 1, 1)
+        .codePointAt(1));
+  }
+}
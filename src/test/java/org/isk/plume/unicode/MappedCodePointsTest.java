@@ -1,9 +1,30 @@
 package org.isk.plume.unicode;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
 import org.isk.plume.unicode.CodePoints.Charset;
 import org.isk.plume.unicode.exception.MappedCodePointsException;
+import org.isk.plume.unicode.exception.UnicodeException;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class MappedCodePointsTest {
 
@@ -332,11 +353,1383 @@ public class MappedCodePointsTest {
     }
   }
 
+  @Test
+  public void constructor_implausibleAvailable() {
+    for (final Charset charset : new Charset[] { Charset.UTF8, Charset.UTF32BE }) {
+      final byte[] bytes = new byte[] { 0, 0, 0, 'a', 0, 0, 0, '\n', 0, 0, 0, 'b' };
+
+      // Some InputStream wrappers return Integer.MAX_VALUE when the size is unknown
+      final InputStream inputStream = new ByteArrayInputStream(bytes) {
+        @Override
+        public synchronized int available() {
+          return Integer.MAX_VALUE;
+        }
+      };
+
+      final MappedCodePoints mcp = new MappedCodePoints(charset, new UnicodeInputStream(inputStream));
+      Assert.assertEquals(charset == Charset.UTF8 ? 13 : 4, mcp.getEosIndex());
+    }
+  }
+
   @Test(expected = NullPointerException.class)
   public void constructor_null_codePoints() {
     new MappedCodePoints(null);
   }
 
+  @Test
+  public void getLine_getColumn_emptyLines() {
+    final byte[] bytes = { '\n', '\n', 'a', '\r', '\r', '\n', 'b', '\n', '\n' };
+    final MappedCodePoints mcp = new MappedCodePoints(Charset.UTF8, new UnicodeInputStream(bytes));
+    Assert.assertEquals(7, mcp.getEosIndex());
+    final int[] expectedLines = { 0, 1, 2, 3, 3, 4, 5, 5 };
+    final int[] expectedColumns = { 0, 1, 1, 1, 2, 1, 1, 2 };
+    for (int i = 0; i <= mcp.getEosIndex(); i++) {
+      Assert.assertEquals(expectedLines[i], mcp.getLine(i));
+      Assert.assertEquals(expectedColumns[i], mcp.getColumn(i));
+    }
+  }
+
+  @Test
+  public void getLine_getColumn_randomAccess() {
+    final StringBuilder sb = new StringBuilder();
+    final Random random = new Random(42);
+    for (int i = 0; i < 10_000; i++) {
+      sb.append(random.nextInt(10) == 0 ? '\n' : 'a');
+    }
+    sb.append('b');
+
+    final int[] codePoints = sb.toString().codePoints().toArray();
+    final MappedCodePoints mcp = new MappedCodePoints(codePoints);
+
+    // Expected values, computed the way they used to be stored
+    final int[] lines = new int[codePoints.length + 2];
+    final int[] columns = new int[codePoints.length + 2];
+    for (int i = 1; i < lines.length; i++) {
+      final boolean newLine = i == 1 || codePoints[i - 2] == '\n';
+      lines[i] = newLine ? lines[i - 1] + 1 : lines[i - 1];
+      columns[i] = newLine ? 1 : columns[i - 1] + 1;
+    }
+
+    // Forward, backward and random
+    for (int i = 0; i <= mcp.getEosIndex(); i++) {
+      Assert.assertEquals(lines[i], mcp.getLine(i));
+      Assert.assertEquals(columns[i], mcp.getColumn(i));
+    }
+    for (int i = mcp.getEosIndex(); i >= 0; i--) {
+      Assert.assertEquals(lines[i], mcp.getLine(i));
+      Assert.assertEquals(columns[i], mcp.getColumn(i));
+    }
+    for (int n = 0; n < 10_000; n++) {
+      final int i = random.nextInt(mcp.getEosIndex() + 1);
+      Assert.assertEquals(lines[i], mcp.getLine(i));
+      Assert.assertEquals(columns[i], mcp.getColumn(i));
+    }
+  }
+
+  @Test
+  public void getLine_concurrentFirstCalls() throws Exception {
+    final int[] codePoints = MappedCodePointsTest.getSevenLines_codepoints();
+    for (int n = 0; n < 50; n++) {
+      final MappedCodePoints mcp = new MappedCodePoints(codePoints);
+      final ExecutorService executor = Executors.newFixedThreadPool(4);
+      try {
+        final List<Future<Integer>> lines = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+          final int position = 15 + t * 14;
+          lines.add(executor.submit(() -> mcp.getLine(position)));
+        }
+
+        for (int t = 0; t < 4; t++) {
+          Assert.assertEquals(t + 2, lines.get(t).get().intValue());
+        }
+      } finally {
+        executor.shutdown();
+      }
+    }
+  }
+
+  @Test
+  public void getLine_withHint() {
+    final int[] codePoints = MappedCodePointsTest.getSevenLines_codepoints();
+    final MappedCodePoints mcp = new MappedCodePoints(codePoints);
+    final int lastLine = mcp.getLine(mcp.getEosIndex());
+
+    for (int i = 0; i <= mcp.getEosIndex(); i++) {
+      // Any hint gives the same result, even an invalid one
+      for (final int hint : new int[] { -1, 0, 1, lastLine / 2, lastLine, lastLine + 1, Integer.MAX_VALUE }) {
+        Assert.assertEquals(mcp.getLine(i), mcp.getLine(i, hint));
+        Assert.assertEquals(mcp.getColumn(i), mcp.getColumn(i, hint));
+      }
+    }
+  }
+
+  @Test(expected = MappedCodePointsException.class)
+  public void getLine_withHint_outOfRange() {
+    final MappedCodePoints mcp = new MappedCodePoints(new int[] { 'a' });
+    mcp.getLine(3, 0);
+  }
+
+  @Test(expected = MappedCodePointsException.class)
+  public void getColumn_withHint_outOfRange() {
+    final MappedCodePoints mcp = new MappedCodePoints(new int[] { 'a' });
+    mcp.getColumn(-1, 0);
+  }
+
+  @Test
+  public void init_cr_lf_lf() {
+    final byte[] bytes = { 'a', '\r', '\n', '\n', 'b' };
+    final MappedCodePoints mcp = new MappedCodePoints(Charset.UTF8, new UnicodeInputStream(bytes));
+    Assert.assertEquals('a', mcp.codePointAt(1));
+    Assert.assertEquals('\n', mcp.codePointAt(2));
+    Assert.assertEquals('\n', mcp.codePointAt(3));
+    Assert.assertEquals('b', mcp.codePointAt(4));
+    Assert.assertEquals(MappedCodePoints.EOS, mcp.codePointAt(5));
+    Assert.assertEquals(3, mcp.getLine(4));
+  }
+
+  @Test
+  public void constructor_unknownSize() {
+    // Around the initial size of the buffer and its growths
+    for (final int size : new int[] { 1, 4094, 4095, 4096, 4097, 6142, 6143, 6144, 100_000 }) {
+      final byte[] bytes = new byte[size];
+      for (int i = 0; i < size; i++) {
+        bytes[i] = (byte) (i % 50 == 49 ? '\n' : 'a' + i % 26);
+      }
+      bytes[size - 1] = 'z';
+
+      // The size of this stream is unknown
+      final InputStream inputStream = new ByteArrayInputStream(bytes) {
+        @Override
+        public synchronized int available() {
+          return 0;
+        }
+      };
+
+      final MappedCodePoints expected = new MappedCodePoints(Charset.UTF8, new UnicodeInputStream(bytes));
+      final MappedCodePoints mcp = new MappedCodePoints(Charset.UTF8, new UnicodeInputStream(inputStream));
+      Assert.assertEquals(size + 1, mcp.getEosIndex());
+      MappedCodePointsTest.assertSameMapping(expected, mcp);
+    }
+  }
+
+  @Test
+  public void constructor_sizeHintTooLarge() {
+    final byte[] bytes = { 'a', '\r', '\n', 'b', '\r', '\n', '\r', '\n' };
+    final MappedCodePoints mcp = new MappedCodePoints(Charset.UTF8, new UnicodeInputStream(bytes));
+    Assert.assertEquals(4, mcp.getEosIndex());
+    Assert.assertEquals('b', mcp.codePointAt(3));
+    Assert.assertEquals(MappedCodePoints.EOS, mcp.codePointAt(4));
+  }
+
+  // -------------------------------------------------------------------------------------------------------------------
+  // Memory-mapped file
+  // -------------------------------------------------------------------------------------------------------------------
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  final private static String MIXED_TEXT = "line 1\r\nline 2\rline 3\n\r\n\n\u00E9\u4E9C \uD800\uDF83\r\r\n\n";
+
+  /**
+   * Sequences swallowing the code units following them (malformed UTF-8 lead bytes, unpaired surrogates), before a
+   * CR, a LF or an overlong CR, as the decoders read them.
+   */
+  final static Object[][] MALFORMED_SEQUENCES = { //
+      { Charset.UTF8, new byte[] { 'a', 'b', (byte) 0xE0, '\r', '\n', 'c', (byte) 0xF0, 'd', '\r', 'e', '\n',
+          (byte) 0xC0, (byte) 0x8D, '\n', 'f', (byte) 0xFF, '\r', (byte) 0xE0, (byte) 0x80, (byte) 0x8D, '\n', 'g',
+          (byte) 0x80, (byte) 0xE0, (byte) 0xE0, (byte) 0xE0, (byte) 0xE0, 'h', 'i', 'j' } }, //
+      { Charset.UTF16BE, new byte[] { 0, 'a', (byte) 0xDC, 0, 0, '\r', 0, '\n', 0, 'b', (byte) 0xD8, 0, (byte) 0xD8, 0,
+          (byte) 0xD8, 0, 0, '\r', 0, '\n', 0, 'c', (byte) 0xDC, 0, (byte) 0xD8, 0, (byte) 0xDC, 0, 0, 'd' } } };
+
+  @Test
+  public void map_allCharsets() throws IOException {
+    final Object[][] charsets = { //
+        { Charset.UTF8, UnicodeTestData.NIO_CHARSET_UTF8 }, //
+        { Charset.UTF16BE, UnicodeTestData.NIO_CHARSET_UTF16BE }, //
+        { Charset.UTF16LE, UnicodeTestData.NIO_CHARSET_UTF16LE }, //
+        { Charset.UTF32BE, UnicodeTestData.NIO_CHARSET_UTF32BE }, //
+        { Charset.UTF32LE, UnicodeTestData.NIO_CHARSET_UTF32LE } };
+
+    for (final Object[] charset : charsets) {
+      final byte[] bytes = MappedCodePointsTest.MIXED_TEXT.getBytes((java.nio.charset.Charset) charset[1]);
+      final Path path = this.folder.newFile().toPath();
+      Files.write(path, bytes);
+
+      final MappedCodePoints expected = new MappedCodePoints(path.toString(), (Charset) charset[0],
+          new UnicodeInputStream(bytes));
+      final MappedCodePoints mcp = MappedCodePoints.map(path, (Charset) charset[0]);
+
+      Assert.assertEquals(path.toString(), mcp.getFilename());
+      MappedCodePointsTest.assertSameMapping(expected, mcp);
+    }
+  }
+
+  @Test
+  public void map_cr_lf_lf() throws IOException {
+    final Path path = this.folder.newFile().toPath();
+    Files.write(path, new byte[] { 'a', '\r', '\n', '\n', 'b' });
+
+    final MappedCodePoints mcp = MappedCodePoints.map(path, Charset.UTF8);
+    Assert.assertEquals(5, mcp.getEosIndex());
+    Assert.assertEquals('\n', mcp.codePointAt(3));
+    Assert.assertEquals(3, mcp.getLine(4));
+  }
+
+  @Test
+  public void map_debugLines() throws IOException {
+    final Path path = this.folder.newFile("myFile.txt").toPath();
+    Files.write(path, UnicodeTestData.SEVEN_LINES.getBytes(UnicodeTestData.NIO_CHARSET_UTF8));
+
+    final MappedCodePoints expected = new MappedCodePoints(path.toString(), Charset.UTF32BE,
+        MappedCodePointsTest.getSevenLines_UnicodeInputStream(), 3, 2);
+    final MappedCodePoints mcp = MappedCodePoints.map(path, Charset.UTF8, 3, 2);
+    Assert.assertEquals(expected.debug("This is an exception.", 45), mcp.debug("This is an exception.", 45));
+  }
+
+  @Test
+  public void map_emptyFile() throws IOException {
+    final Path path = this.folder.newFile("myFile.txt").toPath();
+    try {
+      MappedCodePoints.map(path, Charset.UTF8);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("This stream is empty (" + path + ").", e.getMessage());
+    }
+  }
+
+  @Test
+  public void map_onlyNewLines() throws IOException {
+    final Path path = this.folder.newFile("myFile.txt").toPath();
+    Files.write(path, new byte[] { '\r', '\n', '\n' });
+    try {
+      MappedCodePoints.map(path, Charset.UTF8);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("This stream is empty (" + path + ").", e.getMessage());
+    }
+  }
+
+  @Test
+  public void map_missingFile() {
+    final Path path = this.folder.getRoot().toPath().resolve("missing.txt");
+    try {
+      MappedCodePoints.map(path, Charset.UTF8);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("Impossible to read this file (" + path + ").", e.getMessage());
+      Assert.assertTrue(e.getCause() instanceof IOException);
+    }
+  }
+
+  @Test
+  public void map_corruptedData() throws IOException {
+    final Path path = this.folder.newFile().toPath();
+
+    Files.write(path, new byte[] { 'a', (byte) 0xE4, (byte) 0xBA });
+    try {
+      MappedCodePoints.map(path, Charset.UTF8);
+      Assert.fail();
+    } catch (final UnicodeException e) {
+      Assert.assertEquals("Corrupted UTF-8 data. Expected 2 more byte(s) from byte 2.", e.getMessage());
+    }
+
+    Files.write(path, new byte[] { 0, 'a', 0 });
+    try {
+      MappedCodePoints.map(path, Charset.UTF16BE);
+      Assert.fail();
+    } catch (final UnicodeException e) {
+      Assert.assertEquals("Corrupted UTF-16-BE data. The number of bytes is not a multiple of 2.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void mapWindowed_allCharsets_allWindowSizes() throws IOException {
+    final Object[][] charsets = { //
+        { Charset.UTF8, UnicodeTestData.NIO_CHARSET_UTF8 }, //
+        { Charset.UTF16BE, UnicodeTestData.NIO_CHARSET_UTF16BE }, //
+        { Charset.UTF16LE, UnicodeTestData.NIO_CHARSET_UTF16LE }, //
+        { Charset.UTF32BE, UnicodeTestData.NIO_CHARSET_UTF32BE }, //
+        { Charset.UTF32LE, UnicodeTestData.NIO_CHARSET_UTF32LE } };
+
+    for (final Object[] charset : charsets) {
+      final Path path = this.folder.newFile().toPath();
+      Files.write(path, MappedCodePointsTest.MIXED_TEXT.getBytes((java.nio.charset.Charset) charset[1]));
+      final MappedCodePoints expected = MappedCodePoints.map(path, (Charset) charset[0]);
+
+      // Windows splitting CRLF, UTF-8 sequences and surrogate pairs
+      for (int windowSize = 1; windowSize <= 40; windowSize++) {
+        final MappedCodePoints mcp = MappedCodePoints.mapWindowed(path, (Charset) charset[0], windowSize, 1, 1);
+        MappedCodePointsTest.assertSameMapping(expected, mcp);
+      }
+    }
+  }
+
+  @Test
+  public void mapWindowed_malformedSequences_allWindowSizes() throws IOException {
+    for (final Object[] malformed : MappedCodePointsTest.MALFORMED_SEQUENCES) {
+      final Path path = this.folder.newFile().toPath();
+      Files.write(path, (byte[]) malformed[1]);
+      final MappedCodePoints expected = MappedCodePoints.map(path, (Charset) malformed[0]);
+
+      // Windows split in the middle of the sequences swallowing the following code units
+      for (int windowSize = 1; windowSize <= 40; windowSize++) {
+        final MappedCodePoints mcp = MappedCodePoints.mapWindowed(path, (Charset) malformed[0], windowSize, 1, 1);
+        MappedCodePointsTest.assertSameMapping(expected, mcp);
+      }
+    }
+  }
+
+  @Test
+  public void mapWindowed_malformedSequenceAtWindowBoundary() throws IOException {
+    // A lead byte of 3 bytes swallowing the first byte of the fourth window
+    final byte[] bytes = new byte[4 * WindowedStorage.DEFAULT_WINDOW_SIZE];
+    Arrays.fill(bytes, (byte) 'a');
+    bytes[3 * WindowedStorage.DEFAULT_WINDOW_SIZE - 1] = (byte) 0xE0;
+
+    final Path path = this.folder.newFile().toPath();
+    Files.write(path, bytes);
+    final MappedCodePoints mcp = MappedCodePoints.mapWindowed(path, Charset.UTF8);
+    MappedCodePointsTest.assertSameMapping(MappedCodePoints.map(path, Charset.UTF8), mcp);
+    Assert.assertEquals(4 * WindowedStorage.DEFAULT_WINDOW_SIZE - 1, mcp.getEosIndex());
+  }
+
+  @Test
+  public void mapWindowed_randomAccess() throws IOException {
+    final StringBuilder sb = new StringBuilder();
+    final Random random = new Random(42);
+    for (int i = 0; i < 100_000; i++) {
+      final int n = random.nextInt(20);
+      sb.append(n == 0 ? "\r\n" : n == 1 ? "\n" : n == 2 ? "\u00E9" : "a");
+    }
+
+    final Path path = this.folder.newFile().toPath();
+    Files.write(path, sb.toString().getBytes(UnicodeTestData.NIO_CHARSET_UTF8));
+    final MappedCodePoints expected = MappedCodePoints.map(path, Charset.UTF8);
+    final MappedCodePoints mcp = MappedCodePoints.mapWindowed(path, Charset.UTF8, 1000, 2, 2);
+
+    MappedCodePointsTest.assertSameMapping(expected, mcp);
+    for (int n = 0; n < 10_000; n++) {
+      final int i = random.nextInt(mcp.getEosIndex() + 1);
+      Assert.assertEquals(expected.codePointAt(i), mcp.codePointAt(i));
+      Assert.assertEquals(expected.getLine(i), mcp.getLine(i));
+    }
+    for (int n = 0; n < 100; n++) {
+      final int i = random.nextInt(mcp.getEosIndex() + 1);
+      Assert.assertEquals(new MappedCodePoints(expected.getFilename(), Charset.UTF8, new UnicodeInputStream(
+          Files.readAllBytes(path)), 2, 2).debug("Error", i), mcp.debug("Error", i));
+    }
+  }
+
+  @Test
+  public void mapWindowed_emptyFile() throws IOException {
+    final Path path = this.folder.newFile("myFile.txt").toPath();
+    Files.write(path, new byte[] { '\n', '\r' });
+    try {
+      MappedCodePoints.mapWindowed(path, Charset.UTF8);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("This stream is empty (" + path + ").", e.getMessage());
+    }
+  }
+
+  @Test
+  public void mapWindowed_wrongWindowSize() throws IOException {
+    final Path path = this.folder.newFile("myFile.txt").toPath();
+    try {
+      MappedCodePoints.mapWindowed(path, Charset.UTF8, 0, 1, 1);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("The size of a window should be greater than 0 (0).", e.getMessage());
+    }
+  }
+
+  @Test
+  public void mapUtf8_sameAsMap() throws IOException {
+    final StringBuilder sb = new StringBuilder(MappedCodePointsTest.MIXED_TEXT);
+    final Random random = new Random(42);
+    for (int i = 0; i < 100_000; i++) {
+      final int n = random.nextInt(400);
+      sb.append(n == 0 ? "\r\n" : n == 1 ? "\n" : n == 2 ? "\r" : n == 3 ? "\u00E9" : n == 4 ? "\u4E9C"
+          : n == 5 ? "\uD800\uDF83" : "a");
+    }
+
+    final Path path = this.folder.newFile().toPath();
+    Files.write(path, sb.toString().getBytes(UnicodeTestData.NIO_CHARSET_UTF8));
+    final MappedCodePoints expected = MappedCodePoints.map(path, Charset.UTF8, 2, 2);
+    final MappedCodePoints mcp = MappedCodePoints.mapUtf8(path, 2, 2);
+
+    // In order, then at random
+    MappedCodePointsTest.assertSameMapping(expected, mcp);
+    for (int n = 0; n < 10_000; n++) {
+      final int i = random.nextInt(mcp.getEosIndex() + 1);
+      Assert.assertEquals(expected.codePointAt(i), mcp.codePointAt(i));
+      Assert.assertEquals(expected.byteOffsetOf(i), mcp.byteOffsetOf(i));
+    }
+    for (int n = 0; n < 100; n++) {
+      final int i = random.nextInt(mcp.getEosIndex() + 1);
+      Assert.assertEquals(expected.debug("Error", i), mcp.debug("Error", i));
+    }
+  }
+
+  @Test
+  public void mapUtf8_blockBoundaries() throws IOException {
+    // CRLF and multibyte code points at the end and at the start of the blocks
+    for (int shift = 0; shift < 4; shift++) {
+      final StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < 300; i++) {
+        final int n = (i + shift) % Utf8Storage.BLOCK_SIZE;
+        sb.append(n == 0 ? "\r\n" : n == 1 ? "\uD800\uDF83" : n == 63 ? "\u00E9" : "a");
+      }
+
+      final Path path = this.folder.newFile().toPath();
+      Files.write(path, sb.toString().getBytes(UnicodeTestData.NIO_CHARSET_UTF8));
+      final MappedCodePoints expected = MappedCodePoints.map(path, Charset.UTF8);
+      final MappedCodePoints mcp = MappedCodePoints.mapUtf8(path);
+
+      // Backward, each code point being located from its block
+      for (int i = mcp.getEosIndex(); i >= 0; i--) {
+        Assert.assertEquals(expected.codePointAt(i), mcp.codePointAt(i));
+      }
+      MappedCodePointsTest.assertSameMapping(expected, mcp);
+    }
+  }
+
+  @Test
+  public void mapUtf8_overlongSequences() throws IOException {
+    // 'a', CR and LF encoded with 4 bytes: 8 bytes for a CRLF, more than 255 bytes in a block
+    final byte[] a = { (byte) 0xF0, (byte) 0x80, (byte) 0x81, (byte) 0xA1 };
+    final byte[] cr = { (byte) 0xF0, (byte) 0x80, (byte) 0x80, (byte) 0x8D };
+    final byte[] lf = { (byte) 0xF0, (byte) 0x80, (byte) 0x80, (byte) 0x8A };
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    for (int i = 0; i < 200; i++) {
+      bytes.write(a);
+      bytes.write(cr);
+      bytes.write(lf);
+    }
+    bytes.write('b');
+
+    final Path path = this.folder.newFile().toPath();
+    Files.write(path, bytes.toByteArray());
+    final MappedCodePoints expected = MappedCodePoints.map(path, Charset.UTF8);
+    final MappedCodePoints mcp = MappedCodePoints.mapUtf8(path);
+
+    for (int i = mcp.getEosIndex(); i >= 0; i--) {
+      Assert.assertEquals(expected.codePointAt(i), mcp.codePointAt(i));
+      Assert.assertEquals(expected.byteOffsetOf(i), mcp.byteOffsetOf(i));
+    }
+    MappedCodePointsTest.assertSameMapping(expected, mcp);
+  }
+
+  @Test
+  public void mapUtf8_invalidBytes() throws IOException {
+    // Invalid lead bytes and stray continuation bytes in a block of single bytes
+    final Path path = this.folder.newFile().toPath();
+    Files.write(path, new byte[] { 'a', (byte) 0xFF, 'b', (byte) 0x80, 'c' });
+    final MappedCodePoints expected = MappedCodePoints.map(path, Charset.UTF8);
+    final MappedCodePoints mcp = MappedCodePoints.mapUtf8(path);
+
+    Assert.assertEquals(expected.getEosIndex(), mcp.getEosIndex());
+    for (int i = mcp.getEosIndex(); i >= 0; i--) {
+      Assert.assertEquals(expected.codePointAt(i), mcp.codePointAt(i));
+    }
+    Assert.assertNotEquals(MappedCodePoints.EOS, mcp.codePointAt(2));
+    MappedCodePointsTest.assertSameMapping(expected, mcp);
+  }
+
+  @Test
+  public void mapUtf8_emptyFile() throws IOException {
+    final Path path = this.folder.newFile("myFile.txt").toPath();
+    Files.write(path, new byte[] { '\r', '\n', '\n' });
+    try {
+      MappedCodePoints.mapUtf8(path);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("This stream is empty (" + path + ").", e.getMessage());
+    }
+  }
+
+  @Test
+  public void mapUtf8_corruptedData() throws IOException {
+    final Path path = this.folder.newFile().toPath();
+    Files.write(path, new byte[] { 'a', (byte) 0xE4, (byte) 0xBA });
+    try {
+      MappedCodePoints.mapUtf8(path);
+      Assert.fail();
+    } catch (final UnicodeException e) {
+      Assert.assertEquals("Corrupted UTF-8 data. Expected 2 more byte(s) from byte 2.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void decode_sameAsUnicodeInputStream() {
+    final StringBuilder sb = new StringBuilder(MappedCodePointsTest.MIXED_TEXT);
+    final Random random = new Random(42);
+    for (int i = 0; i < 10_000; i++) {
+      final int n = random.nextInt(100);
+      sb.append(n == 0 ? "\r\n" : n == 1 ? "\n" : n == 2 ? "\r" : n == 3 ? "\u00E9" : n == 4 ? "\u4E9C"
+          : n == 5 ? "\uD800\uDF83" : "a");
+    }
+    sb.append("\r\n\n\r");
+
+    final Charset[] charsets = { Charset.UTF8, Charset.UTF16BE, Charset.UTF16LE, Charset.UTF32BE, Charset.UTF32LE };
+    final java.nio.charset.Charset[] nioCharsets = { UnicodeTestData.NIO_CHARSET_UTF8,
+        UnicodeTestData.NIO_CHARSET_UTF16BE, UnicodeTestData.NIO_CHARSET_UTF16LE, UnicodeTestData.NIO_CHARSET_UTF32BE,
+        UnicodeTestData.NIO_CHARSET_UTF32LE };
+    for (int c = 0; c < charsets.length; c++) {
+      final byte[] bytes = sb.toString().getBytes(nioCharsets[c]);
+      final MappedCodePoints expected = new MappedCodePoints(charsets[c], new UnicodeInputStream(bytes));
+      final MappedCodePoints mcp = MappedCodePoints.decode(null, bytes, charsets[c]);
+
+      MappedCodePointsTest.assertSameMapping(expected, mcp);
+      for (int i = 0; i <= mcp.getEosIndex(); i++) {
+        Assert.assertEquals(expected.byteOffsetOf(i), mcp.byteOffsetOf(i));
+      }
+      Assert.assertEquals(expected.getLineCount(), mcp.getLineCount());
+      for (int line = 1; line <= mcp.getLineCount(); line++) {
+        Assert.assertEquals(expected.getLineStart(line), mcp.getLineStart(line));
+      }
+      Assert.assertEquals(expected.debug("Error", mcp.getEosIndex()), mcp.debug("Error", mcp.getEosIndex()));
+    }
+  }
+
+  @Test
+  public void decode_byteBuffer() {
+    final byte[] bytes = "ab\r\nc\r\n".getBytes(UnicodeTestData.NIO_CHARSET_UTF8);
+    final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    buffer.position(3);
+
+    final MappedCodePoints mcp = MappedCodePoints.decode("myFile.txt", buffer, Charset.UTF8, 2, 2);
+    Assert.assertEquals(3, buffer.position());
+    Assert.assertEquals(5, mcp.getEosIndex());
+    Assert.assertEquals('a', mcp.codePointAt(1));
+    Assert.assertEquals(MappedCodePoints.LF, mcp.codePointAt(3));
+    Assert.assertEquals('c', mcp.codePointAt(4));
+  }
+
+  @Test
+  public void decode_emptyArray() {
+    try {
+      MappedCodePoints.decode(null, new byte[] { '\r', '\n' }, Charset.UTF8);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("This stream is empty.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void of_sameAsCodePoints() {
+    final StringBuilder sb = new StringBuilder(MappedCodePointsTest.MIXED_TEXT);
+    final Random random = new Random(42);
+    for (int i = 0; i < 10_000; i++) {
+      final int n = random.nextInt(100);
+      sb.append(n == 0 ? "\r\n" : n == 1 ? "\n" : n == 2 ? "\r" : n == 3 ? "\u00E9" : n == 4 ? "\u4E9C"
+          : n == 5 ? "\uD800\uDF83" : n == 6 ? "\uD800" : n == 7 ? "\uDF83" : "a");
+    }
+
+    final String[] texts = { "a", "ab\r\n\r\n", "\n\r\na\rb\n\n", "a\uD800", "\uDF83a\r", "\uD800\uDF83",
+        "a\r\n\uD800\uDF83\r\n", "\uD800\uD800\uDF83\uDF83\n", "\u00E9\u4E9C\r", "\u00E9\r\n\u00FF\u0080\n",
+        sb.toString() };
+    for (final String text : texts) {
+      final MappedCodePoints expected = new MappedCodePoints(text.codePoints().toArray());
+      final MappedCodePoints mcp = MappedCodePoints.of(new StringBuilder(text));
+
+      MappedCodePointsTest.assertSameMapping(expected, mcp);
+      Assert.assertEquals(expected.getLineCount(), mcp.getLineCount());
+      for (int line = 1; line <= mcp.getLineCount(); line++) {
+        Assert.assertEquals(expected.getLineStart(line), mcp.getLineStart(line));
+      }
+      Assert.assertEquals(expected.debug("Error", mcp.getEosIndex()), mcp.debug("Error", mcp.getEosIndex()));
+    }
+  }
+
+  @Test
+  public void of_filename() {
+    final MappedCodePoints mcp = MappedCodePoints.of("myFile.txt", "a\nb\nc", 0, 0);
+    Assert.assertEquals("myFile.txt", mcp.getFilename());
+    Assert.assertEquals(3, mcp.getLine(5));
+  }
+
+  @Test
+  public void of_empty() {
+    try {
+      MappedCodePoints.of("\r\n\n");
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("This stream is empty.", e.getMessage());
+    }
+
+    try {
+      MappedCodePoints.of("myFile.txt", "", 1, 1);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("This stream is empty (myFile.txt).", e.getMessage());
+    }
+  }
+
+  @Test
+  public void mapParallel_allCharsets_allChunkSizes() throws IOException {
+    final Object[][] charsets = { //
+        { Charset.UTF8, UnicodeTestData.NIO_CHARSET_UTF8 }, //
+        { Charset.UTF16BE, UnicodeTestData.NIO_CHARSET_UTF16BE }, //
+        { Charset.UTF16LE, UnicodeTestData.NIO_CHARSET_UTF16LE }, //
+        { Charset.UTF32BE, UnicodeTestData.NIO_CHARSET_UTF32BE }, //
+        { Charset.UTF32LE, UnicodeTestData.NIO_CHARSET_UTF32LE } };
+
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (final Object[] charset : charsets) {
+        final byte[] bytes = MappedCodePointsTest.MIXED_TEXT.getBytes((java.nio.charset.Charset) charset[1]);
+        final MappedCodePoints expected = new MappedCodePoints(null, (Charset) charset[0], new UnicodeInputStream(
+            bytes), 1, 1);
+
+        // Chunks split in the middle of code points and between CR and LF
+        for (int chunkSize = 1; chunkSize <= bytes.length + 1; chunkSize++) {
+          final MappedCodePoints mcp = MappedCodePoints.mapParallel(null, ByteBuffer.wrap(bytes),
+              (Charset) charset[0], pool, chunkSize, 1, 1);
+          MappedCodePointsTest.assertSameMapping(expected, mcp);
+          Assert.assertEquals(expected.debug("Error", 12), mcp.debug("Error", 12));
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void mapParallel_malformedSequences_allChunkSizes() throws IOException {
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (final Object[] malformed : MappedCodePointsTest.MALFORMED_SEQUENCES) {
+        final byte[] bytes = (byte[]) malformed[1];
+        final MappedCodePoints expected = MappedCodePoints.decode(null, bytes, (Charset) malformed[0]);
+
+        // Chunks split in the middle of the sequences swallowing the following code units
+        for (int chunkSize = 1; chunkSize <= bytes.length + 1; chunkSize++) {
+          final MappedCodePoints mcp = MappedCodePoints.mapParallel(null, ByteBuffer.wrap(bytes),
+              (Charset) malformed[0], pool, chunkSize, 1, 1);
+          MappedCodePointsTest.assertSameMapping(expected, mcp);
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void mapParallel_malformedSequenceAtChunkBoundary() throws IOException {
+    // A lead byte of 3 bytes swallowing the first byte of the second chunk
+    final byte[] bytes = new byte[4 * 1024 * 1024];
+    Arrays.fill(bytes, (byte) 'a');
+    bytes[1024 * 1024 - 1] = (byte) 0xE0;
+
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      final MappedCodePoints mcp = MappedCodePoints.mapParallel(null, ByteBuffer.wrap(bytes), Charset.UTF8, pool,
+          1024 * 1024, 1, 1);
+      MappedCodePointsTest.assertSameMapping(MappedCodePoints.decode(null, bytes, Charset.UTF8), mcp);
+      Assert.assertEquals(4 * 1024 * 1024 - 1, mcp.getEosIndex());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void mapParallel_largeFile() throws IOException {
+    final StringBuilder sb = new StringBuilder();
+    final Random random = new Random(42);
+    for (int i = 0; i < 100_000; i++) {
+      final int n = random.nextInt(20);
+      sb.append(n == 0 ? "\r\n" : n == 1 ? "\r" : n == 2 ? "\n" : n == 3 ? "\uD800\uDF83" : "a");
+    }
+
+    final Path path = this.folder.newFile().toPath();
+    Files.write(path, sb.toString().getBytes(UnicodeTestData.NIO_CHARSET_UTF8));
+    final MappedCodePoints expected = MappedCodePoints.map(path, Charset.UTF8);
+
+    final ForkJoinPool pool = new ForkJoinPool(8);
+    try {
+      final MappedCodePoints mcp = MappedCodePoints.mapParallel(path.toString(), ByteBuffer.wrap(Files.readAllBytes(
+          path)), Charset.UTF8, pool, 1000, 1, 1);
+      MappedCodePointsTest.assertSameMapping(expected, mcp);
+      Assert.assertEquals(MappedCodePoints.mapParallel(path, Charset.UTF8).getEosIndex(), mcp.getEosIndex());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void mapParallel_emptyFile() throws IOException {
+    final Path path = this.folder.newFile("myFile.txt").toPath();
+    Files.write(path, new byte[] { '\n', '\r', '\n' });
+    try {
+      MappedCodePoints.mapParallel(path, Charset.UTF8);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("This stream is empty (" + path + ").", e.getMessage());
+    }
+  }
+
+  @Test
+  public void mapParallel_corruptedData() throws IOException {
+    final Path path = this.folder.newFile().toPath();
+    Files.write(path, new byte[] { 'a', 'b', (byte) 0xE4 });
+    try {
+      MappedCodePoints.mapParallel(path, Charset.UTF8);
+      Assert.fail();
+    } catch (final UnicodeException e) {
+      Assert.assertEquals("Corrupted UTF-8 data. Expected 2 more byte(s) from byte 3.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void checkSize_tooLarge() {
+    // UTF-32: at most a code point every 4 bytes
+    MappedCodePoints.checkSize(null, Integer.MAX_VALUE - 3, Charset.UTF32BE);
+
+    try {
+      MappedCodePoints.checkSize("myFile.txt", Integer.MAX_VALUE - 3, Charset.UTF8);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("This file is too large (myFile.txt).", e.getMessage());
+    }
+
+    try {
+      MappedCodePoints.checkSize(null, Integer.MAX_VALUE, Charset.UTF8);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("This stream is too large.", e.getMessage());
+    }
+  }
+
+  /**
+   * Asserts that two instances map the same code points to the same lines and columns.
+   */
+  private static void assertSameMapping(final MappedCodePoints expected, final MappedCodePoints actual) {
+    Assert.assertEquals(expected.getEosIndex(), actual.getEosIndex());
+    for (int i = 0; i <= expected.getEosIndex(); i++) {
+      Assert.assertEquals(expected.codePointAt(i), actual.codePointAt(i));
+      Assert.assertEquals(expected.getLine(i), actual.getLine(i));
+      Assert.assertEquals(expected.getColumn(i), actual.getColumn(i));
+    }
+  }
+
+  // -------------------------------------------------------------------------------------------------------------------
+  // Storage
+  // -------------------------------------------------------------------------------------------------------------------
+
+  @Test
+  public void storage_smallestType() {
+    final Object[][] cases = { //
+        { new int[] { MappedCodePoints.LF, 'a', 0xFF, 0, 0 }, ByteArrayStorage.class }, //
+        { new int[] { MappedCodePoints.LF, 'a', 0x100, 0, 0 }, CharArrayStorage.class }, //
+        { new int[] { MappedCodePoints.LF, 'a', 0xFFFF, 0, 0 }, CharArrayStorage.class }, //
+        { new int[] { MappedCodePoints.LF, 'a', 0x10000, 0, 0 }, IntArrayStorage.class }, //
+        { new int[] { MappedCodePoints.LF, 'a', -2, 0, 0 }, IntArrayStorage.class } };
+
+    for (final Object[] c : cases) {
+      final int[] codePoints = (int[]) c[0];
+      final int expected = codePoints[2];
+      final CodePointStorage storage = CodePointStorage.of(codePoints, 3);
+      Assert.assertEquals(c[1], storage.getClass());
+      Assert.assertEquals(MappedCodePoints.LF, storage.codePointAt(0));
+      Assert.assertEquals('a', storage.codePointAt(1));
+      Assert.assertEquals(expected, storage.codePointAt(2));
+      Assert.assertEquals(MappedCodePoints.EOS, storage.codePointAt(3));
+    }
+  }
+
+  @Test
+  public void storage_allTypes() {
+    final String[] lines = { "d\u00E9f", "d\u4E9Cf", "d\uD800\uDF83f" };
+
+    for (final String line : lines) {
+      final String text = "abc\r\n" + line + "\n\n";
+      final MappedCodePoints mcp = new MappedCodePoints(text.codePoints().toArray());
+      final int[] expected = ("abc\n" + line).codePoints().toArray();
+      Assert.assertEquals(expected.length + 1, mcp.getEosIndex());
+      for (int i = 0; i < expected.length; i++) {
+        Assert.assertEquals(expected[i], mcp.codePointAt(i + 1));
+      }
+      Assert.assertEquals(MappedCodePoints.EOS, mcp.codePointAt(mcp.getEosIndex()));
+      Assert.assertEquals(2, mcp.getLine(mcp.getEosIndex()));
+      Assert.assertEquals("msg\n" //
+          + "abc\n" //
+          + line + "\n" //
+          + " ^__ Line 2", mcp.debug("msg", 6));
+    }
+  }
+
+  @Test
+  public void storage_latin1File() throws IOException {
+    final byte[] bytes = "caf\u00E9\r\nna\u00EFve\r\n".getBytes(UnicodeTestData.NIO_CHARSET_UTF8);
+    final Path path = this.folder.newFile().toPath();
+    Files.write(path, bytes);
+
+    final MappedCodePoints mcp = MappedCodePoints.map(path, Charset.UTF8);
+    Assert.assertEquals(0xE9, mcp.codePointAt(4));
+    Assert.assertEquals(0xEF, mcp.codePointAt(8));
+    Assert.assertEquals(MappedCodePoints.EOS, mcp.codePointAt(11));
+    Assert.assertEquals(7, mcp.byteOffsetOf(6));
+  }
+
+  // -------------------------------------------------------------------------------------------------------------------
+  // Bulk access
+  // -------------------------------------------------------------------------------------------------------------------
+
+  /**
+   * Returns instances holding the same kind of text with each type of storage.
+   */
+  private List<MappedCodePoints> getAllStorages() throws IOException {
+    final List<MappedCodePoints> instances = new ArrayList<>();
+    for (final String text : new String[] { "ab\r\nc\u00E9\nd", "ab\r\nc\u4E9C\nd",
+        "ab\r\nc\uD800\uDF83\nd" }) {
+      final MappedCodePoints fromCodePoints = new MappedCodePoints(text.codePoints().toArray());
+      instances.add(fromCodePoints);
+
+      final Path path = this.folder.newFile().toPath();
+      Files.write(path, text.getBytes(UnicodeTestData.NIO_CHARSET_UTF8));
+      instances.add(MappedCodePoints.mapWindowed(path, Charset.UTF8, 4, 1, 1));
+      instances.add(MappedCodePoints.mapUtf8(path));
+
+      final Path snapshot = this.folder.newFile().toPath();
+      MappedCodePointsSnapshot.write(fromCodePoints, 0, snapshot);
+      instances.add(MappedCodePointsSnapshot.load(snapshot, 0, 1, 1));
+    }
+    instances.add(new MappedCodePoints("xx".codePoints().toArray()).applyEdit(1, 3,
+        "ab\nc\u00E9\nd".codePoints().toArray()));
+    return instances;
+  }
+
+  @Test
+  public void copyCodePoints_allStorages() throws IOException {
+    for (final MappedCodePoints mcp : this.getAllStorages()) {
+      final int eosIndex = mcp.getEosIndex();
+      for (int start = 0; start <= eosIndex; start++) {
+        for (int end = start; end <= eosIndex; end++) {
+          final int[] dst = new int[end - start + 2];
+          Arrays.fill(dst, -42);
+          mcp.copyCodePoints(start, end, dst, 1);
+
+          Assert.assertEquals(-42, dst[0]);
+          for (int i = start; i < end; i++) {
+            Assert.assertEquals(mcp.codePointAt(i), dst[i - start + 1]);
+          }
+          Assert.assertEquals(-42, dst[dst.length - 1]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void forEach_allStorages() throws IOException {
+    for (final MappedCodePoints mcp : this.getAllStorages()) {
+      final int eosIndex = mcp.getEosIndex();
+      for (int start = 0; start <= eosIndex; start++) {
+        for (int end = start; end <= eosIndex; end++) {
+          final List<Integer> codePoints = new ArrayList<>();
+          mcp.forEach(start, end, codePoints::add);
+
+          Assert.assertEquals(end - start, codePoints.size());
+          for (int i = start; i < end; i++) {
+            Assert.assertEquals(mcp.codePointAt(i), codePoints.get(i - start).intValue());
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void asIntBuffer_allStorages() throws IOException {
+    for (final MappedCodePoints mcp : this.getAllStorages()) {
+      final IntBuffer buffer = mcp.asIntBuffer();
+      Assert.assertTrue(buffer.isReadOnly());
+      Assert.assertEquals(0, buffer.position());
+      Assert.assertEquals(mcp.getEosIndex() + 1, buffer.limit());
+      for (int i = 0; i <= mcp.getEosIndex(); i++) {
+        Assert.assertEquals(mcp.codePointAt(i), buffer.get(i));
+      }
+      Assert.assertEquals(MappedCodePoints.EOS, buffer.get(mcp.getEosIndex()));
+    }
+  }
+
+  @Test(expected = ReadOnlyBufferException.class)
+  public void asIntBuffer_readOnly() {
+    final MappedCodePoints mcp = new MappedCodePoints(new int[] { 0x10000, 'a' });
+    mcp.asIntBuffer().put(1, 'b');
+  }
+
+  @Test
+  public void copyCodePoints_outOfRange() {
+    final MappedCodePoints mcp = new MappedCodePoints(new int[] { 'a', 'b', 'c' });
+    for (final int[] range : new int[][] { { -1, 2 }, { 2, 1 }, { 1, 5 } }) {
+      try {
+        mcp.copyCodePoints(range[0], range[1], new int[10], 0);
+        Assert.fail();
+      } catch (final MappedCodePointsException e) {
+        Assert.assertEquals("Range outside of the stream (" + range[0] + ", " + range[1]
+            + "). It should be greater than or equal to 0 and less than or equal to the end of stream.",
+            e.getMessage());
+      }
+      try {
+        mcp.forEach(range[0], range[1], c -> Assert.fail());
+        Assert.fail();
+      } catch (final MappedCodePointsException e) {
+        // Expected
+      }
+    }
+  }
+
+  @Test
+  public void copyCodePoints_destinationTooSmall() {
+    final MappedCodePoints mcp = new MappedCodePoints(new int[] { 'a', 'b', 'c' });
+    for (final int offset : new int[] { -1, 2 }) {
+      final int[] dst = new int[4];
+      try {
+        mcp.copyCodePoints(1, 4, dst, offset);
+        Assert.fail();
+      } catch (final MappedCodePointsException e) {
+        Assert.assertEquals("Destination outside of range (" + offset + ", 3). "
+            + "The offset should be greater than or equal to 0 and the code points should fit in the array.",
+            e.getMessage());
+      }
+      Assert.assertArrayEquals(new int[4], dst);
+    }
+  }
+
+  // -------------------------------------------------------------------------------------------------------------------
+  // Lines
+  // -------------------------------------------------------------------------------------------------------------------
+
+  @Test
+  public void lines_allStorages() throws IOException {
+    for (final MappedCodePoints mcp : this.getAllStorages()) {
+      // Every position belongs to the line whose range contains it (the LF ending a line being at its end)
+      final int lineCount = mcp.getLineCount();
+      Assert.assertEquals(mcp.getLine(mcp.getEosIndex()), lineCount);
+      for (int line = 0; line <= lineCount; line++) {
+        final int start = mcp.getLineStart(line);
+        final int end = mcp.getLineEnd(line);
+        for (int i = start; i < end; i++) {
+          Assert.assertEquals(line, mcp.getLine(i));
+          Assert.assertNotEquals(MappedCodePoints.LF, mcp.codePointAt(i));
+        }
+        if (line < lineCount) {
+          Assert.assertEquals(MappedCodePoints.LF, mcp.codePointAt(end));
+          Assert.assertEquals(line, mcp.getLine(end));
+          Assert.assertEquals(end + 1, mcp.getLineStart(line + 1));
+        } else {
+          Assert.assertEquals(mcp.getEosIndex(), end);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void lines() {
+    final MappedCodePoints mcp = new MappedCodePoints("ab\n\ncde\r\nf".codePoints().toArray());
+
+    Assert.assertEquals(4, mcp.getLineCount());
+    final int[][] expected = { { 0, 0 }, { 1, 3 }, { 4, 4 }, { 5, 8 }, { 9, 10 } };
+    for (int line = 0; line < expected.length; line++) {
+      Assert.assertEquals(expected[line][0], mcp.getLineStart(line));
+      Assert.assertEquals(expected[line][1], mcp.getLineEnd(line));
+    }
+
+    final int[] dst = new int[5];
+    Assert.assertEquals(3, mcp.copyLine(3, dst, 1));
+    Assert.assertArrayEquals(new int[] { 0, 'c', 'd', 'e', 0 }, dst);
+    Assert.assertEquals(0, mcp.copyLine(2, dst, 5));
+    Assert.assertEquals(1, mcp.copyLine(4, dst, 0));
+    Assert.assertEquals('f', dst[0]);
+  }
+
+  @Test
+  public void lines_outOfRange() {
+    final MappedCodePoints mcp = new MappedCodePoints("ab\ncd".codePoints().toArray());
+    for (final int line : new int[] { -1, 3 }) {
+      try {
+        mcp.getLineStart(line);
+        Assert.fail();
+      } catch (final MappedCodePointsException e) {
+        Assert.assertEquals("Line outside of range (" + line
+            + "). It should be greater than or equal to 0 and less than or equal to the number of lines.",
+            e.getMessage());
+      }
+      try {
+        mcp.copyLine(line, new int[10], 0);
+        Assert.fail();
+      } catch (final MappedCodePointsException e) {
+        Assert.assertTrue(e.getMessage().startsWith("Line outside of range (" + line + ")."));
+      }
+    }
+  }
+
+  // -------------------------------------------------------------------------------------------------------------------
+  // Columns
+  // -------------------------------------------------------------------------------------------------------------------
+
+  @Test
+  public void getColumn_allModels_allStorages() throws IOException {
+    final ColumnModel[] models = { ColumnModel.CODE_POINTS, ColumnModel.UTF16, ColumnModel.UTF8, ColumnModel.tabs(4),
+        ColumnModel.tabs(1) };
+    final List<MappedCodePoints> instances = this.getAllStorages();
+    instances.add(new MappedCodePoints(
+        "\ta\tbc\t\n\uD800\uDF83\t\u00E9\t\t\u4E9C".codePoints().toArray()));
+    // Lines without any code point occupying several columns, between and after other lines
+    instances.add(new MappedCodePoints("ab\n\n\t\tc\td\nef\n\u4E9Cg\nh".codePoints().toArray()));
+
+    for (final MappedCodePoints mcp : instances) {
+      for (final ColumnModel model : models) {
+        // Columns computed by scanning the line of each position
+        for (int i = 0; i <= mcp.getEosIndex(); i++) {
+          int expected = 0;
+          if (i > 0) {
+            expected = 1;
+            for (int j = mcp.getLineStart(mcp.getLine(i)); j < i; j++) {
+              expected += model.width(mcp.codePointAt(j), expected);
+            }
+          }
+          Assert.assertEquals(expected, mcp.getColumn(i, model));
+          Assert.assertEquals(expected, mcp.getColumn(i, mcp.getLine(i), model));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void getColumn_models() {
+    // a, tab, U+10383, U+00E9, b
+    final MappedCodePoints mcp = new MappedCodePoints("x\na\t\uD800\uDF83\u00E9b".codePoints().toArray());
+
+    final int[] utf16 = { 1, 2, 3, 5, 6 };
+    final int[] utf8 = { 1, 2, 3, 7, 9 };
+    final int[] tabs = { 1, 2, 5, 6, 7 };
+    for (int i = 0; i < 5; i++) {
+      Assert.assertEquals(i + 1, mcp.getColumn(i + 3, ColumnModel.CODE_POINTS));
+      Assert.assertEquals(utf16[i], mcp.getColumn(i + 3, ColumnModel.UTF16));
+      Assert.assertEquals(utf8[i], mcp.getColumn(i + 3, ColumnModel.UTF8));
+      Assert.assertEquals(tabs[i], mcp.getColumn(i + 3, ColumnModel.tabs(4)));
+      Assert.assertEquals(2, mcp.getLine(i + 3));
+    }
+
+    // The first line is not affected
+    Assert.assertEquals(1, mcp.getColumn(1, ColumnModel.tabs(4)));
+    Assert.assertEquals(0, mcp.getColumn(0, ColumnModel.UTF16));
+  }
+
+  @Test
+  public void getColumn_model_outOfRange() {
+    final MappedCodePoints mcp = new MappedCodePoints(new int[] { 'a' });
+    try {
+      mcp.getColumn(3, ColumnModel.UTF16);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals(
+          "Index outside of range (3). It should be greater than or equal to 0 and less than or equal to the end of stream.",
+          e.getMessage());
+    }
+  }
+
+  @Test
+  public void columnModel_tabs() {
+    Assert.assertEquals(ColumnModel.tabs(8), ColumnModel.tabs(8));
+    Assert.assertNotEquals(ColumnModel.tabs(8), ColumnModel.tabs(4));
+    Assert.assertEquals(4, ColumnModel.tabs(4).width('\t', 1));
+    Assert.assertEquals(1, ColumnModel.tabs(4).width('\t', 4));
+    Assert.assertEquals(4, ColumnModel.tabs(4).width('\t', 5));
+
+    try {
+      ColumnModel.tabs(0);
+      Assert.fail();
+    } catch (final IllegalArgumentException e) {
+      Assert.assertEquals("The size of a tab should be greater than 0 (0).", e.getMessage());
+    }
+  }
+
+  // -------------------------------------------------------------------------------------------------------------------
+  // Byte offsets
+  // -------------------------------------------------------------------------------------------------------------------
+
+  @Test
+  public void byteOffsetOf_allCharsets_allConstructions() throws IOException {
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      sb.append(MappedCodePointsTest.MIXED_TEXT).append(i);
+    }
+
+    // 256 code points: the End Of Stream is a checkpoint
+    final StringBuilder onCheckpoint = new StringBuilder("\u00E9\r\n");
+    for (int i = 0; i < 253; i++) {
+      onCheckpoint.append('a');
+    }
+    onCheckpoint.append("\uD800\uDF83");
+
+    final Object[][] charsets = { //
+        { Charset.UTF8, UnicodeTestData.NIO_CHARSET_UTF8 }, //
+        { Charset.UTF16BE, UnicodeTestData.NIO_CHARSET_UTF16BE }, //
+        { Charset.UTF16LE, UnicodeTestData.NIO_CHARSET_UTF16LE }, //
+        { Charset.UTF32BE, UnicodeTestData.NIO_CHARSET_UTF32BE }, //
+        { Charset.UTF32LE, UnicodeTestData.NIO_CHARSET_UTF32LE } };
+
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (final String text : new String[] { sb.append("\r\n\n").toString(), onCheckpoint.toString() }) {
+        for (final Object[] charset : charsets) {
+          final java.nio.charset.Charset nioCharset = (java.nio.charset.Charset) charset[1];
+          final byte[] bytes = text.getBytes(nioCharset);
+          final Path path = this.folder.newFile().toPath();
+          Files.write(path, bytes);
+
+          // Offset of each code point once CR and CRLF have been replaced by LF
+          final List<Long> expected = new ArrayList<>();
+          expected.add(0L);
+          long offset = 0;
+          for (int i = 0; i < text.length(); i = text.offsetByCodePoints(i, 1)) {
+            final int next = text.offsetByCodePoints(i, 1);
+            if (!text.startsWith("\n", i) || i == 0 || text.charAt(i - 1) != '\r') {
+              expected.add(offset);
+            }
+            offset += text.substring(i, next).getBytes(nioCharset).length;
+          }
+          expected.add(offset);
+
+          final MappedCodePoints[] mcps = { //
+              new MappedCodePoints(null, (Charset) charset[0], new UnicodeInputStream(bytes), 1, 1), //
+              MappedCodePoints.map(path, (Charset) charset[0]), //
+              MappedCodePoints.mapWindowed(path, (Charset) charset[0], 100, 1, 1), //
+              MappedCodePoints.mapParallel(null, ByteBuffer.wrap(bytes), (Charset) charset[0], pool, 100, 1, 1) };
+
+          for (final MappedCodePoints mcp : mcps) {
+            for (int i = mcp.getEosIndex(); i >= 0; i--) {
+              Assert.assertEquals((long) expected.get(i), mcp.byteOffsetOf(i));
+            }
+          }
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void byteOffsetOf_overlongSequences() throws IOException {
+    // 'A' and LF encoded with 2 and 3 bytes
+    final byte[] bytes = { 'a', (byte) 0xC1, (byte) 0x81, '\r', (byte) 0xE0, (byte) 0x80, (byte) 0x8A, 'b' };
+    final Path path = this.folder.newFile().toPath();
+    Files.write(path, bytes);
+
+    final MappedCodePoints[] mcps = { //
+        new MappedCodePoints(Charset.UTF8, new UnicodeInputStream(bytes)), //
+        MappedCodePoints.map(path, Charset.UTF8), //
+        MappedCodePoints.mapUtf8(path) };
+    for (final MappedCodePoints mcp : mcps) {
+      Assert.assertEquals('A', mcp.codePointAt(2));
+      Assert.assertEquals(5, mcp.getEosIndex());
+      Assert.assertEquals(0, mcp.byteOffsetOf(1));
+      Assert.assertEquals(1, mcp.byteOffsetOf(2));
+      Assert.assertEquals(3, mcp.byteOffsetOf(3));
+      Assert.assertEquals(7, mcp.byteOffsetOf(4));
+      Assert.assertEquals(8, mcp.byteOffsetOf(5));
+    }
+  }
+
+  @Test
+  public void byteOffsetOf_unknown() {
+    final MappedCodePoints mcp = new MappedCodePoints("abc".codePoints().toArray());
+    final MappedCodePoints edited = new MappedCodePoints(Charset.UTF8, new UnicodeInputStream("abc".getBytes(
+        UnicodeTestData.NIO_CHARSET_UTF8))).applyEdit(1, 2, new int[0]);
+
+    for (final MappedCodePoints m : new MappedCodePoints[] { mcp, edited }) {
+      try {
+        m.byteOffsetOf(1);
+        Assert.fail();
+      } catch (final MappedCodePointsException e) {
+        Assert.assertEquals("The byte offsets are unknown. "
+            + "This stream has been created from code points, loaded from a snapshot or edited.", e.getMessage());
+      }
+    }
+  }
+
+  @Test
+  public void byteOffsetOf_outOfRange() {
+    final MappedCodePoints mcp = new MappedCodePoints(Charset.UTF8, new UnicodeInputStream("abc".getBytes(
+        UnicodeTestData.NIO_CHARSET_UTF8)));
+    try {
+      mcp.byteOffsetOf(5);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals(
+          "Index outside of range (5). It should be greater than or equal to 0 and less than or equal to the end of stream.",
+          e.getMessage());
+    }
+  }
+
+  // -------------------------------------------------------------------------------------------------------------------
+  // Edits
+  // -------------------------------------------------------------------------------------------------------------------
+
+  @Test
+  public void applyEdit_insert_delete_replace() {
+    final MappedCodePoints mcp = new MappedCodePoints("line 1\nline 2".codePoints().toArray());
+    mcp.getLine(1);
+
+    final MappedCodePoints inserted = mcp.applyEdit(7, 7, "\r\nline 1.5".codePoints().toArray());
+    Assert.assertEquals("line 1\nline 1.5\nline 2", MappedCodePointsTest.toString(inserted));
+    Assert.assertEquals(3, inserted.getLine(17));
+    Assert.assertEquals(1, inserted.getColumn(17));
+    Assert.assertEquals(3, inserted.getLine(inserted.getEosIndex()));
+
+    final MappedCodePoints deleted = inserted.applyEdit(5, 16, new int[0]);
+    Assert.assertEquals("line\nline 2", MappedCodePointsTest.toString(deleted));
+    Assert.assertEquals(2, deleted.getLine(6));
+    Assert.assertEquals(1, deleted.getColumn(6));
+
+    final MappedCodePoints replaced = deleted.applyEdit(1, 5, "a".codePoints().toArray());
+    Assert.assertEquals("a\nline 2", MappedCodePointsTest.toString(replaced));
+    Assert.assertEquals(2, replaced.getLine(3));
+    Assert.assertEquals(2, replaced.getColumn(4));
+
+    // Previous instances untouched
+    Assert.assertEquals("line 1\nline 2", MappedCodePointsTest.toString(mcp));
+    Assert.assertEquals(2, mcp.getLine(8));
+  }
+
+  @Test
+  public void applyEdit_newLinesAtTheEnd() {
+    final MappedCodePoints mcp = new MappedCodePoints("a\n\nb".codePoints().toArray());
+    mcp.getLine(1);
+
+    final MappedCodePoints edited = mcp.applyEdit(4, 5, "\r".codePoints().toArray());
+    Assert.assertEquals(2, edited.getEosIndex());
+    Assert.assertEquals(MappedCodePoints.EOS, edited.codePointAt(2));
+    Assert.assertEquals(1, edited.getLine(2));
+    Assert.assertEquals(2, edited.getColumn(2));
+  }
+
+  @Test
+  public void applyEdit_crBeforeLf() {
+    final MappedCodePoints mcp = new MappedCodePoints("a\nb".codePoints().toArray());
+    mcp.getLine(1);
+
+    final MappedCodePoints edited = mcp.applyEdit(2, 2, "\r".codePoints().toArray());
+    Assert.assertEquals("a\nb", MappedCodePointsTest.toString(edited));
+    Assert.assertEquals(2, edited.getLine(3));
+  }
+
+  @Test
+  public void applyEdit_randomEdits() {
+    final Random random = new Random(42);
+    final String alphabet = "ab\r\n\n\u00E9";
+
+    for (final boolean linesComputed : new boolean[] { true, false }) {
+      MappedCodePoints mcp = new MappedCodePoints("line 1\nline 2\r\nline 3".codePoints().toArray());
+
+      for (int n = 0; n < 200; n++) {
+        if (linesComputed) {
+          mcp.getLine(random.nextInt(mcp.getEosIndex() + 1));
+        }
+
+        final int start = 1 + random.nextInt(mcp.getEosIndex());
+        final int end = start + random.nextInt(Math.min(5, mcp.getEosIndex() - start + 1));
+        final int[] replacement = new int[random.nextInt(6)];
+        for (int i = 0; i < replacement.length; i++) {
+          replacement[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+
+        final StringBuilder sb = new StringBuilder(MappedCodePointsTest.toString(mcp));
+        sb.replace(start - 1, end - 1, new String(replacement, 0, replacement.length));
+        if (sb.toString().replace("\r", "").replace("\n", "").isEmpty()) {
+          continue;
+        }
+
+        final MappedCodePoints expected = new MappedCodePoints(sb.toString().codePoints().toArray());
+        mcp = mcp.applyEdit(start, end, replacement);
+        MappedCodePointsTest.assertSameMapping(expected, mcp);
+      }
+    }
+  }
+
+  @Test
+  public void applyEdit_manyEdits() {
+    final Random random = new Random(42);
+    final StringBuilder text = new StringBuilder();
+    for (int line = 1; line <= 200; line++) {
+      text.append("line ").append(line).append("\n");
+    }
+
+    // Enough edits for the pieces and the segments of lines to be copied in arrays several times
+    MappedCodePoints mcp = new MappedCodePoints(text.toString().codePoints().toArray());
+    mcp.getLine(1);
+    for (int n = 0; n < 2000; n++) {
+      final int start = 1 + random.nextInt(mcp.getEosIndex());
+      final int end = start + random.nextInt(Math.min(3, mcp.getEosIndex() - start + 1));
+      final int[] replacement = random.nextInt(4) == 0 ? new int[] { '\n', 'x' } : new int[] { 'y' };
+      text.replace(start - 1, end - 1, new String(replacement, 0, replacement.length));
+      mcp = mcp.applyEdit(start, end, replacement);
+
+      if (n % 100 == 0) {
+        mcp.getLine(random.nextInt(mcp.getEosIndex() + 1));
+      }
+    }
+
+    final MappedCodePoints expected = new MappedCodePoints(text.toString().codePoints().toArray());
+    MappedCodePointsTest.assertSameMapping(expected, mcp);
+
+    final int[] codePoints = new int[mcp.getEosIndex()];
+    mcp.copyCodePoints(0, mcp.getEosIndex(), codePoints, 0);
+    Assert.assertEquals(expected.asIntBuffer().limit(mcp.getEosIndex()), IntBuffer.wrap(codePoints));
+    Assert.assertEquals(expected.asIntBuffer(), mcp.asIntBuffer());
+    final StringBuilder sb = new StringBuilder();
+    mcp.forEach(1, mcp.getEosIndex(), sb::appendCodePoint);
+    Assert.assertEquals(MappedCodePointsTest.toString(expected), sb.toString());
+  }
+
+  @Test
+  public void applyEdit_wrongRange() {
+    final MappedCodePoints mcp = new MappedCodePoints("abc".codePoints().toArray());
+    for (final int[] range : new int[][] { { 0, 1 }, { 2, 1 }, { 1, 5 } }) {
+      try {
+        mcp.applyEdit(range[0], range[1], new int[0]);
+        Assert.fail();
+      } catch (final MappedCodePointsException e) {
+        Assert.assertEquals("Edit outside of range (" + range[0] + ", " + range[1]
+            + "). It should be greater than or equal to 1 and less than or equal to the end of stream.", e
+                .getMessage());
+      }
+    }
+  }
+
+  @Test
+  public void applyEdit_nullReplacement() {
+    try {
+      new MappedCodePoints("abc".codePoints().toArray()).applyEdit(1, 2, null);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("This replacement is null.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void applyEdit_emptyStream() {
+    try {
+      new MappedCodePoints("myFile.txt", "a\nb".codePoints().toArray(), 1, 1).applyEdit(1, 4, new int[] { '\r' });
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("This stream is empty (myFile.txt).", e.getMessage());
+    }
+  }
+
+  /**
+   * Returns the code points of an instance, from 1 to the End Of Stream (excluded).
+   */
+  private static String toString(final MappedCodePoints mcp) {
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 1; i < mcp.getEosIndex(); i++) {
+      sb.appendCodePoint(mcp.codePointAt(i));
+    }
+    return sb.toString();
+  }
+
   // -------------------------------------------------------------------------------------------------------------------
   // Debug
   // -------------------------------------------------------------------------------------------------------------------
@@ -557,6 +1950,172 @@ public class MappedCodePointsTest {
     Assert.assertEquals(expected, debug);
   }
 
+  @Test
+  public void debug_longLines_excerptAroundColumn() {
+    final String longA = MappedCodePointsTest.repeat('a', 299) + "X" + MappedCodePointsTest.repeat('a', 200);
+    final String longB = MappedCodePointsTest.repeat('b', 500);
+    final MappedCodePoints mcp = new MappedCodePoints(("short" + '\n' + longA + '\n' + longB).codePoints()
+        .toArray());
+
+    // Columns 200 to 399 displayed
+    final String expected = "Error.\n" //
+        + "...\n" //
+        + "..." + longA.substring(199, 399) + "...\n" //
+        + MappedCodePointsTest.repeat(' ', 103) + "^__ Line 2\n" //
+        + "..." + longB.substring(199, 399) + "...";
+
+    Assert.assertEquals('X', mcp.codePointAt(306));
+    Assert.assertEquals(expected, mcp.debug("Error.", 306));
+  }
+
+  @Test
+  public void debug_longLines_excerptAtTheEnds() {
+    final String longA = MappedCodePointsTest.repeat('a', 500);
+    final MappedCodePoints mcp = new MappedCodePoints((longA + '\n' + "short").codePoints().toArray());
+
+    Assert.assertEquals(longA.substring(0, 200) + "...\n" //
+        + "  ^__ Line 1\n" //
+        + "short", mcp.debug(null, 3));
+
+    Assert.assertEquals("..." + longA.substring(300) + "\n" //
+        + MappedCodePointsTest.repeat(' ', 202) + "^__ Line 1\n" //
+        + "...", mcp.debug(null, 500));
+  }
+
+  @Test
+  public void debug_bom() {
+    final MappedCodePoints mcp = new MappedCodePoints(new int[] { CodePoints.BOM_CODEPOINT, 'a', '\n', 'b' });
+    Assert.assertEquals("a\n ^__ Line 1\nb", mcp.debug(null, 2));
+  }
+
+  @Test
+  public void debug_batch_sameAsDebug() {
+    final MappedCodePoints mcp = new MappedCodePoints("myFile.txt", MappedCodePointsTest.getSevenLines_codepoints(),
+        1, 1);
+    final StringBuilder sb = new StringBuilder();
+    mcp.debug(Arrays.asList(new MappedCodePoints.Diagnostic("C", 85), new MappedCodePoints.Diagnostic("A", 17)), sb);
+    Assert.assertEquals(mcp.debug("A", 17) + "\n\n" + mcp.debug("C", 85) + "\n", sb.toString());
+  }
+
+  @Test
+  public void debug_batch_overlappingLines() {
+    final String expected = "In file myFile.txt\n" //
+        + "A\n" //
+        + "B\n" //
+        + "line number 1\n" //
+        + "line number 2\n" //
+        + "  ^__ Line 2\n" //
+        + "line number 3\n" //
+        + "    ^__ Line 3\n" //
+        + "line number 4\n";
+
+    final MappedCodePoints mcp = new MappedCodePoints("myFile.txt", MappedCodePointsTest.getSevenLines_codepoints(),
+        1, 1);
+    final StringBuilder sb = new StringBuilder();
+    mcp.debug(Arrays.asList(new MappedCodePoints.Diagnostic("B", 33), new MappedCodePoints.Diagnostic("A", 17)), sb);
+    Assert.assertEquals(expected, sb.toString());
+  }
+
+  @Test
+  public void debug_batch_sameLine() {
+    final String expected = "y\n" //
+        + "x\n" //
+        + "line number 1\n" //
+        + "^__ Line 1\n" //
+        + "  ^__ Line 1\n" //
+        + "line number 2\n";
+
+    final MappedCodePoints mcp = new MappedCodePoints(MappedCodePointsTest.getSevenLines_codepoints());
+    final StringBuilder sb = new StringBuilder();
+    mcp.debug(Arrays.asList(new MappedCodePoints.Diagnostic("x", 3), new MappedCodePoints.Diagnostic("y", 1)), sb);
+    Assert.assertEquals(expected, sb.toString());
+  }
+
+  @Test
+  public void debug_batch_sharedLines() {
+    final MappedCodePoints mcp = new MappedCodePoints(MappedCodePointsTest.getSevenLines_codepoints());
+    final StringBuilder sb = new StringBuilder();
+    mcp.debug(Arrays.asList(new MappedCodePoints.Diagnostic("A", 17), new MappedCodePoints.Diagnostic("D", 57),
+        new MappedCodePoints.Diagnostic(null, 85), new MappedCodePoints.Diagnostic(null, 0)), sb);
+
+    // Lines 0 and 2 share line 1, lines 5 and 7 share line 6
+    final String expected = "A\n" //
+        + "^__ Line 0\n" //
+        + "line number 1\n" //
+        + "line number 2\n" //
+        + "  ^__ Line 2\n" //
+        + "line number 3\n" //
+        + "\n" //
+        + "D\n" //
+        + "line number 4\n" //
+        + "line number 5\n" //
+        + "^__ Line 5\n" //
+        + "line number 6\n" //
+        + "line number 7\n" //
+        + "^__ Line 7\n";
+    Assert.assertEquals(expected, sb.toString());
+  }
+
+  @Test
+  public void debug_batch_empty() {
+    final StringBuilder sb = new StringBuilder();
+    new MappedCodePoints(MappedCodePointsTest.getSevenLines_codepoints()).debug(
+        new ArrayList<MappedCodePoints.Diagnostic>(), sb);
+    Assert.assertEquals("", sb.toString());
+  }
+
+  @Test
+  public void debug_batch_outOfRange() {
+    final MappedCodePoints mcp = new MappedCodePoints(MappedCodePointsTest.getSevenLines_codepoints());
+    try {
+      mcp.debug(Arrays.asList(new MappedCodePoints.Diagnostic("A", 17), new MappedCodePoints.Diagnostic("B", 99)),
+          new StringBuilder());
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals(
+          "Index outside of range (99). It should be greater than or equal to 0 and less than or equal to the end of stream.",
+          e.getMessage());
+    }
+  }
+
+  @Test
+  public void debug_batch_writeError() {
+    final Appendable out = new Appendable() {
+      @Override
+      public Appendable append(final CharSequence csq) throws IOException {
+        throw new IOException("Disk full");
+      }
+
+      @Override
+      public Appendable append(final CharSequence csq, final int start, final int end) throws IOException {
+        throw new IOException("Disk full");
+      }
+
+      @Override
+      public Appendable append(final char c) throws IOException {
+        throw new IOException("Disk full");
+      }
+    };
+
+    try {
+      new MappedCodePoints(MappedCodePointsTest.getSevenLines_codepoints()).debug(Arrays.asList(
+          new MappedCodePoints.Diagnostic("A", 17)), out);
+      Assert.fail();
+    } catch (final MappedCodePointsException e) {
+      Assert.assertEquals("Impossible to write the debug messages.", e.getMessage());
+      Assert.assertEquals("Disk full", e.getCause().getMessage());
+    }
+  }
+
+  /**
+   * Returns a string made of a character repeated.
+   */
+  private static String repeat(final char c, final int count) {
+    final char[] chars = new char[count];
+    Arrays.fill(chars, c);
+    return new String(chars);
+  }
+
   // -------------------------------------------------------------------------------------------------------------------
   // Helpers
   // -------------------------------------------------------------------------------------------------------------------
@@ -68,6 +68,37 @@ public class UnicodeInputStreamTest {
     Assert.assertNotNull(stream);
   }
 
+  @Test
+  public void available() {
+    final byte[] bytes = { 'a', 'b' };
+    try (final UnicodeInputStream stream = new UnicodeInputStream(bytes)) {
+      Assert.assertEquals(2, stream.available());
+      Assert.assertTrue(stream.hasNext());
+      Assert.assertEquals(2, stream.available());
+      stream.read();
+      Assert.assertEquals(1, stream.available());
+      stream.read();
+      Assert.assertEquals(0, stream.available());
+    }
+  }
+
+  @Test
+  public void getPosition() {
+    final byte[] bytes = { 'a', 'b' };
+    try (final UnicodeInputStream stream = new UnicodeInputStream(bytes)) {
+      Assert.assertEquals(0, stream.getPosition());
+      Assert.assertTrue(stream.hasNext());
+      Assert.assertEquals(0, stream.getPosition());
+      final int b = stream.read();
+      Assert.assertEquals(1, stream.getPosition());
+      stream.unread(b);
+      Assert.assertEquals(0, stream.getPosition());
+      stream.read();
+      stream.read();
+      Assert.assertEquals(2, stream.getPosition());
+    }
+  }
+
   @Test
   public void hasNext() {
     final byte[] bytes = { 'a', 'b' };